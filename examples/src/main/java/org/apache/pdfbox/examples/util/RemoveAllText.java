@@ -18,17 +18,14 @@ package org.apache.pdfbox.examples.util;
 
 import java.io.OutputStream;
 import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfparser.PDFStreamReader;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDStream;
-import org.apache.pdfbox.contentstream.operator.Operator;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * This is an example on how to remove all text from PDF document.
@@ -71,28 +68,20 @@ public final class RemoveAllText
                 }
                 for( PDPage page : document.getPages() )
                 {
-                    PDFStreamParser parser = new PDFStreamParser(page);
-                    parser.parse();
-                    List<Object> tokens = parser.getTokens();
-                    List<Object> newTokens = new ArrayList<Object>();
-                    for (Object token : tokens)
+                    // the content is copied operation by operation, without holding all tokens
+                    PDStream newContents = new PDStream( document );
+                    OutputStream out = newContents.createOutputStream(COSName.FLATE_DECODE);
+                    ContentStreamWriter writer = new ContentStreamWriter( out );
+                    PDFStreamReader reader = new PDFStreamReader(page);
+                    while( reader.next() )
                     {
-                        if( token instanceof Operator)
+                        String operator = reader.getOperator().getName();
+                        if( !operator.equals( "TJ") && !operator.equals( "Tj" ))
                         {
-                            Operator op = (Operator)token;
-                            if( op.getName().equals( "TJ") || op.getName().equals( "Tj" ))
-                            {
-                                //remove the one argument to this operator
-                                newTokens.remove( newTokens.size() -1 );
-                                continue;
-                            }
+                            writer.writeOperation( reader );
                         }
-                        newTokens.add( token );
                     }
-                    PDStream newContents = new PDStream( document );
-                    OutputStream out = newContents.createOutputStream(COSName.FLATE_DECODE);
-                    ContentStreamWriter writer = new ContentStreamWriter( out );
-                    writer.writeTokens( newTokens );
+                    reader.close();
                     out.close();
                     page.setContents( newContents );
                 }
@@ -22,11 +22,12 @@ import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,8 +37,10 @@ import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSNumber;
 import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.filter.MissingImageReaderException;
+import org.apache.pdfbox.io.ParsedStreamCache;
 import org.apache.pdfbox.pdfparser.PDFStreamParser;
 import org.apache.pdfbox.pdmodel.MissingResourceException;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -74,10 +77,31 @@ public abstract class PDFStreamEngine
 
     private final Map<String, OperatorProcessor> operators = new HashMap<String, OperatorProcessor>();
 
+    // the maximum size of the processor table, operators with higher ids are looked up by name
+    private static final int MAX_PROCESSOR_TABLE_SIZE = 4096;
+
+    // marks operators in the processor table which have no processor
+    private static final OperatorProcessor NO_PROCESSOR = new OperatorProcessor()
+    {
+        @Override
+        public void process(Operator operator, List<COSBase> operands)
+        {
+        }
+
+        @Override
+        public String getName()
+        {
+            return null;
+        }
+    };
+
+    // the processors of the operators which have been used so far, indexed by the operator ids
+    private OperatorProcessor[] processorTable = new OperatorProcessor[0];
+
     private Matrix textMatrix;
     private Matrix textLineMatrix;
 
-    private Stack<PDGraphicsState> graphicsStack = new Stack<PDGraphicsState>();
+    private Deque<PDGraphicsState> graphicsStack = new ArrayDeque<PDGraphicsState>();
 
     private PDResources resources;
     private PDPage currentPage;
@@ -103,6 +127,7 @@ public abstract class PDFStreamEngine
     {
         op.setContext(this);
         operators.put(operator, op);
+        processorTable = new OperatorProcessor[0];
     }
 
     /**
@@ -114,6 +139,7 @@ public abstract class PDFStreamEngine
     {
         op.setContext(this);
         operators.put(op.getName(), op);
+        processorTable = new OperatorProcessor[0];
     }
 
     /**
@@ -202,7 +228,7 @@ public abstract class PDFStreamEngine
         }
 
         PDResources parent = pushResources(group);
-        Stack<PDGraphicsState> savedStack = saveGraphicsStack();
+        Deque<PDGraphicsState> savedStack = saveGraphicsStack();
 
         // transform the CTM using the stream's matrix
         getGraphicsState().getCurrentTransformationMatrix().concatenate(group.getMatrix());
@@ -233,7 +259,7 @@ public abstract class PDFStreamEngine
         }
 
         PDResources parent = pushResources(charProc);
-        Stack<PDGraphicsState> savedStack = saveGraphicsStack();
+        Deque<PDGraphicsState> savedStack = saveGraphicsStack();
 
         // replace the CTM with the TRM
         getGraphicsState().setCurrentTransformationMatrix(textRenderingMatrix);
@@ -270,7 +296,7 @@ public abstract class PDFStreamEngine
             throws IOException
     {
         PDResources parent = pushResources(appearance);
-        Stack<PDGraphicsState> savedStack = saveGraphicsStack();
+        Deque<PDGraphicsState> savedStack = saveGraphicsStack();
 
         PDRectangle bbox = appearance.getBBox();
         PDRectangle rect = annotation.getRectangle();
@@ -341,7 +367,7 @@ public abstract class PDFStreamEngine
         initialMatrix = Matrix.concatenate(initialMatrix, patternMatrix);
 
         // save the original graphics state
-        Stack<PDGraphicsState> savedStack = saveGraphicsStack();
+        Deque<PDGraphicsState> savedStack = saveGraphicsStack();
 
         // save a clean state (new clipping path, line path, etc.)
         Rectangle2D bbox = tilingPattern.getBBox().transform(patternMatrix).getBounds2D();
@@ -426,7 +452,7 @@ public abstract class PDFStreamEngine
     private void processStream(PDContentStream contentStream) throws IOException
     {
         PDResources parent = pushResources(contentStream);
-        Stack<PDGraphicsState> savedStack = saveGraphicsStack();
+        Deque<PDGraphicsState> savedStack = saveGraphicsStack();
         Matrix parentMatrix = initialMatrix;
 
         // transform the CTM using the stream's matrix
@@ -454,26 +480,116 @@ public abstract class PDFStreamEngine
      */
     private void processStreamOperators(PDContentStream contentStream) throws IOException
     {
+        COSStream stream = getCacheableStream(contentStream);
+        ParsedStreamCache cache = stream != null ? stream.getParsedStreamCache() : null;
+        if (cache != null)
+        {
+            Object[] cachedTokens = cache.get(stream);
+            if (cachedTokens != null)
+            {
+                List<COSBase> arguments = new ArrayList<COSBase>();
+                for (Object token : cachedTokens)
+                {
+                    processToken(token, arguments);
+                }
+                return;
+            }
+        }
+
+        // the tokens are collected while they are processed, so that a stream which can't be
+        // parsed completely is processed as far as possible and isn't cached
+        List<Object> tokens = cache != null ? new ArrayList<Object>() : null;
+        long tokenBytes = 0;
         List<COSBase> arguments = new ArrayList<COSBase>();
         PDFStreamParser parser = new PDFStreamParser(contentStream);
         Object token = parser.parseNextToken();
         while (token != null)
         {
-            if (token instanceof COSObject)
-            {
-                arguments.add(((COSObject) token).getObject());
-            }
-            else if (token instanceof Operator)
+            if (tokens != null)
             {
-                processOperator((Operator) token, arguments);
-                arguments = new ArrayList<COSBase>();
+                tokens.add(token);
+                tokenBytes += estimateTokenSize(token);
+                if (!cache.fits(tokenBytes))
+                {
+                    tokens = null;
+                }
             }
-            else
+            processToken(token, arguments);
+            token = parser.parseNextToken();
+        }
+        if (tokens != null)
+        {
+            cache.put(stream, tokens.toArray(), tokenBytes);
+        }
+    }
+
+    /**
+     * Processes a token of a content stream. Operands are added to the given arguments, an
+     * operator is processed with them. The arguments are cleared afterwards, so that the list
+     * is re-used for the operands of the next operator.
+     */
+    private void processToken(Object token, List<COSBase> arguments) throws IOException
+    {
+        if (token instanceof COSObject)
+        {
+            arguments.add(((COSObject) token).getObject());
+        }
+        else if (token instanceof Operator)
+        {
+            processOperator((Operator) token, arguments);
+            arguments.clear();
+        }
+        else
+        {
+            arguments.add((COSBase) token);
+        }
+    }
+
+    /**
+     * Returns the stream of a content stream whose parsed tokens may be cached, i.e. of forms,
+     * annotation appearances, tiling patterns and Type 3 glyphs, which are often executed many
+     * times. Page contents are parsed every time.
+     */
+    private static COSStream getCacheableStream(PDContentStream contentStream)
+    {
+        if (contentStream instanceof PDFormXObject)
+        {
+            return ((PDFormXObject) contentStream).getCOSStream();
+        }
+        if (contentStream instanceof PDType3CharProc)
+        {
+            return ((PDType3CharProc) contentStream).getCOSObject();
+        }
+        if (contentStream instanceof PDTilingPattern
+                && ((PDTilingPattern) contentStream).getCOSObject() instanceof COSStream)
+        {
+            return (COSStream) ((PDTilingPattern) contentStream).getCOSObject();
+        }
+        return null;
+    }
+
+    /**
+     * Roughly estimates the memory used by a parsed token, including the reference to it.
+     */
+    private static long estimateTokenSize(Object token)
+    {
+        long size = 32;
+        if (token instanceof COSString)
+        {
+            size += ((COSString) token).getBytes().length;
+        }
+        else if (token instanceof COSArray)
+        {
+            for (COSBase element : (COSArray) token)
             {
-                arguments.add((COSBase) token);
+                size += estimateTokenSize(element);
             }
-            token = parser.parseNextToken();
         }
+        else if (token instanceof Operator && ((Operator) token).getImageData() != null)
+        {
+            size += ((Operator) token).getImageData().length;
+        }
+        return size;
     }
 
     /**
@@ -788,7 +904,8 @@ public abstract class PDFStreamEngine
     }
 
     /**
-     * This is used to handle an operation.
+     * This is used to handle an operation. When processing a content stream, the list of operands
+     * is re-used for the following operators, it must be copied if it is needed afterwards.
      * 
      * @param operator The operation to perform.
      * @param operands The list of arguments.
@@ -796,8 +913,7 @@ public abstract class PDFStreamEngine
      */
     protected void processOperator(Operator operator, List<COSBase> operands) throws IOException
     {
-        String name = operator.getName();
-        OperatorProcessor processor = operators.get(name);
+        OperatorProcessor processor = getProcessor(operator);
         if (processor != null)
         {
             processor.setContext(this);
@@ -816,6 +932,36 @@ public abstract class PDFStreamEngine
         }
     }
 
+    /**
+     * Returns the processor of the given operator, or null. The processors are looked up by name
+     * once and then kept in a table indexed by the operator ids.
+     */
+    private OperatorProcessor getProcessor(Operator operator)
+    {
+        int id = operator.getId();
+        if (id < processorTable.length)
+        {
+            OperatorProcessor processor = processorTable[id];
+            if (processor != null)
+            {
+                return processor == NO_PROCESSOR ? null : processor;
+            }
+        }
+        OperatorProcessor processor = operators.get(operator.getName());
+        if (id < MAX_PROCESSOR_TABLE_SIZE)
+        {
+            if (id >= processorTable.length)
+            {
+                OperatorProcessor[] table = new OperatorProcessor[Math.min(
+                        Math.max(id + 1, processorTable.length * 2), MAX_PROCESSOR_TABLE_SIZE)];
+                System.arraycopy(processorTable, 0, table, 0, processorTable.length);
+                processorTable = table;
+            }
+            processorTable[id] = processor != null ? processor : NO_PROCESSOR;
+        }
+        return processor;
+    }
+
     /**
      * Called when an unsupported operator is encountered.
      *
@@ -877,18 +1023,18 @@ public abstract class PDFStreamEngine
     /**
      * Saves the entire graphics stack.
      */
-    protected final Stack<PDGraphicsState> saveGraphicsStack()
+    protected final Deque<PDGraphicsState> saveGraphicsStack()
     {
-        Stack<PDGraphicsState> savedStack = graphicsStack;
-        graphicsStack = new Stack<PDGraphicsState>();
-        graphicsStack.add(savedStack.peek().clone());
+        Deque<PDGraphicsState> savedStack = graphicsStack;
+        graphicsStack = new ArrayDeque<PDGraphicsState>();
+        graphicsStack.push(savedStack.peek().clone());
         return savedStack;
     }
 
     /**
      * Restores the entire graphics stack.
      */
-    protected final void restoreGraphicsStack(Stack<PDGraphicsState> snapshot)
+    protected final void restoreGraphicsStack(Deque<PDGraphicsState> snapshot)
     {
         graphicsStack = snapshot;
     }
@@ -20,6 +20,7 @@ import org.apache.pdfbox.cos.COSDictionary;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An Operator in a PDF content stream.
@@ -29,21 +30,27 @@ import java.util.concurrent.ConcurrentMap;
 public final class Operator
 {
     private final String theOperator;
+    private final int id;
     private byte[] imageData;
     private COSDictionary imageParameters;
 
     /** map for singleton operator objects; use {@link ConcurrentHashMap} for better scalability with multiple threads */
     private static final ConcurrentMap<String,Operator> operators = new ConcurrentHashMap<String, Operator>();
 
+    /** the id of the next operator which is added to {@link #operators} */
+    private static final AtomicInteger nextId = new AtomicInteger();
+
     /**
      * Constructor.
      *
      * @param aOperator The operator that this object will represent.
+     * @param id The id of the operator.
      * @throws IllegalArgumentException if the operator starts with "/".
      */
-    private Operator(String aOperator)
+    private Operator(String aOperator, int id)
     {
         theOperator = aOperator;
+        this.id = id;
         if( aOperator.startsWith( "/" ) )
         {
             throw new IllegalArgumentException( "Operators are not allowed to start with / '" + aOperator + "'" );
@@ -59,27 +66,28 @@ public final class Operator
      */
     public static Operator getOperator( String operator )
     {
-        Operator operation;
         if( operator.equals( "ID" ) || operator.equals( "BI" ) )
         {
-            //we can't cache the ID operators.
-            operation = new Operator( operator );
+            //we can't cache the ID operators, but they share the id of the cached one.
+            return new Operator( operator, getCachedOperator( operator ).id );
         }
-        else
+        return getCachedOperator( operator );
+    }
+
+    private static Operator getCachedOperator( String operator )
+    {
+        Operator operation = operators.get( operator );
+        if( operation == null )
         {
-            operation = operators.get( operator );
-            if( operation == null )
+            // another thread may has already added an operator of this kind
+            // make sure that we get the same operator
+            operation = operators.putIfAbsent( operator,
+                    new Operator( operator, nextId.getAndIncrement() ) );
+            if ( operation == null )
             {
-                // another thread may has already added an operator of this kind
-                // make sure that we get the same operator
-                operation = operators.putIfAbsent( operator, new Operator( operator ) );
-                if ( operation == null )
-                {
-                    operation = operators.get( operator );
-                }
+                operation = operators.get( operator );
             }
         }
-
         return operation;
     }
 
@@ -93,6 +101,18 @@ public final class Operator
         return theOperator;
     }
 
+    /**
+     * Returns a small number which identifies the operator. All operators with the same name have
+     * the same id, the ids are counted from 0 in the order the operators are first used. This
+     * allows to look up operators in an array instead of a map.
+     *
+     * @return the id of the operator
+     */
+    public int getId()
+    {
+        return id;
+    }
+
     /**
      * This will print a string rep of this class.
      *
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.cos;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map holding the entries of a {@link COSDictionary}, in the order they were added.
+ *
+ * Most dictionaries have only a few entries, they are kept in a single array of alternating keys
+ * and values which is searched linearly. As names are interned, keys are usually found by
+ * identity. A dictionary which grows beyond {@link #MAX_SMALL_SIZE} entries is moved to a
+ * {@link LinkedHashMap}.
+ */
+final class COSDictionaryMap extends AbstractMap<COSName, COSBase>
+{
+    /** The maximum number of entries kept in the array. */
+    static final int MAX_SMALL_SIZE = 8;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // alternating keys and values, null until the first entry is added
+    private Object[] table;
+    private int size;
+
+    // the entries, once there are more than MAX_SMALL_SIZE
+    private Map<COSName, COSBase> map;
+
+    // incremented when entries are added or removed, for detecting concurrent modification
+    private int modCount;
+
+    private Set<Entry<COSName, COSBase>> entrySet;
+
+    private int indexOf(Object key)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (table[i << 1] == key)
+            {
+                return i;
+            }
+        }
+        if (key == null)
+        {
+            return -1;
+        }
+        // names which aren't interned, e.g. after COSName.clearResources()
+        int hash = key.hashCode();
+        for (int i = 0; i < size; i++)
+        {
+            Object k = table[i << 1];
+            if (k != null && k.hashCode() == hash && k.equals(key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size()
+    {
+        return map != null ? map.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return map != null ? map.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public COSBase get(Object key)
+    {
+        if (map != null)
+        {
+            return map.get(key);
+        }
+        int index = indexOf(key);
+        return index >= 0 ? (COSBase) table[(index << 1) + 1] : null;
+    }
+
+    @Override
+    public COSBase put(COSName key, COSBase value)
+    {
+        if (map != null)
+        {
+            return map.put(key, value);
+        }
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            COSBase old = (COSBase) table[(index << 1) + 1];
+            table[(index << 1) + 1] = value;
+            return old;
+        }
+        modCount++;
+        if (size == MAX_SMALL_SIZE)
+        {
+            map = new LinkedHashMap<COSName, COSBase>();
+            for (int i = 0; i < size; i++)
+            {
+                map.put((COSName) table[i << 1], (COSBase) table[(i << 1) + 1]);
+            }
+            table = null;
+            size = 0;
+            return map.put(key, value);
+        }
+        if (table == null)
+        {
+            table = new Object[INITIAL_CAPACITY << 1];
+        }
+        else if (size << 1 == table.length)
+        {
+            Object[] newTable = new Object[table.length << 1];
+            System.arraycopy(table, 0, newTable, 0, table.length);
+            table = newTable;
+        }
+        table[size << 1] = key;
+        table[(size << 1) + 1] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public COSBase remove(Object key)
+    {
+        if (map != null)
+        {
+            return map.remove(key);
+        }
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+        COSBase old = (COSBase) table[(index << 1) + 1];
+        removeAt(index);
+        return old;
+    }
+
+    private void removeAt(int index)
+    {
+        modCount++;
+        int next = (index + 1) << 1;
+        // keep the order of the remaining entries
+        System.arraycopy(table, next, table, index << 1, (size << 1) - next);
+        size--;
+        table[size << 1] = null;
+        table[(size << 1) + 1] = null;
+    }
+
+    @Override
+    public void clear()
+    {
+        modCount++;
+        map = null;
+        table = null;
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<COSName, COSBase>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<COSName, COSBase>>
+    {
+        @Override
+        public Iterator<Entry<COSName, COSBase>> iterator()
+        {
+            if (map != null)
+            {
+                return map.entrySet().iterator();
+            }
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return COSDictionaryMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+            COSDictionaryMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<COSName, COSBase>>
+    {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < size;
+        }
+
+        @Override
+        public Entry<COSName, COSBase> next()
+        {
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new ArrayEntry(last);
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry which writes a new value through to the array.
+     */
+    private final class ArrayEntry extends SimpleEntry<COSName, COSBase>
+    {
+        private final int index;
+        private final int expectedModCount = modCount;
+
+        ArrayEntry(int index)
+        {
+            super((COSName) table[index << 1], (COSBase) table[(index << 1) + 1]);
+            this.index = index;
+        }
+
+        @Override
+        public COSBase setValue(COSBase value)
+        {
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            table[(index << 1) + 1] = value;
+            return super.setValue(value);
+        }
+    }
+}
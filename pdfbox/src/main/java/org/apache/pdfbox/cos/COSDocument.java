@@ -55,8 +55,7 @@ public class COSDocument extends COSBase implements Closeable
     /**
      * Maps object and generation id to object byte offsets.
      */
-    private final Map<COSObjectKey, Long> xrefTable =
-        new HashMap<COSObjectKey, Long>();
+    private final XrefTable xrefTable = new XrefTable();
 
     /**
      * Document trailer dictionary.
@@ -78,6 +77,11 @@ public class COSDocument extends COSBase implements Closeable
 
     private ScratchFile scratchFile;
 
+    /**
+     * Parser used to load objects on demand, null if all objects are loaded eagerly.
+     */
+    private ICOSParser parser;
+
     /**
      * Constructor. Uses main memory to buffer PDF streams.
      */
@@ -137,6 +141,11 @@ public class COSDocument extends COSBase implements Closeable
     {
         for( COSObject object : objectPool.values() )
         {
+            if (!object.isObjectLoaded())
+            {
+                // objects loaded on demand are only considered if they were accessed before
+                continue;
+            }
             COSBase realObject = object.getObject();
             if( realObject instanceof COSDictionary )
             {
@@ -192,6 +201,11 @@ public class COSDocument extends COSBase implements Closeable
         List<COSObject> retval = new ArrayList<COSObject>();
         for( COSObject object : objectPool.values() )
         {
+            if (!object.isObjectLoaded())
+            {
+                // objects loaded on demand are only considered if they were accessed before
+                continue;
+            }
             COSBase realObject = object.getObject();
             if( realObject instanceof COSDictionary )
             {
@@ -232,7 +246,8 @@ public class COSDocument extends COSBase implements Closeable
     {
         for (Map.Entry<COSObjectKey, COSObject> entry : objectPool.entrySet())
         {
-            if (entry.getValue().getObject() == object)
+            COSObject pooledObject = entry.getValue();
+            if (pooledObject.isObjectLoaded() && pooledObject.getObject() == object)
             {
                 return entry.getKey();
             }
@@ -425,6 +440,11 @@ public class COSDocument extends COSBase implements Closeable
             {
                 for (COSObject object : list) 
                 {
+                    // don't load objects on demand which were never accessed
+                    if (!object.isObjectLoaded())
+                    {
+                        continue;
+                    }
                     COSBase cosObject = object.getObject();
                     if (cosObject instanceof COSStream)
                     {
@@ -498,8 +518,8 @@ public class COSDocument extends COSBase implements Closeable
                 COSObjectKey key = new COSObjectKey(next);
                 if (objectPool.get(key) == null || objectPool.get(key).getObject() == null
                         // xrefTable stores negated objNr of objStream for objects in objStreams
-                        || (xrefTable.containsKey(key)
-                            && xrefTable.get(key) == -objStream.getObjectNumber()))
+                        || xrefTable.getOffset(key.getNumber(), key.getGeneration())
+                            == -objStream.getObjectNumber())
                 {
                     COSObject obj = getObjectFromPool(key);
                     obj.setObject(next.getObject());
@@ -532,12 +552,24 @@ public class COSDocument extends COSBase implements Closeable
             {
                 obj.setObjectNumber(key.getNumber());
                 obj.setGenerationNumber(key.getGeneration());
+                obj.setParser(parser);
                 objectPool.put(key, obj);
             }
         }
         return obj;
     }
 
+    /**
+     * Sets the parser which is used to load objects of the pool when they are accessed for the
+     * first time. Only objects added to the pool afterwards are affected.
+     *
+     * @param parser the parser to be used to load objects on demand, or null to disable it.
+     */
+    public void setParser(ICOSParser parser)
+    {
+        this.parser = parser;
+    }
+
     /**
      * Removes an object from the object pool.
      * @param key the object key
@@ -549,7 +581,7 @@ public class COSDocument extends COSBase implements Closeable
     }
 
     /**
-     * Populate XRef HashMap with given values.
+     * Populate XRef table with given values.
      * Each entry maps ObjectKeys to byte offsets in the file.
      * @param xrefTableValues  xref table entries to be added
      */
@@ -563,7 +595,7 @@ public class COSDocument extends COSBase implements Closeable
      * to byte offsets in the file.
      * @return mapping of ObjectsKeys to byte offsets
      */
-    public Map<COSObjectKey, Long> getXrefTable()
+    public XrefTable getXrefTable()
     {
         return xrefTable;
     }
@@ -20,15 +20,57 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
 
+import org.apache.pdfbox.util.Charsets;
+
 /**
  * This class represents a floating point number in a PDF document.
  *
+ * Numbers read from a PDF are usually plain decimals like "12.75". These are kept as an unscaled
+ * long value and a scale, so that they are written exactly as they were read without keeping a
+ * string or a {@link BigDecimal} for every number.
+ *
  * @author Ben Litchfield
- * 
+ *
  */
 public class COSFloat extends COSNumber
 {
-    private BigDecimal value;
+    /**
+     * The maximum number of digits of a decimal stored as unscaled value and scale.
+     */
+    public static final int MAX_DECIMAL_DIGITS = 18;
+
+    /** Marker for values which aren't stored as unscaled value and scale. */
+    private static final int NO_SCALE = -1;
+
+    private static final long[] LONG_POWERS_OF_TEN = new long[MAX_DECIMAL_DIGITS + 1];
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+    private static final float[] FLOAT_POWERS_OF_TEN = new float[11];
+
+    static
+    {
+        long power = 1;
+        for (int i = 0; i < LONG_POWERS_OF_TEN.length; i++)
+        {
+            LONG_POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+        for (int i = 0; i < DOUBLE_POWERS_OF_TEN.length; i++)
+        {
+            DOUBLE_POWERS_OF_TEN[i] = Double.parseDouble("1e" + i);
+        }
+        for (int i = 0; i < FLOAT_POWERS_OF_TEN.length; i++)
+        {
+            FLOAT_POWERS_OF_TEN[i] = Float.parseFloat("1e" + i);
+        }
+    }
+
+    private float value;
+
+    // value = unscaledValue / 10^scale, if scale isn't NO_SCALE
+    private long unscaledValue;
+    private int scale = NO_SCALE;
+
+    // the string representation of values without scale, created lazily for float values
     private String valueAsString;
 
     /**
@@ -38,10 +80,26 @@ public class COSFloat extends COSNumber
      */
     public COSFloat( float aFloat )
     {
-        // use a BigDecimal as intermediate state to avoid 
-        // a floating point string representation of the float value
-        value = new BigDecimal(String.valueOf(aFloat));
-        valueAsString = removeNullDigits(value.toPlainString());
+        value = aFloat;
+    }
+
+    /**
+     * Constructor for a decimal number, which is used by the parsers to avoid creating a string
+     * for every number.
+     *
+     * @param unscaledValue the digits of the number without the decimal point, the absolute
+     * value must have at most {@link #MAX_DECIMAL_DIGITS} digits
+     * @param scale the number of fraction digits, between 0 and {@link #MAX_DECIMAL_DIGITS}
+     */
+    public COSFloat( long unscaledValue, int scale )
+    {
+        if (scale < 0 || scale > MAX_DECIMAL_DIGITS
+                || Math.abs(unscaledValue) >= LONG_POWERS_OF_TEN[MAX_DECIMAL_DIGITS])
+        {
+            throw new IllegalArgumentException("Unsupported decimal " + unscaledValue + "E-"
+                    + scale);
+        }
+        setDecimal(unscaledValue, scale);
     }
 
     /**
@@ -53,10 +111,15 @@ public class COSFloat extends COSNumber
      */
     public COSFloat( String aFloat ) throws IOException
     {
+        if (parseDecimal(aFloat))
+        {
+            return;
+        }
+        BigDecimal bigDecimal;
         try
         {
-            valueAsString = aFloat; 
-            value = new BigDecimal( valueAsString );
+            valueAsString = aFloat;
+            bigDecimal = new BigDecimal( valueAsString );
         }
         catch( NumberFormatException e )
         {
@@ -67,7 +130,7 @@ public class COSFloat extends COSNumber
                 try
                 {
                     valueAsString = "-0.00000" + aFloat.substring(8);
-                    value = new BigDecimal(valueAsString);
+                    bigDecimal = new BigDecimal(valueAsString);
                 }
                 catch (NumberFormatException e2)
                 {
@@ -79,6 +142,87 @@ public class COSFloat extends COSNumber
                 throw new IOException("Error expected floating point number actual='" + aFloat + "'", e);
             }
         }
+        value = bigDecimal.floatValue();
+    }
+
+    /**
+     * Parses a plain decimal with an optional sign and at most {@link #MAX_DECIMAL_DIGITS} digits.
+     *
+     * @return false if the given string isn't such a decimal
+     */
+    private boolean parseDecimal(String aFloat)
+    {
+        int length = aFloat.length();
+        int start = length > 0 && (aFloat.charAt(0) == '-' || aFloat.charAt(0) == '+') ? 1 : 0;
+        long unscaled = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dotRead = false;
+        for (int i = start; i < length; i++)
+        {
+            char c = aFloat.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                unscaled = unscaled * 10 + c - '0';
+                digits++;
+                if (dotRead)
+                {
+                    fractionDigits++;
+                }
+            }
+            else if (c == '.' && !dotRead)
+            {
+                dotRead = true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        if (digits == 0 || digits > MAX_DECIMAL_DIGITS)
+        {
+            return false;
+        }
+        setDecimal(start == 1 && aFloat.charAt(0) == '-' ? -unscaled : unscaled, fractionDigits);
+        return true;
+    }
+
+    private void setDecimal(long unscaled, int newScale)
+    {
+        unscaledValue = unscaled;
+        scale = newScale;
+        value = decimalToFloat(unscaled, newScale);
+    }
+
+    /**
+     * Returns the float value of a decimal, which is the same as the value of a COSFloat created
+     * with {@link #COSFloat(long, int)}. This allows parsers to convert numbers without creating
+     * an object.
+     *
+     * @param unscaledValue the digits of the number without the decimal point
+     * @param scale the number of fraction digits, at least 0
+     * @return the float value
+     */
+    public static float decimalToFloat(long unscaledValue, int scale)
+    {
+        // the same fast path as in BigDecimal.floatValue(), which is exact as both operands
+        // are exactly representable
+        if (scale == 0)
+        {
+            return unscaledValue;
+        }
+        else if (Math.abs(unscaledValue) < 1L << 22 && scale < FLOAT_POWERS_OF_TEN.length)
+        {
+            return unscaledValue / FLOAT_POWERS_OF_TEN[scale];
+        }
+        return BigDecimal.valueOf(unscaledValue, scale).floatValue();
+    }
+
+    private String formatFloat(float aFloat)
+    {
+        // use a BigDecimal as intermediate state to avoid
+        // a floating point string representation of the float value
+        return removeNullDigits(new BigDecimal(String.valueOf(aFloat)).toPlainString());
     }
 
     private String removeNullDigits(String plainStringValue)
@@ -102,7 +246,7 @@ public class COSFloat extends COSNumber
     @Override
     public float floatValue()
     {
-        return value.floatValue();
+        return value;
     }
 
     /**
@@ -113,7 +257,16 @@ public class COSFloat extends COSNumber
     @Override
     public double doubleValue()
     {
-        return value.doubleValue();
+        if (scale == NO_SCALE)
+        {
+            return Double.parseDouble(getValueAsString());
+        }
+        // the same fast path as in BigDecimal.doubleValue()
+        if (Math.abs(unscaledValue) < 1L << 52 && scale < DOUBLE_POWERS_OF_TEN.length)
+        {
+            return unscaledValue / DOUBLE_POWERS_OF_TEN[scale];
+        }
+        return BigDecimal.valueOf(unscaledValue, scale).doubleValue();
     }
 
     /**
@@ -124,7 +277,11 @@ public class COSFloat extends COSNumber
     @Override
     public long longValue()
     {
-        return value.longValue();
+        if (scale == NO_SCALE)
+        {
+            return (long) doubleValue();
+        }
+        return unscaledValue / LONG_POWERS_OF_TEN[scale];
     }
 
     /**
@@ -135,7 +292,11 @@ public class COSFloat extends COSNumber
     @Override
     public int intValue()
     {
-        return value.intValue();
+        if (scale == NO_SCALE)
+        {
+            return (int) doubleValue();
+        }
+        return (int) longValue();
     }
 
     /**
@@ -144,8 +305,8 @@ public class COSFloat extends COSNumber
     @Override
     public boolean equals( Object o )
     {
-        return o instanceof COSFloat && 
-                Float.floatToIntBits(((COSFloat)o).value.floatValue()) == Float.floatToIntBits(value.floatValue());
+        return o instanceof COSFloat &&
+                Float.floatToIntBits(((COSFloat)o).value) == Float.floatToIntBits(value);
     }
 
     /**
@@ -154,7 +315,7 @@ public class COSFloat extends COSNumber
     @Override
     public int hashCode()
     {
-        return value.hashCode();
+        return Float.floatToIntBits(value);
     }
 
     /**
@@ -163,7 +324,20 @@ public class COSFloat extends COSNumber
     @Override
     public String toString()
     {
-        return "COSFloat{" + valueAsString + "}";
+        return "COSFloat{" + getValueAsString() + "}";
+    }
+
+    private String getValueAsString()
+    {
+        if (scale != NO_SCALE)
+        {
+            return new String(toBytes(), Charsets.ISO_8859_1);
+        }
+        if (valueAsString == null)
+        {
+            valueAsString = formatFloat(value);
+        }
+        return valueAsString;
     }
 
     /**
@@ -187,6 +361,61 @@ public class COSFloat extends COSNumber
      */
     public void writePDF( OutputStream output ) throws IOException
     {
-        output.write(valueAsString.getBytes("ISO-8859-1"));
+        if (scale != NO_SCALE)
+        {
+            output.write(toBytes());
+        }
+        else
+        {
+            output.write(getValueAsString().getBytes("ISO-8859-1"));
+        }
+    }
+
+    /**
+     * Returns the number of characters of the decimal representation.
+     */
+    private int decimalLength()
+    {
+        int digits = 1;
+        long abs = Math.abs(unscaledValue);
+        while (digits < MAX_DECIMAL_DIGITS && abs >= LONG_POWERS_OF_TEN[digits])
+        {
+            digits++;
+        }
+        // at least one integer digit and one fraction digit
+        digits = Math.max(digits, scale + 1);
+        return (unscaledValue < 0 ? 1 : 0) + digits + 1 + (scale == 0 ? 1 : 0);
+    }
+
+    /**
+     * Formats the decimal representation, e.g. "-0.50" for the unscaled value -50 and scale 2.
+     * A scale of 0 is written with a fraction digit "0", so that the value is still read as real.
+     */
+    private byte[] toBytes()
+    {
+        int length = decimalLength();
+        byte[] bytes = new byte[length];
+        long abs = Math.abs(unscaledValue);
+        int pos = length - 1;
+        if (scale == 0)
+        {
+            bytes[pos--] = '0';
+            bytes[pos--] = '.';
+        }
+        int start = unscaledValue < 0 ? 1 : 0;
+        for (int digit = 0; pos >= start; digit++)
+        {
+            if (digit == scale && scale > 0)
+            {
+                bytes[pos--] = '.';
+            }
+            bytes[pos--] = (byte) ('0' + abs % 10);
+            abs /= 10;
+        }
+        if (start == 1)
+        {
+            bytes[0] = '-';
+        }
+        return bytes;
     }
 }
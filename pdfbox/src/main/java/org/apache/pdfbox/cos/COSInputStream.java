@@ -26,13 +26,16 @@ import java.util.ArrayList;
 import java.util.List;
 import org.apache.pdfbox.filter.DecodeResult;
 import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.io.DecodedStreamCache;
 import org.apache.pdfbox.io.RandomAccess;
 import org.apache.pdfbox.io.RandomAccessInputStream;
 import org.apache.pdfbox.io.RandomAccessOutputStream;
 import org.apache.pdfbox.io.ScratchFile;
 
 /**
- * An InputStream which reads from an encoded COS stream.
+ * An InputStream which reads from an encoded COS stream. Filters which can decode on the fly
+ * are chained, so that their data is decoded while the stream is read, the output of other
+ * filters is buffered in memory or in the scratch file.
  *
  * @author John Hewson
  */
@@ -53,6 +56,7 @@ public final class COSInputStream extends FilterInputStream
     {
         List<DecodeResult> results = new ArrayList<DecodeResult>();
         InputStream input = in;
+        boolean decodedOnTheFly = true;
         if (filters.isEmpty())
         {
             input = in;
@@ -62,8 +66,16 @@ public final class COSInputStream extends FilterInputStream
             // apply filters
             for (int i = 0; i < filters.size(); i++)
             {
-                if (scratchFile != null)
+                InputStream decoded = filters.get(i).createInputStream(input, parameters, i);
+                if (decoded != null)
                 {
+                    // decoded on the fly while reading, nothing is buffered
+                    results.add(DecodeResult.DEFAULT);
+                    input = decoded;
+                }
+                else if (scratchFile != null)
+                {
+                    decodedOnTheFly = false;
                     // scratch file
                     final RandomAccess buffer = scratchFile.createBuffer();
                     DecodeResult result = filters.get(i).decode(input, new RandomAccessOutputStream(buffer), parameters, i);
@@ -79,6 +91,7 @@ public final class COSInputStream extends FilterInputStream
                 }
                 else
                 {
+                    decodedOnTheFly = false;
                     // in-memory
                     ByteArrayOutputStream output = new ByteArrayOutputStream();
                     DecodeResult result = filters.get(i).decode(input, output, parameters, i);
@@ -87,23 +100,148 @@ public final class COSInputStream extends FilterInputStream
                 }
             }
         }
-        return new COSInputStream(input, results);
+        return new COSInputStream(input, results, decodedOnTheFly);
+    }
+
+    /**
+     * Creates a new COSInputStream for data which has been decoded before.
+     *
+     * @param decoded the decoded data
+     * @return Decoded stream.
+     */
+    static COSInputStream create(byte[] decoded)
+    {
+        return new COSInputStream(new ByteArrayInputStream(decoded),
+                new ArrayList<DecodeResult>(0), false);
     }
 
     private final List<DecodeResult> decodeResults;
+    private final boolean decodedOnTheFly;
+
+    // collects the decoded data for the cache while it is read, null if it isn't collected
+    private DecodedStreamCache cache;
+    private Object cacheKey;
+    private ByteArrayOutputStream cacheBuffer;
 
     /**
      * Constructor.
      * 
      * @param input decoded stream
      * @param decodeResults results of decoding
+     * @param decodedOnTheFly true if all filters are decoded while reading
      */
-    private COSInputStream(InputStream input, List<DecodeResult> decodeResults)
+    private COSInputStream(InputStream input, List<DecodeResult> decodeResults,
+            boolean decodedOnTheFly)
     {
         super(input);
         this.decodeResults = decodeResults;
+        this.decodedOnTheFly = decodedOnTheFly;
+    }
+
+    /**
+     * Puts the decoded data into the given cache once the stream has been read completely. This
+     * is only done if all filters are decoded while reading, i.e. if the filters don't return
+     * repaired parameters, and if the data fits into the cache.
+     *
+     * @param cache the cache
+     * @param key the key of the data, i.e. the COSStream
+     */
+    void cacheDecodedData(DecodedStreamCache cache, Object key)
+    {
+        if (decodedOnTheFly && !decodeResults.isEmpty())
+        {
+            this.cache = cache;
+            this.cacheKey = key;
+            this.cacheBuffer = new ByteArrayOutputStream();
+        }
+    }
+
+    private void collect(byte[] b, int off, int len)
+    {
+        if (cacheBuffer != null)
+        {
+            if (cache.fits(cacheBuffer.size() + (long) len))
+            {
+                cacheBuffer.write(b, off, len);
+            }
+            else
+            {
+                cacheBuffer = null;
+            }
+        }
+    }
+
+    private void collected()
+    {
+        if (cacheBuffer != null)
+        {
+            cache.put(cacheKey, cacheBuffer.toByteArray());
+            cacheBuffer = null;
+        }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int b = in.read();
+        if (cacheBuffer != null)
+        {
+            if (b == -1)
+            {
+                collected();
+            }
+            else if (cache.fits(cacheBuffer.size() + 1L))
+            {
+                cacheBuffer.write(b);
+            }
+            else
+            {
+                cacheBuffer = null;
+            }
+        }
+        return b;
     }
     
+    /**
+     * {@inheritDoc}
+     *
+     * Fills the buffer as far as possible, like the buffered stream of a decoded filter, even if
+     * the filters are decoded on the fly in smaller chunks.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        int total = 0;
+        while (total < len)
+        {
+            int n = in.read(b, off + total, len - total);
+            if (n == -1)
+            {
+                collect(b, off, total);
+                collected();
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+        }
+        collect(b, off, total);
+        return total;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        // the skipped data isn't collected, so this stream can't be cached any more
+        cacheBuffer = null;
+        return super.skip(n);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        cacheBuffer = null;
+        super.close();
+    }
+
     /**
      * Returns the result of the last filter, for use by repair mechanisms.
      */
@@ -18,9 +18,13 @@ package org.apache.pdfbox.cos;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.pdfbox.util.Charsets;
 
@@ -31,13 +35,23 @@ import org.apache.pdfbox.util.Charsets;
  */
 public final class COSName extends COSBase implements Comparable<COSName>
 {
-    // using ConcurrentHashMap because this can be accessed by multiple threads
-    private static Map<String, COSName> nameMap = new ConcurrentHashMap<String, COSName>(8192);
+    // using ConcurrentHashMap because this can be accessed by multiple threads. The document
+    // specific names are held weakly, so that names which aren't used any longer are removed
+    private static final ConcurrentMap<String, NameReference> nameMap =
+            new ConcurrentHashMap<String, NameReference>(8192);
+
+    // the references of the names which have been garbage collected
+    private static final ReferenceQueue<COSName> collectedNames = new ReferenceQueue<COSName>();
 
     // all common COSName values are stored in this HashMap
     // hey are already defined as static constants and don't need to be synchronized
     private static Map<String, COSName> commonNameMap = new HashMap<String, COSName>();
 
+    // names recently resolved from bytes, indexed by the hash of the bytes. Entries are replaced
+    // without synchronization, which is safe as they are immutable
+    private static final int BYTES_CACHE_SIZE = 8192;
+    private static final NameBytes[] bytesCache = new NameBytes[BYTES_CACHE_SIZE];
+
     //
     // IMPORTANT: this list is *alphabetized* and does not need any JavaDoc
     //
@@ -311,6 +325,7 @@ public final class COSName extends COSBase implements Comparable<COSName>
     public static final COSName LENGTH1 = new COSName("Length1");
     public static final COSName LENGTH2 = new COSName("Length2");
     public static final COSName LIGHTEN = new COSName("Lighten");
+    public static final COSName LINEARIZED = new COSName("Linearized");
     public static final COSName LIMITS = new COSName("Limits");
     public static final COSName LJ = new COSName("LJ");
     public static final COSName LL = new COSName("LL");
@@ -568,15 +583,124 @@ public final class COSName extends COSBase implements Comparable<COSName>
             if (name == null)
             {
                 // It seems to be a document specific COSName
-                name = nameMap.get(aName);
-                if (name == null)
+                name = getDocumentName(aName);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Returns the document specific name, creating it if it doesn't exist or has been garbage
+     * collected. There is at most one instance of a name as long as it is referenced.
+     */
+    private static COSName getDocumentName(String aName)
+    {
+        NameReference ref = nameMap.get(aName);
+        COSName name = ref != null ? ref.get() : null;
+        if (name != null)
+        {
+            return name;
+        }
+        removeCollectedNames();
+        while (true)
+        {
+            COSName newName = new COSName(aName, false);
+            NameReference newRef = new NameReference(newName, aName);
+            if (ref == null ? nameMap.putIfAbsent(aName, newRef) == null
+                    : nameMap.replace(aName, ref, newRef))
+            {
+                return newName;
+            }
+            // another thread has added the name
+            ref = nameMap.get(aName);
+            name = ref != null ? ref.get() : null;
+            if (name != null)
+            {
+                return name;
+            }
+        }
+    }
+
+    private static void removeCollectedNames()
+    {
+        NameReference ref;
+        while ((ref = (NameReference) collectedNames.poll()) != null)
+        {
+            nameMap.remove(ref.key, ref);
+        }
+    }
+
+    /**
+     * A weak reference to a document specific name, which knows the key of its entry.
+     */
+    private static final class NameReference extends WeakReference<COSName>
+    {
+        private final String key;
+
+        NameReference(COSName name, String key)
+        {
+            super(name, collectedNames);
+            this.key = key;
+        }
+    }
+
+    /**
+     * This will get a COSName object with the name given by its UTF-8 encoded bytes, as read by
+     * the parser. Names which have been resolved before are found without creating a String.
+     * 
+     * @param bytes The buffer holding the bytes of the name.
+     * @param offset The offset of the name in the buffer.
+     * @param length The number of bytes of the name.
+     * 
+     * @return A COSName with the specified name.
+     */
+    public static COSName getPDFName(byte[] bytes, int offset, int length)
+    {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+        int index = (hash ^ (hash >>> 13)) & (BYTES_CACHE_SIZE - 1);
+        NameBytes entry = bytesCache[index];
+        if (entry != null && entry.matches(bytes, offset, length))
+        {
+            return entry.name;
+        }
+        COSName name = getPDFName(new String(bytes, offset, length, Charsets.UTF_8));
+        bytesCache[index] = new NameBytes(Arrays.copyOfRange(bytes, offset, offset + length), name);
+        return name;
+    }
+
+    /**
+     * The bytes a name has been read from.
+     */
+    private static final class NameBytes
+    {
+        private final byte[] bytes;
+        private final COSName name;
+
+        NameBytes(byte[] bytes, COSName name)
+        {
+            this.bytes = bytes;
+            this.name = name;
+        }
+
+        boolean matches(byte[] other, int offset, int length)
+        {
+            if (bytes.length != length)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; i++)
+            {
+                if (bytes[i] != other[offset + i])
                 {
-                    // name is added to the synchronized map in the constructor
-                    name = new COSName(aName, false);
+                    return false;
                 }
             }
+            return true;
         }
-        return name;
     }
 
     /**
@@ -584,7 +708,7 @@ public final class COSName extends COSBase implements Comparable<COSName>
      * 
      * @param aName The name of the COSName object.
      * @param staticValue Indicates if the COSName object is static so that it can be stored in the HashMap without
-     * synchronizing.
+     * synchronizing. Other names are added to the map of document specific names by the caller.
      */
     private COSName(String aName, boolean staticValue)
     {
@@ -593,10 +717,6 @@ public final class COSName extends COSBase implements Comparable<COSName>
         {
             commonNameMap.put(aName, this);
         }
-        else
-        {
-            nameMap.put(aName, this);
-        }
         hashCode = name.hashCode();
     }
 
@@ -697,11 +817,13 @@ public final class COSName extends COSBase implements Comparable<COSName>
     }
 
     /**
-     * Not usually needed except if resources need to be reclaimed in a long running process.
+     * Not usually needed, as document specific names are removed when they aren't used any
+     * longer, and only a bounded number of names is kept for fast parsing.
      */
     public static synchronized void clearResources()
     {
         // Clear them all
         nameMap.clear();
+        Arrays.fill(bytesCache, null);
     }
 }
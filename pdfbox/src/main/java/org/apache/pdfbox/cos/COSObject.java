@@ -18,6 +18,9 @@ package org.apache.pdfbox.cos;
 
 import java.io.IOException;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * This class represents a PDF object.
  *
@@ -26,7 +29,12 @@ import java.io.IOException;
  */
 public class COSObject extends COSBase implements COSUpdateInfo
 {
+    private static final Log LOG = LogFactory.getLog(COSObject.class);
+
     private COSBase baseObject;
+    // volatile as the object may be dereferenced by several threads, see getObject()
+    private volatile ICOSParser parser;
+    private boolean isDereferencing;
     private long objectNumber;
     private int generationNumber;
     private boolean needToBeUpdated;
@@ -79,15 +87,63 @@ public class COSObject extends COSBase implements COSUpdateInfo
     }
 
     /**
-     * This will get the object that this object encapsulates.
+     * This will get the object that this object encapsulates. An object which is loaded on
+     * demand is parsed while holding the lock of its parser, so that it may be accessed by
+     * several threads.
      *
      * @return The encapsulated object.
      */
     public COSBase getObject()
     {
+        ICOSParser objectParser = parser;
+        if (objectParser != null)
+        {
+            synchronized (objectParser)
+            {
+                // the parser calls back while the object is parsed, avoid the recursion
+                if (parser != null && !isDereferencing)
+                {
+                    isDereferencing = true;
+                    try
+                    {
+                        baseObject = objectParser.dereferenceCOSObject(this);
+                    }
+                    catch (IOException e)
+                    {
+                        LOG.error("Can't dereference " + this, e);
+                    }
+                    finally
+                    {
+                        isDereferencing = false;
+                        parser = null;
+                    }
+                }
+            }
+        }
         return baseObject;
     }
 
+    /**
+     * Returns true if the encapsulated object is available without parsing it on demand.
+     *
+     * @return true if the encapsulated object has already been loaded.
+     */
+    public boolean isObjectLoaded()
+    {
+        return baseObject != null;
+    }
+
+    /**
+     * Sets the parser to be used to load the encapsulated object when it is accessed for the
+     * first time.
+     *
+     * @param parser the parser to be used for dereferencing, or null.
+     */
+    public void setParser(ICOSParser parser)
+    {
+        this.parser = parser;
+    }
+
     /**
      * This will set the object that this object encapsulates.
      *
@@ -98,6 +154,7 @@ public class COSObject extends COSBase implements COSUpdateInfo
     public final void setObject( COSBase object ) throws IOException
     {
         baseObject = object;
+        parser = null;
     }
 
     /**
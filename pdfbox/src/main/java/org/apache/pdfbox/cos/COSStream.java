@@ -29,7 +29,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.filter.Filter;
 import org.apache.pdfbox.filter.FilterFactory;
+import org.apache.pdfbox.io.DecodedStreamCache;
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.ParsedStreamCache;
 import org.apache.pdfbox.io.RandomAccess;
 import org.apache.pdfbox.io.RandomAccessInputStream;
 import org.apache.pdfbox.io.RandomAccessOutputStream;
@@ -146,7 +148,9 @@ public class COSStream extends COSDictionary implements Closeable
     }
 
     /**
-     * Returns a new InputStream which reads the decoded stream data.
+     * Returns a new InputStream which reads the decoded stream data. If the decoded stream cache of
+     * the scratch file is enabled, the data is taken from the cache if possible, otherwise it is
+     * put into the cache once it has been read completely.
      * 
      * @return InputStream containing decoded stream data.
      * @throws IOException If the stream could not be read.
@@ -159,8 +163,51 @@ public class COSStream extends COSDictionary implements Closeable
             throw new IllegalStateException("Cannot read while there is an open stream writer");
         }
         ensureRandomAccessExists(true);
+        List<Filter> filters = getFilterList();
+        DecodedStreamCache cache = filters.isEmpty() ? null : scratchFile.getDecodedStreamCache();
+        if (cache != null)
+        {
+            byte[] decoded = cache.get(this);
+            if (decoded != null)
+            {
+                return COSInputStream.create(decoded);
+            }
+        }
         InputStream input = new RandomAccessInputStream(randomAccess);
-        return COSInputStream.create(getFilterList(), this, input, scratchFile);
+        COSInputStream decoded = COSInputStream.create(filters, this, input, scratchFile);
+        if (cache != null)
+        {
+            decoded.cacheDecodedData(cache, this);
+        }
+        return decoded;
+    }
+
+    // removes the decoded data and the parsed tokens of this stream from the caches, as the data
+    // is going to change
+    private void removeDecodedData()
+    {
+        DecodedStreamCache cache = scratchFile.getDecodedStreamCache();
+        if (cache != null)
+        {
+            cache.remove(this);
+        }
+        ParsedStreamCache parsedCache = scratchFile.getParsedStreamCache();
+        if (parsedCache != null)
+        {
+            parsedCache.remove(this);
+        }
+    }
+
+    /**
+     * Returns the cache for the parsed tokens of content streams, which is shared by the streams
+     * of the document this stream belongs to. The tokens of this stream are removed from the
+     * cache when its data is changed.
+     *
+     * @return the cache, or null if it is disabled
+     */
+    public ParsedStreamCache getParsedStreamCache()
+    {
+        return scratchFile.getParsedStreamCache();
     }
 
     /**
@@ -206,6 +253,7 @@ public class COSStream extends COSDictionary implements Closeable
         {
             setItem(COSName.FILTER, filters);
         }
+        removeDecodedData();
         randomAccess = scratchFile.createBuffer(); // discards old data - TODO: close existing buffer?
         OutputStream randomOut = new RandomAccessOutputStream(randomAccess);
         OutputStream cosOut = new COSOutputStream(getFilterList(), this, randomOut, scratchFile);
@@ -250,6 +298,7 @@ public class COSStream extends COSDictionary implements Closeable
         {
             throw new IllegalStateException("Cannot have more than one open stream writer.");
         }
+        removeDecodedData();
         randomAccess = scratchFile.createBuffer(); // discards old data - TODO: close existing buffer?
         OutputStream out = new RandomAccessOutputStream(randomAccess);
         isWriting = true;
@@ -375,6 +424,7 @@ public class COSStream extends COSDictionary implements Closeable
     @Override
     public void close() throws IOException
     {
+        removeDecodedData();
         // marks the scratch file pages as free
         if (randomAccess != null)
         {
@@ -0,0 +1,555 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.cos;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact xref table mapping object keys to byte offsets. Negative values denote the negated
+ * object number of the object stream containing the object.
+ *
+ * The entries are kept in primitive arrays using open addressing, so neither the object keys nor
+ * the offsets are boxed. Use the primitive methods like {@link #getOffset(long, int)} and
+ * {@link #put(long, int, long)} to avoid any allocation, the {@link Map} view is provided for
+ * compatibility only. The entries can be iterated without allocation by their slots:
+ *
+ * <pre>
+ * for (int slot = table.nextSlot(-1); slot &gt;= 0; slot = table.nextSlot(slot))
+ * {
+ *     long offset = table.getOffsetAt(slot);
+ *     ...
+ * }
+ * </pre>
+ */
+public class XrefTable extends AbstractMap<COSObjectKey, Long>
+{
+    /** Marker for an unused slot. */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /** Value returned by {@link #getOffset(long, int)} for missing entries. */
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] numbers;
+    private int[] generations;
+    private long[] offsets;
+    private int size;
+    private int threshold;
+    private long seed;
+
+    private Set<Entry<COSObjectKey, Long>> entrySet;
+
+    /**
+     * Creates an empty xref table.
+     */
+    public XrefTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty xref table for the expected number of entries.
+     *
+     * @param expectedSize the expected number of entries
+     */
+    public XrefTable(int expectedSize)
+    {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private static int tableSizeFor(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        // keep the load factor below 0.75
+        while (capacity - (capacity >> 2) <= expectedSize)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity)
+    {
+        numbers = new long[capacity];
+        Arrays.fill(numbers, FREE);
+        generations = new int[capacity];
+        offsets = new long[capacity];
+        threshold = capacity - (capacity >> 2);
+        seed = Integer.numberOfTrailingZeros(capacity) * 0x9E3779B97F4A7C15L;
+    }
+
+    // the hash depends on the capacity: otherwise copying the entries of a table in the order of
+    // its slots into a smaller table, which grows while it is filled, creates long clusters
+    private int hash(long number, int generation)
+    {
+        long h = (number * 0x9E3779B97F4A7C15L + generation) ^ seed;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int indexOf(long number, int generation)
+    {
+        int mask = numbers.length - 1;
+        int index = hash(number, generation) & mask;
+        while (numbers[index] != FREE)
+        {
+            if (numbers[index] == number && generations[index] == generation)
+            {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset of the given object.
+     *
+     * @param number the object number
+     * @param generation the generation number
+     * @return the offset or {@link #NOT_FOUND} if there is no such entry
+     */
+    public long getOffset(long number, int generation)
+    {
+        int index = indexOf(number, generation);
+        return index < 0 ? NOT_FOUND : offsets[index];
+    }
+
+    /**
+     * Returns true if there is an entry for the given object.
+     *
+     * @param number the object number
+     * @param generation the generation number
+     * @return true if the entry exists
+     */
+    public boolean contains(long number, int generation)
+    {
+        return indexOf(number, generation) >= 0;
+    }
+
+    /**
+     * Adds or replaces the entry for the given object.
+     *
+     * @param number the object number
+     * @param generation the generation number
+     * @param offset the byte offset or the negated object number of the object stream
+     * @return the previous offset or {@link #NOT_FOUND} if there was no entry
+     */
+    public long put(long number, int generation, long offset)
+    {
+        if (number == FREE)
+        {
+            throw new IllegalArgumentException("Invalid object number " + number);
+        }
+        int mask = numbers.length - 1;
+        int index = hash(number, generation) & mask;
+        while (numbers[index] != FREE)
+        {
+            if (numbers[index] == number && generations[index] == generation)
+            {
+                long previous = offsets[index];
+                offsets[index] = offset;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        numbers[index] = number;
+        generations[index] = generation;
+        offsets[index] = offset;
+        if (++size > threshold)
+        {
+            rehash(numbers.length << 1);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Adds all entries of the given table which don't exist in this table.
+     *
+     * @param other the table to be merged
+     */
+    public void putAllAbsent(XrefTable other)
+    {
+        for (int i = 0; i < other.numbers.length; i++)
+        {
+            if (other.numbers[i] != FREE && !contains(other.numbers[i], other.generations[i]))
+            {
+                put(other.numbers[i], other.generations[i], other.offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces all entries of the given table.
+     *
+     * @param other the table to be merged
+     */
+    public void putAll(XrefTable other)
+    {
+        for (int i = 0; i < other.numbers.length; i++)
+        {
+            if (other.numbers[i] != FREE)
+            {
+                put(other.numbers[i], other.generations[i], other.offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the numbers of all objects which are stored in the given object stream.
+     *
+     * @param objStmNumber the object number of the object stream
+     * @return the object numbers of the contained objects
+     */
+    public Set<Long> getObjectStreamMembers(long objStmNumber)
+    {
+        Set<Long> members = new HashSet<Long>();
+        long value = -objStmNumber;
+        for (int i = 0; i < numbers.length; i++)
+        {
+            if (numbers[i] != FREE && offsets[i] == value)
+            {
+                members.add(numbers[i]);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Returns the slot of the entry following the given slot. Slots are only valid as long as
+     * the table isn't modified.
+     *
+     * @param slot a slot returned by this method, or -1 to get the first slot
+     * @return the next slot, or -1 if there are no more entries
+     */
+    public int nextSlot(int slot)
+    {
+        for (int i = slot + 1; i < numbers.length; i++)
+        {
+            if (numbers[i] != FREE)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the object number of the entry at the given slot.
+     *
+     * @param slot a slot returned by {@link #nextSlot(int)}
+     * @return the object number
+     */
+    public long getNumberAt(int slot)
+    {
+        return numbers[slot];
+    }
+
+    /**
+     * Returns the generation number of the entry at the given slot.
+     *
+     * @param slot a slot returned by {@link #nextSlot(int)}
+     * @return the generation number
+     */
+    public int getGenerationAt(int slot)
+    {
+        return generations[slot];
+    }
+
+    /**
+     * Returns the offset of the entry at the given slot.
+     *
+     * @param slot a slot returned by {@link #nextSlot(int)}
+     * @return the byte offset or the negated object number of the object stream
+     */
+    public long getOffsetAt(int slot)
+    {
+        return offsets[slot];
+    }
+
+    /**
+     * Returns the highest object number of all entries.
+     *
+     * @return the highest object number or 0 if the table is empty
+     */
+    public long getHighestNumber()
+    {
+        long highest = 0;
+        for (long number : numbers)
+        {
+            if (number != FREE && number > highest)
+            {
+                highest = number;
+            }
+        }
+        return highest;
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldNumbers = numbers;
+        int[] oldGenerations = generations;
+        long[] oldOffsets = offsets;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldNumbers.length; i++)
+        {
+            if (oldNumbers[i] != FREE)
+            {
+                int index = hash(oldNumbers[i], oldGenerations[i]) & mask;
+                while (numbers[index] != FREE)
+                {
+                    index = (index + 1) & mask;
+                }
+                numbers[index] = oldNumbers[i];
+                generations[index] = oldGenerations[i];
+                offsets[index] = oldOffsets[i];
+            }
+        }
+    }
+
+    private void removeAt(int index)
+    {
+        removeAt(index, null);
+    }
+
+    // the iterator is told about the entries it has returned already, which are moved to a
+    // slot it is going to visit
+    private void removeAt(int index, EntryIterator iterator)
+    {
+        // shift back following entries of the same cluster to keep the probe sequences intact
+        int mask = numbers.length - 1;
+        int hole = index;
+        int next = (index + 1) & mask;
+        while (numbers[next] != FREE)
+        {
+            int home = hash(numbers[next], generations[next]) & mask;
+            // move the entry if its home slot isn't cyclically within (hole, next]
+            if ((next > hole) ? (home <= hole || home > next) : (home <= hole && home > next))
+            {
+                if (iterator != null && next < index && hole >= index)
+                {
+                    iterator.addVisited(numbers[next], generations[next]);
+                }
+                numbers[hole] = numbers[next];
+                generations[hole] = generations[next];
+                offsets[hole] = offsets[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        numbers[hole] = FREE;
+        size--;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if (key instanceof COSObjectKey)
+        {
+            COSObjectKey objKey = (COSObjectKey) key;
+            return contains(objKey.getNumber(), objKey.getGeneration());
+        }
+        return false;
+    }
+
+    @Override
+    public Long get(Object key)
+    {
+        if (key instanceof COSObjectKey)
+        {
+            COSObjectKey objKey = (COSObjectKey) key;
+            int index = indexOf(objKey.getNumber(), objKey.getGeneration());
+            if (index >= 0)
+            {
+                return offsets[index];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Long put(COSObjectKey key, Long value)
+    {
+        long previous = put(key.getNumber(), key.getGeneration(), value);
+        return previous == NOT_FOUND ? null : previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends COSObjectKey, ? extends Long> map)
+    {
+        if (map instanceof XrefTable)
+        {
+            putAll((XrefTable) map);
+        }
+        else
+        {
+            super.putAll(map);
+        }
+    }
+
+    @Override
+    public Long remove(Object key)
+    {
+        if (key instanceof COSObjectKey)
+        {
+            COSObjectKey objKey = (COSObjectKey) key;
+            int index = indexOf(objKey.getNumber(), objKey.getGeneration());
+            if (index >= 0)
+            {
+                long previous = offsets[index];
+                removeAt(index);
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void clear()
+    {
+        allocate(DEFAULT_CAPACITY);
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<COSObjectKey, Long>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Entry<COSObjectKey, Long>>()
+            {
+                @Override
+                public Iterator<Entry<COSObjectKey, Long>> iterator()
+                {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Iterates over the used slots, creating the entries on demand.
+     */
+    private final class EntryIterator implements Iterator<Entry<COSObjectKey, Long>>
+    {
+        private final long[] iterNumbers = numbers;
+        private int nextIndex = -1;
+        private int lastIndex = -1;
+        // returned entries which have been moved to a following slot by remove()
+        private Set<COSObjectKey> visited;
+
+        private EntryIterator()
+        {
+            advance();
+        }
+
+        private void advance()
+        {
+            do
+            {
+                nextIndex++;
+            }
+            while (nextIndex < iterNumbers.length && (iterNumbers[nextIndex] == FREE
+                    || visited != null && visited.contains(
+                            new COSObjectKey(iterNumbers[nextIndex], generations[nextIndex]))));
+        }
+
+        private void addVisited(long number, int generation)
+        {
+            if (visited == null)
+            {
+                visited = new HashSet<COSObjectKey>();
+            }
+            visited.add(new COSObjectKey(number, generation));
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextIndex < iterNumbers.length;
+        }
+
+        @Override
+        public Entry<COSObjectKey, Long> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            if (iterNumbers != numbers)
+            {
+                throw new ConcurrentModificationException();
+            }
+            final int index = nextIndex;
+            lastIndex = index;
+            advance();
+            COSObjectKey key = new COSObjectKey(numbers[index], generations[index]);
+            return new SimpleEntry<COSObjectKey, Long>(key, offsets[index])
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Long setValue(Long value)
+                {
+                    offsets[index] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove()
+        {
+            if (lastIndex < 0)
+            {
+                throw new IllegalStateException();
+            }
+            if (iterNumbers != numbers)
+            {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastIndex, this);
+            // a following entry may have been moved to the slot of the removed one
+            nextIndex = lastIndex - 1;
+            lastIndex = -1;
+            advance();
+        }
+    }
+}
@@ -52,6 +52,13 @@ final class ASCII85Filter extends Filter
         return new DecodeResult(parameters);
     }
 
+    @Override
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+                                         int index) throws IOException
+    {
+        return new ASCII85InputStream(encoded);
+    }
+
     @Override
     protected void encode(InputStream input, OutputStream encoded, COSDictionary parameters)
         throws IOException
@@ -23,6 +23,7 @@ import java.io.OutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.util.Hex;
 
 /**
@@ -52,44 +53,90 @@ final class ASCIIHexFilter extends Filter
     public DecodeResult decode(InputStream encoded, OutputStream decoded,
                                          COSDictionary parameters, int index) throws IOException
     {
-        int value, firstByte, secondByte;
-        while ((firstByte = encoded.read()) != -1)
+        IOUtils.copy(createInputStream(encoded, parameters, index), decoded);
+        decoded.flush();
+        return new DecodeResult(parameters);
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+                                         int index) throws IOException
+    {
+        return new ASCIIHexInputStream(encoded);
+    }
+
+    /**
+     * Decodes the hex digits of the encoded stream while it is read.
+     */
+    private static final class ASCIIHexInputStream extends DecodingInputStream
+    {
+        private final byte[] buffer = new byte[1024];
+        private final byte[] decodedBuffer = new byte[512];
+        private int firstDigit = -1;
+        private boolean eod = false;
+
+        ASCIIHexInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        protected boolean decodeNext() throws IOException
         {
-            // always after first char
-            while (isWhitespace(firstByte))
+            if (eod)
             {
-                firstByte = encoded.read();
+                return false;
             }
-            if (firstByte == -1 || isEOD(firstByte))
+            int read = in.read(buffer);
+            if (read == -1)
             {
-                break;
+                return finish(0);
             }
-       
-            if (REVERSE_HEX[firstByte] == -1)
+            int count = 0;
+            for (int i = 0; i < read; i++)
             {
-                LOG.error("Invalid hex, int: " + firstByte + " char: " + (char)firstByte);
+                int c = buffer[i] & 0xff;
+                if (isWhitespace(c))
+                {
+                    continue;
+                }
+                if (isEOD(c))
+                {
+                    return finish(count);
+                }
+                int digit = c < REVERSE_HEX.length ? REVERSE_HEX[c] : -1;
+                if (digit == -1)
+                {
+                    LOG.error("Invalid hex, int: " + c + " char: " + (char) c);
+                    continue;
+                }
+                if (firstDigit == -1)
+                {
+                    firstDigit = digit;
+                }
+                else
+                {
+                    decodedBuffer[count++] = (byte) (firstDigit * 16 + digit);
+                    firstDigit = -1;
+                }
             }
-            value = REVERSE_HEX[firstByte] * 16;
-            secondByte = encoded.read();
-       
-            if (secondByte == -1 || isEOD(secondByte)) 
+            setDecoded(decodedBuffer, 0, count);
+            return true;
+        }
+
+        // hands over the last bytes at EOD or at the end of the stream
+        private boolean finish(int count)
+        {
+            eod = true;
+            if (firstDigit != -1)
             {
                 // second value behaves like 0 in case of EOD
-                decoded.write(value);
-                break;
-            }
-            if (secondByte >= 0) 
-            {
-                if (REVERSE_HEX[secondByte] == -1)
-                {
-                    LOG.error("Invalid hex, int: " + secondByte + " char: " + (char)secondByte);
-                }
-                value += REVERSE_HEX[secondByte];
+                decodedBuffer[count++] = (byte) (firstDigit * 16);
+                firstDigit = -1;
             }
-            decoded.write(value);
+            setDecoded(decodedBuffer, 0, count);
+            return count > 0;
         }
-        decoded.flush();
-        return new DecodeResult(parameters);
     }
 
     // whitespace
@@ -99,12 +146,12 @@ final class ASCIIHexFilter extends Filter
     //  12  0x0C  Form feed (FF)
     //  13  0x0D  Carriage return (CR)
     //  32  0x20  Space (SP)
-    private boolean isWhitespace(int c)
+    private static boolean isWhitespace(int c)
     {
         return c == 0 || c == 9 || c == 10 || c == 12 || c == 13 || c == 32;
     }
 
-    private boolean isEOD(int c)
+    private static boolean isEOD(int c)
     {
         return c == '>';
     }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.filter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Base class for streams which decode the data of the underlying encoded stream while it is
+ * read. Subclasses decode one chunk at a time, e.g. a row or a run, so that the memory used
+ * doesn't depend on the length of the stream.
+ */
+abstract class DecodingInputStream extends FilterInputStream
+{
+    private byte[] decoded;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * Constructor.
+     *
+     * @param in the encoded stream
+     */
+    DecodingInputStream(InputStream in)
+    {
+        super(in);
+    }
+
+    /**
+     * Decodes the next chunk of data and hands it over using {@link #setDecoded}. A chunk may be
+     * empty, e.g. for control codes.
+     *
+     * @return false if the end of the decoded data has been reached
+     * @throws IOException if the data cannot be decoded
+     */
+    protected abstract boolean decodeNext() throws IOException;
+
+    /**
+     * Sets the decoded chunk which is returned by the following reads. The array is not copied.
+     *
+     * @param data the decoded data
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     */
+    protected final void setDecoded(byte[] data, int offset, int length)
+    {
+        decoded = data;
+        position = offset;
+        limit = offset + length;
+    }
+
+    // makes sure that there is decoded data, returns false at the end of the stream
+    private boolean fill() throws IOException
+    {
+        while (position >= limit)
+        {
+            if (eof || !decodeNext())
+            {
+                eof = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        return decoded[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(decoded, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        // skip decoded bytes, not the bytes of the encoded stream
+        long skipped = 0;
+        while (skipped < n && fill())
+        {
+            int count = (int) Math.min(n - skipped, limit - position);
+            position += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit)
+    {
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("Reset is not supported");
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        eof = true;
+        decoded = null;
+        position = limit = 0;
+        super.close();
+    }
+}
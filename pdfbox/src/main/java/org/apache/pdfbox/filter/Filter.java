@@ -60,6 +60,22 @@ public abstract class Filter
     public abstract DecodeResult decode(InputStream encoded, OutputStream decoded, COSDictionary parameters,
                             int index) throws IOException;
 
+    /**
+     * Returns a stream which decodes the given encoded stream while it is being read, so that
+     * several filters can be applied one after another without holding the output of each of
+     * them. Filters which can only decode the complete data at once return null.
+     * @param encoded the encoded byte stream
+     * @param parameters the parameters used for decoding
+     * @param index the index to the filter being decoded
+     * @return the decoding stream, or null if this filter can't decode on the fly
+     * @throws IOException if the stream cannot be decoded
+     */
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+                            int index) throws IOException
+    {
+        return null;
+    }
+
     /**
      * Encodes data.
      * @param input the byte stream to encode
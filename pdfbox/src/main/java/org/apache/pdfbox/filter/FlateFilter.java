@@ -16,8 +16,6 @@
  */
 package org.apache.pdfbox.filter;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,7 +25,7 @@ import java.util.zip.Inflater;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSDictionary;
-import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
 
 /**
  * Decompresses data encoded using the zlib/deflate compression method,
@@ -40,98 +38,123 @@ final class FlateFilter extends Filter
 {
     private static final Log LOG = LogFactory.getLog(FlateFilter.class);
     private static final int BUFFER_SIZE = 16348;
+    // the output of an inflate() call which fails is lost, so a corrupt stream is inflated in
+    // small steps to recover as much data as possible
+    private static final int INFLATE_STEP = 32;
 
     @Override
     public DecodeResult decode(InputStream encoded, OutputStream decoded,
                                          COSDictionary parameters, int index) throws IOException
     {
-        int predictor = -1;
+        IOUtils.copy(createInputStream(encoded, parameters, index), decoded);
+        decoded.flush();
+        return new DecodeResult(parameters);
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+                                         int index) throws IOException
+    {
+        return Predictor.wrapPredictor(new FlateInputStream(encoded),
+                getDecodeParams(parameters, index));
+    }
+
+    /**
+     * Inflates the encoded stream while it is read.
+     */
+    private static final class FlateInputStream extends DecodingInputStream
+    {
+        private final byte[] buffer = new byte[2048];
+        private final byte[] res = new byte[BUFFER_SIZE];
+        private Inflater inflater = new Inflater();
+        private boolean dataWritten = false;
 
-        final COSDictionary decodeParams = getDecodeParams(parameters, index);
-        if (decodeParams != null)
+        FlateInputStream(InputStream in)
         {
-            predictor = decodeParams.getInt(COSName.PREDICTOR);
+            super(in);
         }
 
-        try
+        // Use Inflater instead of InflateInputStream to avoid an EOFException due to a probably
+        // missing Z_STREAM_END, see PDFBOX-1232 for details
+        @Override
+        protected boolean decodeNext() throws IOException
         {
-            if (predictor > 1)
+            if (inflater == null)
             {
-                int colors = Math.min(decodeParams.getInt(COSName.COLORS, 1), 32);
-                int bitsPerPixel = decodeParams.getInt(COSName.BITS_PER_COMPONENT, 8);
-                int columns = decodeParams.getInt(COSName.COLUMNS, 1);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                decompress(encoded, baos);
-                ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-                Predictor.decodePredictor(predictor, colors, bitsPerPixel, columns, bais, decoded);
-                decoded.flush();
-                baos.reset();
-                bais.reset();
+                return false;
             }
-            else
+            while (true)
             {
-                decompress(encoded, decoded);
-            }
-        } 
-        catch (DataFormatException e)
-        {
-            // if the stream is corrupt a DataFormatException may occur
-            LOG.error("FlateFilter: stop reading corrupt stream due to a DataFormatException");
-
-            // re-throw the exception
-            throw new IOException(e);
-        }
-        return new DecodeResult(parameters);
-    }
-
-    // Use Inflater instead of InflateInputStream to avoid an EOFException due to a probably
-    // missing Z_STREAM_END, see PDFBOX-1232 for details
-    private void decompress(InputStream in, OutputStream out) throws IOException, DataFormatException 
-    { 
-        byte[] buf = new byte[2048]; 
-        int read = in.read(buf); 
-        if (read > 0) 
-        { 
-            Inflater inflater = new Inflater(); 
-            inflater.setInput(buf,0,read);
-            byte[] res = new byte[32]; 
-            boolean dataWritten = false;
-            while (true) 
-            { 
                 int resRead = 0;
                 try
                 {
-                    resRead = inflater.inflate(res);
+                    while (resRead < res.length)
+                    {
+                        int stepRead = inflater.inflate(res, resRead,
+                                Math.min(INFLATE_STEP, res.length - resRead));
+                        if (stepRead == 0)
+                        {
+                            break;
+                        }
+                        resRead += stepRead;
+                    }
                 }
-                catch(DataFormatException exception)
+                catch (DataFormatException exception)
                 {
-                    if (dataWritten)
+                    end();
+                    if (dataWritten || resRead > 0)
                     {
                         // some data could be read -> don't throw an exception
                         LOG.warn("FlateFilter: premature end of stream due to a DataFormatException");
-                        break;
+                        if (resRead == 0)
+                        {
+                            return false;
+                        }
                     }
                     else
                     {
+                        // if the stream is corrupt a DataFormatException may occur
+                        LOG.error("FlateFilter: stop reading corrupt stream due to a DataFormatException");
                         // nothing could be read -> re-throw exception
-                        throw exception;
+                        throw new IOException(exception);
                     }
                 }
-                if (resRead != 0) 
-                { 
-                    out.write(res,0,resRead);
+                if (resRead != 0)
+                {
+                    setDecoded(res, 0, resRead);
                     dataWritten = true;
-                    continue; 
-                } 
-                if (inflater.finished() || inflater.needsDictionary() || in.available() == 0) 
+                    return true;
+                }
+                if (inflater.finished() || inflater.needsDictionary())
                 {
-                    break;
-                } 
-                read = in.read(buf); 
-                inflater.setInput(buf,0,read);
+                    end();
+                    return false;
+                }
+                int read = in.read(buffer);
+                if (read == -1)
+                {
+                    end();
+                    return false;
+                }
+                inflater.setInput(buffer, 0, read);
             }
         }
-        out.flush();
+
+        private void end()
+        {
+            if (inflater != null)
+            {
+                inflater.end();
+                inflater = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            end();
+            super.close();
+        }
     }
     
     @Override
@@ -15,9 +15,6 @@
  */
 package org.apache.pdfbox.filter;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,13 +22,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
 
 /**
  *
@@ -57,7 +54,7 @@ public class LZWFilter extends Filter
      */
     public static final long EOD = 257;
     
-    //BEWARE: codeTable must be local to each method, because there is only
+    //BEWARE: codeTable must be local to each method or stream, because there is only
     // one instance of each filter
 
     /**
@@ -67,109 +64,136 @@ public class LZWFilter extends Filter
     public DecodeResult decode(InputStream encoded, OutputStream decoded,
             COSDictionary parameters, int index) throws IOException
     {
-        int predictor = -1;
+        IOUtils.copy(createInputStream(encoded, parameters, index), decoded);
+        decoded.flush();
+        return new DecodeResult(parameters);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+            int index) throws IOException
+    {
         int earlyChange = 1;
 
         COSDictionary decodeParams = getDecodeParams(parameters, index);
         if (decodeParams != null)
         {
-            predictor = decodeParams.getInt(COSName.PREDICTOR);
             earlyChange = decodeParams.getInt(COSName.EARLY_CHANGE, 1);
             if (earlyChange != 0 && earlyChange != 1)
             {
                 earlyChange = 1;
             }
         }
-        if (predictor > 1)
-        {
-            @SuppressWarnings("null")
-            int colors = Math.min(decodeParams.getInt(COSName.COLORS, 1), 32);
-            int bitsPerPixel = decodeParams.getInt(COSName.BITS_PER_COMPONENT, 8);
-            int columns = decodeParams.getInt(COSName.COLUMNS, 1);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            doLZWDecode(encoded, baos, earlyChange);
-            ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-            Predictor.decodePredictor(predictor, colors, bitsPerPixel, columns, bais, decoded);
-            decoded.flush();
-            baos.reset();
-            bais.reset();
-        }
-        else
-        {
-            doLZWDecode(encoded, decoded, earlyChange);
-        }
-        return new DecodeResult(parameters);
+        return Predictor.wrapPredictor(new LZWInputStream(encoded, earlyChange), decodeParams);
     }
 
-    private void doLZWDecode(InputStream encoded, OutputStream decoded, int earlyChange) throws IOException
+    /**
+     * Decodes the codes of the encoded stream while it is read.
+     */
+    private static final class LZWInputStream extends DecodingInputStream
     {
-        List<byte[]> codeTable = new ArrayList<byte[]>();
-        int chunk = 9;
-        final MemoryCacheImageInputStream in = new MemoryCacheImageInputStream(encoded);
-        long nextCommand;
-        long prevCommand = -1;
+        private final int earlyChange;
+        private List<byte[]> codeTable = new ArrayList<byte[]>();
+        private int chunk = 9;
+        private long prevCommand = -1;
 
-        try
+        // the bits read from the encoded stream which haven't been used yet
+        private int bitBuffer;
+        private int bitCount;
+        private long bytesRead;
+
+        LZWInputStream(InputStream in, int earlyChange)
         {
-            while ((nextCommand = in.readBits(chunk)) != EOD)
+            super(in);
+            this.earlyChange = earlyChange;
+        }
+
+        @Override
+        protected boolean decodeNext() throws IOException
+        {
+            long nextCommand = readBits(chunk);
+            if (nextCommand == -1)
             {
-                if (nextCommand == CLEAR_TABLE)
-                {
-                    chunk = 9;
-                    codeTable = createCodeTable();
-                    prevCommand = -1;
-                }
-                else
+                LOG.warn("Premature EOF in LZW stream, EOD code missing");
+                return false;
+            }
+            if (nextCommand == EOD)
+            {
+                return false;
+            }
+            if (nextCommand == CLEAR_TABLE)
+            {
+                chunk = 9;
+                codeTable = createCodeTable();
+                prevCommand = -1;
+                setDecoded(null, 0, 0);
+                return true;
+            }
+            if (nextCommand < codeTable.size())
+            {
+                byte[] data = codeTable.get((int) nextCommand);
+                byte firstByte = data[0];
+                setDecoded(data, 0, data.length);
+                if (prevCommand != -1)
                 {
-                    if (nextCommand < codeTable.size())
-                    {
-                        byte[] data = codeTable.get((int) nextCommand);
-                        byte firstByte = data[0];
-                        decoded.write(data);
-                        if (prevCommand != -1)
-                        {
-                            checkIndexBounds(codeTable, prevCommand, in);
-                            data = codeTable.get((int) prevCommand);
-                            byte[] newData = Arrays.copyOf(data, data.length + 1);
-                            newData[data.length] = firstByte;
-                            codeTable.add(newData);
-                        }
-                    }
-                    else
-                    {
-                        checkIndexBounds(codeTable, prevCommand, in);
-                        byte[] data = codeTable.get((int) prevCommand);
-                        byte[] newData = Arrays.copyOf(data, data.length + 1);
-                        newData[data.length] = data[0];
-                        decoded.write(newData);
-                        codeTable.add(newData);
-                    }
-                    
-                    chunk = calculateChunk(codeTable.size(), earlyChange);
-                    prevCommand = nextCommand;
+                    checkIndexBounds(codeTable, prevCommand, bytesRead);
+                    data = codeTable.get((int) prevCommand);
+                    byte[] newData = Arrays.copyOf(data, data.length + 1);
+                    newData[data.length] = firstByte;
+                    codeTable.add(newData);
                 }
             }
+            else
+            {
+                checkIndexBounds(codeTable, prevCommand, bytesRead);
+                byte[] data = codeTable.get((int) prevCommand);
+                byte[] newData = Arrays.copyOf(data, data.length + 1);
+                newData[data.length] = data[0];
+                setDecoded(newData, 0, newData.length);
+                codeTable.add(newData);
+            }
+            chunk = calculateChunk(codeTable.size(), earlyChange);
+            prevCommand = nextCommand;
+            return true;
         }
-        catch (EOFException ex)
+
+        // reads the next code, most significant bit first, or -1 if there aren't enough bits left
+        private long readBits(int count) throws IOException
         {
-            LOG.warn("Premature EOF in LZW stream, EOD code missing");
+            while (bitCount < count)
+            {
+                int b = in.read();
+                if (b == -1)
+                {
+                    return -1;
+                }
+                bytesRead++;
+                bitBuffer = (bitBuffer << 8) | b;
+                bitCount += 8;
+            }
+            bitCount -= count;
+            int code = bitBuffer >>> bitCount;
+            bitBuffer &= (1 << bitCount) - 1;
+            return code;
         }
-        decoded.flush();
     }
 
-    private void checkIndexBounds(List codeTable, long index, MemoryCacheImageInputStream in)
+    private static void checkIndexBounds(List codeTable, long index, long offset)
             throws IOException
     {
         if (index < 0)
         {
             throw new IOException("negative array index: " + index + " near offset "
-                    + in.getStreamPosition());
+                    + offset);
         }
         if (index >= codeTable.size())
         {
             throw new IOException("array index overflow: " + index +
                     " >= " + codeTable.size() + " near offset "
-                    + in.getStreamPosition());
+                    + offset);
         }
     }
 
@@ -290,7 +314,7 @@ public class LZWFilter extends Filter
      * Init the code table with 1 byte entries and the EOD and CLEAR_TABLE
      * markers.
      */
-    private List<byte[]> createCodeTable()
+    private static List<byte[]> createCodeTable()
     {
         List<byte[]> codeTable = new ArrayList<byte[]>(4096);
         for (int i = 0; i < 256; ++i)
@@ -310,7 +334,7 @@ public class LZWFilter extends Filter
      *
      * @return a value between 9 and 12
      */
-    private int calculateChunk(int tabSize, int earlyChange)
+    private static int calculateChunk(int tabSize, int earlyChange)
     {
         if (tabSize >= 2048 - earlyChange)
         {
@@ -17,9 +17,9 @@ package org.apache.pdfbox.filter;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 
-import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 
 /**
  * Helper class to contain predictor decoding used by Flate and LZW filter. 
@@ -32,195 +32,255 @@ public final class Predictor
     {
     }
     
-    static void decodePredictor(int predictor, int colors, int bitsPerComponent, int columns, InputStream in, OutputStream out)
-            throws IOException
+    /**
+     * Wraps the given stream into a stream which reverses the prediction given by the decode
+     * parameters, if any.
+     *
+     * @param in the decoded stream of the filter, which still contains the predicted values
+     * @param decodeParams the decode parameters of the filter, may be null
+     * @return the stream with the original values
+     */
+    static InputStream wrapPredictor(InputStream in, COSDictionary decodeParams)
     {
-        if (predictor == 1)
+        int predictor = decodeParams != null ? decodeParams.getInt(COSName.PREDICTOR) : -1;
+        if (predictor > 1)
         {
-            // no prediction
-            IOUtils.copy(in, out);
+            int colors = Math.min(decodeParams.getInt(COSName.COLORS, 1), 32);
+            int bitsPerPixel = decodeParams.getInt(COSName.BITS_PER_COMPONENT, 8);
+            int columns = decodeParams.getInt(COSName.COLUMNS, 1);
+            return new PredictorInputStream(in, predictor, colors, bitsPerPixel, columns);
         }
-        else
-        {
-            // calculate sizes
-            final int bitsPerPixel = colors * bitsPerComponent;
-            final int bytesPerPixel = (bitsPerPixel + 7) / 8;
-            final int rowlength = (columns * bitsPerPixel + 7) / 8;
-            byte[] actline = new byte[rowlength];
-            byte[] lastline = new byte[rowlength];
+        // no prediction
+        return in;
+    }
 
-            int linepredictor = predictor;
+    /**
+     * Reverses the prediction of one row.
+     *
+     * @param linepredictor the TIFF predictor 2 or the PNG predictor of the row, i.e. 10 + the
+     * predictor type of the row
+     * @param colors the number of color components
+     * @param bitsPerComponent the number of bits per color component
+     * @param columns the number of samples per row
+     * @param actline the current row, which is decoded in place
+     * @param lastline the previous (decoded) row
+     */
+    static void decodePredictorRow(int linepredictor, int colors, int bitsPerComponent,
+            int columns, byte[] actline, byte[] lastline)
+    {
+        // calculate sizes
+        final int bitsPerPixel = colors * bitsPerComponent;
+        final int bytesPerPixel = (bitsPerPixel + 7) / 8;
+        final int rowlength = actline.length;
 
-            while (in.available() > 0)
-            {
-                // test for PNG predictor; each value >= 10 (not only 15) indicates usage of PNG predictor
-                if (predictor >= 10)
+        switch (linepredictor)
+        {
+            case 2:
+                // PRED TIFF SUB
+                if (bitsPerComponent == 8)
                 {
-                    // PNG predictor; each row starts with predictor type (0, 1, 2, 3, 4)
-                    // read per line predictor
-                    linepredictor = in.read();
-                    if (linepredictor == -1)
+                    // for 8 bits per component it is the same algorithm as PRED SUB of PNG format
+                    for (int p = bytesPerPixel; p < rowlength; p++)
                     {
-                        return;
+                        int sub = actline[p] & 0xff;
+                        int left = actline[p - bytesPerPixel] & 0xff;
+                        actline[p] = (byte) (sub + left);
                     }
-                    // add 10 to tread value 0 as 10, 1 as 11, ...
-                    linepredictor += 10;
+                    break;
                 }
-
-                // read line
-                int i, offset = 0;
-                while (offset < rowlength && ((i = in.read(actline, offset, rowlength - offset)) != -1))
+                if (bitsPerComponent == 16)
                 {
-                    offset += i;
+                    for (int p = bytesPerPixel; p < rowlength; p += 2)
+                    {
+                        int sub = ((actline[p] & 0xff) << 8) + (actline[p + 1] & 0xff);
+                        int left = (((actline[p - bytesPerPixel] & 0xff) << 8)
+                                + (actline[p - bytesPerPixel + 1] & 0xff));
+                        actline[p] = (byte) (((sub + left) >> 8) & 0xff);
+                        actline[p + 1] = (byte) ((sub + left) & 0xff);
+                    }
+                    break;
                 }
-
-                // do prediction as specified in PNG-Specification 1.2
-                switch (linepredictor)
+                if (bitsPerComponent == 1 && colors == 1)
                 {
-                    case 2:
-                        // PRED TIFF SUB
-                        if (bitsPerComponent == 8)
-                        {
-                            // for 8 bits per component it is the same algorithm as PRED SUB of PNG format
-                            for (int p = bytesPerPixel; p < rowlength; p++)
-                            {
-                                int sub = actline[p] & 0xff;
-                                int left = actline[p - bytesPerPixel] & 0xff;
-                                actline[p] = (byte) (sub + left);
-                            }
-                            break;
-                        }
-                        if (bitsPerComponent == 16)
+                    // bytesPerPixel cannot be used:
+                    // "A row shall occupy a whole number of bytes, rounded up if necessary.
+                    // Samples and their components shall be packed into bytes 
+                    // from high-order to low-order bits."
+                    for (int p = 0; p < rowlength; p++)
+                    {
+                        for (int bit = 7; bit >= 0; --bit)
                         {
-                            for (int p = bytesPerPixel; p < rowlength; p += 2)
+                            int sub = (actline[p] >> bit) & 1;
+                            if (p == 0 && bit == 7)
                             {
-                                int sub = ((actline[p] & 0xff) << 8) + (actline[p + 1] & 0xff);
-                                int left = (((actline[p - bytesPerPixel] & 0xff) << 8)
-                                        + (actline[p - bytesPerPixel + 1] & 0xff));
-                                actline[p] = (byte) (((sub + left) >> 8) & 0xff);
-                                actline[p + 1] = (byte) ((sub + left) & 0xff);
+                                continue;
                             }
-                            break;
-                        }
-                        if (bitsPerComponent == 1 && colors == 1)
-                        {
-                            // bytesPerPixel cannot be used:
-                            // "A row shall occupy a whole number of bytes, rounded up if necessary.
-                            // Samples and their components shall be packed into bytes 
-                            // from high-order to low-order bits."
-                            for (int p = 0; p < rowlength; p++)
+                            int left;
+                            if (bit == 7)
                             {
-                                for (int bit = 7; bit >= 0; --bit)
-                                {
-                                    int sub = (actline[p] >> bit) & 1;
-                                    if (p == 0 && bit == 7)
-                                    {
-                                        continue;
-                                    }
-                                    int left;
-                                    if (bit == 7)
-                                    {
-                                        // use bit #0 from previous byte
-                                        left = actline[p - 1] & 1;
-                                    }
-                                    else
-                                    {
-                                        // use "previous" bit
-                                        left = (actline[p] >> (bit + 1)) & 1;
-                                    }
-                                    if (((sub + left) & 1) == 0)
-                                    {
-                                        // reset bit
-                                        actline[p] = (byte) (actline[p] & ~(1 << bit));
-                                    }
-                                    else
-                                    {
-                                        // set bit
-                                        actline[p] = (byte) (actline[p] | (1 << bit));
-                                    }
-                                }
+                                // use bit #0 from previous byte
+                                left = actline[p - 1] & 1;
                             }
-                            break;
-                        }
-                        // everything else, i.e. bpc 2 and 4, but has been tested for bpc 1 and 8 too
-                        int elements = columns * colors;
-                        for (int p = colors; p < elements; ++p)
-                        {
-                            int bytePosSub = p * bitsPerComponent / 8;
-                            int bitPosSub = 8 - p * bitsPerComponent % 8 - bitsPerComponent;
-                            int bytePosLeft = (p - colors) * bitsPerComponent / 8;
-                            int bitPosLeft = 8 - (p - colors) * bitsPerComponent % 8 - bitsPerComponent;
-
-                            int sub = getBitSeq(actline[bytePosSub], bitPosSub, bitsPerComponent);
-                            int left = getBitSeq(actline[bytePosLeft], bitPosLeft, bitsPerComponent);
-                            actline[bytePosSub] = (byte) calcSetBitSeq(actline[bytePosSub], bitPosSub, bitsPerComponent, sub + left);
-                        }
-                        break;
-                    case 10:
-                        // PRED NONE
-                        // do nothing
-                        break;
-                    case 11:
-                        // PRED SUB
-                        for (int p = bytesPerPixel; p < rowlength; p++)
-                        {
-                            int sub = actline[p];
-                            int left = actline[p - bytesPerPixel];
-                            actline[p] = (byte) (sub + left);
-                        }
-                        break;
-                    case 12:
-                        // PRED UP
-                        for (int p = 0; p < rowlength; p++)
-                        {
-                            int up = actline[p] & 0xff;
-                            int prior = lastline[p] & 0xff;
-                            actline[p] = (byte) ((up + prior) & 0xff);
-                        }
-                        break;
-                    case 13:
-                        // PRED AVG
-                        for (int p = 0; p < rowlength; p++)
-                        {
-                            int avg = actline[p] & 0xff;
-                            int left = p - bytesPerPixel >= 0 ? actline[p - bytesPerPixel] & 0xff : 0;
-                            int up = lastline[p] & 0xff;
-                            actline[p] = (byte) ((avg + (left + up) / 2) & 0xff);
-                        }
-                        break;
-                    case 14:
-                        // PRED PAETH
-                        for (int p = 0; p < rowlength; p++)
-                        {
-                            int paeth = actline[p] & 0xff;
-                            int a = p - bytesPerPixel >= 0 ? actline[p - bytesPerPixel] & 0xff : 0;// left
-                            int b = lastline[p] & 0xff;// upper
-                            int c = p - bytesPerPixel >= 0 ? lastline[p - bytesPerPixel] & 0xff : 0;// upperleft
-                            int value = a + b - c;
-                            int absa = Math.abs(value - a);
-                            int absb = Math.abs(value - b);
-                            int absc = Math.abs(value - c);
-
-                            if (absa <= absb && absa <= absc)
+                            else
                             {
-                                actline[p] = (byte) ((paeth + a) & 0xff);
+                                // use "previous" bit
+                                left = (actline[p] >> (bit + 1)) & 1;
                             }
-                            else if (absb <= absc)
+                            if (((sub + left) & 1) == 0)
                             {
-                                actline[p] = (byte) ((paeth + b) & 0xff);
+                                // reset bit
+                                actline[p] = (byte) (actline[p] & ~(1 << bit));
                             }
                             else
                             {
-                                actline[p] = (byte) ((paeth + c) & 0xff);
+                                // set bit
+                                actline[p] = (byte) (actline[p] | (1 << bit));
                             }
                         }
-                        break;
-                    default:
-                        break;
+                    }
+                    break;
+                }
+                // everything else, i.e. bpc 2 and 4, but has been tested for bpc 1 and 8 too
+                int elements = columns * colors;
+                for (int p = colors; p < elements; ++p)
+                {
+                    int bytePosSub = p * bitsPerComponent / 8;
+                    int bitPosSub = 8 - p * bitsPerComponent % 8 - bitsPerComponent;
+                    int bytePosLeft = (p - colors) * bitsPerComponent / 8;
+                    int bitPosLeft = 8 - (p - colors) * bitsPerComponent % 8 - bitsPerComponent;
+
+                    int sub = getBitSeq(actline[bytePosSub], bitPosSub, bitsPerComponent);
+                    int left = getBitSeq(actline[bytePosLeft], bitPosLeft, bitsPerComponent);
+                    actline[bytePosSub] = (byte) calcSetBitSeq(actline[bytePosSub], bitPosSub, bitsPerComponent, sub + left);
+                }
+                break;
+            case 10:
+                // PRED NONE
+                // do nothing
+                break;
+            case 11:
+                // PRED SUB
+                for (int p = bytesPerPixel; p < rowlength; p++)
+                {
+                    int sub = actline[p];
+                    int left = actline[p - bytesPerPixel];
+                    actline[p] = (byte) (sub + left);
                 }
-                System.arraycopy(actline, 0, lastline, 0, rowlength);
-                out.write(actline);
+                break;
+            case 12:
+                // PRED UP
+                for (int p = 0; p < rowlength; p++)
+                {
+                    int up = actline[p] & 0xff;
+                    int prior = lastline[p] & 0xff;
+                    actline[p] = (byte) ((up + prior) & 0xff);
+                }
+                break;
+            case 13:
+                // PRED AVG
+                for (int p = 0; p < rowlength; p++)
+                {
+                    int avg = actline[p] & 0xff;
+                    int left = p - bytesPerPixel >= 0 ? actline[p - bytesPerPixel] & 0xff : 0;
+                    int up = lastline[p] & 0xff;
+                    actline[p] = (byte) ((avg + (left + up) / 2) & 0xff);
+                }
+                break;
+            case 14:
+                // PRED PAETH
+                for (int p = 0; p < rowlength; p++)
+                {
+                    int paeth = actline[p] & 0xff;
+                    int a = p - bytesPerPixel >= 0 ? actline[p - bytesPerPixel] & 0xff : 0;// left
+                    int b = lastline[p] & 0xff;// upper
+                    int c = p - bytesPerPixel >= 0 ? lastline[p - bytesPerPixel] & 0xff : 0;// upperleft
+                    int value = a + b - c;
+                    int absa = Math.abs(value - a);
+                    int absb = Math.abs(value - b);
+                    int absc = Math.abs(value - c);
+
+                    if (absa <= absb && absa <= absc)
+                    {
+                        actline[p] = (byte) ((paeth + a) & 0xff);
+                    }
+                    else if (absb <= absc)
+                    {
+                        actline[p] = (byte) ((paeth + b) & 0xff);
+                    }
+                    else
+                    {
+                        actline[p] = (byte) ((paeth + c) & 0xff);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Reverses the prediction of the underlying stream row by row while it is read.
+     */
+    private static final class PredictorInputStream extends DecodingInputStream
+    {
+        private final int predictor;
+        private final int colors;
+        private final int bitsPerComponent;
+        private final int columns;
+        private byte[] actline;
+        private byte[] lastline;
+
+        PredictorInputStream(InputStream in, int predictor, int colors, int bitsPerComponent,
+                int columns)
+        {
+            super(in);
+            this.predictor = predictor;
+            this.colors = colors;
+            this.bitsPerComponent = bitsPerComponent;
+            this.columns = columns;
+            final int rowlength = (columns * colors * bitsPerComponent + 7) / 8;
+            actline = new byte[rowlength];
+            lastline = new byte[rowlength];
+        }
+
+        @Override
+        protected boolean decodeNext() throws IOException
+        {
+            int linepredictor = predictor;
+            // test for PNG predictor; each value >= 10 (not only 15) indicates usage of PNG predictor
+            if (predictor >= 10)
+            {
+                // PNG predictor; each row starts with predictor type (0, 1, 2, 3, 4)
+                // read per line predictor
+                linepredictor = in.read();
+                if (linepredictor == -1)
+                {
+                    return false;
+                }
+                // add 10 to tread value 0 as 10, 1 as 11, ...
+                linepredictor += 10;
+            }
+
+            // swap the rows, the new row is decoded over the second to last row
+            byte[] row = lastline;
+            lastline = actline;
+            actline = row;
+            System.arraycopy(lastline, 0, actline, 0, actline.length);
+
+            // read line
+            int i, offset = 0;
+            while (offset < actline.length && ((i = in.read(actline, offset, actline.length - offset)) != -1))
+            {
+                offset += i;
+            }
+            if (offset == 0 && predictor < 10)
+            {
+                return false;
             }
+
+            decodePredictorRow(linepredictor, colors, bitsPerComponent, columns, actline, lastline);
+            setDecoded(actline, 0, actline.length);
+            return true;
         }
     }
     
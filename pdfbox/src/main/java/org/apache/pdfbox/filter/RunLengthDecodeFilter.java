@@ -19,9 +19,11 @@ package org.apache.pdfbox.filter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.io.IOUtils;
 
 /**
  * Decompresses data encoded using a byte-oriented run-length encoding algorithm,
@@ -38,31 +40,61 @@ final class RunLengthDecodeFilter extends Filter
     public DecodeResult decode(InputStream encoded, OutputStream decoded,
                                          COSDictionary parameters, int index) throws IOException
     {
-        int dupAmount;
-        byte[] buffer = new byte[128];
-        while ((dupAmount = encoded.read()) != -1 && dupAmount != RUN_LENGTH_EOD)
+        IOUtils.copy(createInputStream(encoded, parameters, index), decoded);
+        return new DecodeResult(parameters);
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream encoded, COSDictionary parameters,
+                                         int index) throws IOException
+    {
+        return new RunLengthInputStream(encoded);
+    }
+
+    /**
+     * Decodes one run of the encoded stream at a time while it is read.
+     */
+    private static final class RunLengthInputStream extends DecodingInputStream
+    {
+        private final byte[] buffer = new byte[128];
+
+        RunLengthInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        protected boolean decodeNext() throws IOException
         {
+            int dupAmount = in.read();
+            if (dupAmount == -1 || dupAmount == RUN_LENGTH_EOD)
+            {
+                return false;
+            }
             if (dupAmount <= 127)
             {
                 int amountToCopy = dupAmount + 1;
+                int offset = 0;
                 int compressedRead;
-                while(amountToCopy > 0)
+                while (offset < amountToCopy
+                        && (compressedRead = in.read(buffer, offset, amountToCopy - offset)) != -1)
                 {
-                    compressedRead = encoded.read(buffer, 0, amountToCopy);
-                    decoded.write(buffer, 0, compressedRead);
-                    amountToCopy -= compressedRead;
+                    offset += compressedRead;
                 }
+                setDecoded(buffer, 0, offset);
             }
             else
             {
-                int dupByte = encoded.read();
-                for (int i = 0; i < 257 - dupAmount; i++)
+                int dupByte = in.read();
+                if (dupByte == -1)
                 {
-                    decoded.write(dupByte);
+                    return false;
                 }
+                Arrays.fill(buffer, 0, 257 - dupAmount, (byte) dupByte);
+                setDecoded(buffer, 0, 257 - dupAmount);
             }
+            return true;
         }
-        return new DecodeResult(parameters);
     }
 
     @Override
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for the decoded data of PDF streams which are read more than once, e.g. images, fonts
+ * and forms which are used on many pages. The cache belongs to the {@link ScratchFile} of a
+ * document and holds at most the number of bytes given by
+ * {@link MemoryUsageSetting#getDecodedStreamCacheBytes()}. If a new entry doesn't fit, the least
+ * recently used entries are evicted.
+ *
+ * <p>The streams themselves are used as keys. The cached arrays must not be modified.</p>
+ */
+public final class DecodedStreamCache
+{
+    private final long maxBytes;
+    private final Map<Object, byte[]> entries = new LinkedHashMap<Object, byte[]>(16, 0.75f, true);
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes the maximum number of decoded bytes to be cached
+     */
+    public DecodedStreamCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached data of the given stream and counts a hit or a miss.
+     *
+     * @param key the stream
+     * @return the decoded data, or null if the stream isn't cached
+     */
+    public synchronized byte[] get(Object key)
+    {
+        byte[] data = entries.get(key);
+        if (data != null)
+        {
+            hitCount++;
+        }
+        else
+        {
+            missCount++;
+        }
+        return data;
+    }
+
+    /**
+     * Returns whether data of the given length can be cached at all. This allows to give up
+     * collecting the data of a stream early.
+     *
+     * @param length the length of the decoded data
+     * @return true if the data isn't larger than the cache
+     */
+    public boolean fits(long length)
+    {
+        return length <= maxBytes;
+    }
+
+    /**
+     * Caches the decoded data of the given stream, evicting the least recently used streams if
+     * needed. Data which is larger than the cache is ignored.
+     *
+     * @param key the stream
+     * @param data the decoded data
+     */
+    public synchronized void put(Object key, byte[] data)
+    {
+        if (!fits(data.length))
+        {
+            return;
+        }
+        remove(key);
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while (size + data.length > maxBytes && iterator.hasNext())
+        {
+            size -= iterator.next().length;
+            iterator.remove();
+        }
+        entries.put(key, data);
+        size += data.length;
+    }
+
+    /**
+     * Removes the data of the given stream, e.g. because the stream has been changed.
+     *
+     * @param key the stream
+     */
+    public synchronized void remove(Object key)
+    {
+        byte[] data = entries.remove(key);
+        if (data != null)
+        {
+            size -= data.length;
+        }
+    }
+
+    /**
+     * Removes all cached data. The counters are kept.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the maximum number of bytes to be cached.
+     */
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes which are currently cached.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of streams which are currently cached.
+     */
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns how often the decoded data of a stream was found in the cache.
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns how often a stream had to be decoded because it wasn't in the cache.
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "DecodedStreamCache{" + entries.size() + " streams, " + size + " of " + maxBytes
+                + " bytes, " + hitCount + " hits, " + missCount + " misses}";
+    }
+}
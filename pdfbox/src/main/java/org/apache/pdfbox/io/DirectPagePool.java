@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A pool of fixed size pages which are held outside of the Java heap in direct byte buffers.
+ * The buffers are allocated in slabs of several pages when needed and are never freed, released
+ * pages are handed out again. One pool is shared by all {@link ScratchFile} instances which are
+ * set up with {@link MemoryUsageSetting#setUseDirectBufferPool(boolean)}, so that the pages are
+ * recycled across documents instead of creating new arrays for every document.
+ *
+ * <p>The maximum size of the shared pool can be set with the system property
+ * {@value #SYSPROP_MAX_BYTES}, the default is 64 MB.</p>
+ *
+ * <p>Allocating and releasing pages is thread safe. A page must only be read and written by the
+ * owner of the page.</p>
+ */
+final class DirectPagePool
+{
+    private static final Log LOG = LogFactory.getLog(DirectPagePool.class);
+
+    /**
+     * System property for the maximum number of bytes of the shared pool.
+     */
+    static final String SYSPROP_MAX_BYTES = "org.apache.pdfbox.io.directPagePoolBytes";
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int SLAB_SIZE = 1024 * 1024;
+
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final int maxSlabs;
+
+    /** a view of each page; only to be changed under synchronization of this pool */
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+    /** stack of free page ids */
+    private int[] freeIds = new int[0];
+    private int freeCount;
+
+    /**
+     * Constructor.
+     *
+     * @param pageSize the size of a page
+     * @param slabSize the size of a direct buffer holding several pages
+     * @param maxBytes the maximum number of bytes of all direct buffers
+     */
+    DirectPagePool(int pageSize, int slabSize, long maxBytes)
+    {
+        this.pageSize = pageSize;
+        this.pagesPerSlab = Math.max(1, slabSize / pageSize);
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE / pagesPerSlab,
+                maxBytes / ((long) pagesPerSlab * pageSize));
+    }
+
+    /**
+     * Returns the pool shared by all scratch files.
+     */
+    static DirectPagePool getSharedInstance()
+    {
+        return SharedInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Allocates a page.
+     *
+     * @return the id of the page, or -1 if the pool is exhausted
+     */
+    synchronized int allocate()
+    {
+        if (freeCount == 0 && !addSlab())
+        {
+            return -1;
+        }
+        return freeIds[--freeCount];
+    }
+
+    /**
+     * Releases a page, so that it can be allocated again.
+     *
+     * @param id the id of the page
+     */
+    synchronized void release(int id)
+    {
+        freeIds[freeCount++] = id;
+    }
+
+    // only to be called under synchronization of this pool
+    private boolean addSlab()
+    {
+        ByteBuffer[] oldPages = pages;
+        if (oldPages.length / pagesPerSlab >= maxSlabs)
+        {
+            return false;
+        }
+        ByteBuffer slab;
+        try
+        {
+            slab = ByteBuffer.allocateDirect(pagesPerSlab * pageSize);
+        }
+        catch (OutOfMemoryError e)
+        {
+            // the direct memory of the JVM is exhausted, the pages are kept in the heap instead
+            LOG.warn("Could not allocate direct buffer for page pool: " + e.getMessage());
+            return false;
+        }
+        ByteBuffer[] newPages = Arrays.copyOf(oldPages, oldPages.length + pagesPerSlab);
+        for (int i = 0; i < pagesPerSlab; i++)
+        {
+            slab.limit((i + 1) * pageSize);
+            slab.position(i * pageSize);
+            newPages[oldPages.length + i] = slab.slice();
+        }
+        if (freeIds.length < newPages.length)
+        {
+            freeIds = Arrays.copyOf(freeIds, newPages.length);
+        }
+        // lowest ids on top of the stack
+        for (int id = newPages.length - 1; id >= oldPages.length; id--)
+        {
+            freeIds[freeCount++] = id;
+        }
+        pages = newPages;
+        return true;
+    }
+
+    /**
+     * Copies the content of a page into the given array.
+     *
+     * @param id the id of the page
+     * @param page the array to be filled, must have the page size
+     */
+    void read(int id, byte[] page)
+    {
+        ByteBuffer buffer = pages[id];
+        buffer.clear();
+        buffer.get(page, 0, pageSize);
+    }
+
+    /**
+     * Copies the given array into a page.
+     *
+     * @param id the id of the page
+     * @param page the new content of the page, must have the page size
+     */
+    void write(int id, byte[] page)
+    {
+        ByteBuffer buffer = pages[id];
+        buffer.clear();
+        buffer.put(page, 0, pageSize);
+    }
+
+    /**
+     * Returns the size of a page.
+     */
+    int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of pages which are currently allocated.
+     */
+    synchronized int getAllocatedPageCount()
+    {
+        return pages.length - freeCount;
+    }
+
+    /**
+     * Returns the number of pages of the direct buffers which have been created so far.
+     */
+    int getCreatedPageCount()
+    {
+        return pages.length;
+    }
+
+    private static final class SharedInstanceHolder
+    {
+        private static final DirectPagePool INSTANCE = new DirectPagePool(
+                ScratchFile.PAGE_SIZE, SLAB_SIZE, getMaxBytes());
+
+        private static long getMaxBytes()
+        {
+            try
+            {
+                return Long.getLong(SYSPROP_MAX_BYTES, DEFAULT_MAX_BYTES);
+            }
+            catch (SecurityException e)
+            {
+                return DEFAULT_MAX_BYTES;
+            }
+        }
+    }
+}
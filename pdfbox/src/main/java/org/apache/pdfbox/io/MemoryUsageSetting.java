@@ -37,6 +37,19 @@ public final class MemoryUsageSetting
     
     /** directory to be used for scratch file */
     private File tempDir;
+
+    /** if <code>true</code> input files are memory mapped instead of read through a page cache */
+    private boolean useMemoryMappedInput;
+
+    /** if <code>true</code> in-memory pages are held by the process-wide direct buffer pool */
+    private boolean useDirectBufferPool;
+
+    /** maximum number of bytes of decoded streams to be cached; <code>0</code> disables the cache */
+    private long decodedStreamCacheBytes;
+
+    /** maximum estimated number of bytes of parsed content streams to be cached; <code>0</code>
+     *  disables the cache */
+    private long parsedStreamCacheBytes;
     
     /**
      * Private constructor for setup buffering memory usage called by one of the setup methods.
@@ -183,6 +196,10 @@ public final class MemoryUsageSetting
         MemoryUsageSetting copy = new MemoryUsageSetting( useMainMemory, useTempFile,
                                                           newMaxMainMemoryBytes, newMaxStorageBytes );
         copy.tempDir = tempDir;
+        copy.useMemoryMappedInput = useMemoryMappedInput;
+        copy.useDirectBufferPool = useDirectBufferPool;
+        copy.decodedStreamCacheBytes = decodedStreamCacheBytes / parallelUseCount;
+        copy.parsedStreamCacheBytes = parsedStreamCacheBytes / parallelUseCount;
         
         return copy;
     }
@@ -200,6 +217,115 @@ public final class MemoryUsageSetting
         return this;
     }
     
+    /**
+     * Sets whether a PDF loaded from a file is to be memory mapped using
+     * {@link RandomAccessMemoryMappedFile} instead of being read through
+     * {@link RandomAccessBufferedFileInputStream}. Mapping avoids a system call and
+     * a copy for every page of the file which is read, which pays off for large files.
+     * 
+     * @param useMemoryMappedInput <code>true</code> to memory map input files
+     * 
+     * @return this instance
+     */
+    public MemoryUsageSetting setUseMemoryMappedInput(boolean useMemoryMappedInput)
+    {
+        this.useMemoryMappedInput = useMemoryMappedInput;
+        return this;
+    }
+
+    /**
+     * Returns <code>true</code> if input files are to be memory mapped.
+     */
+    public boolean useMemoryMappedInput()
+    {
+        return useMemoryMappedInput;
+    }
+
+    /**
+     * Sets whether the in-memory pages of the scratch file are held outside of the Java heap
+     * by a pool of direct buffers which is shared by all documents. The pages of a closed
+     * document are re-used by other documents, which avoids creating new page arrays for every
+     * document. The maximum main memory is the quota of pool pages of a document; if the pool
+     * itself is exhausted, pages are kept in the heap.
+     * 
+     * <p>The size of the pool can be set with the system property
+     * <code>org.apache.pdfbox.io.directPagePoolBytes</code>, the default is 64 MB. Documents
+     * should be closed to return their pages to the pool.</p>
+     * 
+     * @param useDirectBufferPool <code>true</code> to use the direct buffer pool
+     * 
+     * @return this instance
+     */
+    public MemoryUsageSetting setUseDirectBufferPool(boolean useDirectBufferPool)
+    {
+        this.useDirectBufferPool = useDirectBufferPool;
+        return this;
+    }
+
+    /**
+     * Returns <code>true</code> if in-memory pages are held by the direct buffer pool.
+     */
+    public boolean useDirectBufferPool()
+    {
+        return useDirectBufferPool;
+    }
+
+    /**
+     * Sets the maximum number of bytes of decoded stream data which is kept in main memory, so
+     * that streams which are read several times, like images, fonts or forms which are used on
+     * many pages, are only decoded once. The least recently used streams are evicted first.
+     * The cache is disabled by default.
+     * 
+     * @param decodedStreamCacheBytes maximum size of the cache in bytes;
+     *                                <code>0</code> or less disables the cache
+     * 
+     * @return this instance
+     * 
+     * @see DecodedStreamCache
+     */
+    public MemoryUsageSetting setDecodedStreamCacheBytes(long decodedStreamCacheBytes)
+    {
+        this.decodedStreamCacheBytes = Math.max(0, decodedStreamCacheBytes);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of bytes of decoded stream data to be cached;
+     * <code>0</code> if the cache is disabled.
+     */
+    public long getDecodedStreamCacheBytes()
+    {
+        return decodedStreamCacheBytes;
+    }
+
+    /**
+     * Sets the maximum estimated number of bytes of parsed content stream tokens which are kept
+     * in main memory, so that content streams which are executed several times, like forms,
+     * tiling patterns or Type 3 glyphs, are only decoded and parsed once. The least recently used
+     * streams are evicted first. The cache is disabled by default.
+     * 
+     * @param parsedStreamCacheBytes maximum estimated size of the cache in bytes;
+     *                               <code>0</code> or less disables the cache
+     * 
+     * @return this instance
+     * 
+     * @see ParsedStreamCache
+     */
+    public MemoryUsageSetting setParsedStreamCacheBytes(long parsedStreamCacheBytes)
+    {
+        this.parsedStreamCacheBytes = Math.max(0, parsedStreamCacheBytes);
+        return this;
+    }
+
+    /**
+     * Returns the maximum estimated number of bytes of parsed content streams to be cached;
+     * <code>0</code> if the cache is disabled.
+     */
+    public long getParsedStreamCacheBytes()
+    {
+        return parsedStreamCacheBytes;
+    }
+
     /**
      * Returns <code>true</code> if main-memory is to be used.
      * 
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for the parsed tokens of content streams which are executed more than once, e.g. forms,
+ * tiling patterns and Type 3 glyphs. The cache belongs to the {@link ScratchFile} of a document
+ * and holds tokens of at most the estimated number of bytes given by
+ * {@link MemoryUsageSetting#getParsedStreamCacheBytes()}. If a new entry doesn't fit, the least
+ * recently used entries are evicted.
+ *
+ * <p>The streams themselves are used as keys. The cached arrays and the tokens they contain must
+ * not be modified.</p>
+ */
+public final class ParsedStreamCache
+{
+    private final long maxBytes;
+    private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    private static final class Entry
+    {
+        private final Object[] tokens;
+        private final long bytes;
+
+        private Entry(Object[] tokens, long bytes)
+        {
+            this.tokens = tokens;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes the maximum estimated number of bytes of the tokens to be cached
+     */
+    public ParsedStreamCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached tokens of the given stream and counts a hit or a miss.
+     *
+     * @param key the stream
+     * @return the tokens, or null if the stream isn't cached
+     */
+    public synchronized Object[] get(Object key)
+    {
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            hitCount++;
+            return entry.tokens;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Returns whether tokens of the given estimated size can be cached at all. This allows to
+     * give up collecting the tokens of a stream early.
+     *
+     * @param bytes the estimated size of the tokens
+     * @return true if the tokens aren't larger than the cache
+     */
+    public boolean fits(long bytes)
+    {
+        return bytes <= maxBytes;
+    }
+
+    /**
+     * Caches the tokens of the given stream, evicting the least recently used streams if needed.
+     * Tokens which are larger than the cache are ignored.
+     *
+     * @param key the stream
+     * @param tokens the tokens
+     * @param bytes the estimated size of the tokens in memory
+     */
+    public synchronized void put(Object key, Object[] tokens, long bytes)
+    {
+        if (!fits(bytes))
+        {
+            return;
+        }
+        remove(key);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size + bytes > maxBytes && iterator.hasNext())
+        {
+            size -= iterator.next().bytes;
+            iterator.remove();
+        }
+        entries.put(key, new Entry(tokens, bytes));
+        size += bytes;
+    }
+
+    /**
+     * Removes the tokens of the given stream, e.g. because the stream has been changed.
+     *
+     * @param key the stream
+     */
+    public synchronized void remove(Object key)
+    {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+        {
+            size -= entry.bytes;
+        }
+    }
+
+    /**
+     * Removes all cached tokens. The counters are kept.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the maximum estimated number of bytes to be cached.
+     */
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the estimated number of bytes which are currently cached.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of streams which are currently cached.
+     */
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns how often the tokens of a stream were found in the cache.
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns how often a stream had to be parsed because it wasn't in the cache.
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ParsedStreamCache{" + entries.size() + " streams, " + size + " of " + maxBytes
+                + " bytes, " + hitCount + " hits, " + missCount + " misses}";
+    }
+}
@@ -32,7 +32,8 @@ public class RandomAccessInputStream extends InputStream
 
     /**
      * Creates a new RandomAccessInputStream, with a position of zero. The InputStream will maintain
-     * its own position independent of the RandomAccessRead.
+     * its own position independent of the RandomAccessRead. The RandomAccessRead is locked while
+     * it is read, so that several streams may read from it on different threads.
      *
      * @param randomAccessRead The RandomAccessRead to read from.
      */
@@ -50,8 +51,12 @@ public class RandomAccessInputStream extends InputStream
     @Override
     public int available() throws IOException
     {
-        restorePosition();
-        long available = input.length() - input.getPosition();
+        long available;
+        synchronized (input)
+        {
+            restorePosition();
+            available = input.length() - input.getPosition();
+        }
         if (available > Integer.MAX_VALUE)
         {
             return Integer.MAX_VALUE;
@@ -62,35 +67,44 @@ public class RandomAccessInputStream extends InputStream
     @Override
     public int read() throws IOException
     {
-        restorePosition();
-        if (input.isEOF())
+        synchronized (input)
         {
-            return -1;
+            restorePosition();
+            if (input.isEOF())
+            {
+                return -1;
+            }
+            int b = input.read();
+            position += 1;
+            return b;
         }
-        int b = input.read();
-        position += 1;
-        return b;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException
     {
-        restorePosition();
-        if (input.isEOF())
+        synchronized (input)
         {
-            return -1;
+            restorePosition();
+            if (input.isEOF())
+            {
+                return -1;
+            }
+            int n = input.read(b, off, len);
+            position += n;
+            return n;
         }
-        int n = input.read(b, off, len);
-        position += n;
-        return n;
     }
 
     @Override
     public long skip(long n) throws IOException
     {
-        restorePosition();
-        input.seek(position + n);
-        position += n;
-        return n;
+        synchronized (input)
+        {
+            restorePosition();
+            input.seek(position + n);
+            position += n;
+            return n;
+        }
     }
 }
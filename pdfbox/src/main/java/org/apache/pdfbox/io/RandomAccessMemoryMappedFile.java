@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link RandomAccessRead} implementation which maps the given file into memory using
+ * {@link FileChannel#map}. Reads and seeks are served directly from the operating system's
+ * page cache without any system call or intermediate copy.
+ *
+ * Files larger than {@link #DEFAULT_CHUNK_SIZE} bytes are mapped using several consecutive
+ * buffers, so the size of the file isn't limited to the 2 GB limit of a single
+ * {@link java.nio.MappedByteBuffer}.
+ */
+public class RandomAccessMemoryMappedFile implements RandomAccessRead
+{
+    /** Default size of a single mapped region, must be a power of 2. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private final int chunkSizeShift;
+    private final long chunkOffsetMask;
+    private final long fileLength;
+
+    private ByteBuffer[] chunks;
+    private ByteBuffer currentChunk;
+    private int currentChunkIndex;
+    private long position;
+
+    /**
+     * Create a memory mapped random access for the given file.
+     *
+     * @param file the file to be read.
+     * @throws IOException if something went wrong while mapping the given file.
+     */
+    public RandomAccessMemoryMappedFile(File file) throws IOException
+    {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a memory mapped random access for the given file using mapped regions of the given
+     * size.
+     *
+     * @param file the file to be read.
+     * @param chunkSize the size of a single mapped region, must be a power of 2.
+     * @throws IOException if something went wrong while mapping the given file.
+     */
+    RandomAccessMemoryMappedFile(File file, int chunkSize) throws IOException
+    {
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1)
+        {
+            throw new IllegalArgumentException("Chunk size must be a power of 2: " + chunkSize);
+        }
+        chunkSizeShift = Integer.numberOfTrailingZeros(chunkSize);
+        chunkOffsetMask = chunkSize - 1;
+
+        RandomAccessFile raFile = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raFile.getChannel();
+            fileLength = channel.size();
+            int chunkCount = (int) ((fileLength + chunkSize - 1) >> chunkSizeShift);
+            chunks = new ByteBuffer[Math.max(chunkCount, 1)];
+            for (int i = 0; i < chunkCount; i++)
+            {
+                long start = (long) i << chunkSizeShift;
+                long size = Math.min(chunkSize, fileLength - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+            if (chunkCount == 0)
+            {
+                chunks[0] = ByteBuffer.allocate(0);
+            }
+        }
+        finally
+        {
+            // the mapping stays valid after the channel has been closed
+            raFile.close();
+        }
+        currentChunkIndex = 0;
+        currentChunk = chunks[0];
+    }
+
+    /**
+     * Ensure that the current chunk contains the current position. Returns false if the
+     * position is at or behind the end of the file.
+     */
+    private boolean selectChunk() throws IOException
+    {
+        checkClosed();
+        if (position >= fileLength)
+        {
+            return false;
+        }
+        int chunkIndex = (int) (position >> chunkSizeShift);
+        if (chunkIndex != currentChunkIndex)
+        {
+            currentChunkIndex = chunkIndex;
+            currentChunk = chunks[chunkIndex];
+        }
+        currentChunk.position((int) (position & chunkOffsetMask));
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!selectChunk())
+        {
+            return -1;
+        }
+        position++;
+        return currentChunk.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException
+    {
+        if (!selectChunk())
+        {
+            return -1;
+        }
+        int bytesRead = 0;
+        while (bytesRead < length && selectChunk())
+        {
+            int count = Math.min(currentChunk.remaining(), length - bytesRead);
+            currentChunk.get(b, offset + bytesRead, count);
+            bytesRead += count;
+            position += count;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long getPosition() throws IOException
+    {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException
+    {
+        checkClosed();
+        if (newPosition < 0)
+        {
+            throw new IOException("Invalid position " + newPosition);
+        }
+        position = newPosition;
+    }
+
+    @Override
+    public long length() throws IOException
+    {
+        checkClosed();
+        return fileLength;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        // there is no public API to unmap a buffer, the mapping is released when the
+        // buffers are garbage collected
+        chunks = null;
+        currentChunk = null;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return chunks == null;
+    }
+
+    @Override
+    public int peek() throws IOException
+    {
+        if (!selectChunk())
+        {
+            return -1;
+        }
+        return currentChunk.get(currentChunk.position()) & 0xff;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException
+    {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException
+    {
+        byte[] b = new byte[length];
+        int bytesRead = read(b, 0, length);
+        if (bytesRead < length)
+        {
+            throw new IOException("Premature end of file");
+        }
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException
+    {
+        checkClosed();
+        return position >= fileLength;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        checkClosed();
+        return (int) Math.max(0, Math.min(fileLength - position, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Ensure that the RandomAccessMemoryMappedFile is not closed.
+     *
+     * @throws IOException If RandomAccessMemoryMappedFile already closed
+     */
+    private void checkClosed() throws IOException
+    {
+        if (chunks == null)
+        {
+            throw new IOException("RandomAccessMemoryMappedFile already closed");
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.BitSet;
 
 import org.apache.commons.logging.Log;
@@ -35,6 +36,10 @@ import org.apache.commons.logging.LogFactory;
  * additional ones in temporary file (defined by maximum main memory to
  * be used).</p>
  * 
+ * <p>In-memory pages can also be held outside of the Java heap by a process-wide pool of direct
+ * buffers which is shared by all documents, see {@link MemoryUsageSetting#setUseDirectBufferPool(boolean)}.
+ * The maximum main memory is then the quota of pool pages for this instance.</p>
+ * 
  * <p>Pages can be marked as 'free' in order to re-use them. For in-memory pages
  * this will release the used memory while for pages in temporary file this
  * simply marks the area as free to re-use.</p>
@@ -57,7 +62,10 @@ public class ScratchFile implements Closeable
     /** in case of unrestricted main memory usage this is the initial number of pages
      *  {@link #inMemoryPages} is setup for */
     private static final int INIT_UNRESTRICTED_MAINMEM_PAGECOUNT = 100000;
-    private static final int PAGE_SIZE = 4096;
+    /** initial number of pages in case of unrestricted main memory usage with pooled pages;
+     *  this is smaller as the pool is meant for many small documents */
+    private static final int INIT_UNRESTRICTED_POOLED_PAGECOUNT = 1024;
+    static final int PAGE_SIZE = 4096;
     
     private final Object ioLock = new Object();
     private final File scratchFileDirectory;
@@ -71,11 +79,24 @@ public class ScratchFile implements Closeable
      *  main memory, otherwise it is enlarged as needed and first initialized to a size of
      *  {@link #INIT_UNRESTRICTED_MAINMEM_PAGECOUNT} */
     private volatile byte[][] inMemoryPages;
+    /** process-wide pool holding the in-memory pages outside of the heap, null if the in-memory
+     *  pages are byte arrays in {@link #inMemoryPages} */
+    private final DirectPagePool pagePool;
+    /** ids of the pool pages holding the in-memory pages, -1 if a page isn't held by the pool; in
+     *  case the pool is exhausted the page is kept in {@link #inMemoryPages} instead; only to be
+     *  accessed under synchronization of {@link #ioLock} */
+    private int[] pooledPages;
     private final int inMemoryMaxPageCount;
     private final int maxPageCount;
     private final boolean useScratchFile;
     private final boolean maxMainMemoryIsRestricted;
 
+    /** cache for decoded stream data, null if disabled */
+    private final DecodedStreamCache decodedStreamCache;
+
+    /** cache for parsed content streams, null if disabled */
+    private final ParsedStreamCache parsedStreamCache;
+
     private volatile boolean isClosed = false;
     
     /**
@@ -125,9 +146,24 @@ public class ScratchFile implements Closeable
                                        (int) Math.min(Integer.MAX_VALUE, memUsageSetting.getMaxMainMemoryBytes() / PAGE_SIZE) :
                                        Integer.MAX_VALUE) :
                                    0;
-        inMemoryPages = new byte[maxMainMemoryIsRestricted ? inMemoryMaxPageCount : INIT_UNRESTRICTED_MAINMEM_PAGECOUNT][];
+        pagePool = memUsageSetting.useMainMemory() && memUsageSetting.useDirectBufferPool() ?
+                       DirectPagePool.getSharedInstance() : null;
+        int initialPageCount = maxMainMemoryIsRestricted ? inMemoryMaxPageCount :
+                                   (pagePool != null ? INIT_UNRESTRICTED_POOLED_PAGECOUNT :
+                                                       INIT_UNRESTRICTED_MAINMEM_PAGECOUNT);
+        inMemoryPages = new byte[initialPageCount][];
+        if (pagePool != null)
+        {
+            pooledPages = new int[initialPageCount];
+            Arrays.fill(pooledPages, -1);
+        }
         
         freePages.set(0, inMemoryPages.length);
+
+        decodedStreamCache = memUsageSetting.getDecodedStreamCacheBytes() > 0 ?
+                new DecodedStreamCache(memUsageSetting.getDecodedStreamCacheBytes()) : null;
+        parsedStreamCache = memUsageSetting.getParsedStreamCacheBytes() > 0 ?
+                new ParsedStreamCache(memUsageSetting.getParsedStreamCacheBytes()) : null;
     }
 
     /**
@@ -150,6 +186,30 @@ public class ScratchFile implements Closeable
         }
     }
     
+    /**
+     * Returns the cache for decoded stream data of the document using this scratch file.
+     * 
+     * @return the cache, or <code>null</code> if it is disabled
+     * 
+     * @see MemoryUsageSetting#setDecodedStreamCacheBytes(long)
+     */
+    public DecodedStreamCache getDecodedStreamCache()
+    {
+        return decodedStreamCache;
+    }
+
+    /**
+     * Returns the cache for parsed content streams of the document using this scratch file.
+     * 
+     * @return the cache, or <code>null</code> if it is disabled
+     * 
+     * @see MemoryUsageSetting#setParsedStreamCacheBytes(long)
+     */
+    public ParsedStreamCache getParsedStreamCache()
+    {
+        return parsedStreamCache;
+    }
+
     /**
      * Returns a new free page, either from free page pool
      * or by enlarging scratch file (may be created).
@@ -257,6 +317,11 @@ public class ScratchFile implements Closeable
                     byte[][] newInMemoryPages = new byte[newSize][];
                     System.arraycopy(inMemoryPages, 0, newInMemoryPages, 0, oldSize);
                     inMemoryPages = newInMemoryPages;
+                    if (pooledPages != null)
+                    {
+                        pooledPages = Arrays.copyOf(pooledPages, newSize);
+                        Arrays.fill(pooledPages, oldSize, newSize, -1);
+                    }
                     
                     freePages.set(oldSize, newSize);
                 }
@@ -284,6 +349,23 @@ public class ScratchFile implements Closeable
      * @throws IOException
      */
     byte[] readPage(int pageIdx) throws IOException
+    {
+        return readPage(pageIdx, null);
+    }
+
+    /**
+     * Reads the page with specified index. If pages are copied (see {@link #isCopyingPages()}),
+     * the data is copied into the given array instead of creating a new array.
+     * 
+     * @param pageIdx index of page to read
+     * @param reusablePage array of size {@link #PAGE_SIZE} which may be filled with the page
+     *                     data, or <code>null</code>
+     * 
+     * @return byte array of size {@link #PAGE_SIZE} filled with page data
+     * 
+     * @throws IOException
+     */
+    byte[] readPage(int pageIdx, byte[] reusablePage) throws IOException
     {
         if ((pageIdx < 0) || (pageIdx >= pageCount))
         {
@@ -292,6 +374,27 @@ public class ScratchFile implements Closeable
         }
         
         // check if we have the page in memory
+        if (pageIdx < inMemoryMaxPageCount && pagePool != null)
+        {
+            synchronized (ioLock)
+            {
+                byte[] page = reusablePage != null ? reusablePage : new byte[PAGE_SIZE];
+                int poolPageId = pooledPages[pageIdx];
+                if (poolPageId >= 0)
+                {
+                    pagePool.read(poolPageId, page);
+                    return page;
+                }
+                byte[] heapPage = inMemoryPages[pageIdx];
+                if (heapPage == null)
+                {
+                    checkClosed();
+                    throw new IOException("Requested page with index " + pageIdx + " was not written before.");
+                }
+                System.arraycopy(heapPage, 0, page, 0, PAGE_SIZE);
+                return page;
+            }
+        }
         if (pageIdx < inMemoryMaxPageCount)
         {
             byte[] page = inMemoryPages[pageIdx];
@@ -314,7 +417,7 @@ public class ScratchFile implements Closeable
                 throw new IOException("Missing scratch file to read page with index " + pageIdx + " from.");
             }
             
-            byte[] page = new byte[PAGE_SIZE];
+            byte[] page = pagePool != null && reusablePage != null ? reusablePage : new byte[PAGE_SIZE];
             raf.seek(((long)pageIdx - inMemoryMaxPageCount) * PAGE_SIZE);
             raf.readFully(page);
             
@@ -348,7 +451,35 @@ public class ScratchFile implements Closeable
             throw new IOException("Wrong page size to write: " + page.length + ". Expected: " + PAGE_SIZE );
         }
         
-        if (pageIdx < inMemoryMaxPageCount)
+        if (pageIdx < inMemoryMaxPageCount && pagePool != null)
+        {
+            synchronized (ioLock)
+            {
+                checkClosed();
+                int poolPageId = pooledPages[pageIdx];
+                if (poolPageId < 0 && inMemoryPages[pageIdx] == null)
+                {
+                    poolPageId = pagePool.allocate();
+                    pooledPages[pageIdx] = poolPageId;
+                }
+                if (poolPageId >= 0)
+                {
+                    pagePool.write(poolPageId, page);
+                }
+                else
+                {
+                    // the pool is exhausted, keep a copy in the heap
+                    byte[] heapPage = inMemoryPages[pageIdx];
+                    if (heapPage == null)
+                    {
+                        heapPage = new byte[PAGE_SIZE];
+                        inMemoryPages[pageIdx] = heapPage;
+                    }
+                    System.arraycopy(page, 0, heapPage, 0, PAGE_SIZE);
+                }
+            }
+        }
+        else if (pageIdx < inMemoryMaxPageCount)
         {
             if (maxMainMemoryIsRestricted)
             {
@@ -377,6 +508,16 @@ public class ScratchFile implements Closeable
         }
     }
     
+    /**
+     * Returns <code>true</code> if pages are copied when they are written and read, i.e. if the
+     * arrays given to {@link #writePage(int, byte[])} may be re-used and arrays may be filled
+     * by {@link #readPage(int, byte[])}.
+     */
+    boolean isCopyingPages()
+    {
+        return pagePool != null;
+    }
+
     /**
      * Checks if this page handler has already been closed. If so,
      * an {@link IOException} is thrown.
@@ -427,6 +568,22 @@ public class ScratchFile implements Closeable
         return buf;
     }
 
+    /**
+     * Returns an in-memory page to the pool, or drops its heap copy.
+     * 
+     * <p>Only to be called under synchronization on {@link #ioLock}.</p>
+     */
+    private void releasePooledPage(int pageIdx)
+    {
+        int poolPageId = pooledPages[pageIdx];
+        if (poolPageId >= 0)
+        {
+            pagePool.release(poolPageId);
+            pooledPages[pageIdx] = -1;
+        }
+        inMemoryPages[pageIdx] = null;
+    }
+
     /**
      * Allows a buffer which is cleared/closed to release its pages to be re-used.
      * 
@@ -443,7 +600,14 @@ public class ScratchFile implements Closeable
                 if ((pageIdx>=0) && (pageIdx<pageCount) && (!freePages.get(pageIdx)))
                 {
                     freePages.set(pageIdx);
-                    if (pageIdx < inMemoryMaxPageCount)
+                    if (pageIdx < inMemoryMaxPageCount && pagePool != null)
+                    {
+                        synchronized (ioLock)
+                        {
+                            releasePooledPage(pageIdx);
+                        }
+                    }
+                    else if (pageIdx < inMemoryMaxPageCount)
                     {
                         inMemoryPages[pageIdx] = null;  // remark: not in ioLock synchronization since behavior won't
                                                         // change even in case of parallel called 'enlarge' method
@@ -475,6 +639,24 @@ public class ScratchFile implements Closeable
         
             isClosed = true;
 
+            if (decodedStreamCache != null)
+            {
+                decodedStreamCache.clear();
+            }
+            if (parsedStreamCache != null)
+            {
+                parsedStreamCache.clear();
+            }
+
+            if (pagePool != null)
+            {
+                // return the pages to the pool for other documents
+                for (int pageIdx = 0; pageIdx < pooledPages.length; pageIdx++)
+                {
+                    releasePooledPage(pageIdx);
+                }
+            }
+
             if (raf != null)
             {
                 try
@@ -18,6 +18,7 @@ package org.apache.pdfbox.io;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -129,7 +130,15 @@ class ScratchFileBuffer implements RandomAccess
         currentPagePositionInPageIndexes = pageCount;
         currentPageOffset = ((long)pageCount) * pageSize; 
         pageCount++;
-        currentPage = new byte[pageSize];
+        if (currentPage != null && pageHandler.isCopyingPages())
+        {
+            // the current page has been copied by the page handler, so the array can be re-used
+            Arrays.fill(currentPage, (byte) 0);
+        }
+        else
+        {
+            currentPage = new byte[pageSize];
+        }
         positionInPage = 0;
     }
     
@@ -174,7 +183,7 @@ class ScratchFileBuffer implements RandomAccess
             if (currentPagePositionInPageIndexes+1 < pageCount)
             {
                 // we already have more pages assigned (there was a backward seek before)
-                currentPage = pageHandler.readPage(pageIndexes[++currentPagePositionInPageIndexes]);
+                currentPage = pageHandler.readPage(pageIndexes[++currentPagePositionInPageIndexes], currentPage);
                 currentPageOffset = ((long)currentPagePositionInPageIndexes) * pageSize;
                 positionInPage = 0;
             }
@@ -267,7 +276,7 @@ class ScratchFileBuffer implements RandomAccess
         // change to first page if we are not already there
         if (currentPagePositionInPageIndexes > 0)
         {
-            currentPage = pageHandler.readPage(pageIndexes[0]);
+            currentPage = pageHandler.readPage(pageIndexes[0], currentPage);
             currentPagePositionInPageIndexes = 0;
             currentPageOffset = 0;
         }
@@ -325,7 +334,7 @@ class ScratchFileBuffer implements RandomAccess
             
             int newPagePosition = (int) (seekToPosition / pageSize);
             
-            currentPage = pageHandler.readPage(pageIndexes[newPagePosition]);
+            currentPage = pageHandler.readPage(pageIndexes[newPagePosition], currentPage);
             currentPagePositionInPageIndexes = newPagePosition;
             currentPageOffset = ((long)currentPagePositionInPageIndexes) * pageSize;
             positionInPage = (int) (seekToPosition - currentPageOffset);
@@ -26,6 +26,7 @@ import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSBoolean;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSFloat;
 import org.apache.pdfbox.cos.COSInteger;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSNull;
@@ -33,7 +34,6 @@ import org.apache.pdfbox.cos.COSNumber;
 import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSObjectKey;
 import org.apache.pdfbox.cos.COSString;
-import org.apache.pdfbox.util.Charsets;
 
 
 import static org.apache.pdfbox.util.Charsets.ISO_8859_1;
@@ -85,14 +85,6 @@ public abstract class BaseParser
      * This is a string constant that will be used for comparisons.
      */
     protected static final String STREAM_STRING = "stream";
-    /**
-     * This is a string constant that will be used for comparisons.
-     */
-    private static final String TRUE = "true";
-    /**
-     * This is a string constant that will be used for comparisons.
-     */
-    private static final String FALSE = "false";
     /**
      * This is a string constant that will be used for comparisons.
      */
@@ -109,12 +101,37 @@ public abstract class BaseParser
     private static final byte ASCII_ZERO = 48;
     private static final byte ASCII_NINE = 57;
     private static final byte ASCII_SPACE = 32;
+
+    /**
+     * Maximum number of digits which can be accumulated in a long without an overflow.
+     */
+    private static final int MAX_LONG_DIGITS = COSFloat.MAX_DECIMAL_DIGITS;
+
+    /**
+     * Marker for a number token which isn't a plain decimal integer.
+     */
+    private static final long INVALID_NUMBER = Long.MIN_VALUE;
     
     /**
      * This is the stream that will be read from.
      */
     protected final SequentialSource seqSource;
 
+    /**
+     * Reused buffer holding the characters of the current number token.
+     */
+    private final StringBuilder numberBuffer = new StringBuilder(32);
+
+    /**
+     * Reused buffer holding the bytes of the current keyword.
+     */
+    private final byte[] keywordBuffer = new byte[5];
+
+    /**
+     * Reused buffer holding the bytes of the current name, it grows as needed.
+     */
+    private byte[] nameBuffer = new byte[64];
+
     /**
      * This is the document that will be parsed.
      */
@@ -716,7 +733,7 @@ public abstract class BaseParser
     protected COSName parseCOSName() throws IOException
     {
         readExpectedChar('/');
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int length = 0;
         int c = seqSource.read();
         while (c != -1)
         {
@@ -734,22 +751,15 @@ public abstract class BaseParser
                 // valid hex digits.
                 if (isHexDigit(ch1) && isHexDigit(ch2))
                 {
-                    String hex = "" + ch1 + ch2;
-                    try
-                    {
-                        buffer.write(Integer.parseInt(hex, 16));
-                    }
-                    catch (NumberFormatException e)
-                    {
-                        throw new IOException("Error: expected hex digit, actual='" + hex + "'", e);
-                    }
+                    length = appendNameByte(length,
+                            Character.digit(ch1, 16) * 16 + Character.digit(ch2, 16));
                     c = seqSource.read();
                 }
                 else
                 {
                     seqSource.unread(ch2);
                     c = ch1;
-                    buffer.write(ch);
+                    length = appendNameByte(length, ch);
                 }
             }
             else if (isEndOfName(ch))
@@ -758,7 +768,7 @@ public abstract class BaseParser
             }
             else
             {
-                buffer.write(ch);
+                length = appendNameByte(length, ch);
                 c = seqSource.read();
             }
         }
@@ -766,8 +776,18 @@ public abstract class BaseParser
         {
             seqSource.unread(c);
         }
-        String string = new String(buffer.toByteArray(), Charsets.UTF_8);
-        return COSName.getPDFName(string);
+        return COSName.getPDFName(nameBuffer, 0, length);
+    }
+
+    // adds a byte to the name buffer and returns the new length
+    private int appendNameByte(int length, int b)
+    {
+        if (length == nameBuffer.length)
+        {
+            nameBuffer = Arrays.copyOf(nameBuffer, length * 2);
+        }
+        nameBuffer[length] = (byte) b;
+        return length + 1;
     }
 
     /**
@@ -783,10 +803,10 @@ public abstract class BaseParser
         char c = (char) seqSource.peek();
         if( c == 't' )
         {
-            String trueString = new String( seqSource.readFully( 4 ), ISO_8859_1 );
-            if( !trueString.equals( TRUE ) )
+            if( !readKeyword( COSBoolean.TRUE_BYTES ) )
             {
-                throw new IOException( "Error parsing boolean: expected='true' actual='" + trueString 
+                throw new IOException( "Error parsing boolean: expected='true' actual='" 
+                        + getKeyword( COSBoolean.TRUE_BYTES.length ) 
                         + "' at offset " + seqSource.getPosition());
             }
             else
@@ -796,10 +816,10 @@ public abstract class BaseParser
         }
         else if( c == 'f' )
         {
-            String falseString = new String( seqSource.readFully( 5 ), ISO_8859_1 );
-            if( !falseString.equals( FALSE ) )
+            if( !readKeyword( COSBoolean.FALSE_BYTES ) )
             {
-                throw new IOException( "Error parsing boolean: expected='true' actual='" + falseString 
+                throw new IOException( "Error parsing boolean: expected='true' actual='" 
+                        + getKeyword( COSBoolean.FALSE_BYTES.length ) 
                         + "' at offset " + seqSource.getPosition());
             }
             else
@@ -815,6 +835,37 @@ public abstract class BaseParser
         return retval;
     }
 
+    /**
+     * Reads as many bytes as the given keyword has into the keyword buffer and compares them with
+     * the keyword.
+     *
+     * @param keyword the expected keyword, at most 5 bytes long
+     * @return true if the read bytes match the keyword
+     * @throws IOException If an IO error occurs.
+     */
+    private boolean readKeyword(byte[] keyword) throws IOException
+    {
+        boolean matches = true;
+        for (int i = 0; i < keyword.length; i++)
+        {
+            int b = seqSource.read();
+            keywordBuffer[i] = (byte) b;
+            if (b != keyword[i])
+            {
+                matches = false;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the bytes read by {@link #readKeyword(byte[])} as string, used for error messages.
+     */
+    private String getKeyword(int length)
+    {
+        return new String(keywordBuffer, 0, length, ISO_8859_1);
+    }
+
     /**
      * This will parse a directory object from the stream.
      *
@@ -872,28 +923,28 @@ public abstract class BaseParser
         }
         case 't':
         {
-            String trueString = new String( seqSource.readFully(4), ISO_8859_1 );
-            if( trueString.equals( TRUE ) )
+            if( readKeyword( COSBoolean.TRUE_BYTES ) )
             {
                 retval = COSBoolean.TRUE;
             }
             else
             {
-                throw new IOException( "expected true actual='" + trueString + "' " + seqSource + 
+                throw new IOException( "expected true actual='" 
+                        + getKeyword( COSBoolean.TRUE_BYTES.length ) + "' " + seqSource + 
                         "' at offset " + seqSource.getPosition());
             }
             break;
         }
         case 'f':
         {
-            String falseString = new String( seqSource.readFully(5), ISO_8859_1 );
-            if( falseString.equals( FALSE ) )
+            if( readKeyword( COSBoolean.FALSE_BYTES ) )
             {
                 retval = COSBoolean.FALSE;
             }
             else
             {
-                throw new IOException( "expected false actual='" + falseString + "' " + seqSource + 
+                throw new IOException( "expected false actual='" 
+                        + getKeyword( COSBoolean.FALSE_BYTES.length ) + "' " + seqSource + 
                         "' at offset " + seqSource.getPosition());
             }
             break;
@@ -908,25 +959,7 @@ public abstract class BaseParser
         {
             if( Character.isDigit(c) || c == '-' || c == '+' || c == '.')
             {
-                StringBuilder buf = new StringBuilder();
-                int ic = seqSource.read();
-                c = (char)ic;
-                while( Character.isDigit( c )||
-                        c == '-' ||
-                        c == '+' ||
-                        c == '.' ||
-                        c == 'E' ||
-                        c == 'e' )
-                {
-                    buf.append( c );
-                    ic = seqSource.read();
-                    c = (char)ic;
-                }
-                if( ic != -1 )
-                {
-                    seqSource.unread(ic);
-                }
-                retval = COSNumber.get( buf.toString() );
+                retval = parseCOSNumber();
             }
             else
             {
@@ -954,6 +987,63 @@ public abstract class BaseParser
         return retval;
     }
 
+    /**
+     * This will parse a number consisting of digits, signs, decimal points and exponent
+     * characters. Plain integers and decimals are accumulated directly, only other numbers are
+     * converted using {@link COSNumber#get(String)}.
+     *
+     * @return The parsed number.
+     *
+     * @throws IOException If there is an error during parsing.
+     */
+    private COSNumber parseCOSNumber() throws IOException
+    {
+        StringBuilder buf = numberBuffer;
+        buf.setLength(0);
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dotRead = false;
+        boolean isDecimal = true;
+        int ic = seqSource.read();
+        while( isDigit( ic ) || ic == '-' || ic == '+' || ic == '.' || ic == 'E' || ic == 'e' )
+        {
+            if (isDecimal)
+            {
+                if (isDigit(ic))
+                {
+                    value = value * 10 + ic - '0';
+                    digits++;
+                    if (dotRead)
+                    {
+                        fractionDigits++;
+                    }
+                }
+                else if (ic == '.' && !dotRead)
+                {
+                    dotRead = true;
+                }
+                // a sign is only allowed at the start
+                else if (buf.length() > 0 || ic == '.' || ic == 'E' || ic == 'e')
+                {
+                    isDecimal = false;
+                }
+            }
+            buf.append( (char)ic );
+            ic = seqSource.read();
+        }
+        if( ic != -1 )
+        {
+            seqSource.unread(ic);
+        }
+        if (isDecimal && digits > 0 && digits <= COSFloat.MAX_DECIMAL_DIGITS)
+        {
+            long signedValue = buf.charAt(0) == '-' ? -value : value;
+            return dotRead ? new COSFloat(signedValue, fractionDigits) : COSInteger.get(signedValue);
+        }
+        return COSNumber.get( buf.toString() );
+    }
+
     /**
      * This will read the next string from the stream.
      *
@@ -1301,7 +1391,12 @@ public abstract class BaseParser
         skipSpaces();
         int retval = 0;
 
-        StringBuilder intBuffer = readStringNumber();
+        long value = readIntegerToken();
+        if (value != INVALID_NUMBER && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        {
+            return (int) value;
+        }
+        StringBuilder intBuffer = numberBuffer;
 
         try
         {
@@ -1328,7 +1423,12 @@ public abstract class BaseParser
         skipSpaces();
         long retval = 0;
 
-        StringBuilder longBuffer = readStringNumber();
+        long value = readIntegerToken();
+        if (value != INVALID_NUMBER)
+        {
+            return value;
+        }
+        StringBuilder longBuffer = numberBuffer;
 
         try
         {
@@ -1343,6 +1443,55 @@ public abstract class BaseParser
         return retval;
     }
 
+    /**
+     * This method is used to read a token by the {@linkplain #readInt()} method
+     * and the {@linkplain #readLong()} method. The token is read into the number buffer and its
+     * value is accumulated on the fly, so that no string has to be created for valid numbers.
+     *
+     * @return the value of the token or {@link #INVALID_NUMBER} if the token isn't a plain
+     * decimal integer with an optional sign and at most {@link #MAX_LONG_DIGITS} digits.
+     * @throws IOException throws by the {@link #seqSource} methods.
+     */
+    private long readIntegerToken() throws IOException
+    {
+        StringBuilder buffer = numberBuffer;
+        buffer.setLength(0);
+        long value = 0;
+        boolean isInteger = true;
+        int lastByte;
+        while( (lastByte = seqSource.read() ) != ASCII_SPACE &&
+                lastByte != ASCII_LF &&
+                lastByte != ASCII_CR &&
+                lastByte != 60 && //see sourceforge bug 1714707
+                lastByte != '[' && // PDFBOX-1845
+                lastByte != '(' && // PDFBOX-2579
+                lastByte != 0 && //See sourceforge bug 853328
+                lastByte != -1 )
+        {
+            if (isDigit(lastByte))
+            {
+                value = value * 10 + lastByte - '0';
+            }
+            else if (buffer.length() > 0 || (lastByte != '-' && lastByte != '+'))
+            {
+                isInteger = false;
+            }
+            buffer.append( (char)lastByte );
+        }
+        if( lastByte != -1 )
+        {
+            seqSource.unread(lastByte);
+        }
+        int length = buffer.length();
+        int digits = length > 0 && (buffer.charAt(0) == '-' || buffer.charAt(0) == '+') 
+                ? length - 1 : length;
+        if (!isInteger || digits == 0 || digits > MAX_LONG_DIGITS)
+        {
+            return INVALID_NUMBER;
+        }
+        return buffer.charAt(0) == '-' ? -value : value;
+    }
+
     /**
      * This method is used to read a token by the {@linkplain #readInt()} method
      * and the {@linkplain #readLong()} method.
@@ -0,0 +1,434 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pdfbox.cos.XrefTable;
+import org.apache.pdfbox.io.RandomAccessRead;
+
+/**
+ * Searches a whole PDF file for object headers ("n g obj"), xref tables ("xref") and xref streams
+ * ("/XRef") in a single pass. This is used to repair files with a broken cross reference table.
+ *
+ * The file is split into chunks which overlap with the previous chunk, so that the backwards
+ * lookups can be done within a chunk. The chunks are read sequentially from the source and scanned
+ * in parallel for large files. The results of the chunks are merged in file order, so the result
+ * is the same as for a sequential scan.
+ */
+final class BruteForceSearch
+{
+    private static final Log LOG = LogFactory.getLog(BruteForceSearch.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /** number of bytes before a chunk which are available for backwards lookups */
+    private static final int LOOK_BEHIND = 1024;
+
+    /** number of bytes after a chunk which are available to match a marker */
+    private static final int LOOK_AHEAD = 8;
+
+    private static final byte[] OBJ = new byte[] { ' ', 'o', 'b', 'j' };
+    private static final byte[] XREF_TABLE = new byte[] { 'x', 'r', 'e', 'f' };
+    private static final byte[] XREF_STREAM = new byte[] { '/', 'X', 'R', 'e', 'f' };
+
+    private final RandomAccessRead source;
+    private final long minimumOffset;
+    private final int chunkSize;
+    private final int maxThreads;
+
+    private final XrefTable objectOffsets = new XrefTable();
+    private final List<Long> xrefTableOffsets = new ArrayList<Long>();
+    private final List<Long> xrefStreamOffsets = new ArrayList<Long>();
+
+    /**
+     * Constructor.
+     *
+     * @param source the source to be searched
+     * @param minimumOffset offset where the search starts
+     */
+    BruteForceSearch(RandomAccessRead source, long minimumOffset)
+    {
+        this(source, minimumOffset, DEFAULT_CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source the source to be searched
+     * @param minimumOffset offset where the search starts
+     * @param chunkSize the number of bytes scanned by one task
+     * @param maxThreads the maximum number of threads scanning in parallel
+     */
+    BruteForceSearch(RandomAccessRead source, long minimumOffset, int chunkSize, int maxThreads)
+    {
+        this.source = source;
+        this.minimumOffset = minimumOffset;
+        this.chunkSize = chunkSize;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Scans the whole source. The position of the source is restored afterwards.
+     *
+     * @throws IOException if something went wrong
+     */
+    void search() throws IOException
+    {
+        long originOffset = source.getPosition();
+        long length = source.length();
+        int chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+        int threadCount = Math.min(maxThreads, chunkCount);
+        if (threadCount <= 1)
+        {
+            for (int i = 0; i < chunkCount; i++)
+            {
+                merge(readChunk((long) i * chunkSize, length).call());
+            }
+        }
+        else
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "PDFBox brute force search");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try
+            {
+                // read a batch of chunks, scan them in parallel and merge the results in order
+                for (int first = 0; first < chunkCount; first += threadCount)
+                {
+                    List<Future<ChunkResult>> results = new ArrayList<Future<ChunkResult>>();
+                    for (int i = first; i < Math.min(first + threadCount, chunkCount); i++)
+                    {
+                        results.add(executor.submit(readChunk((long) i * chunkSize, length)));
+                    }
+                    for (Future<ChunkResult> result : results)
+                    {
+                        merge(result.get());
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Brute force search was interrupted", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IOException("Brute force search failed", e.getCause());
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+        source.seek(originOffset);
+        LOG.debug("Brute force search found " + objectOffsets.size() + " objects, "
+                + xrefTableOffsets.size() + " xref tables and " + xrefStreamOffsets.size()
+                + " xref streams");
+    }
+
+    /**
+     * Returns the offsets of all found objects.
+     */
+    XrefTable getObjectOffsets()
+    {
+        return objectOffsets;
+    }
+
+    /**
+     * Returns the offsets of all found xref tables in file order.
+     */
+    List<Long> getXrefTableOffsets()
+    {
+        return xrefTableOffsets;
+    }
+
+    /**
+     * Returns the offsets of all found xref streams in file order.
+     */
+    List<Long> getXrefStreamOffsets()
+    {
+        return xrefStreamOffsets;
+    }
+
+    private Chunk readChunk(long chunkStart, long length) throws IOException
+    {
+        long bufferStart = Math.max(0, chunkStart - LOOK_BEHIND);
+        long bufferEnd = Math.min(length, chunkStart + chunkSize + LOOK_AHEAD);
+        byte[] buffer = new byte[(int) (bufferEnd - bufferStart)];
+        source.seek(bufferStart);
+        int bytesRead = 0;
+        while (bytesRead < buffer.length)
+        {
+            int count = source.read(buffer, bytesRead, buffer.length - bytesRead);
+            if (count <= 0)
+            {
+                break;
+            }
+            bytesRead += count;
+        }
+        return new Chunk(buffer, bufferStart, bytesRead, chunkStart,
+                Math.min(length, chunkStart + chunkSize));
+    }
+
+    private static boolean isWhitespace(int c)
+    {
+        return c == 0 || c == 9 || c == 12 || c == 10 || c == 13 || c == ' ';
+    }
+
+    private void merge(ChunkResult result)
+    {
+        // later objects overwrite earlier ones, as they did in the sequential search
+        for (int i = 0; i < result.objectCount; i++)
+        {
+            objectOffsets.put(result.objectNumbers[i], result.objectGenerations[i],
+                    result.objectOffsets[i]);
+        }
+        xrefTableOffsets.addAll(result.xrefTableOffsets);
+        xrefStreamOffsets.addAll(result.xrefStreamOffsets);
+    }
+
+    /**
+     * The markers found within one chunk.
+     */
+    private static final class ChunkResult
+    {
+        private long[] objectNumbers = new long[64];
+        private int[] objectGenerations = new int[64];
+        private long[] objectOffsets = new long[64];
+        private int objectCount;
+        private final List<Long> xrefTableOffsets = new ArrayList<Long>();
+        private final List<Long> xrefStreamOffsets = new ArrayList<Long>();
+
+        private void addObject(long number, int generation, long offset)
+        {
+            if (objectCount == objectNumbers.length)
+            {
+                int newLength = objectCount * 2;
+                long[] newNumbers = new long[newLength];
+                int[] newGenerations = new int[newLength];
+                long[] newOffsets = new long[newLength];
+                System.arraycopy(objectNumbers, 0, newNumbers, 0, objectCount);
+                System.arraycopy(objectGenerations, 0, newGenerations, 0, objectCount);
+                System.arraycopy(objectOffsets, 0, newOffsets, 0, objectCount);
+                objectNumbers = newNumbers;
+                objectGenerations = newGenerations;
+                objectOffsets = newOffsets;
+            }
+            objectNumbers[objectCount] = number;
+            objectGenerations[objectCount] = generation;
+            objectOffsets[objectCount] = offset;
+            objectCount++;
+        }
+    }
+
+    /**
+     * A chunk of the file including the bytes needed for lookups around it.
+     */
+    private final class Chunk implements Callable<ChunkResult>
+    {
+        private final byte[] buffer;
+        private final long bufferStart;
+        private final int bufferLength;
+        private final long chunkStart;
+        private final long chunkEnd;
+
+        private Chunk(byte[] buffer, long bufferStart, int bufferLength, long chunkStart,
+                long chunkEnd)
+        {
+            this.buffer = buffer;
+            this.bufferStart = bufferStart;
+            this.bufferLength = bufferLength;
+            this.chunkStart = chunkStart;
+            this.chunkEnd = chunkEnd;
+        }
+
+        /**
+         * Returns the byte at the given file offset or -1 if it isn't available.
+         */
+        private int byteAt(long offset)
+        {
+            long index = offset - bufferStart;
+            if (index < 0 || index >= bufferLength)
+            {
+                return -1;
+            }
+            return buffer[(int) index] & 0xff;
+        }
+
+        private boolean matches(long offset, byte[] marker)
+        {
+            for (int i = 0; i < marker.length; i++)
+            {
+                if (byteAt(offset + i) != marker[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ChunkResult call()
+        {
+            ChunkResult result = new ChunkResult();
+            for (long offset = Math.max(minimumOffset, chunkStart); offset < chunkEnd; offset++)
+            {
+                int c = byteAt(offset);
+                if (c == ' ' && matches(offset, OBJ))
+                {
+                    searchObject(offset, result);
+                }
+                else if (c == 'x' && matches(offset, XREF_TABLE) && isWhitespace(byteAt(offset - 1)))
+                {
+                    // the whitespace check ensures that we don't read "startxref" instead of "xref"
+                    result.xrefTableOffsets.add(offset);
+                }
+                else if (c == '/' && matches(offset, XREF_STREAM))
+                {
+                    searchXRefStream(offset, result);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Reads "number generation" backwards from the " obj" marker at the given offset.
+         */
+        private void searchObject(long objOffset, ChunkResult result)
+        {
+            long offset = objOffset - 1;
+            int genID = byteAt(offset);
+            // the generation number is a single digit followed by a space
+            if (!BaseParser.isDigit(genID))
+            {
+                return;
+            }
+            genID -= '0';
+            offset--;
+            if (byteAt(offset) != ' ')
+            {
+                return;
+            }
+            while (offset > minimumOffset && byteAt(offset) == ' ')
+            {
+                offset--;
+            }
+            int length = 0;
+            while (offset > minimumOffset && BaseParser.isDigit(byteAt(offset)))
+            {
+                offset--;
+                length++;
+            }
+            if (length > 0)
+            {
+                long objectID = parseNumber(offset + 1, length);
+                if (objectID >= 0)
+                {
+                    result.addObject(objectID, genID, offset + 1);
+                }
+            }
+        }
+
+        /**
+         * Parses the digits at the given offset, returns -1 if the value is too large.
+         */
+        private long parseNumber(long offset, int length)
+        {
+            long value = 0;
+            for (int i = 0; i < length; i++)
+            {
+                int digit = byteAt(offset + i) - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10)
+                {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * Searches backwards from the "/XRef" marker at the given offset for the start of the
+         * object containing it.
+         */
+        private void searchXRefStream(long xrefOffset, ChunkResult result)
+        {
+            long newOffset = -1;
+            boolean objFound = false;
+            for (int i = 1; i < 30 && !objFound; i++)
+            {
+                long currentOffset = xrefOffset - (i * 10);
+                if (currentOffset <= 0)
+                {
+                    continue;
+                }
+                for (int j = 0; j < 10; j++, currentOffset++)
+                {
+                    if (matches(currentOffset, OBJ))
+                    {
+                        long offset = currentOffset - 1;
+                        if (BaseParser.isDigit(byteAt(offset)))
+                        {
+                            offset--;
+                            if (byteAt(offset) == ' ')
+                            {
+                                int length = 0;
+                                offset--;
+                                while (offset > minimumOffset && BaseParser.isDigit(byteAt(offset)))
+                                {
+                                    offset--;
+                                    length++;
+                                }
+                                if (length > 0)
+                                {
+                                    newOffset = offset + 1;
+                                }
+                            }
+                        }
+                        LOG.debug("Fixed reference for xref stream " + xrefOffset + " -> "
+                                + newOffset);
+                        objFound = true;
+                        break;
+                    }
+                }
+            }
+            if (newOffset > -1)
+            {
+                result.xrefStreamOffsets.add(newOffset);
+            }
+        }
+    }
+}
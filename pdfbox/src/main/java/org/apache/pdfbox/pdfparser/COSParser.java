@@ -22,17 +22,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSArray;
@@ -45,6 +41,8 @@ import org.apache.pdfbox.cos.COSNumber;
 import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSObjectKey;
 import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.ICOSParser;
+import org.apache.pdfbox.cos.XrefTable;
 import org.apache.pdfbox.io.RandomAccessRead;
 import org.apache.pdfbox.pdfparser.XrefTrailerResolver.XRefType;
 import org.apache.pdfbox.pdmodel.encryption.SecurityHandler;
@@ -61,7 +59,7 @@ import static org.apache.pdfbox.util.Charsets.ISO_8859_1;
  * This class is a much enhanced version of <code>QuickParser</code> presented in <a
  * href="https://issues.apache.org/jira/browse/PDFBOX-1104">PDFBOX-1104</a> by Jeremy Villalobos.
  */
-public class COSParser extends BaseParser
+public class COSParser extends BaseParser implements ICOSParser
 {
     private static final String PDF_HEADER = "%PDF-";
     private static final String FDF_HEADER = "%FDF-";
@@ -70,7 +68,6 @@ public class COSParser extends BaseParser
     private static final String FDF_DEFAULT_VERSION = "1.0";
 
     private static final char[] XREF_TABLE = new char[] { 'x', 'r', 'e', 'f' };
-    private static final char[] XREF_STREAM = new char[] { '/', 'X', 'R', 'e', 'f' };
     private static final char[] STARTXREF = new char[] { 's','t','a','r','t','x','r','e','f' };
 
     private static final byte[] ENDSTREAM = new byte[] { E, N, D, S, T, R, E, A, M };
@@ -99,6 +96,20 @@ public class COSParser extends BaseParser
     public static final String SYSPROP_EOFLOOKUPRANGE =
             "org.apache.pdfbox.pdfparser.nonSequentialPDFParser.eofLookupRange";
 
+    /**
+     * Only parse the xref table and the trailer when loading a PDF; all other objects are parsed
+     * when they are accessed for the first time.
+     */
+    public static final String SYSPROP_LAZYLOADING =
+            "org.apache.pdfbox.pdfparser.lazyLoading";
+
+    /**
+     * Store the resolved cross reference information of a PDF loaded from a file in a sidecar
+     * file next to it and reuse it when the PDF is loaded again.
+     */
+    public static final String SYSPROP_XREFINDEX =
+            "org.apache.pdfbox.pdfparser.xrefIndex";
+
     /**
      * How many trailing bytes to read for EOF marker.
      */
@@ -124,11 +135,16 @@ public class COSParser extends BaseParser
      */
     private boolean isLenient = true;
 
+    /**
+     * are objects parsed on demand ?
+     */
+    private boolean isLazyLoading = false;
+
     protected boolean initialParseDone = false;
     /**
      * Contains all found objects of a brute force search.
      */
-    private Map<COSObjectKey, Long> bfSearchCOSObjectKeyOffsets = null;
+    private XrefTable bfSearchCOSObjectKeyOffsets = null;
     private List<Long> bfSearchXRefTablesOffsets = null;
     private List<Long> bfSearchXRefStreamsOffsets = null;
 
@@ -329,7 +345,79 @@ public class COSParser extends BaseParser
 
         return dict.getLong(COSName.PREV);
     }
-    
+
+    /**
+     * Parses a single cross reference section and its trailer without following the PREV
+     * reference, e.g. the first page cross reference section of a linearized PDF.
+     *
+     * @param xrefOffset the offset of the xref table or xref stream
+     * @return the trailer dictionary
+     * @throws IOException if something went wrong
+     */
+    protected COSDictionary parseXrefSection(long xrefOffset) throws IOException
+    {
+        source.seek(xrefOffset);
+        skipSpaces();
+        if (source.peek() == X)
+        {
+            parseXrefTable(xrefOffset);
+            if (!parseTrailer())
+            {
+                throw new IOException("Expected trailer object at position: "
+                        + source.getPosition());
+            }
+        }
+        else
+        {
+            parseXrefObjStream(xrefOffset, true);
+        }
+        // the previous sections aren't read
+        xrefTrailerResolver.getCurrentTrailer().removeItem(COSName.PREV);
+        xrefTrailerResolver.setStartxref(xrefOffset);
+        COSDictionary trailer = xrefTrailerResolver.getTrailer();
+        document.setStartXref(xrefOffset);
+        document.setTrailer(trailer);
+        document.setIsXRefStream(XRefType.STREAM == xrefTrailerResolver.getXrefType());
+        document.addXRefTable(xrefTrailerResolver.getXrefTable());
+        return trailer;
+    }
+
+    /**
+     * Reads the first indirect object of the file, which is the linearization parameter
+     * dictionary if the PDF is linearized. If so, the source is positioned at the first page
+     * cross reference section which follows the dictionary.
+     *
+     * @return the linearization parameter dictionary, or null if the PDF isn't linearized
+     * @throws IOException if something went wrong
+     */
+    public COSDictionary parseLinearizationDictionary() throws IOException
+    {
+        source.seek(0);
+        // the header is a comment
+        skipSpaces();
+        if (source.isEOF() || !isDigit())
+        {
+            return null;
+        }
+        readObjectNumber();
+        readGenerationNumber();
+        readExpectedString(OBJ_MARKER, true);
+        skipSpaces();
+        if (source.peek() != '<')
+        {
+            return null;
+        }
+        COSDictionary dict = parseCOSDictionary();
+        if (!dict.containsKey(COSName.LINEARIZED))
+        {
+            return null;
+        }
+        skipSpaces();
+        readExpectedString(ENDOBJ_STRING);
+        skipSpaces();
+        return dict;
+    }
+
     /**
      * Looks for and parses startxref. We first look for last '%%EOF' marker (within last
      * {@link #DEFAULT_TRAIL_BYTECOUNT} bytes (or range set via {@link #setEOFLookupRange(int)}) and go back to find
@@ -468,6 +556,34 @@ public class COSParser extends BaseParser
         this.isLenient = lenient;
     }
 
+    /**
+     * Return true if objects are parsed on demand, i.e. when they are accessed for the first time.
+     *
+     * @return true if the parser uses lazy loading
+     */
+    public boolean isLazyLoading()
+    {
+        return isLazyLoading;
+    }
+
+    /**
+     * Change the lazy loading flag. If set, only the xref table and the trailer are parsed
+     * initially and all other objects are parsed when they are accessed for the first time. The
+     * source must not be closed as long as the document is used.
+     *
+     * This method can only be called before the parsing of the file.
+     *
+     * @param lazyLoading parse objects on demand.
+     */
+    public void setLazyLoading(boolean lazyLoading)
+    {
+        if (initialParseDone)
+        {
+            throw new IllegalArgumentException("Cannot change lazy loading after parsing");
+        }
+        this.isLazyLoading = lazyLoading;
+    }
+
     /**
      * Creates a unique object id using object number and object generation
      * number. (requires object number &lt; 2^31))
@@ -558,10 +674,11 @@ public class COSParser extends BaseParser
 
                     if (!parsedObjects.contains(objId))
                     {
-                        Long fileOffset = xrefTrailerResolver.getXrefTable().get(objKey);
+                        XrefTable xrefTable = xrefTrailerResolver.getXrefTable();
+                        long fileOffset = xrefTable.getOffset(objKey.getNumber(), objKey.getGeneration());
                         // it is allowed that object references point to null,
                         // thus we have to test
-                        if (fileOffset != null && fileOffset != 0)
+                        if (fileOffset != XrefTable.NOT_FOUND && fileOffset != 0)
                         {
                             if (fileOffset > 0)
                             {
@@ -572,13 +689,12 @@ public class COSParser extends BaseParser
                                 // negative offset means we have a compressed
                                 // object within object stream;
                                 // get offset of object stream
-                                fileOffset = xrefTrailerResolver.getXrefTable().get(
-                                        new COSObjectKey((int)-fileOffset, 0));
-                                if ((fileOffset == null) || (fileOffset <= 0))
+                                fileOffset = xrefTable.getOffset((int) -fileOffset, 0);
+                                if (fileOffset <= 0)
                                 {
                                     throw new IOException(
                                             "Invalid object stream xref object reference for key '" + objKey + "': "
-                                                    + fileOffset);
+                                                    + (fileOffset == XrefTable.NOT_FOUND ? null : fileOffset));
                                 }
 
                                 List<COSObject> stmObjects = objToBeParsed.get(fileOffset);
@@ -677,39 +793,31 @@ public class COSParser extends BaseParser
         {
             // not previously parsed
             // ---- read offset or object stream object number from xref table
-            Long offsetOrObjstmObNr = xrefTrailerResolver.getXrefTable().get(objKey);
+            XrefTable xrefOffset = xrefTrailerResolver.getXrefTable();
+            long offsetOrObjstmObNr = xrefOffset.getOffset(objNr, objGenNr);
 
             // sanity test to circumvent loops with broken documents
-            if (requireExistingNotCompressedObj
-                    && ((offsetOrObjstmObNr == null) || (offsetOrObjstmObNr <= 0)))
+            if (requireExistingNotCompressedObj && offsetOrObjstmObNr <= 0)
             {
                 throw new IOException("Object must be defined and must not be compressed object: "
                         + objKey.getNumber() + ":" + objKey.getGeneration());
             }
 
             // maybe something is wrong with the xref table -> perform brute force search for all objects
-            if (offsetOrObjstmObNr == null && isLenient && bfSearchCOSObjectKeyOffsets == null)
+            if (offsetOrObjstmObNr == XrefTable.NOT_FOUND && isLenient
+                    && bfSearchCOSObjectKeyOffsets == null)
             {
                 bfSearchForObjects();
                 if (bfSearchCOSObjectKeyOffsets != null && !bfSearchCOSObjectKeyOffsets.isEmpty())
                 {
                     LOG.debug("Add all new read objects from brute force search to the xref table");
-                    Map<COSObjectKey, Long> xrefOffset = xrefTrailerResolver.getXrefTable();
-                    final Set<Map.Entry<COSObjectKey, Long>> entries = bfSearchCOSObjectKeyOffsets.entrySet();
-                    for (Entry<COSObjectKey, Long> entry : entries)
-                    {
-                        COSObjectKey key = entry.getKey();
-                        // add all missing objects to the xref table
-                        if (!xrefOffset.containsKey(key))
-                        {
-                            xrefOffset.put(key, entry.getValue());
-                        }
-                    }
-                    offsetOrObjstmObNr = xrefOffset.get(objKey);
+                    // add all missing objects to the xref table
+                    xrefOffset.putAllAbsent(bfSearchCOSObjectKeyOffsets);
+                    offsetOrObjstmObNr = xrefOffset.getOffset(objNr, objGenNr);
                 }
             }
 
-            if (offsetOrObjstmObNr == null)
+            if (offsetOrObjstmObNr == XrefTable.NOT_FOUND)
             {
                 // not defined object -> NULL object (Spec. 1.7, chap. 3.2.9)
                 pdfObject.setObject(COSNull.NULL);
@@ -729,7 +837,24 @@ public class COSParser extends BaseParser
         return pdfObject.getObject();
     }
 
-    private void parseFileObject(Long offsetOrObjstmObNr, final COSObjectKey objKey, final COSObject pdfObject) throws IOException
+    /**
+     * Parses the given indirect object on demand. The position of the source is preserved, as
+     * this may be called while another object is parsed.
+     *
+     * @param obj the object to be parsed
+     * @return the parsed object
+     * @throws IOException If an IO error occurs.
+     */
+    @Override
+    public COSBase dereferenceCOSObject(COSObject obj) throws IOException
+    {
+        long currentPosition = source.getPosition();
+        COSBase parsedObj = parseObjectDynamically(obj, false);
+        source.seek(currentPosition);
+        return parsedObj;
+    }
+
+    private void parseFileObject(long offsetOrObjstmObNr, final COSObjectKey objKey, final COSObject pdfObject) throws IOException
     {
         // ---- go to object start
         source.seek(offsetOrObjstmObNr);
@@ -1252,18 +1377,17 @@ public class COSParser extends BaseParser
         {
             return;
         }
-        Map<COSObjectKey, Long> xrefOffset = xrefTrailerResolver.getXrefTable();
+        XrefTable xrefOffset = xrefTrailerResolver.getXrefTable();
         if (xrefOffset != null)
         {
             boolean bruteForceSearch = false;
-            for (Entry<COSObjectKey, Long> objectEntry : xrefOffset.entrySet())
+            for (int slot = xrefOffset.nextSlot(-1); slot >= 0; slot = xrefOffset.nextSlot(slot))
             {
-                COSObjectKey objectKey = objectEntry.getKey();
-                Long objectOffset = objectEntry.getValue();
+                long objectOffset = xrefOffset.getOffsetAt(slot);
                 // a negative offset number represents a object number itself
                 // see type 2 entry in xref stream
-                if (objectOffset != null && objectOffset >= 0
-                        && !checkObjectKeys(objectKey, objectOffset))
+                if (objectOffset >= 0 && !checkObjectKeys(xrefOffset.getNumberAt(slot),
+                        xrefOffset.getGenerationAt(slot), objectOffset))
                 {
                     LOG.debug("Stop checking xref offsets as at least one couldn't be dereferenced");
                     bruteForceSearch = true;
@@ -1285,20 +1409,19 @@ public class COSParser extends BaseParser
     /**
      * Check if the given object can be found at the given offset.
      * 
-     * @param objectKey the object we are looking for
+     * @param objectNr the number of the object we are looking for
+     * @param objectGen the generation number of the object we are looking for
      * @param offset the offset where to look
      * @return returns true if the given object can be dereferenced at the given offset
      * @throws IOException if something went wrong
      */
-    private boolean checkObjectKeys(COSObjectKey objectKey, long offset) throws IOException
+    private boolean checkObjectKeys(long objectNr, int objectGen, long offset) throws IOException
     {
         // there can't be any object at the very beginning of a pdf
         if (offset < MINIMUM_SEARCH_OFFSET)
         {
             return false;
         }
-        long objectNr = objectKey.getNumber();
-        int objectGen = objectKey.getGeneration();
         long originOffset = source.getPosition();
         source.seek(offset);
         String objectString = createObjectString(objectNr, objectGen);
@@ -1343,68 +1466,25 @@ public class COSParser extends BaseParser
     {
         if (bfSearchCOSObjectKeyOffsets == null)
         {
-            bfSearchCOSObjectKeyOffsets = new HashMap<COSObjectKey, Long>();
-            long originOffset = source.getPosition();
-            long currentOffset = MINIMUM_SEARCH_OFFSET;
-            String objString = " obj";
-            char[] string = objString.toCharArray();
-            do
-            {
-                source.seek(currentOffset);
-                if (isString(string))
-                {
-                    long tempOffset = currentOffset - 1;
-                    source.seek(tempOffset);
-                    int genID = source.peek();
-                    // is the next char a digit?
-                    if (isDigit(genID))
-                    {
-                        genID -= 48;
-                        tempOffset--;
-                        source.seek(tempOffset);
-                        if (isSpace())
-                        {
-                            while (tempOffset > MINIMUM_SEARCH_OFFSET && isSpace())
-                            {
-                                source.seek(--tempOffset);
-                            }
-                            int length = 0;
-                            while (tempOffset > MINIMUM_SEARCH_OFFSET && isDigit())
-                            {
-                                source.seek(--tempOffset);
-                                length++;
-                            }
-                            if (length > 0)
-                            {
-                                source.read();
-                                byte[] objIDBytes = source.readFully(length);
-                                String objIdString = new String(objIDBytes, 0,
-                                        objIDBytes.length, ISO_8859_1);
-                                Long objectID;
-                                try
-                                {
-                                    objectID = Long.valueOf(objIdString);
-                                }
-                                catch (NumberFormatException exception)
-                                {
-                                    objectID = null;
-                                }
-                                if (objectID != null)
-                                {
-                                    bfSearchCOSObjectKeyOffsets.put(new COSObjectKey(objectID, genID), tempOffset+1);
-                                }
-                            }
-                        }
-                    }
-                }
-                currentOffset++;
-            }
-            while (!source.isEOF());
-            // reestablish origin position
-            source.seek(originOffset);
+            bfSearch();
         }
     }
 
+    /**
+     * Brute force search for objects, xref tables and xref streams in a single pass over the whole
+     * file. The results of all three searches are stored at once.
+     * 
+     * @throws IOException if something went wrong
+     */
+    private void bfSearch() throws IOException
+    {
+        BruteForceSearch search = new BruteForceSearch(source, MINIMUM_SEARCH_OFFSET);
+        search.search();
+        bfSearchCOSObjectKeyOffsets = search.getObjectOffsets();
+        bfSearchXRefTablesOffsets = search.getXrefTableOffsets();
+        bfSearchXRefStreamsOffsets = search.getXrefStreamOffsets();
+    }
+
     /**
      * Search for the offset of the given xref table/stream among those found by a brute force search.
      * 
@@ -1494,27 +1574,7 @@ public class COSParser extends BaseParser
     {
         if (bfSearchXRefTablesOffsets == null)
         {
-            // a pdf may contain more than one xref entry
-            bfSearchXRefTablesOffsets = new Vector<Long>();
-            long originOffset = source.getPosition();
-            source.seek(MINIMUM_SEARCH_OFFSET);
-            // search for xref tables
-            while (!source.isEOF())
-            {
-                if (isString(XREF_TABLE))
-                {
-                    long newOffset = source.getPosition();
-                    source.seek(newOffset - 1);
-                    // ensure that we don't read "startxref" instead of "xref"
-                    if (isWhitespace())
-                    {
-                        bfSearchXRefTablesOffsets.add(newOffset);
-                    }
-                    source.seek(newOffset + 4);
-                }
-                source.read();
-            }
-            source.seek(originOffset);
+            bfSearch();
         }
     }
 
@@ -1527,78 +1587,7 @@ public class COSParser extends BaseParser
     {
         if (bfSearchXRefStreamsOffsets == null)
         {
-            // a pdf may contain more than one /XRef entry
-            bfSearchXRefStreamsOffsets = new Vector<Long>();
-            long originOffset = source.getPosition();
-            source.seek(MINIMUM_SEARCH_OFFSET);
-            // search for XRef streams
-            String objString = " obj";
-            char[] string = objString.toCharArray();
-            while (!source.isEOF())
-            {
-                if (isString(XREF_STREAM))
-                {
-                    // search backwards for the beginning of the stream
-                    long newOffset = -1;
-                    long xrefOffset = source.getPosition();
-                    boolean objFound = false;
-                    for (int i = 1; i < 30 && !objFound; i++)
-                    {
-                        long currentOffset = xrefOffset - (i * 10);
-                        if (currentOffset > 0)
-                        {
-                            source.seek(currentOffset);
-                            for (int j = 0; j < 10; j++)
-                            {
-                                if (isString(string))
-                                {
-                                    long tempOffset = currentOffset - 1;
-                                    source.seek(tempOffset);
-                                    int genID = source.peek();
-                                    // is the next char a digit?
-                                    if (isDigit(genID))
-                                    {
-                                        genID -= 48;
-                                        tempOffset--;
-                                        source.seek(tempOffset);
-                                        if (isSpace())
-                                        {
-                                            int length = 0;
-                                            source.seek(--tempOffset);
-                                            while (tempOffset > MINIMUM_SEARCH_OFFSET && isDigit())
-                                            {
-                                                source.seek(--tempOffset);
-                                                length++;
-                                            }
-                                            if (length > 0)
-                                            {
-                                                source.read();
-                                                newOffset = source.getPosition();
-                                            }
-                                        }
-                                    }
-                                    LOG.debug("Fixed reference for xref stream " + xrefOffset
-                                            + " -> " + newOffset);
-                                    objFound = true;
-                                    break;
-                                }
-                                else
-                                {
-                                    currentOffset++;
-                                    source.read();
-                                }
-                            }
-                        }
-                    }
-                    if (newOffset > -1)
-                    {
-                        bfSearchXRefStreamsOffsets.add(newOffset);
-                    }
-                    source.seek(xrefOffset + 5);
-                }
-                source.read();
-            }
-            source.seek(originOffset);
+            bfSearch();
         }
     }
     
@@ -1616,18 +1605,21 @@ public class COSParser extends BaseParser
         if (bfSearchCOSObjectKeyOffsets != null)
         {
             xrefTrailerResolver.nextXrefObj( 0, XRefType.TABLE );
-            for (Entry<COSObjectKey, Long> entry : bfSearchCOSObjectKeyOffsets.entrySet())
+            XrefTable offsets = bfSearchCOSObjectKeyOffsets;
+            for (int slot = offsets.nextSlot(-1); slot >= 0; slot = offsets.nextSlot(slot))
             {
-                xrefTrailerResolver.setXRef(entry.getKey(), entry.getValue());
+                xrefTrailerResolver.setXRef(offsets.getNumberAt(slot),
+                        offsets.getGenerationAt(slot), offsets.getOffsetAt(slot));
             }
             xrefTrailerResolver.setStartxref(0);
             trailer = xrefTrailerResolver.getTrailer();
             getDocument().setTrailer(trailer);
             // search for the different parts of the trailer dictionary 
-            for(Entry<COSObjectKey, Long> entry : bfSearchCOSObjectKeyOffsets.entrySet())
+            for (int slot = offsets.nextSlot(-1); slot >= 0; slot = offsets.nextSlot(slot))
             {
-                Long offset = entry.getValue();
-                source.seek(offset);
+                COSObjectKey key = new COSObjectKey(offsets.getNumberAt(slot),
+                        offsets.getGenerationAt(slot));
+                source.seek(offsets.getOffsetAt(slot));
                 readObjectNumber();
                 readGenerationNumber();
                 readExpectedString(OBJ_MARKER, true);
@@ -1639,7 +1631,7 @@ public class COSParser extends BaseParser
                         // document catalog
                         if (COSName.CATALOG.equals(dictionary.getCOSName(COSName.TYPE)))
                         {
-                            trailer.setItem(COSName.ROOT, document.getObjectFromPool(entry.getKey()));
+                            trailer.setItem(COSName.ROOT, document.getObjectFromPool(key));
                         }
                         // info dictionary
                         else if (dictionary.containsKey(COSName.TITLE)
@@ -1650,14 +1642,14 @@ public class COSParser extends BaseParser
                                 || dictionary.containsKey(COSName.PRODUCER)
                                 || dictionary.containsKey(COSName.CREATION_DATE))
                         {
-                            trailer.setItem(COSName.INFO, document.getObjectFromPool(entry.getKey()));
+                            trailer.setItem(COSName.INFO, document.getObjectFromPool(key));
                         }
                         // TODO encryption dictionary
                     }
                 }
                 catch(IOException exception)
                 {
-                    LOG.debug("Skipped object " + entry.getKey() + ", either it's corrupt or not a dictionary");
+                    LOG.debug("Skipped object " + key + ", either it's corrupt or not a dictionary");
                 }
             }
         }
@@ -1952,8 +1944,7 @@ public class COSParser extends BaseParser
                     {
                         int currOffset = Integer.parseInt(splitString[0]);
                         int currGenID = Integer.parseInt(splitString[1]);
-                        COSObjectKey objKey = new COSObjectKey(currObjID, currGenID);
-                        xrefTrailerResolver.setXRef(objKey, currOffset);
+                        xrefTrailerResolver.setXRef(currObjID, currGenID, currOffset);
                     }
                     catch(NumberFormatException e)
                     {
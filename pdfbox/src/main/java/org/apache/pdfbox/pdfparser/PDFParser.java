@@ -16,6 +16,7 @@
  */
 package org.apache.pdfbox.pdfparser;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.KeyStore;
@@ -37,6 +38,7 @@ import org.apache.pdfbox.pdmodel.encryption.DecryptionMaterial;
 import org.apache.pdfbox.pdmodel.encryption.PDEncryption;
 import org.apache.pdfbox.pdmodel.encryption.PublicKeyDecryptionMaterial;
 import org.apache.pdfbox.pdmodel.encryption.StandardDecryptionMaterial;
+import org.apache.pdfbox.pdfparser.XrefTrailerResolver.XRefType;
 
 public class PDFParser extends COSParser
 {
@@ -48,6 +50,8 @@ public class PDFParser extends COSParser
 
     private AccessPermission accessPermission;
 
+    private File xrefIndexFile;
+
     /**
      * Constructor.
      * Unrestricted main memory will be used for buffering PDF streams.
@@ -156,9 +160,22 @@ public class PDFParser extends COSParser
                         + " does not contain an integer value, but: '" + eofLookupRangeStr + "'");
             }
         }
+        setLazyLoading(Boolean.getBoolean(SYSPROP_LAZYLOADING));
         document = new COSDocument(scratchFile);
     }
     
+    /**
+     * Sets the file used to store the resolved cross reference information of the parsed PDF. If
+     * the file contains a valid index for the PDF, parsing and validating the xref tables is
+     * skipped. Otherwise the index is (re)written once the xref tables have been parsed.
+     *
+     * @param indexFile the index file or null to disable the index
+     */
+    public void setXrefIndexFile(File indexFile)
+    {
+        xrefIndexFile = indexFile;
+    }
+
     /**
      * This will get the PD document that was parsed.  When you are done with
      * this document you must call close() on it to release resources.
@@ -175,22 +192,41 @@ public class PDFParser extends COSParser
     /**
      * The initial parse will first parse only the trailer, the xrefstart and all xref tables to have a pointer (offset)
      * to all the pdf's objects. It can handle linearized pdfs, which will have an xref at the end pointing to an xref
-     * at the beginning of the file. Last the root object is parsed.
+     * at the beginning of the file. Last the root object is parsed, and unless lazy loading is enabled all objects
+     * reachable from it.
      * 
      * @throws IOException If something went wrong.
      */
     protected void initialParse() throws IOException
     {
         COSDictionary trailer = null;
-        // parse startxref
-        long startXRefOffset = getStartxrefOffset();
-        if (startXRefOffset > -1)
+        byte[] tailHash = null;
+        if (xrefIndexFile != null)
         {
-            trailer = parseXref(startXRefOffset);
+            tailHash = XrefIndex.computeTailHash(source);
+            trailer = readXrefIndex(tailHash);
         }
-        else if (isLenient())
+        if (trailer == null)
         {
-            trailer = rebuildTrailer();
+            // parse startxref
+            long startXRefOffset = getStartxrefOffset();
+            if (startXRefOffset > -1)
+            {
+                trailer = parseXref(startXRefOffset);
+            }
+            else if (isLenient())
+            {
+                trailer = rebuildTrailer();
+            }
+            if (trailer != null && tailHash != null)
+            {
+                writeXrefIndex(tailHash);
+            }
+        }
+        if (isLazyLoading())
+        {
+            // all objects created from now on are parsed when they are accessed
+            document.setParser(this);
         }
         // prepare decryption if necessary
         prepareDecryption();
@@ -200,12 +236,74 @@ public class PDFParser extends COSParser
         COSObject catalogObj = document.getCatalog();
         if (catalogObj != null && catalogObj.getObject() instanceof COSDictionary)
         {
-            parseDictObjects((COSDictionary) catalogObj.getObject(), (COSName[]) null);
+            if (!isLazyLoading())
+            {
+                parseDictObjects((COSDictionary) catalogObj.getObject(), (COSName[]) null);
+            }
             document.setDecrypted();
         }
         initialParseDone = true;
     }
 
+    /**
+     * Restores the resolved xref table and trailer from the index file, if it is valid for the
+     * parsed PDF.
+     * 
+     * @param tailHash the hash of the trailing bytes of the parsed PDF
+     * @return the trailer dictionary or null if there is no valid index
+     * @throws IOException if something went wrong
+     */
+    private COSDictionary readXrefIndex(byte[] tailHash) throws IOException
+    {
+        if (!xrefIndexFile.isFile())
+        {
+            return null;
+        }
+        XrefIndex index;
+        try
+        {
+            index = XrefIndex.read(xrefIndexFile, fileLen, tailHash, document);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Ignoring unreadable xref index " + xrefIndexFile, e);
+            return null;
+        }
+        if (index == null)
+        {
+            LOG.debug("Xref index " + xrefIndexFile + " belongs to a different file");
+            return null;
+        }
+        COSDictionary trailer = index.getTrailer();
+        xrefTrailerResolver.setResolved(trailer, index.getXrefTable(), index.getXrefType());
+        document.setStartXref(index.getStartXref());
+        document.setTrailer(trailer);
+        document.setIsXRefStream(XRefType.STREAM == index.getXrefType());
+        document.addXRefTable(xrefTrailerResolver.getXrefTable());
+        return trailer;
+    }
+
+    /**
+     * Stores the resolved xref table and trailer in the index file. A failure is logged only, as
+     * the index is an optimization.
+     * 
+     * @param tailHash the hash of the trailing bytes of the parsed PDF
+     */
+    private void writeXrefIndex(byte[] tailHash)
+    {
+        XrefIndex index = new XrefIndex(fileLen, tailHash, document.getStartXref(),
+                xrefTrailerResolver.getXrefType(), document.getTrailer(),
+                xrefTrailerResolver.getXrefTable());
+        try
+        {
+            index.write(xrefIndexFile);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Couldn't write xref index " + xrefIndexFile, e);
+        }
+    }
+
     /**
      * This will parse the stream and populate the COSDocument object.  This will close
      * the keystore stream when it is done parsing.
@@ -243,6 +341,50 @@ public class PDFParser extends COSParser
         }
     }
 
+    /**
+     * Parses only the first page section of a linearized PDF, i.e. the cross reference section
+     * which follows the linearization parameter dictionary, and its trailer. The main cross
+     * reference table at the end of the file isn't read, so that the source may hold the
+     * beginning of the file only, up to the end of the first page. Objects are always parsed on
+     * demand, objects which aren't part of the first page section are resolved to null.
+     *
+     * @throws IOException if the PDF isn't linearized or if the section can't be parsed
+     */
+    public void parseFirstPageSection() throws IOException
+    {
+        // set to false if all is processed
+        boolean exceptionOccurred = true;
+        try
+        {
+            if (!parsePDFHeader())
+            {
+                throw new IOException("Error: Header doesn't contain versioninfo");
+            }
+            if (parseLinearizationDictionary() == null)
+            {
+                throw new IOException("Error: PDF is not linearized");
+            }
+            COSDictionary trailer = parseXrefSection(source.getPosition());
+            setLazyLoading(true);
+            document.setParser(this);
+            prepareDecryption();
+            parseTrailerValuesDynamically(trailer);
+            document.setDecrypted();
+            initialParseDone = true;
+            exceptionOccurred = false;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(keyStoreInputStream);
+
+            if (exceptionOccurred && document != null)
+            {
+                IOUtils.closeQuietly(document);
+                document = null;
+            }
+        }
+    }
+
     /**
      * Prepare for decryption.
      * 
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+
+/**
+ * Receives the operations of a content stream from {@link PDFStreamReader#read(PDFStreamHandler)}.
+ */
+public interface PDFStreamHandler
+{
+    /**
+     * Processes an operation of a content stream.
+     *
+     * @param operator the operator
+     * @param operands gives access to the operands of the operator, only until this method
+     * returns
+     * @throws IOException if the operation can't be processed, this stops reading the stream
+     */
+    void processOperation(Operator operator, PDFStreamReader operands) throws IOException;
+}
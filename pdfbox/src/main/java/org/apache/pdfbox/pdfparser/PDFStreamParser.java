@@ -19,6 +19,7 @@ package org.apache.pdfbox.pdfparser;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -29,12 +30,15 @@ import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSBoolean;
 import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSNull;
 import org.apache.pdfbox.cos.COSNumber;
 import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.util.Charsets;
 
 /**
  * This will parse a PDF byte stream and extract operands and such.
@@ -52,6 +56,24 @@ public class PDFStreamParser extends BaseParser
     
     private static final int MAX_BIN_CHAR_TEST_LENGTH = 10;
     private final byte[] binCharTestArr = new byte[MAX_BIN_CHAR_TEST_LENGTH];
+
+    private final StringBuilder numberBuffer = new StringBuilder(32);
+
+    // the bytes of the last keyword read by readKeyword()
+    private byte[] keywordBuffer = new byte[16];
+
+    // the operators found in this stream, by hash of their bytes, to avoid creating a string
+    // for every operator
+    private static final int OPERATOR_CACHE_SIZE = 64;
+    private final Operator[] operatorCache = new Operator[OPERATOR_CACHE_SIZE];
+
+    /** returned by {@link #readToken()} for a number which has been stored as a decimal */
+    static final Object DECIMAL = new Object();
+
+    // the last decimal read by readToken(): unscaledValue / 10^scale, if isInteger it has no "."
+    private long unscaledValue;
+    private int scale;
+    private boolean isInteger;
     
     /**
      * Constructor.
@@ -103,6 +125,16 @@ public class PDFStreamParser extends BaseParser
         super(new InputStreamSource(new ByteArrayInputStream(bytes)));
     }
 
+    /**
+     * Constructor.
+     *
+     * @param input the decoded content to parse.
+     */
+    PDFStreamParser(InputStream input)
+    {
+        super(new InputStreamSource(input));
+    }
+
     /**
      * This will parse the tokens in the stream.  This will close the
      * stream when it is finished parsing.
@@ -136,6 +168,22 @@ public class PDFStreamParser extends BaseParser
      * @throws IOException If an io error occurs while parsing the stream.
      */
     public Object parseNextToken() throws IOException
+    {
+        Object token = readToken();
+        if (token != DECIMAL)
+        {
+            return token;
+        }
+        return isInteger ? COSInteger.get(unscaledValue) : new COSFloat(unscaledValue, scale);
+    }
+
+    /**
+     * Reads the next token like {@link #parseNextToken()}, but doesn't create objects for most
+     * numbers. Instead, {@link #DECIMAL} is returned and the value is available through
+     * {@link #getUnscaledValue()}, {@link #getScale()} and {@link #isInteger()} until the next
+     * token is read.
+     */
+    Object readToken() throws IOException
     {
         Object retval;
 
@@ -186,46 +234,46 @@ public class PDFStreamParser extends BaseParser
             case 'n':   
             {
                 // null
-                String nullString = readString();
-                if( nullString.equals( "null") )
+                int length = readKeyword(false);
+                if( keywordEquals( "null", length ) )
                 {
                     retval = COSNull.NULL;
                 }
                 else
                 {
-                    retval = Operator.getOperator(nullString);
+                    retval = getOperator(length);
                 }
                 break;
             }
             case 't':
             case 'f':
             {
-                String next = readString();
-                if( next.equals( "true" ) )
+                int length = readKeyword(false);
+                if( keywordEquals( "true", length ) )
                 {
                     retval = COSBoolean.TRUE;
                     break;
                 }
-                else if( next.equals( "false" ) )
+                else if( keywordEquals( "false", length ) )
                 {
                     retval = COSBoolean.FALSE;
                 }
                 else
                 {
-                    retval = Operator.getOperator(next);
+                    retval = getOperator(length);
                 }
                 break;
             }
             case 'R':
             {
-                String line = readString();
-                if( line.equals( "R" ) )
+                int length = readKeyword(false);
+                if( keywordEquals( "R", length ) )
                 {
                     retval = new COSObject( null );
                 }
                 else
                 {
-                    retval = Operator.getOperator(line);
+                    retval = getOperator(length);
                 }
                 break;
             }
@@ -245,10 +293,21 @@ public class PDFStreamParser extends BaseParser
             {
                 /* We will be filling buf with the rest of the number.  Only
                  * allow 1 "." and "-" and "+" at start of number. */
-                StringBuffer buf = new StringBuffer();
+                StringBuilder buf = numberBuffer;
+                buf.setLength(0);
                 buf.append( c );
                 seqSource.read();
 
+                // the digits are accumulated directly to avoid creating a string
+                boolean isNegative = c == '-';
+                long value = 0;
+                int digits = 0;
+                int fractionDigits = 0;
+                if (isDigit(c))
+                {
+                    value = c - '0';
+                    digits++;
+                }
                 boolean dotNotRead = c != '.';
                 while( Character.isDigit(c = (char) seqSource.peek()) || dotNotRead && c == '.')
                 {
@@ -259,16 +318,39 @@ public class PDFStreamParser extends BaseParser
                     {
                         dotNotRead = false;
                     }
+                    else
+                    {
+                        value = value * 10 + c - '0';
+                        digits++;
+                        if (!dotNotRead)
+                        {
+                            fractionDigits++;
+                        }
+                    }
+                }
+                if (digits == 0 || digits > COSFloat.MAX_DECIMAL_DIGITS)
+                {
+                    retval = COSNumber.get( buf.toString() );
+                }
+                else
+                {
+                    unscaledValue = isNegative ? -value : value;
+                    scale = fractionDigits;
+                    isInteger = dotNotRead;
+                    retval = DECIMAL;
                 }
-                retval = COSNumber.get( buf.toString() );
                 break;
             }
             case 'B':
             {
-                String next = readString();
-                retval = Operator.getOperator(next);
-                if( next.equals( "BI" ) )
+                int length = readKeyword(false);
+                if( !keywordEquals( "BI", length ) )
                 {
+                    retval = getOperator(length);
+                }
+                else
+                {
+                    retval = Operator.getOperator("BI");
                     Operator beginImageOP = (Operator)retval;
                     COSDictionary imageParams = new COSDictionary();
                     beginImageOP.setImageParameters( imageParams );
@@ -333,21 +415,162 @@ public class PDFStreamParser extends BaseParser
             default:
             {
                 //we must be an operator
-                String operator = readOperator();
-                if( operator.trim().length() == 0 )
+                int length = readKeyword(true);
+                if( isBlank( length ) )
                 {
                     //we have a corrupt stream, stop reading here
                     retval = null;
                 }
                 else
                 {
-                    retval = Operator.getOperator(operator);
+                    retval = getOperator(length);
                 }
             }
         }
         return retval;
     }
 
+    /**
+     * Reads a keyword into {@link #keywordBuffer}, which is terminated like in
+     * {@link #readOperator()} or like in {@link #readString()}.
+     *
+     * @param isOperator true to read an operator like {@link #readOperator()}
+     * @return the length of the keyword
+     */
+    private int readKeyword(boolean isOperator) throws IOException
+    {
+        skipSpaces();
+        int length = 0;
+        if (isOperator)
+        {
+            int nextChar = seqSource.peek();
+            while (nextChar != -1 && !isWhitespace(nextChar) && !isClosing(nextChar) &&
+                   nextChar != '[' && nextChar != '<' && nextChar != '(' && nextChar != '/' &&
+                   (nextChar < '0' || nextChar > '9'))
+            {
+                int currentChar = seqSource.read();
+                nextChar = seqSource.peek();
+                length = appendKeywordByte(length, currentChar);
+                // Type3 Glyph description has operators with a number in the name
+                if (currentChar == 'd' && (nextChar == '0' || nextChar == '1'))
+                {
+                    length = appendKeywordByte(length, seqSource.read());
+                    nextChar = seqSource.peek();
+                }
+            }
+        }
+        else
+        {
+            int c = seqSource.read();
+            while (c != -1 && !isEndOfName(c))
+            {
+                length = appendKeywordByte(length, c);
+                c = seqSource.read();
+            }
+            if (c != -1)
+            {
+                seqSource.unread(c);
+            }
+        }
+        return length;
+    }
+
+    private int appendKeywordByte(int length, int b)
+    {
+        if (length == keywordBuffer.length)
+        {
+            keywordBuffer = Arrays.copyOf(keywordBuffer, length * 2);
+        }
+        keywordBuffer[length] = (byte) b;
+        return length + 1;
+    }
+
+    private boolean keywordEquals(String keyword, int length)
+    {
+        if (keyword.length() != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if ((keywordBuffer[i] & 0xff) != keyword.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // whether the keyword consists of whitespace or control characters only, like String.trim()
+    private boolean isBlank(int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if ((keywordBuffer[i] & 0xff) > ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the operator of the keyword in {@link #keywordBuffer}.
+     */
+    private Operator getOperator(int length)
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + (keywordBuffer[i] & 0xff);
+        }
+        int index = (hash ^ hash >>> 7) & (OPERATOR_CACHE_SIZE - 1);
+        Operator operator = operatorCache[index];
+        if (operator == null || !keywordEquals(operator.getName(), length))
+        {
+            operator = Operator.getOperator(new String(keywordBuffer, 0, length,
+                    Charsets.ISO_8859_1));
+            if (!operator.getName().equals("ID") && !operator.getName().equals("BI"))
+            {
+                operatorCache[index] = operator;
+            }
+        }
+        return operator;
+    }
+
+    /**
+     * Returns the digits of the last decimal read by {@link #readToken()}, without the decimal
+     * point.
+     */
+    long getUnscaledValue()
+    {
+        return unscaledValue;
+    }
+
+    /**
+     * Returns the number of fraction digits of the last decimal read by {@link #readToken()}.
+     */
+    int getScale()
+    {
+        return scale;
+    }
+
+    /**
+     * Returns true if the last decimal read by {@link #readToken()} has no decimal point.
+     */
+    boolean isInteger()
+    {
+        return isInteger;
+    }
+
+    /**
+     * Closes the underlying stream.
+     */
+    void close() throws IOException
+    {
+        seqSource.close();
+    }
+
     /**
      * Looks up an amount of bytes if they contain only ASCII characters (no
      * control sequences etc.), and that these ASCII characters begin with a
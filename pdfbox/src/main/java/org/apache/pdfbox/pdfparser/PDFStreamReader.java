@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+
+/**
+ * Reads a content stream operation by operation, i.e. an operator together with its operands.
+ * Unlike {@link PDFStreamParser#parse()}, the tokens aren't collected, only the operands of the
+ * current operator are kept, so that large content streams can be read with constant memory.
+ * Numbers are kept as primitive values and are only turned into objects if they are requested
+ * with {@link #getOperand(int)}; names are shared. Arrays, strings and dictionaries are parsed
+ * into objects as usual.
+ *
+ * <p>The operations can be pulled one by one:</p>
+ * <pre>
+ * PDFStreamReader reader = new PDFStreamReader(page);
+ * try
+ * {
+ *     while (reader.next())
+ *     {
+ *         if (reader.getOperator().getName().equals("re") &amp;&amp; reader.getOperandCount() == 4)
+ *         {
+ *             float width = reader.getFloat(2);
+ *             ...
+ *         }
+ *     }
+ * }
+ * finally
+ * {
+ *     reader.close();
+ * }
+ * </pre>
+ * <p>or be pushed to a {@link PDFStreamHandler} with {@link #read(PDFStreamHandler)}.</p>
+ */
+public class PDFStreamReader implements Closeable
+{
+    private static final byte INTEGER = 1;
+    private static final byte REAL = 2;
+    private static final byte OBJECT = 3;
+
+    private final PDFStreamParser parser;
+
+    private Operator operator;
+    private int operandCount;
+    private byte[] types = new byte[8];
+    private long[] unscaledValues = new long[8];
+    private int[] scales = new int[8];
+    private COSBase[] objects = new COSBase[8];
+
+    /**
+     * Constructor.
+     *
+     * @param contentStream the content stream to read
+     * @throws IOException if the content stream can't be read
+     */
+    public PDFStreamReader(PDContentStream contentStream) throws IOException
+    {
+        this(contentStream.getContents());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param input the decoded content stream to read
+     */
+    public PDFStreamReader(InputStream input)
+    {
+        parser = new PDFStreamParser(input);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bytes the decoded content stream to read
+     */
+    public PDFStreamReader(byte[] bytes)
+    {
+        this(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Reads the next operator and its operands. Operands at the end of the stream which aren't
+     * followed by an operator are ignored.
+     *
+     * @return true if an operator was read, false at the end of the stream
+     * @throws IOException if the stream can't be read
+     */
+    public boolean next() throws IOException
+    {
+        clearOperands();
+        Object token;
+        while ((token = parser.readToken()) != null)
+        {
+            if (token instanceof Operator)
+            {
+                operator = (Operator) token;
+                return true;
+            }
+            if (operandCount == types.length)
+            {
+                int capacity = operandCount * 2;
+                types = Arrays.copyOf(types, capacity);
+                unscaledValues = Arrays.copyOf(unscaledValues, capacity);
+                scales = Arrays.copyOf(scales, capacity);
+                objects = Arrays.copyOf(objects, capacity);
+            }
+            if (token == PDFStreamParser.DECIMAL)
+            {
+                types[operandCount] = parser.isInteger() ? INTEGER : REAL;
+                unscaledValues[operandCount] = parser.getUnscaledValue();
+                scales[operandCount] = parser.getScale();
+            }
+            else
+            {
+                types[operandCount] = OBJECT;
+                objects[operandCount] = token instanceof COSObject ?
+                        ((COSObject) token).getObject() : (COSBase) token;
+            }
+            operandCount++;
+        }
+        clearOperands();
+        return false;
+    }
+
+    private void clearOperands()
+    {
+        Arrays.fill(objects, 0, operandCount, null);
+        operandCount = 0;
+        operator = null;
+    }
+
+    /**
+     * Reads all remaining operations and passes them to the given handler.
+     *
+     * @param handler the handler of the operations
+     * @throws IOException if the stream can't be read or the handler fails
+     */
+    public void read(PDFStreamHandler handler) throws IOException
+    {
+        while (next())
+        {
+            handler.processOperation(operator, this);
+        }
+    }
+
+    /**
+     * Returns the current operator.
+     *
+     * @return the operator, or null if {@link #next()} hasn't been called or returned false
+     */
+    public Operator getOperator()
+    {
+        return operator;
+    }
+
+    /**
+     * Returns the number of operands of the current operator.
+     *
+     * @return the number of operands
+     */
+    public int getOperandCount()
+    {
+        return operandCount;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= operandCount)
+        {
+            throw new IndexOutOfBoundsException("Operand " + index + " of " + operandCount);
+        }
+    }
+
+    /**
+     * Returns whether an operand is a number.
+     *
+     * @param index the index of the operand
+     * @return true if the operand is a number
+     */
+    public boolean isNumber(int index)
+    {
+        checkIndex(index);
+        return types[index] != OBJECT || objects[index] instanceof COSNumber;
+    }
+
+    /**
+     * Returns the value of a number operand as float, without creating an object.
+     *
+     * @param index the index of the operand
+     * @return the value of the operand
+     * @throws IllegalArgumentException if the operand isn't a number, see {@link #isNumber(int)}
+     */
+    public float getFloat(int index)
+    {
+        checkIndex(index);
+        switch (types[index])
+        {
+            case INTEGER:
+                return unscaledValues[index];
+            case REAL:
+                return COSFloat.decimalToFloat(unscaledValues[index], scales[index]);
+            default:
+                return getNumberObject(index).floatValue();
+        }
+    }
+
+    /**
+     * Returns the value of a number operand as int, without creating an object. Fractions are
+     * truncated.
+     *
+     * @param index the index of the operand
+     * @return the value of the operand
+     * @throws IllegalArgumentException if the operand isn't a number, see {@link #isNumber(int)}
+     */
+    public int getInt(int index)
+    {
+        checkIndex(index);
+        switch (types[index])
+        {
+            case INTEGER:
+                return (int) unscaledValues[index];
+            case REAL:
+                return (int) COSFloat.decimalToFloat(unscaledValues[index], scales[index]);
+            default:
+                return getNumberObject(index).intValue();
+        }
+    }
+
+    private COSNumber getNumberObject(int index)
+    {
+        if (!(objects[index] instanceof COSNumber))
+        {
+            throw new IllegalArgumentException("Operand " + index + " of " + operator
+                    + " is not a number: " + objects[index]);
+        }
+        return (COSNumber) objects[index];
+    }
+
+    /**
+     * Returns a name operand.
+     *
+     * @param index the index of the operand
+     * @return the name, or null if the operand isn't a name
+     */
+    public COSName getName(int index)
+    {
+        checkIndex(index);
+        return objects[index] instanceof COSName ? (COSName) objects[index] : null;
+    }
+
+    /**
+     * Returns an operand as object. Numbers are turned into objects, so that the primitive
+     * accessors are to be preferred for them.
+     *
+     * @param index the index of the operand
+     * @return the operand, may be null for an undefined reference
+     */
+    public COSBase getOperand(int index)
+    {
+        checkIndex(index);
+        switch (types[index])
+        {
+            case INTEGER:
+                return COSInteger.get(unscaledValues[index]);
+            case REAL:
+                return new COSFloat(unscaledValues[index], scales[index]);
+            default:
+                return objects[index];
+        }
+    }
+
+    /**
+     * Adds all operands of the current operator to the given list, as objects.
+     *
+     * @param operands the list to add the operands to
+     */
+    public void getOperands(List<COSBase> operands)
+    {
+        for (int i = 0; i < operandCount; i++)
+        {
+            operands.add(getOperand(i));
+        }
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if the stream can't be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        parser.close();
+    }
+}
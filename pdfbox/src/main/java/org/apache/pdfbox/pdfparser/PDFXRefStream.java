@@ -106,7 +106,8 @@ public class PDFXRefStream implements PDFXRef
         {
             // "Other cross-reference stream entries not listed in Table 17 may be indirect; in fact, 
             // some (such as Root in Table 15) shall be indirect."
-            if (COSName.ROOT.equals(cosName) || COSName.INFO.equals(cosName) || COSName.PREV.equals(cosName))
+            if (COSName.ROOT.equals(cosName) || COSName.INFO.equals(cosName)
+                    || COSName.PREV.equals(cosName) || COSName.ENCRYPT.equals(cosName))
             {
                 continue;
             }
@@ -151,10 +152,17 @@ public class PDFXRefStream implements PDFXRef
             value.nextFree = entry.getKey().getNumber();
             streamData.put(value.nextFree, value);
         }
+        else if (entry.isCompressed())
+        {
+            // an object stored in an object stream, the offset is its index within the stream
+            ObjectStreamReference value = new ObjectStreamReference();
+            value.objectNumberOfObjectStream = entry.getObjectStreamNumber();
+            value.offset = entry.getOffset();
+            streamData.put(entry.getKey().getNumber(), value);
+        }
         else
         {
-            // we don't care for ObjectStreamReferences for now and only handle
-            // normal references that would be f-Entrys in the xref table.
+            // normal references that would be n-Entrys in the xref table.
             NormalReference value = new NormalReference();
             value.genNumber = entry.getKey().getGeneration();
             value.offset = entry.getOffset();
@@ -190,8 +198,8 @@ public class PDFXRefStream implements PDFXRef
             {
                 ObjectStreamReference objStream = (ObjectStreamReference)entry;
                 wMax[0] = Math.max(wMax[0], ENTRY_OBJSTREAM); // the type field for a objstm reference
-                wMax[1] = Math.max(wMax[1], objStream.offset);
-                wMax[2] = Math.max(wMax[2], objStream.objectNumberOfObjectStream);
+                wMax[1] = Math.max(wMax[1], objStream.objectNumberOfObjectStream);
+                wMax[2] = Math.max(wMax[2], objStream.offset);
             }
             // TODO add here if new standard versions define new types
             else
@@ -296,8 +304,8 @@ public class PDFXRefStream implements PDFXRef
             {
                 ObjectStreamReference objStream = (ObjectStreamReference)entry;
                 writeNumber(os, ENTRY_OBJSTREAM, w[0]);
-                writeNumber(os, objStream.offset, w[1]);
-                writeNumber(os, objStream.objectNumberOfObjectStream, w[2]);
+                writeNumber(os, objStream.objectNumberOfObjectStream, w[1]);
+                writeNumber(os, objStream.offset, w[2]);
             }
             // TODO add here if new standard versions define new types
             else
@@ -18,9 +18,7 @@ package org.apache.pdfbox.pdfparser;
 
 import java.io.IOException;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSBase;
@@ -28,7 +26,6 @@ import org.apache.pdfbox.cos.COSDocument;
 import org.apache.pdfbox.cos.COSInteger;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSStream;
-import org.apache.pdfbox.cos.COSObjectKey;
 
 /**
  * This will parse a PDF 1.5 (or better) Xref stream and
@@ -60,7 +57,7 @@ public class PDFXrefStreamParser extends BaseParser
     }
 
     /**
-     * Parses through the unfiltered stream and populates the xrefTable HashMap.
+     * Parses through the unfiltered stream and populates the xref table.
      * @throws IOException If there is an error while parsing the stream.
      */
     public void parse() throws IOException
@@ -83,22 +80,20 @@ public class PDFXrefStreamParser extends BaseParser
             indexArray.add(stream.getDictionaryObject(COSName.SIZE));
         }
 
-        List<Long> objNums = new ArrayList<Long>();
-
         /*
-         * Populates objNums with all object numbers available
+         * Collect the object number ranges as pairs of first object number and count
          */
+        long[] objRanges = new long[indexArray.size() + 1];
+        int rangeCount = 0;
         Iterator<COSBase> indexIter = indexArray.iterator();
         while(indexIter.hasNext())
         {
-            long objID = ((COSInteger)indexIter.next()).longValue();
-            int size = ((COSInteger)indexIter.next()).intValue();
-            for(int i = 0; i < size; i++)
-            {
-                objNums.add(objID + i);
-            }
+            objRanges[rangeCount++] = ((COSInteger)indexIter.next()).longValue();
+            objRanges[rangeCount++] = indexIter.hasNext() ? ((COSInteger)indexIter.next()).intValue() : 0;
         }
-        Iterator<Long> objIter = objNums.iterator();
+        int currentRange = 0;
+        long objID = rangeCount > 0 ? objRanges[0] : 0;
+        long objsLeftInRange = rangeCount > 0 ? objRanges[1] : 0;
         /*
          * Calculating the size of the line in bytes
          */
@@ -107,9 +102,20 @@ public class PDFXrefStreamParser extends BaseParser
         int w2 = xrefFormat.getInt(2);
         int lineSize = w0 + w1 + w2;
 
-        while(!seqSource.isEOF() && objIter.hasNext())
+        byte[] currLine = new byte[lineSize];
+        while(!seqSource.isEOF())
         {
-            byte[] currLine = new byte[lineSize];
+            // move on to the next range with remaining objects
+            while (objsLeftInRange == 0 && currentRange + 2 < rangeCount)
+            {
+                currentRange += 2;
+                objID = objRanges[currentRange];
+                objsLeftInRange = objRanges[currentRange + 1];
+            }
+            if (objsLeftInRange <= 0)
+            {
+                break;
+            }
             seqSource.read(currLine);
 
             int type = 0;
@@ -121,8 +127,6 @@ public class PDFXrefStreamParser extends BaseParser
             {
                 type += (currLine[i] & 0x00ff) << ((w0 - i - 1)* 8);
             }
-            //Need to remember the current objID
-            Long objID = objIter.next();
             /*
              * 3 different types of entries.
              */
@@ -144,8 +148,7 @@ public class PDFXrefStreamParser extends BaseParser
                     {
                         genNum += (currLine[i + w0 + w1] & 0x00ff) << ((w2 - i - 1) * 8);
                     }
-                    COSObjectKey objKey = new COSObjectKey(objID, genNum);
-                    xrefTrailerResolver.setXRef(objKey, offset);
+                    xrefTrailerResolver.setXRef(objID, genNum, offset);
                     break;
                 case 2:
                     /*
@@ -168,12 +171,13 @@ public class PDFXrefStreamParser extends BaseParser
                     {
                         objstmObjNr += (currLine[i + w0] & 0x00ff) << ((w1 - i - 1) * 8);
                     }    
-                    objKey = new COSObjectKey( objID, 0 );
-                    xrefTrailerResolver.setXRef( objKey, -objstmObjNr );
+                    xrefTrailerResolver.setXRef( objID, 0, -objstmObjNr );
                     break;
                 default:
                     break;
             }
+            objID++;
+            objsLeftInRange--;
         }
     }
 }
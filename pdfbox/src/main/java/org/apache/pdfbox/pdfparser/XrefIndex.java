@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.cos.XrefTable;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdfparser.XrefTrailerResolver.XRefType;
+
+/**
+ * The resolved cross reference information of a PDF, which can be stored in a small binary
+ * sidecar file. Parsing and validating the xref tables of a document which is opened again and
+ * again can be skipped by reading the index instead.
+ *
+ * The index is only valid for the file it was created for. It is identified by the length of
+ * the file and a hash of its trailing bytes, which change with every incremental update.
+ *
+ * The object stream membership of compressed objects is part of the xref table, where it is
+ * stored as the negated object number of the object stream.
+ */
+final class XrefIndex
+{
+    private static final int MAGIC = 0x50425849; // "PBXI"
+    private static final int VERSION = 1;
+
+    /** number of trailing bytes which are hashed to identify the file */
+    private static final int TAIL_LENGTH = 4096;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_BOOLEAN = 1;
+    private static final int TYPE_INTEGER = 2;
+    private static final int TYPE_FLOAT = 3;
+    private static final int TYPE_NAME = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_ARRAY = 6;
+    private static final int TYPE_DICTIONARY = 7;
+    private static final int TYPE_REFERENCE = 8;
+
+    private final long fileLength;
+    private final byte[] tailHash;
+    private final long startXref;
+    private final XRefType xrefType;
+    private final COSDictionary trailer;
+    private final XrefTable xrefTable;
+
+    /**
+     * Constructor.
+     *
+     * @param fileLength the length of the indexed file
+     * @param tailHash the hash of the trailing bytes of the indexed file
+     * @param startXref the offset of the first xref table or stream
+     * @param xrefType the type of the first xref section, may be null
+     * @param trailer the resolved trailer
+     * @param xrefTable the resolved xref table
+     */
+    XrefIndex(long fileLength, byte[] tailHash, long startXref, XRefType xrefType,
+            COSDictionary trailer, XrefTable xrefTable)
+    {
+        this.fileLength = fileLength;
+        this.tailHash = tailHash;
+        this.startXref = startXref;
+        this.xrefType = xrefType;
+        this.trailer = trailer;
+        this.xrefTable = xrefTable;
+    }
+
+    long getStartXref()
+    {
+        return startXref;
+    }
+
+    XRefType getXrefType()
+    {
+        return xrefType;
+    }
+
+    COSDictionary getTrailer()
+    {
+        return trailer;
+    }
+
+    XrefTable getXrefTable()
+    {
+        return xrefTable;
+    }
+
+    /**
+     * Computes the hash of the trailing bytes of the given source. The position of the source is
+     * restored afterwards.
+     *
+     * @param source the source to be hashed
+     * @return the hash value
+     * @throws IOException if the source couldn't be read
+     */
+    static byte[] computeTailHash(RandomAccessRead source) throws IOException
+    {
+        long originOffset = source.getPosition();
+        long length = source.length();
+        int tailLength = (int) Math.min(length, TAIL_LENGTH);
+        source.seek(length - tailLength);
+        byte[] tail = source.readFully(tailLength);
+        source.seek(originOffset);
+        try
+        {
+            return MessageDigest.getInstance("SHA-1").digest(tail);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Reads an index file. Object references of the trailer are resolved using the object pool of
+     * the given document.
+     *
+     * @param file the index file
+     * @param length the length of the indexed file
+     * @param hash the hash of the trailing bytes of the indexed file
+     * @param document the document the index belongs to
+     * @return the index or null if the index was created for a different file
+     * @throws IOException if the file couldn't be read or has an invalid format
+     */
+    static XrefIndex read(File file, long length, byte[] hash, COSDocument document)
+            throws IOException
+    {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try
+        {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            {
+                throw new IOException("Unsupported xref index format in " + file);
+            }
+            long fileLength = input.readLong();
+            byte[] tailHash = new byte[input.readUnsignedByte()];
+            input.readFully(tailHash);
+            if (fileLength != length || !Arrays.equals(tailHash, hash))
+            {
+                return null;
+            }
+            long startXref = input.readLong();
+            int type = input.readByte();
+            if (type >= XRefType.values().length)
+            {
+                throw new IOException("Invalid xref type " + type + " in xref index " + file);
+            }
+            XRefType xrefType = type < 0 ? null : XRefType.values()[type];
+            COSBase trailer = readObject(input, document);
+            if (!(trailer instanceof COSDictionary))
+            {
+                throw new IOException("Invalid trailer in xref index " + file);
+            }
+            int size = input.readInt();
+            XrefTable xrefTable = new XrefTable(size);
+            for (int i = 0; i < size; i++)
+            {
+                long number = input.readLong();
+                int generation = input.readInt();
+                xrefTable.put(number, generation, input.readLong());
+            }
+            return new XrefIndex(fileLength, tailHash, startXref, xrefType,
+                    (COSDictionary) trailer, xrefTable);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes this index to the given file. The index is written to a temporary file first, which
+     * is renamed afterwards, so that concurrent readers never see an incomplete index.
+     *
+     * @param file the index file
+     * @throws IOException if the file couldn't be written or the trailer contains an object
+     * which can't be stored in an index
+     */
+    void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try
+        {
+            writeTo(tmpFile);
+            if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file)))
+            {
+                throw new IOException("Couldn't rename " + tmpFile + " to " + file);
+            }
+        }
+        finally
+        {
+            if (tmpFile.exists() && !tmpFile.delete())
+            {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void writeTo(File file) throws IOException
+    {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fileLength);
+            output.writeByte(tailHash.length);
+            output.write(tailHash);
+            output.writeLong(startXref);
+            output.writeByte(xrefType == null ? -1 : xrefType.ordinal());
+            writeObject(output, trailer);
+            output.writeInt(xrefTable.size());
+            for (int slot = xrefTable.nextSlot(-1); slot >= 0; slot = xrefTable.nextSlot(slot))
+            {
+                output.writeLong(xrefTable.getNumberAt(slot));
+                output.writeInt(xrefTable.getGenerationAt(slot));
+                output.writeLong(xrefTable.getOffsetAt(slot));
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    private static void writeObject(DataOutputStream output, COSBase object) throws IOException
+    {
+        if (object == null || object instanceof COSNull)
+        {
+            output.writeByte(TYPE_NULL);
+        }
+        else if (object instanceof COSBoolean)
+        {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean(((COSBoolean) object).getValue());
+        }
+        else if (object instanceof COSInteger)
+        {
+            output.writeByte(TYPE_INTEGER);
+            output.writeLong(((COSInteger) object).longValue());
+        }
+        else if (object instanceof COSFloat)
+        {
+            // keep the textual representation to preserve the exact value
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            ((COSFloat) object).writePDF(text);
+            output.writeByte(TYPE_FLOAT);
+            output.writeUTF(text.toString("ISO-8859-1"));
+        }
+        else if (object instanceof COSName)
+        {
+            output.writeByte(TYPE_NAME);
+            output.writeUTF(((COSName) object).getName());
+        }
+        else if (object instanceof COSString)
+        {
+            COSString string = (COSString) object;
+            output.writeByte(TYPE_STRING);
+            output.writeBoolean(string.getForceHexForm());
+            output.writeInt(string.getBytes().length);
+            output.write(string.getBytes());
+        }
+        else if (object instanceof COSArray)
+        {
+            COSArray array = (COSArray) object;
+            output.writeByte(TYPE_ARRAY);
+            output.writeInt(array.size());
+            for (int i = 0; i < array.size(); i++)
+            {
+                writeObject(output, array.get(i));
+            }
+        }
+        else if (object instanceof COSObject)
+        {
+            COSObject reference = (COSObject) object;
+            output.writeByte(TYPE_REFERENCE);
+            output.writeLong(reference.getObjectNumber());
+            output.writeInt(reference.getGenerationNumber());
+        }
+        else if (object.getClass() == COSDictionary.class)
+        {
+            COSDictionary dictionary = (COSDictionary) object;
+            output.writeByte(TYPE_DICTIONARY);
+            output.writeInt(dictionary.size());
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet())
+            {
+                output.writeUTF(entry.getKey().getName());
+                writeObject(output, entry.getValue());
+            }
+        }
+        else
+        {
+            throw new IOException("Can't store " + object.getClass().getSimpleName()
+                    + " in an xref index");
+        }
+    }
+
+    private static COSBase readObject(DataInputStream input, COSDocument document)
+            throws IOException
+    {
+        int type = input.readByte();
+        switch (type)
+        {
+            case TYPE_NULL:
+                return COSNull.NULL;
+            case TYPE_BOOLEAN:
+                return COSBoolean.getBoolean(input.readBoolean());
+            case TYPE_INTEGER:
+                return COSInteger.get(input.readLong());
+            case TYPE_FLOAT:
+                return new COSFloat(input.readUTF());
+            case TYPE_NAME:
+                return COSName.getPDFName(input.readUTF());
+            case TYPE_STRING:
+            {
+                boolean forceHex = input.readBoolean();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                COSString string = new COSString(bytes);
+                string.setForceHexForm(forceHex);
+                return string;
+            }
+            case TYPE_ARRAY:
+            {
+                int size = input.readInt();
+                COSArray array = new COSArray();
+                for (int i = 0; i < size; i++)
+                {
+                    array.add(readObject(input, document));
+                }
+                return array;
+            }
+            case TYPE_DICTIONARY:
+            {
+                int size = input.readInt();
+                COSDictionary dictionary = new COSDictionary();
+                for (int i = 0; i < size; i++)
+                {
+                    COSName key = COSName.getPDFName(input.readUTF());
+                    dictionary.setItem(key, readObject(input, document));
+                }
+                return dictionary;
+            }
+            case TYPE_REFERENCE:
+            {
+                long number = input.readLong();
+                int generation = input.readInt();
+                return document.getObjectFromPool(new COSObjectKey(number, generation));
+            }
+            default:
+                throw new IOException("Unknown object type " + type + " in xref index");
+        }
+    }
+}
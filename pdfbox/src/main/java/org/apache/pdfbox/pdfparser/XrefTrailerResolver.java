@@ -19,11 +19,9 @@ package org.apache.pdfbox.pdfparser;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Map.Entry;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -32,6 +30,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.XrefTable;
 
 /**
  * This class will collect all XRef/trailer objects and creates correct
@@ -65,7 +64,7 @@ public class XrefTrailerResolver
 
         private XRefType xrefType;
 
-        private final Map<COSObjectKey, Long> xrefTable = new HashMap<COSObjectKey, Long>();
+        private final XrefTable xrefTable = new XrefTable();
         
         /**
          *  Default constructor.
@@ -158,14 +157,25 @@ public class XrefTrailerResolver
      * @param offset The byte offset in this file
      */
     public void setXRef( COSObjectKey objKey, long offset )
+    {
+        setXRef( objKey.getNumber(), objKey.getGeneration(), offset );
+    }
+
+    /**
+     * Populate XRef table of current XRef object without creating an object key.
+     * @param objNr The object number
+     * @param genNr The generation number
+     * @param offset The byte offset in this file or the negated object stream number
+     */
+    public void setXRef( long objNr, int genNr, long offset )
     {
         if ( curXrefTrailerObj == null )
         {
             // should not happen...
-            LOG.warn( "Cannot add XRef entry for '" + objKey.getNumber() + "' because XRef start was not signalled." );
+            LOG.warn( "Cannot add XRef entry for '" + objNr + "' because XRef start was not signalled." );
             return;
         }
-        curXrefTrailerObj.xrefTable.put( objKey, offset );
+        curXrefTrailerObj.xrefTable.put( objNr, genNr, offset );
     }
 
     /**
@@ -278,6 +288,27 @@ public class XrefTrailerResolver
 
     }
 
+    /**
+     * Sets the resolved trailer and xref table directly instead of resolving them from the
+     * parsed XRef objects, e.g. if they were restored from an index.
+     *
+     * @param trailer the resolved trailer
+     * @param xrefTable the resolved xref table
+     * @param xrefType the type of the first XRef object
+     */
+    public void setResolved( COSDictionary trailer, XrefTable xrefTable, XRefType xrefType )
+    {
+        if ( resolvedXrefTrailer != null )
+        {
+            LOG.warn( "Method must be called only ones with last startxref value." );
+            return;
+        }
+        resolvedXrefTrailer = new XrefTrailerObj();
+        resolvedXrefTrailer.trailer = trailer;
+        resolvedXrefTrailer.xrefType = xrefType;
+        resolvedXrefTrailer.xrefTable.putAll( xrefTable );
+    }
+
     /**
      * Gets the resolved trailer. Might return <code>null</code> in case
      * {@link #setStartxref(long)} was not called before.
@@ -295,7 +326,7 @@ public class XrefTrailerResolver
      *
      * @return the xrefTable if available
      */
-    public Map<COSObjectKey, Long> getXrefTable()
+    public XrefTable getXrefTable()
     {
         return ( resolvedXrefTrailer == null ) ? null : resolvedXrefTrailer.xrefTable;
     }
@@ -319,16 +350,6 @@ public class XrefTrailerResolver
         {
             return null;
         }
-        final Set<Long> refObjNrs = new HashSet<Long>();
-        final long cmpVal = - objstmObjNr;
-        
-        for ( Entry<COSObjectKey,Long> xrefEntry : resolvedXrefTrailer.xrefTable.entrySet() ) 
-        {
-            if ( xrefEntry.getValue() == cmpVal )
-            {
-                refObjNrs.add( xrefEntry.getKey().getNumber() );
-            }
-        }
-        return refObjNrs;
+        return resolvedXrefTrailer.xrefTable.getObjectStreamMembers( objstmObjNr );
     }
 }
@@ -69,6 +69,19 @@ public class COSStandardOutputStream extends FilterOutputStream
         super(out);
         this.position = position;
     }
+
+    /**
+     * COSOutputStream constructor for output streams which are positioned after a large amount
+     * of data.
+     *
+     * @param out The underlying stream to write to.
+     * @param position The current position of output stream.
+     */
+    public COSStandardOutputStream(OutputStream out, long position)
+    {
+        super(out);
+        this.position = position;
+    }
     
     /**
      * This will get the current position in the stream.
@@ -19,25 +19,31 @@ package org.apache.pdfbox.pdfwriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.SequenceInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -57,7 +63,11 @@ import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.cos.COSUpdateInfo;
 import org.apache.pdfbox.cos.ICOSVisitor;
+import org.apache.pdfbox.cos.XrefTable;
+import org.apache.pdfbox.filter.FilterFactory;
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
 import org.apache.pdfbox.pdfparser.PDFXRefStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.encryption.SecurityHandler;
@@ -156,12 +166,12 @@ public class COSWriter implements ICOSVisitor, Closeable
      */
     public static final byte[] ENDSTREAM = "endstream".getBytes(Charsets.US_ASCII);
     
-    private final NumberFormat formatXrefOffset = new DecimalFormat("0000000000");
+    // the length of an entry in a cross reference table, including the end of line
+    private static final int XREF_ENTRY_LENGTH = 20;
 
-    // the decimal format for the xref object generation number data
-    private final NumberFormat formatXrefGeneration = new DecimalFormat("00000");
-
-    private final NumberFormat formatDecimal = NumberFormat.getNumberInstance( Locale.US );
+    // buffers for formatting numbers and cross reference entries
+    private final byte[] numberBuffer = new byte[20];
+    private final byte[] xrefEntryBuffer = new byte[XREF_ENTRY_LENGTH];
 
     // the stream where we create the pdf output
     private OutputStream output;
@@ -175,30 +185,22 @@ public class COSWriter implements ICOSVisitor, Closeable
     // the current object number
     private long number = 0;
 
-    // maps the object to the keys generated in the writer
-    // these are used for indirect references in other objects
-    //A hashtable is used on purpose over a hashmap
-    //so that null entries will not get added.
-    private final Map<COSBase,COSObjectKey> objectKeys = new Hashtable<COSBase,COSObjectKey>();
-    private final Map<COSObjectKey,COSBase> keyObject = new Hashtable<COSObjectKey,COSBase>();
-
-    // the list of x ref entries to be made so far
-    private final List<COSWriterXRefEntry> xRefEntries = new ArrayList<COSWriterXRefEntry>();
-    private final Set<COSBase> objectsToWriteSet = new HashSet<COSBase>();
-
-    //A list of objects to write.
-    private final Deque<COSBase> objectsToWrite = new LinkedList<COSBase>();
-
-    //a list of objects already written
-    private final Set<COSBase> writtenObjects = new HashSet<COSBase>();
-
+    // maps the objects to the keys generated in the writer, which are used for indirect
+    // references in other objects, and tracks which objects are queued and written.
     //An 'actual' is any COSBase that is not a COSObject.
-    //need to keep a list of the actuals that are added
+    //need to keep track of the actuals that are added
     //as well as the objects because there is a problem
     //when adding a COSObject and then later adding
     //the actual for that object, so we will track
     //actuals separately.
-    private final Set<COSBase> actualsAdded = new HashSet<COSBase>();
+    private ObjectRegistry registry = ObjectRegistry.create();
+    private final Map<COSObjectKey,COSBase> keyObject = new HashMap<COSObjectKey,COSBase>();
+
+    // the list of x ref entries to be made so far
+    private final List<COSWriterXRefEntry> xRefEntries = new ArrayList<COSWriterXRefEntry>();
+
+    //A list of objects to write.
+    private final Deque<COSBase> objectsToWrite = new ArrayDeque<COSBase>();
 
     private COSObjectKey currentObjectKey = null;
     private PDDocument pdDocument = null;
@@ -211,9 +213,42 @@ public class COSWriter implements ICOSVisitor, Closeable
     private long signatureOffset, signatureLength;
     private long byteRangeOffset, byteRangeLength;
     private InputStream incrementalInput;
+    private long incrementalLength;
+    private boolean incrementalAppend = false;
+    private RandomAccessRead incrementalData;
     private OutputStream incrementalOutput;
     private SignatureInterface signatureInterface;
 
+    // write a linearized document
+    private boolean linearized = false;
+
+    // compress objects into object streams
+    private static final int OBJECT_STREAM_SIZE = 100;
+    private boolean compressed = false;
+    private COSStream objectStream;
+    private COSObjectKey objectStreamKey;
+    private ByteArrayOutputStream objectStreamHeader;
+    private ByteArrayOutputStream objectStreamBuffer;
+    private COSStandardOutputStream objectStreamData;
+    private int objectStreamCount;
+    private final Map<COSStream, Future<byte[]>> objectStreams =
+            new LinkedHashMap<COSStream, Future<byte[]>>();
+
+    // Flate encode streams on an executor ahead of the output
+    private static final int MAX_PENDING_ENCODINGS = 32;
+    private Executor encodingExecutor;
+    private final Deque<COSStream> streamsToEncode = new ArrayDeque<COSStream>();
+    private final Map<COSStream, Future<byte[]>> encodedStreams =
+            new IdentityHashMap<COSStream, Future<byte[]>>();
+    // the stream which is written next and its Flate-encoded data, see doEncodeStream()
+    private COSStream encodedStream;
+    private byte[] encodedStreamData;
+
+    // write a document object by object
+    private boolean streaming = false;
+    private final Set<COSBase> deferredObjects = new HashSet<COSBase>();
+    private final List<COSBase> objectsDeferred = new ArrayList<COSBase>();
+
     /**
      * COSWriter constructor comment.
      *
@@ -224,8 +259,6 @@ public class COSWriter implements ICOSVisitor, Closeable
         super();
         setOutput(os);
         setStandardOutput(new COSStandardOutputStream(output));
-        formatDecimal.setMaximumFractionDigits( 10 );
-        formatDecimal.setGroupingUsed( false );
     }
     
     /**
@@ -241,55 +274,144 @@ public class COSWriter implements ICOSVisitor, Closeable
         super();
 
         // write to buffer instead of output
+        incrementalLength = inputStream.available();
         setOutput(new ByteArrayOutputStream());
-        setStandardOutput(new COSStandardOutputStream(output, inputStream.available()));
+        setStandardOutput(new COSStandardOutputStream(output, incrementalLength));
 
         incrementalInput = inputStream;
         incrementalOutput = outputStream;
         incrementalUpdate = true;
+    }
 
-        formatDecimal.setMaximumFractionDigits( 10 );
-        formatDecimal.setGroupingUsed( false );
+    /**
+     * COSWriter constructor for incremental updates which are appended to the source PDF data.
+     * Only the changed objects, the cross reference section and the trailer are written, the
+     * source data isn't copied. The output must continue the source data, e.g. a
+     * FileOutputStream opened in append mode for the file the document was loaded from.
+     *
+     * @param appendOutput output stream where the incremental update will be written
+     * @param inputData the source PDF data, it is only read when a signature is created
+     *
+     * @throws IOException if something went wrong
+     */
+    public COSWriter(OutputStream appendOutput, RandomAccessRead inputData) throws IOException
+    {
+        super();
+
+        // write to buffer instead of output, as a signature is filled in at the end
+        incrementalLength = inputData.length();
+        setOutput(new ByteArrayOutputStream());
+        setStandardOutput(new COSStandardOutputStream(output, incrementalLength));
+
+        incrementalData = inputData;
+        incrementalOutput = appendOutput;
+        incrementalUpdate = true;
+        incrementalAppend = true;
     }
 
     private void prepareIncrement(PDDocument doc)
     {
-      try
-      {
         if (doc != null)
         {
-          COSDocument cosDoc = doc.getDocument();
-          
-          Map<COSObjectKey, Long> xrefTable = cosDoc.getXrefTable();
-          Set<COSObjectKey> keySet = xrefTable.keySet();
-          long highestNumber=0;
-          for ( COSObjectKey cosObjectKey : keySet ) 
-          {
-            COSBase object = cosDoc.getObjectFromPool(cosObjectKey).getObject();
-            if (object != null && cosObjectKey!= null && !(object instanceof COSNumber))
-            {
-                objectKeys.put(object, cosObjectKey);
-                keyObject.put(cosObjectKey,object);
-            }
-            
-            if (cosObjectKey != null)
+            COSDocument cosDoc = doc.getDocument();
+
+            XrefTable xrefTable = cosDoc.getXrefTable();
+            for (COSObject reference : cosDoc.getObjects())
             {
-                long num = cosObjectKey.getNumber();
-                if (num > highestNumber)
+                COSObjectKey cosObjectKey = new COSObjectKey(reference);
+                if (!xrefTable.containsKey(cosObjectKey))
                 {
-                    highestNumber = num;
+                    continue;
+                }
+                // objects which haven't been loaded can't have been changed, so they are
+                // neither parsed nor written
+                registry.setKey(reference, cosObjectKey);
+                if (reference.isObjectLoaded())
+                {
+                    COSBase object = reference.getObject();
+                    if (!(object instanceof COSNumber))
+                    {
+                        registry.setKey(object, cosObjectKey);
+                        keyObject.put(cosObjectKey, object);
+                    }
                 }
             }
-          }
-          setNumber(highestNumber);
+            setNumber(xrefTable.getHighestNumber());
         }
-      }
-      catch (IOException e)
-      {
-          LOG.error(e,e);
-      }
     }
     
+    /**
+     * Tells whether a linearized document ("fast web view") is written.
+     *
+     * @return true if a linearized document is written
+     */
+    public boolean isLinearized()
+    {
+        return linearized;
+    }
+
+    /**
+     * Enables writing a linearized document ("fast web view"). The objects are reordered, so that
+     * a viewer can display the first page before the whole file has been loaded, and hint tables
+     * describing the location of the other pages are added. Objects aren't compressed into object
+     * streams then. This is ignored for incremental updates, FDF documents and documents without
+     * pages.
+     *
+     * @param linearized true if a linearized document is to be written
+     */
+    public void setLinearized(boolean linearized)
+    {
+        this.linearized = linearized;
+    }
+
+    /**
+     * Tells whether objects are compressed into object streams.
+     *
+     * @return true if object streams and a cross reference stream are written
+     */
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+
+    /**
+     * Enables compressing objects into object streams. All objects which aren't streams are
+     * stored in Flate-compressed object streams, and a cross reference stream replaces the cross
+     * reference table. Streams without a filter are written Flate-encoded, except for metadata,
+     * the streams of the document aren't changed. The document is written as PDF 1.5 at least.
+     * This is ignored for incremental updates and FDF documents, and if a linearized document is
+     * written, see {@link #setLinearized(boolean)}.
+     *
+     * @param compressed true if object streams and a cross reference stream are to be written
+     */
+    public void setCompressed(boolean compressed)
+    {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Returns the executor used for encoding streams.
+     *
+     * @return the executor, or null if streams are encoded while they are written
+     */
+    public Executor getEncodingExecutor()
+    {
+        return encodingExecutor;
+    }
+
+    /**
+     * Sets an executor for encoding streams when objects are compressed, see
+     * {@link #setCompressed(boolean)}. The object streams and the streams without a filter are
+     * then Flate-encoded on the executor ahead of the output, instead of one after the other
+     * while they are written. The output is the same with and without an executor.
+     *
+     * @param executor the executor, or null to encode streams while they are written
+     */
+    public void setEncodingExecutor(Executor executor)
+    {
+        this.encodingExecutor = executor;
+    }
+
     /**
      * add an entry in the x ref table for later dump.
      *
@@ -333,13 +455,14 @@ public class COSWriter implements ICOSVisitor, Closeable
     }
 
     /**
-     * This will get all available object keys.
+     * This will get all available object keys. The map is a copy, which compares the objects by
+     * identity; it doesn't reflect objects which are written later.
      *
      * @return A map of all object keys.
      */
     public Map<COSBase,COSObjectKey> getObjectKeys()
     {
-        return objectKeys;
+        return registry.getKeys();
     }
 
     /**
@@ -446,9 +569,18 @@ public class COSWriter implements ICOSVisitor, Closeable
         while( objectsToWrite.size() > 0 )
         {
             COSBase nextObject = objectsToWrite.removeFirst();
-            objectsToWriteSet.remove(nextObject);
-            doWriteObject( nextObject );
+            registry.setQueued(nextObject, false);
+            if (isCompressing() && isCompressible(nextObject))
+            {
+                doWriteCompressedObject(nextObject);
+            }
+            else
+            {
+                doEncodeStream(nextObject);
+                doWriteObject( nextObject );
+            }
         }
+        doWriteObjectStreams();
         willEncrypt = false;
         if( encrypt != null )
         {
@@ -458,46 +590,322 @@ public class COSWriter implements ICOSVisitor, Closeable
         while( objectsToWrite.size() > 0 )
         {
             COSBase nextObject = objectsToWrite.removeFirst();
-            objectsToWriteSet.remove(nextObject);
+            registry.setQueued(nextObject, false);
             doWriteObject( nextObject );
         }
     }
 
-    private void addObjectToWrite( COSBase object )
+    private void addObjectToWrite( COSBase object ) throws IOException
     {
+        if (isUnchangedReference(object))
+        {
+            return;
+        }
         COSBase actual = object;
         if( actual instanceof COSObject )
         {
             actual = ((COSObject)actual).getObject();
         }
 
-        if( !writtenObjects.contains( object ) &&
-            !objectsToWriteSet.contains( object ) &&
-            !actualsAdded.contains( actual ) )
+        if( !registry.isWritten( object ) &&
+            !registry.isQueued( object ) &&
+            !registry.isActualAdded( actual ) )
         {
             COSBase cosBase=null;
             COSObjectKey cosObjectKey = null;
             if(actual != null)
             {
-                cosObjectKey= objectKeys.get(actual);
+                cosObjectKey= registry.getKey(actual);
+                if (cosObjectKey == null && incrementalUpdate && object != actual)
+                {
+                    // the object has been loaded after the writing began
+                    cosObjectKey = registry.getKey(object);
+                    if (cosObjectKey != null)
+                    {
+                        registry.setKey(actual, cosObjectKey);
+                        keyObject.put(cosObjectKey, actual);
+                    }
+                }
             }
             if(cosObjectKey!=null)
             {
                 cosBase = keyObject.get(cosObjectKey);
             }
-            if (actual != null && objectKeys.containsKey(actual) 
+            if (cosObjectKey != null
                     && object instanceof COSUpdateInfo && !((COSUpdateInfo)object).isNeedToBeUpdated() 
                     && cosBase instanceof COSUpdateInfo && !((COSUpdateInfo)cosBase).isNeedToBeUpdated() )
             {
                 return;
             }
             objectsToWrite.add( object );
-            objectsToWriteSet.add( object );
+            registry.setQueued( object, true );
             if( actual != null )
             {
-                actualsAdded.add( actual );
+                registry.setActualAdded( actual );
+            }
+            if (encodingExecutor != null && needsEncoding(actual))
+            {
+                streamsToEncode.add((COSStream) actual);
+                submitEncodings();
+            }
+        }
+    }
+
+    // object streams are only written when the whole document is written, and not within the
+    // layout of a linearized document
+    private boolean isCompressing()
+    {
+        return compressed && !incrementalUpdate && pdDocument != null && !isLinearizing();
+    }
+
+    // a linearized document is only written when the whole document is written
+    private boolean isLinearizing()
+    {
+        return linearized && !incrementalUpdate && pdDocument != null
+                && pdDocument.getNumberOfPages() > 0;
+    }
+
+    // streams, signatures and objects with a generation number other than 0 must not be stored
+    // in an object stream
+    private boolean isCompressible(COSBase obj)
+    {
+        COSBase actual = obj;
+        if (actual instanceof COSObject)
+        {
+            actual = ((COSObject) actual).getObject();
+        }
+        if (actual instanceof COSStream)
+        {
+            return false;
+        }
+        if (actual instanceof COSDictionary)
+        {
+            COSBase itemType = ((COSDictionary) actual).getItem(COSName.TYPE);
+            if (COSName.SIG.equals(itemType) || COSName.DOC_TIME_STAMP.equals(itemType))
+            {
+                return false;
+            }
+        }
+        return getObjectKey(obj).getGeneration() == 0;
+    }
+
+    /**
+     * Adds an object to the current object stream, which is written when it is full.
+     *
+     * @param obj The object to write.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    private void doWriteCompressedObject(COSBase obj) throws IOException
+    {
+        registry.setWritten(obj);
+        if (objectStream == null)
+        {
+            objectStream = new COSStream();
+            objectStreamKey = getObjectKey(objectStream);
+            objectStreamHeader = new ByteArrayOutputStream();
+            objectStreamBuffer = new ByteArrayOutputStream();
+            objectStreamData = new COSStandardOutputStream(objectStreamBuffer);
+            objectStreamCount = 0;
+        }
+        currentObjectKey = getObjectKey(obj);
+        COSWriterXRefEntry entry = new COSWriterXRefEntry(objectStreamCount, obj, currentObjectKey);
+        entry.setObjectStreamNumber(objectStreamKey.getNumber());
+        addXRefEntry(entry);
+
+        String offset = currentObjectKey.getNumber() + " " + objectStreamData.getPos() + " ";
+        objectStreamHeader.write(offset.getBytes(Charsets.ISO_8859_1));
+
+        // the object stream is encrypted as a whole
+        COSStandardOutputStream output = getStandardOutput();
+        boolean encrypt = willEncrypt;
+        setStandardOutput(objectStreamData);
+        willEncrypt = false;
+        try
+        {
+            obj.accept(this);
+            objectStreamData.writeEOL();
+        }
+        finally
+        {
+            setStandardOutput(output);
+            willEncrypt = encrypt;
+        }
+        if (++objectStreamCount == OBJECT_STREAM_SIZE)
+        {
+            finishObjectStream();
+        }
+    }
+
+    // encodes the current object stream, which is written at the end of the body
+    private void finishObjectStream()
+    {
+        if (objectStream == null)
+        {
+            return;
+        }
+        objectStream.setItem(COSName.TYPE, COSName.OBJ_STM);
+        objectStream.setInt(COSName.N, objectStreamCount);
+        objectStream.setInt(COSName.FIRST, objectStreamHeader.size());
+        byte[] header = objectStreamHeader.toByteArray();
+        byte[] data = objectStreamBuffer.toByteArray();
+        byte[] decoded = new byte[header.length + data.length];
+        System.arraycopy(header, 0, decoded, 0, header.length);
+        System.arraycopy(data, 0, decoded, header.length, data.length);
+        objectStreams.put(objectStream, submitEncoding(new ByteArrayInputStream(decoded)));
+        objectStream = null;
+        objectStreamHeader = null;
+        objectStreamBuffer = null;
+        objectStreamData = null;
+    }
+
+    /**
+     * Writes the object streams.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    private void doWriteObjectStreams() throws IOException
+    {
+        finishObjectStream();
+        for (Map.Entry<COSStream, Future<byte[]>> entry : objectStreams.entrySet())
+        {
+            setEncodedData(entry.getKey(), getEncodedData(entry.getValue()));
+            doWriteObject(entry.getKey());
+        }
+        objectStreams.clear();
+    }
+
+    // streams without a filter are Flate-encoded when objects are compressed
+    private boolean needsEncoding(COSBase actual)
+    {
+        if (!isCompressing() || !(actual instanceof COSStream))
+        {
+            return false;
+        }
+        COSStream stream = (COSStream) actual;
+        return stream.getFilters() == null && !stream.containsKey(COSName.DECODE_PARMS)
+                && !COSName.METADATA.equals(stream.getCOSName(COSName.TYPE))
+                && stream.getLength() > 0;
+    }
+
+    /**
+     * Flate-encodes a stream before it is written, if needed. The stream may have been encoded
+     * on the executor already. The encoded data is only written to the output, the stream itself
+     * isn't changed.
+     *
+     * @param obj The object to be written.
+     *
+     * @throws IOException if the stream cannot be encoded
+     */
+    private void doEncodeStream(COSBase obj) throws IOException
+    {
+        COSBase actual = obj instanceof COSObject ? ((COSObject) obj).getObject() : obj;
+        if (!needsEncoding(actual))
+        {
+            return;
+        }
+        COSStream stream = (COSStream) actual;
+        Future<byte[]> encoded = encodedStreams.remove(stream);
+        if (encoded == null)
+        {
+            streamsToEncode.remove(stream);
+            encoded = submitEncoding(stream.createRawInputStream());
+        }
+        encodedStream = stream;
+        encodedStreamData = getEncodedData(encoded);
+        submitEncodings();
+    }
+
+    // submits the streams waiting to be encoded, as long as there are free slots
+    private void submitEncodings() throws IOException
+    {
+        while (encodedStreams.size() < MAX_PENDING_ENCODINGS && !streamsToEncode.isEmpty())
+        {
+            COSStream stream = streamsToEncode.removeFirst();
+            encodedStreams.put(stream, submitEncoding(stream.createRawInputStream()));
+        }
+    }
+
+    // Flate-encodes the data on the executor, or right away if there is none
+    private Future<byte[]> submitEncoding(final InputStream input)
+    {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call() throws IOException
+            {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                try
+                {
+                    FilterFactory.INSTANCE.getFilter(COSName.FLATE_DECODE)
+                            .encode(input, encoded, new COSDictionary(), 0);
+                }
+                finally
+                {
+                    input.close();
+                }
+                return encoded.toByteArray();
+            }
+        });
+        if (encodingExecutor != null)
+        {
+            encodingExecutor.execute(task);
+        }
+        else
+        {
+            task.run();
+        }
+        return task;
+    }
+
+    private static byte[] getEncodedData(Future<byte[]> encoded) throws IOException
+    {
+        try
+        {
+            return encoded.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding a stream");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
             }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // returns a copy of the stream with the given Flate-encoded data, which is written instead
+    // of the stream
+    private static COSStream createEncodedCopy(COSStream stream, byte[] encoded)
+            throws IOException
+    {
+        COSStream copy = new COSStream();
+        for (Map.Entry<COSName, COSBase> entry : stream.entrySet())
+        {
+            copy.setItem(entry.getKey(), entry.getValue());
+        }
+        setEncodedData(copy, encoded);
+        return copy;
+    }
+
+    // replaces the data of a stream with the given Flate-encoded data
+    private static void setEncodedData(COSStream stream, byte[] encoded) throws IOException
+    {
+        OutputStream out = stream.createRawOutputStream();
+        try
+        {
+            out.write(encoded);
         }
+        finally
+        {
+            out.close();
+        }
+        stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
     }
 
     /**
@@ -509,7 +917,7 @@ public class COSWriter implements ICOSVisitor, Closeable
      */
     public void doWriteObject( COSBase obj ) throws IOException
     {
-        writtenObjects.add( obj );
+        registry.setWritten( obj );
         if(obj instanceof COSDictionary)
         {
             COSBase itemType = ((COSDictionary) obj).getItem(COSName.TYPE);
@@ -522,11 +930,13 @@ public class COSWriter implements ICOSVisitor, Closeable
         // find the physical reference
         currentObjectKey = getObjectKey( obj );
         // add a x ref entry
-        addXRefEntry( new COSWriterXRefEntry(getStandardOutput().getPos(), obj, currentObjectKey));
+        // the entries don't keep the objects when streaming, as they aren't needed any longer
+        addXRefEntry(new COSWriterXRefEntry(getStandardOutput().getPos(), streaming ? null : obj,
+                currentObjectKey));
         // write the object
-        getStandardOutput().write(String.valueOf(currentObjectKey.getNumber()).getBytes(Charsets.ISO_8859_1));
+        writeNumber(currentObjectKey.getNumber());
         getStandardOutput().write(SPACE);
-        getStandardOutput().write(String.valueOf(currentObjectKey.getGeneration()).getBytes(Charsets.ISO_8859_1));
+        writeNumber(currentObjectKey.getGeneration());
         getStandardOutput().write(SPACE);
         getStandardOutput().write(OBJ);
         getStandardOutput().writeEOL();
@@ -552,7 +962,13 @@ public class COSWriter implements ICOSVisitor, Closeable
         }
         else
         {
-            headerString = "%PDF-"+ Float.toString(pdDocument.getDocument().getVersion());
+            float version = pdDocument.getDocument().getVersion();
+            if (isCompressing() && version < 1.5f)
+            {
+                // object streams were introduced with PDF 1.5
+                version = 1.5f;
+            }
+            headerString = "%PDF-"+ Float.toString(version);
         }
         getStandardOutput().write( headerString.getBytes(Charsets.ISO_8859_1) );
         
@@ -602,35 +1018,7 @@ public class COSWriter implements ICOSVisitor, Closeable
             // the file uses XrefStreams, so we need to update
             // it with an xref stream. We create a new one and fill it
             // with data available here
-
-            // create a new XRefStrema object
-            PDFXRefStream pdfxRefStream = new PDFXRefStream();
-
-            // add all entries from the incremental update.
-            List<COSWriterXRefEntry> xRefEntries2 = getXRefEntries();
-            for ( COSWriterXRefEntry cosWriterXRefEntry : xRefEntries2 )
-            {
-                pdfxRefStream.addEntry(cosWriterXRefEntry);
-            }
-
-            COSDictionary trailer = doc.getTrailer();
-            if (incrementalUpdate)
-            {
-                // use previous startXref value as new PREV value
-                trailer.setLong(COSName.PREV, doc.getStartXref());
-            }
-            else
-            {
-                trailer.removeItem(COSName.PREV);
-            }
-            pdfxRefStream.addTrailerInfo(trailer);
-            // the size is the highest object number+1. we add one more
-            // for the xref stream object we are going to write
-            pdfxRefStream.setSize(getNumber() + 2);
-
-            setStartxref(getStandardOutput().getPos());
-            COSStream stream2 = pdfxRefStream.getStream();
-            doWriteObject(stream2);
+            doWriteXRefStream(doc);
         }
 
         if (!doc.isXRefStream() || hybridPrev != -1)
@@ -648,6 +1036,39 @@ public class COSWriter implements ICOSVisitor, Closeable
         }
     }
 
+    // writes a cross reference stream containing the trailer information
+    private void doWriteXRefStream(COSDocument doc) throws IOException
+    {
+        // create a new XRefStrema object
+        PDFXRefStream pdfxRefStream = new PDFXRefStream();
+
+        // add all entries which have been written
+        List<COSWriterXRefEntry> xRefEntries2 = getXRefEntries();
+        for ( COSWriterXRefEntry cosWriterXRefEntry : xRefEntries2 )
+        {
+            pdfxRefStream.addEntry(cosWriterXRefEntry);
+        }
+
+        COSDictionary trailer = doc.getTrailer();
+        if (incrementalUpdate)
+        {
+            // use previous startXref value as new PREV value
+            trailer.setLong(COSName.PREV, doc.getStartXref());
+        }
+        else
+        {
+            trailer.removeItem(COSName.PREV);
+        }
+        pdfxRefStream.addTrailerInfo(trailer);
+        // the size is the highest object number+1. we add one more
+        // for the xref stream object we are going to write
+        pdfxRefStream.setSize(getNumber() + 2);
+
+        setStartxref(getStandardOutput().getPos());
+        COSStream stream2 = pdfxRefStream.getStream();
+        doWriteObject(stream2);
+    }
+
     // writes the "xref" table
     private void doWriteXRefTable() throws IOException
     {
@@ -680,15 +1101,43 @@ public class COSWriter implements ICOSVisitor, Closeable
         }
     }
 
-    private void doWriteSignature() throws IOException
+    /**
+     * Writes the source data, unless the update is appended to it, and the incremental update,
+     * after filling in the signature if needed. The source data is copied while it is read for
+     * signing, so that it isn't kept in memory.
+     */
+    private void doWriteIncrement() throws IOException
     {
-        if (signatureOffset == 0 || byteRangeOffset == 0)
+        // copy the new incremental data into a buffer (e.g. signature dict, trailer)
+        ByteArrayOutputStream byteOut = (ByteArrayOutputStream) output;
+        byteOut.flush();
+        byte[] buffer = byteOut.toByteArray();
+
+        if (signatureOffset != 0 && byteRangeOffset != 0)
         {
-            return;
+            InputStream signedInput;
+            if (incrementalAppend)
+            {
+                signedInput = new RandomAccessInputStream(incrementalData);
+            }
+            else
+            {
+                signedInput = new CopyingInputStream(incrementalInput, incrementalOutput);
+            }
+            doWriteSignature(buffer, signedInput);
+        }
+        if (!incrementalAppend)
+        {
+            // whatever hasn't been read for signing
+            IOUtils.copy(incrementalInput, incrementalOutput);
         }
+        incrementalOutput.write(buffer);
+    }
 
+    private void doWriteSignature(byte[] buffer, InputStream signedInput) throws IOException
+    {
         // calculate the ByteRange values
-        long inLength = incrementalInput.available();
+        long inLength = incrementalLength;
         long beforeLength = signatureOffset;
         long afterOffset = signatureOffset + signatureLength;
         long afterLength = getStandardOutput().getPos() - (inLength + signatureLength) - (signatureOffset - inLength);
@@ -699,11 +1148,6 @@ public class COSWriter implements ICOSVisitor, Closeable
             throw new IOException("Can't write new ByteRange, not enough space");
         }
 
-        // copy the new incremental data into a buffer (e.g. signature dict, trailer)
-        ByteArrayOutputStream byteOut = (ByteArrayOutputStream) output;
-        byteOut.flush();
-        byte[] buffer = byteOut.toByteArray();
-
         // overwrite the ByteRange in the buffer
         byte[] byteRangeBytes = byteRange.getBytes(Charsets.ISO_8859_1);
         for (int i = 0; i < byteRangeLength; i++)
@@ -718,9 +1162,6 @@ public class COSWriter implements ICOSVisitor, Closeable
             }
         }
 
-        // get the input PDF bytes
-        byte[] inputBytes = IOUtils.toByteArray(incrementalInput);
-
         // get only the incremental bytes to be signed (includes /ByteRange but not /Contents)
         byte[] signBuffer = new byte[buffer.length - (int)signatureLength];
         int bufSignatureOffset = (int)(signatureOffset - inLength);
@@ -728,7 +1169,7 @@ public class COSWriter implements ICOSVisitor, Closeable
         System.arraycopy(buffer, bufSignatureOffset + (int)signatureLength,
                          signBuffer, bufSignatureOffset, buffer.length - bufSignatureOffset - (int)signatureLength);
 
-        SequenceInputStream signStream = new SequenceInputStream(new ByteArrayInputStream(inputBytes),
+        SequenceInputStream signStream = new SequenceInputStream(signedInput,
                 new ByteArrayInputStream(signBuffer));
 
         // sign the bytes
@@ -743,30 +1184,117 @@ public class COSWriter implements ICOSVisitor, Closeable
         // overwrite the signature Contents in the buffer
         byte[] signatureBytes = signature.getBytes(Charsets.ISO_8859_1);
         System.arraycopy(signatureBytes, 0, buffer, bufSignatureOffset + 1, signatureBytes.length);
+    }
 
-        // write the data to the incremental output stream
-        incrementalOutput.write(inputBytes);
-        incrementalOutput.write(buffer);
+    /**
+     * An input stream which writes the data read from it to an output stream.
+     */
+    private static final class CopyingInputStream extends FilterInputStream
+    {
+        private final OutputStream copy;
+
+        CopyingInputStream(InputStream in, OutputStream copy)
+        {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b != -1)
+            {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, len);
+            if (n > 0)
+            {
+                copy.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            // skipped data must be copied as well
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        @Override
+        public void close()
+        {
+            // the source data is still needed
+        }
     }
-    
+
     private void writeXrefRange(long x, long y) throws IOException
     {
-        getStandardOutput().write(String.valueOf(x).getBytes(Charsets.ISO_8859_1));
+        writeNumber(x);
         getStandardOutput().write(SPACE);
-        getStandardOutput().write(String.valueOf(y).getBytes(Charsets.ISO_8859_1));
+        writeNumber(y);
         getStandardOutput().writeEOL();
     }
 
+    // writes an entry of exactly 20 bytes: a 10 digit offset, a 5 digit generation, the type
+    // and CRLF
     private void writeXrefEntry(COSWriterXRefEntry entry) throws IOException
     {
-        String offset = formatXrefOffset.format(entry.getOffset());
-        String generation = formatXrefGeneration.format(entry.getKey().getGeneration());
-        getStandardOutput().write(offset.getBytes(Charsets.ISO_8859_1));
-        getStandardOutput().write(SPACE);
-        getStandardOutput().write(generation.getBytes(Charsets.ISO_8859_1));
-        getStandardOutput().write(SPACE);
-        getStandardOutput().write(entry.isFree() ? XREF_FREE : XREF_USED);
-        getStandardOutput().writeCRLF();
+        byte[] buffer = xrefEntryBuffer;
+        formatDigits(entry.getOffset(), buffer, 0, 10);
+        buffer[10] = ' ';
+        formatDigits(entry.getKey().getGeneration(), buffer, 11, 5);
+        buffer[16] = ' ';
+        buffer[17] = entry.isFree() ? (byte) 'f' : (byte) 'n';
+        buffer[18] = '\r';
+        buffer[19] = '\n';
+        getStandardOutput().write(buffer, 0, XREF_ENTRY_LENGTH);
+    }
+
+    // writes the digits of a number at the given position, padded with zeros to the given length
+    private static void formatDigits(long value, byte[] buffer, int offset, int length)
+    {
+        long rest = value;
+        for (int i = offset + length - 1; i >= offset; i--)
+        {
+            buffer[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+    }
+
+    // writes a non-negative number in decimal without creating a string
+    private void writeNumber(long value) throws IOException
+    {
+        if (value < 0)
+        {
+            getStandardOutput().write(String.valueOf(value).getBytes(Charsets.ISO_8859_1));
+            return;
+        }
+        byte[] buffer = numberBuffer;
+        int pos = buffer.length;
+        long rest = value;
+        do
+        {
+            buffer[--pos] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        while (rest != 0);
+        getStandardOutput().write(buffer, pos, buffer.length - pos);
     }
 
     /**
@@ -831,6 +1359,10 @@ public class COSWriter implements ICOSVisitor, Closeable
      */
     private COSObjectKey getObjectKey( COSBase obj )
     {
+        if (isUnchangedReference(obj))
+        {
+            return registry.getKey(obj);
+        }
         COSBase actual = obj;
         if( actual instanceof COSObject )
         {
@@ -839,25 +1371,40 @@ public class COSWriter implements ICOSVisitor, Closeable
         COSObjectKey key = null;
         if( actual != null )
         {
-            key = objectKeys.get(actual);
+            key = registry.getKey(actual);
         }
         if( key == null )
         {
-            key = objectKeys.get(obj);
+            key = registry.getKey(obj);
         }
         if (key == null)
         {
             setNumber(getNumber()+1);
             key = new COSObjectKey(getNumber(),0);
-            objectKeys.put(obj, key);
+            registry.setKey(obj, key);
             if( actual != null )
             {
-                objectKeys.put(actual, key);
+                registry.setKey(actual, key);
             }
         }
         return key;
     }
 
+    /**
+     * Tells whether an object is a reference to an object of the source of an incremental update
+     * which hasn't been loaded, and which therefore hasn't been changed.
+     */
+    private boolean isUnchangedReference(COSBase obj)
+    {
+        if (incrementalUpdate && obj instanceof COSObject)
+        {
+            COSObject reference = (COSObject) obj;
+            return !reference.isObjectLoaded() && !reference.isNeedToBeUpdated()
+                    && registry.getKey(reference) != null;
+        }
+        return false;
+    }
+
     @Override
     public Object visitFromArray( COSArray obj ) throws IOException
     {
@@ -939,18 +1486,7 @@ public class COSWriter implements ICOSVisitor, Closeable
                 if( value instanceof COSDictionary )
                 {
                     COSDictionary dict = (COSDictionary)value;
-
-                    // write all XObjects as direct objects, this will save some size
-                    COSBase item = dict.getItem(COSName.XOBJECT);
-                    if(item!=null)
-                    {
-                        item.setDirect(true);
-                    }
-                    item = dict.getItem(COSName.RESOURCES);
-                    if(item!=null)
-                    {
-                        item.setDirect(true);
-                    }
+                    setResourcesDirect(dict);
 
                     if(dict.isDirect())
                     {
@@ -1015,9 +1551,35 @@ public class COSWriter implements ICOSVisitor, Closeable
         return null;
     }
 
+    /**
+     * Marks the XObjects and resources of a dictionary as direct objects. This is done for every
+     * dictionary which is the value of a dictionary entry.
+     *
+     * @param dict the dictionary
+     */
+    static void setResourcesDirect(COSDictionary dict)
+    {
+        // write all XObjects as direct objects, this will save some size
+        COSBase item = dict.getItem(COSName.XOBJECT);
+        if(item!=null)
+        {
+            item.setDirect(true);
+        }
+        item = dict.getItem(COSName.RESOURCES);
+        if(item!=null)
+        {
+            item.setDirect(true);
+        }
+    }
+
     @Override
     public Object visitFromDocument(COSDocument doc) throws IOException
     {
+        if (isLinearizing())
+        {
+            doWriteLinearized(doc);
+            return null;
+        }
         if(!incrementalUpdate)
         {
             doWriteHeader(doc);
@@ -1042,7 +1604,12 @@ public class COSWriter implements ICOSVisitor, Closeable
             hybridPrev = trailer.getLong(COSName.XREF_STM);
         }
 
-        if(incrementalUpdate || doc.isXRefStream())
+        if (isCompressing())
+        {
+            addXRefEntry(COSWriterXRefEntry.getNullEntry());
+            doWriteXRefStream(doc);
+        }
+        else if(incrementalUpdate || doc.isXRefStream())
         {
             doWriteXRefInc(doc, hybridPrev);
         }
@@ -1053,19 +1620,260 @@ public class COSWriter implements ICOSVisitor, Closeable
         }
 
         // write endof
+        doWriteStartxref(getStartxref());
+
+        if(incrementalUpdate)
+        {
+            doWriteIncrement();
+        }
+
+        return null;
+    }
+
+    // writes "startxref" and the end of file marker
+    private void doWriteStartxref(long startxrefOffset) throws IOException
+    {
         getStandardOutput().write(STARTXREF);
         getStandardOutput().writeEOL();
-        getStandardOutput().write(String.valueOf(getStartxref()).getBytes(Charsets.ISO_8859_1));
+        writeNumber(startxrefOffset);
         getStandardOutput().writeEOL();
         getStandardOutput().write(EOF);
         getStandardOutput().writeEOL();
+    }
 
-        if(incrementalUpdate)
+    /**
+     * Writes a linearized document, see {@link LinearizedLayout}. The body is written to a buffer
+     * first, as the linearization parameters, the first page cross reference table and the hint
+     * stream at the beginning of the file depend on the positions of all objects.
+     *
+     * @param doc the document to be written
+     * @throws IOException if the output could not be written
+     */
+    private void doWriteLinearized(COSDocument doc) throws IOException
+    {
+        LinearizedLayout layout = new LinearizedLayout(pdDocument);
+        int pageCount = layout.getPageCount();
+        List<COSBase> firstPageSection = new ArrayList<COSBase>(layout.getDocumentObjects());
+        firstPageSection.addAll(layout.getPageObjects(0));
+        List<COSBase> mainObjects = new ArrayList<COSBase>();
+        for (int i = 1; i < pageCount; i++)
         {
-            doWriteSignature();
+            mainObjects.addAll(layout.getPageObjects(i));
         }
+        mainObjects.addAll(layout.getSharedObjects());
+        mainObjects.addAll(layout.getOtherObjects());
 
-        return null;
+        // the objects of the first page section get the highest numbers, so that the first page
+        // cross reference table consists of one subsection
+        for (COSBase object : mainObjects)
+        {
+            assignObjectKey(object);
+        }
+        COSDictionary linearizationDict = new COSDictionary();
+        COSObjectKey linearizationKey = assignObjectKey(linearizationDict);
+        for (COSBase object : firstPageSection)
+        {
+            assignObjectKey(object);
+        }
+        setNumber(getNumber() + 1);
+        COSObjectKey hintKey = new COSObjectKey(getNumber(), 0);
+        long firstSharedNumber = layout.getSharedObjects().isEmpty() ? 0
+                : registry.getKey(layout.getSharedObjects().get(0)).getNumber();
+
+        // write the body
+        COSStandardOutputStream output = getStandardOutput();
+        ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream();
+        setStandardOutput(new COSStandardOutputStream(bodyBuffer));
+        COSBase encrypt = doc.getTrailer().getDictionaryObject(COSName.ENCRYPT);
+        boolean encrypting = willEncrypt;
+        Map<COSBase, long[]> positions = new HashMap<COSBase, long[]>();
+        for (COSBase object : firstPageSection)
+        {
+            doWriteLinearizedObject(layout, object, encrypting && object != encrypt, positions);
+        }
+        long firstPageEnd = getStandardOutput().getPos();
+        for (COSBase object : mainObjects)
+        {
+            doWriteLinearizedObject(layout, object, encrypting, positions);
+        }
+        // objects which aren't part of the layout, e.g. dangling references
+        while (!objectsToWrite.isEmpty())
+        {
+            COSBase nextObject = objectsToWrite.removeFirst();
+            registry.setQueued(nextObject, false);
+            doWriteObject(nextObject);
+        }
+        getStandardOutput().flush();
+        byte[] body = bodyBuffer.toByteArray();
+        List<COSWriterXRefEntry> firstPageEntries = new ArrayList<COSWriterXRefEntry>();
+        List<COSWriterXRefEntry> mainEntries = new ArrayList<COSWriterXRefEntry>();
+        for (COSWriterXRefEntry entry : getXRefEntries())
+        {
+            long number = entry.getKey().getNumber();
+            if (number > linearizationKey.getNumber() && number < hintKey.getNumber())
+            {
+                firstPageEntries.add(entry);
+            }
+            else
+            {
+                mainEntries.add(entry);
+            }
+        }
+        COSDictionary firstPageTrailer = new COSDictionary();
+        for (COSName key : new COSName[] { COSName.ROOT, COSName.INFO, COSName.ID, COSName.ENCRYPT })
+        {
+            COSBase value = doc.getTrailer().getItem(key);
+            if (value != null)
+            {
+                firstPageTrailer.setItem(key, value);
+            }
+        }
+        long size = getNumber() + 1;
+
+        // the values at the beginning depend on the length of the beginning, repeat until the
+        // length doesn't change anymore
+        long prefixLength = 0;
+        long firstXrefOffset = 0;
+        byte[] prefix;
+        byte[] hint;
+        byte[] tail;
+        int iterations = 0;
+        do
+        {
+            if (++iterations > 10)
+            {
+                throw new IOException("Could not determine the linearized layout");
+            }
+            // the offsets in the hint tables are given as if the hint stream was not present
+            int[] sharedTableOffset = new int[1];
+            byte[] hintData = layout.createHintStreamData(positions, prefixLength,
+                    firstSharedNumber, sharedTableOffset);
+            COSStream hintStream = doc.createCOSStream();
+            OutputStream hintOutput = hintStream.createOutputStream();
+            hintOutput.write(hintData);
+            hintOutput.close();
+            hintStream.setInt(COSName.S, sharedTableOffset[0]);
+            registry.setKey(hintStream, hintKey);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            setStandardOutput(new COSStandardOutputStream(buffer));
+            willEncrypt = encrypting;
+            doWriteObject(hintStream);
+            willEncrypt = false;
+            getStandardOutput().flush();
+            hint = buffer.toByteArray();
+            hintStream.close();
+
+            // main cross reference table
+            long bodyOffset = prefixLength + hint.length;
+            long mainXrefOffset = bodyOffset + body.length;
+            buffer = new ByteArrayOutputStream();
+            setStandardOutput(new COSStandardOutputStream(buffer, mainXrefOffset));
+            getXRefEntries().clear();
+            for (COSWriterXRefEntry entry : mainEntries)
+            {
+                addXRefEntry(new COSWriterXRefEntry(entry.getOffset() + bodyOffset,
+                        entry.getObject(), entry.getKey()));
+            }
+            doWriteXRefTable();
+            Long[] ranges = getXRefRanges(getXRefEntries());
+            // the offset of the white-space character preceding the entry of object 0
+            long mainFirstEntry = mainXrefOffset + XREF.length + 1
+                    + (ranges[0] + " " + ranges[1]).length();
+            getStandardOutput().write(TRAILER);
+            getStandardOutput().writeEOL();
+            COSDictionary mainTrailer = new COSDictionary();
+            mainTrailer.setLong(COSName.SIZE, size);
+            mainTrailer.accept(this);
+            doWriteStartxref(firstXrefOffset);
+            getStandardOutput().flush();
+            tail = buffer.toByteArray();
+
+            // header, linearization parameters, first page cross reference table and trailer
+            buffer = new ByteArrayOutputStream();
+            setStandardOutput(new COSStandardOutputStream(buffer));
+            doWriteHeader(doc);
+            long linearizationOffset = getStandardOutput().getPos();
+            linearizationDict.setInt(COSName.LINEARIZED, 1);
+            linearizationDict.setLong(COSName.L, mainXrefOffset + tail.length);
+            COSArray hintRange = new COSArray();
+            hintRange.add(COSInteger.get(prefixLength));
+            hintRange.add(COSInteger.get(hint.length));
+            linearizationDict.setItem(COSName.H, hintRange);
+            linearizationDict.setLong(COSName.O,
+                    registry.getKey(layout.getPageObjects(0).get(0)).getNumber());
+            linearizationDict.setLong(COSName.E, bodyOffset + firstPageEnd);
+            linearizationDict.setInt(COSName.N, pageCount);
+            linearizationDict.setLong(COSName.T, mainFirstEntry);
+            doWriteObject(linearizationDict);
+            long xrefOffset = getStandardOutput().getPos();
+            getStandardOutput().write(XREF);
+            getStandardOutput().writeEOL();
+            writeXrefRange(linearizationKey.getNumber(),
+                    hintKey.getNumber() - linearizationKey.getNumber() + 1);
+            writeXrefEntry(new COSWriterXRefEntry(linearizationOffset, linearizationDict,
+                    linearizationKey));
+            for (COSWriterXRefEntry entry : firstPageEntries)
+            {
+                writeXrefEntry(new COSWriterXRefEntry(entry.getOffset() + bodyOffset,
+                        entry.getObject(), entry.getKey()));
+            }
+            writeXrefEntry(new COSWriterXRefEntry(prefixLength, null, hintKey));
+            getStandardOutput().write(TRAILER);
+            getStandardOutput().writeEOL();
+            firstPageTrailer.setLong(COSName.SIZE, size);
+            firstPageTrailer.setLong(COSName.PREV, mainXrefOffset);
+            firstPageTrailer.accept(this);
+            doWriteStartxref(0);
+            getStandardOutput().flush();
+            prefix = buffer.toByteArray();
+
+            boolean stable = prefix.length == prefixLength && xrefOffset == firstXrefOffset;
+            prefixLength = prefix.length;
+            firstXrefOffset = xrefOffset;
+            if (stable)
+            {
+                break;
+            }
+        }
+        while (true);
+
+        getXRefEntries().clear();
+        setStandardOutput(output);
+        setStartxref(firstXrefOffset);
+        getStandardOutput().write(prefix);
+        getStandardOutput().write(hint);
+        getStandardOutput().write(body);
+        getStandardOutput().write(tail);
+    }
+
+    // numbers an object of the linearized layout and excludes it from the regular write queue
+    private COSObjectKey assignObjectKey(COSBase object)
+    {
+        setNumber(getNumber() + 1);
+        COSObjectKey key = new COSObjectKey(getNumber(), 0);
+        registry.setKey(object, key);
+        registry.setActualAdded(object);
+        // a reference to a missing object has no actual object
+        registry.setQueued(object, true);
+        return key;
+    }
+
+    // writes an object of the linearized layout and records its start and end position
+    private void doWriteLinearizedObject(LinearizedLayout layout, COSBase object,
+            boolean encrypt, Map<COSBase, long[]> positions) throws IOException
+    {
+        long start = getStandardOutput().getPos();
+        registry.setQueued(object, false);
+        // a copy of a page with the inherited attributes is written with the key of the page
+        COSBase written = layout.getWrittenObject(object);
+        if (written != object)
+        {
+            registry.setKey(written, registry.getKey(object));
+        }
+        willEncrypt = encrypt;
+        doWriteObject(written);
+        willEncrypt = false;
+        positions.put(object, new long[] { start, getStandardOutput().getPos() });
     }
 
     @Override
@@ -1106,9 +1914,9 @@ public class COSWriter implements ICOSVisitor, Closeable
     public void writeReference(COSBase obj) throws IOException
     {
         COSObjectKey key = getObjectKey(obj);
-        getStandardOutput().write(String.valueOf(key.getNumber()).getBytes(Charsets.ISO_8859_1));
+        writeNumber(key.getNumber());
         getStandardOutput().write(SPACE);
-        getStandardOutput().write(String.valueOf(key.getGeneration()).getBytes(Charsets.ISO_8859_1));
+        writeNumber(key.getGeneration());
         getStandardOutput().write(SPACE);
         getStandardOutput().write(REFERENCE);
     }
@@ -1116,6 +1924,20 @@ public class COSWriter implements ICOSVisitor, Closeable
     @Override
     public Object visitFromStream(COSStream obj) throws IOException
     {
+        if (obj == encodedStream)
+        {
+            COSStream encoded = createEncodedCopy(obj, encodedStreamData);
+            encodedStream = null;
+            encodedStreamData = null;
+            try
+            {
+                return visitFromStream(encoded);
+            }
+            finally
+            {
+                encoded.close();
+            }
+        }
         if (willEncrypt)
         {
             pdDocument.getEncryption().getSecurityHandler()
@@ -1284,6 +2106,113 @@ public class COSWriter implements ICOSVisitor, Closeable
         cosDoc.accept(this);
     }
 
+    /**
+     * Starts writing a document object by object, instead of writing the whole document with
+     * {@link #write(PDDocument)}. The header is written right away, objects are written with
+     * {@link #writeObjects(COSBase)}, and the remaining objects, the cross reference table and
+     * the trailer are written by {@link #finishDocument()}.
+     *
+     * <p>The writer doesn't keep the objects which have been written. An object which is still
+     * referenced by the caller may be referenced by objects written later, but it must not be
+     * changed any longer. Encryption and signatures aren't supported.</p>
+     *
+     * @param doc The document to write.
+     *
+     * @throws IOException If the header could not be written.
+     */
+    public void startDocument(PDDocument doc) throws IOException
+    {
+        if (pdDocument != null || incrementalUpdate)
+        {
+            throw new IllegalStateException("The writer has already been used");
+        }
+        pdDocument = doc;
+        streaming = true;
+        willEncrypt = false;
+        // objects which the caller doesn't keep can't be referenced again
+        registry = ObjectRegistry.createWeak();
+        doWriteHeader(doc.getDocument());
+    }
+
+    /**
+     * Defers writing an object until the document is finished, so that it can still be changed.
+     * References to it can be written before.
+     *
+     * @param object The object to defer.
+     */
+    public void deferObject(COSBase object)
+    {
+        deferredObjects.add(object);
+    }
+
+    /**
+     * Writes an object, and all objects reachable from it which haven't been written yet, except
+     * for deferred objects. See {@link #startDocument(PDDocument)}.
+     *
+     * @param object The object to write.
+     * @return A reference to the object, which can be used in its place in objects written later.
+     *
+     * @throws IOException If the objects could not be written.
+     */
+    public COSObject writeObjects(COSBase object) throws IOException
+    {
+        if (!streaming)
+        {
+            throw new IllegalStateException("startDocument() must be called first");
+        }
+        addObjectToWrite(object);
+        while (!objectsToWrite.isEmpty())
+        {
+            COSBase nextObject = objectsToWrite.removeFirst();
+            registry.setQueued(nextObject, false);
+            COSBase actual = nextObject;
+            if (actual instanceof COSObject)
+            {
+                actual = ((COSObject) actual).getObject();
+            }
+            if (deferredObjects.contains(nextObject) || deferredObjects.contains(actual))
+            {
+                objectsDeferred.add(nextObject);
+            }
+            else
+            {
+                doWriteObject(nextObject);
+            }
+        }
+        COSObject reference = new COSObject(null);
+        registry.setKey(reference, getObjectKey(object));
+        registry.setWritten(reference);
+        return reference;
+    }
+
+    /**
+     * Writes the deferred objects, the objects reachable from the trailer which haven't been
+     * written yet, the cross reference table and the trailer. See
+     * {@link #startDocument(PDDocument)}.
+     *
+     * @throws IOException If the document could not be written.
+     */
+    public void finishDocument() throws IOException
+    {
+        if (!streaming)
+        {
+            throw new IllegalStateException("startDocument() must be called first");
+        }
+        deferredObjects.clear();
+        for (COSBase object : objectsDeferred)
+        {
+            objectsToWrite.add(object);
+            registry.setQueued(object, true);
+        }
+        objectsDeferred.clear();
+        COSDocument doc = pdDocument.getDocument();
+        doWriteBody(doc);
+        doWriteXRefTable();
+        doWriteTrailer(doc);
+        doWriteStartxref(getStartxref());
+        getStandardOutput().flush();
+    }
+
     /**
      * This will write the fdf document.
      *
@@ -32,6 +32,7 @@ public class COSWriterXRefEntry implements Comparable<COSWriterXRefEntry>
     private COSBase object;
     private COSObjectKey key;
     private boolean free = false;
+    private long objectStreamNumber = -1;
     private static final COSWriterXRefEntry NULLENTRY;
     
     static 
@@ -111,6 +112,37 @@ public class COSWriterXRefEntry implements Comparable<COSWriterXRefEntry>
         free = newFree;
     }
 
+    /**
+     * Tells whether the object is stored in an object stream. The offset is the index of the
+     * object within that stream in this case.
+     *
+     * @return true if the object is stored in an object stream
+     */
+    public boolean isCompressed()
+    {
+        return objectStreamNumber != -1;
+    }
+
+    /**
+     * This will get the object number of the object stream containing the object.
+     *
+     * @return The object number of the object stream, or -1 if the object isn't compressed.
+     */
+    public long getObjectStreamNumber()
+    {
+        return objectStreamNumber;
+    }
+
+    /**
+     * This will set the object number of the object stream containing the object.
+     *
+     * @param newObjectStreamNumber The object number of the object stream.
+     */
+    public void setObjectStreamNumber(long newObjectStreamNumber)
+    {
+        objectStreamNumber = newObjectStreamNumber;
+    }
+
     /**
      * This will set the object key.
      *
@@ -29,6 +29,7 @@ import org.apache.pdfbox.cos.COSFloat;
 import org.apache.pdfbox.cos.COSInteger;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamReader;
 import org.apache.pdfbox.util.Charsets;
 
 /**
@@ -110,6 +111,22 @@ public class ContentStreamWriter
         }
     }
 
+    /**
+     * Writes the current operation of the given reader, i.e. the operands and the operator. This
+     * allows to edit a content stream while it is read, without holding all its tokens.
+     *
+     * @param reader The reader positioned at the operation to write.
+     * @throws IOException If there is an error writing to the stream.
+     */
+    public void writeOperation(PDFStreamReader reader) throws IOException
+    {
+        for (int i = 0; i < reader.getOperandCount(); i++)
+        {
+            writeObject(reader.getOperand(i));
+        }
+        writeObject(reader.getOperator());
+    }
+
     private void writeObject( Object o ) throws IOException
     {
         if( o instanceof COSString )
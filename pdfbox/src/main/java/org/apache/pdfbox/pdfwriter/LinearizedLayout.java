@@ -0,0 +1,593 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * The order of the objects of a linearized PDF, see ISO 32000-1:2008, Annex F. The objects are
+ * split into the following sections, which are written in this order:
+ * <ol>
+ * <li>the document catalog and the document level objects needed to open the document</li>
+ * <li>the objects of the first page, starting with the page object</li>
+ * <li>the objects used by one of the other pages only, page by page, each section starting with
+ * the page object</li>
+ * <li>the objects shared by several of the other pages</li>
+ * <li>all other objects, e.g. the page tree and the outlines</li>
+ * </ol>
+ * The layout also creates the page offset and shared object hint tables once the positions of
+ * the written objects are known.
+ */
+final class LinearizedLayout
+{
+    private static final COSName[] INHERITABLE_ATTRIBUTES = { COSName.RESOURCES,
+            COSName.MEDIA_BOX, COSName.CROP_BOX, COSName.ROTATE };
+
+    private final List<COSBase> documentObjects = new ArrayList<COSBase>();
+    private final List<COSBase> firstPageObjects = new ArrayList<COSBase>();
+    private final List<List<COSBase>> pageObjects = new ArrayList<List<COSBase>>();
+    private final List<COSBase> sharedObjects = new ArrayList<COSBase>();
+    private final List<COSBase> otherObjects = new ArrayList<COSBase>();
+    // the shared objects used by each page, the first page has none
+    private final List<List<COSBase>> sharedReferences = new ArrayList<List<COSBase>>();
+
+    // page objects, page tree nodes and the catalog, not to be followed within a page
+    private final Set<COSBase> stopObjects = new HashSet<COSBase>();
+    // the copies of the pages which inherit attributes, they are written instead of the pages
+    private final Map<COSBase, COSDictionary> pageCopies = new HashMap<COSBase, COSDictionary>();
+
+    /**
+     * Creates the layout of the given document.
+     *
+     * @param document the document, it must have at least one page
+     */
+    LinearizedLayout(PDDocument document)
+    {
+        COSDictionary trailer = document.getDocument().getTrailer();
+        for (PDPage page : document.getPages())
+        {
+            COSDictionary copy = copyWithInheritedAttributes(page.getCOSObject());
+            if (copy != null)
+            {
+                pageCopies.put(page.getCOSObject(), copy);
+            }
+        }
+        COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+        List<COSBase> roots = new ArrayList<COSBase>();
+        roots.add(catalog);
+        COSBase info = trailer.getDictionaryObject(COSName.INFO);
+        if (info instanceof COSDictionary)
+        {
+            roots.add(info);
+        }
+        // the writer marks some resources as direct objects on the fly, do this up front
+        collect(roots, false);
+
+        List<COSDictionary> pages = new ArrayList<COSDictionary>();
+        for (PDPage page : document.getPages())
+        {
+            pages.add(page.getCOSObject());
+            stopObjects.add(page.getCOSObject());
+            COSBase parent = page.getCOSObject().getDictionaryObject(COSName.PARENT);
+            while (parent instanceof COSDictionary && stopObjects.add(parent))
+            {
+                parent = ((COSDictionary) parent).getDictionaryObject(COSName.PARENT);
+            }
+        }
+        stopObjects.add(catalog);
+        Set<COSBase> assigned = new HashSet<COSBase>();
+
+        // document level objects needed to open the document
+        List<COSBase> documentRoots = new ArrayList<COSBase>();
+        collectValue(catalog.getItem(COSName.VIEWER_PREFERENCES), documentRoots, true, true);
+        collectValue(catalog.getItem(COSName.OPEN_ACTION), documentRoots, true, true);
+        documentObjects.add(catalog);
+        assigned.add(catalog);
+        addAll(collect(documentRoots, true), documentObjects, assigned);
+        COSBase encrypt = trailer.getDictionaryObject(COSName.ENCRYPT);
+        if (encrypt instanceof COSDictionary && assigned.add(encrypt))
+        {
+            documentObjects.add(encrypt);
+        }
+
+        // the first page, including the objects shared with other pages
+        addAll(collect(Collections.<COSBase>singletonList(pages.get(0)), true),
+                firstPageObjects, assigned);
+        Set<COSBase> firstPageSet = new HashSet<COSBase>(firstPageObjects);
+
+        // the other pages, count the pages using each object
+        List<List<COSBase>> pageReach = new ArrayList<List<COSBase>>();
+        Map<COSBase, Integer> useCount = new HashMap<COSBase, Integer>();
+        for (int i = 1; i < pages.size(); i++)
+        {
+            List<COSBase> reach = collect(Collections.<COSBase>singletonList(pages.get(i)), true);
+            pageReach.add(reach);
+            for (COSBase object : reach)
+            {
+                if (!assigned.contains(object))
+                {
+                    Integer count = useCount.get(object);
+                    useCount.put(object, count == null ? 1 : count + 1);
+                }
+            }
+        }
+        Set<COSBase> sharedSet = new HashSet<COSBase>();
+        sharedReferences.add(Collections.<COSBase>emptyList());
+        pageObjects.add(firstPageObjects);
+        for (List<COSBase> reach : pageReach)
+        {
+            List<COSBase> section = new ArrayList<COSBase>();
+            List<COSBase> shared = new ArrayList<COSBase>();
+            for (COSBase object : reach)
+            {
+                if (firstPageSet.contains(object) || sharedSet.contains(object))
+                {
+                    shared.add(object);
+                }
+                else if (!assigned.contains(object))
+                {
+                    if (useCount.get(object) == 1)
+                    {
+                        assigned.add(object);
+                        section.add(object);
+                    }
+                    else
+                    {
+                        sharedSet.add(object);
+                        shared.add(object);
+                    }
+                }
+            }
+            pageObjects.add(section);
+            sharedReferences.add(shared);
+        }
+        // shared objects in the order of their first use
+        for (List<COSBase> reach : pageReach)
+        {
+            for (COSBase object : reach)
+            {
+                if (sharedSet.contains(object) && assigned.add(object))
+                {
+                    sharedObjects.add(object);
+                }
+            }
+        }
+
+        addAll(collect(roots, false), otherObjects, assigned);
+    }
+
+    /**
+     * Creates a copy of the page which contains the attributes which the page inherits from the
+     * page tree, as the page tree nodes aren't part of the page sections. The page itself isn't
+     * changed.
+     *
+     * @return the copy, or null if the page doesn't inherit any attributes
+     */
+    private static COSDictionary copyWithInheritedAttributes(COSDictionary page)
+    {
+        COSDictionary copy = null;
+        for (COSName key : INHERITABLE_ATTRIBUTES)
+        {
+            if (page.containsKey(key))
+            {
+                continue;
+            }
+            COSBase parent = page.getDictionaryObject(COSName.PARENT);
+            Set<COSBase> visited = new HashSet<COSBase>();
+            while (parent instanceof COSDictionary && visited.add(parent))
+            {
+                COSBase value = ((COSDictionary) parent).getItem(key);
+                if (value != null)
+                {
+                    if (copy == null)
+                    {
+                        copy = new COSDictionary(page);
+                    }
+                    copy.setItem(key, value);
+                    break;
+                }
+                parent = ((COSDictionary) parent).getDictionaryObject(COSName.PARENT);
+            }
+        }
+        return copy;
+    }
+
+    private static void addAll(List<COSBase> objects, List<COSBase> target, Set<COSBase> assigned)
+    {
+        for (COSBase object : objects)
+        {
+            if (assigned.add(object))
+            {
+                target.add(object);
+            }
+        }
+    }
+
+    /**
+     * Returns the object which is written for the given object of the layout. This is a copy of
+     * a page which inherits attributes from the page tree, otherwise the object itself.
+     *
+     * @param object an object of the layout
+     */
+    COSBase getWrittenObject(COSBase object)
+    {
+        COSDictionary copy = pageCopies.get(object);
+        return copy != null ? copy : object;
+    }
+
+    /**
+     * Returns the document catalog and the document level objects.
+     */
+    List<COSBase> getDocumentObjects()
+    {
+        return documentObjects;
+    }
+
+    /**
+     * Returns the objects of the given page, the objects of each page start with the page object.
+     * The objects of the first page include the objects shared with other pages.
+     *
+     * @param pageIndex the index of the page
+     */
+    List<COSBase> getPageObjects(int pageIndex)
+    {
+        return pageObjects.get(pageIndex);
+    }
+
+    /**
+     * Returns the number of pages.
+     */
+    int getPageCount()
+    {
+        return pageObjects.size();
+    }
+
+    /**
+     * Returns the objects shared by the pages other than the first one.
+     */
+    List<COSBase> getSharedObjects()
+    {
+        return sharedObjects;
+    }
+
+    /**
+     * Returns all other objects.
+     */
+    List<COSBase> getOtherObjects()
+    {
+        return otherObjects;
+    }
+
+    /**
+     * Collects all objects which are reachable from the given objects, breadth first.
+     *
+     * @param roots the objects to start with, they are part of the result
+     * @param withinPage if set, neither parents nor other pages are followed
+     * @return the reachable objects
+     */
+    private List<COSBase> collect(List<COSBase> roots, boolean withinPage)
+    {
+        List<COSBase> result = new ArrayList<COSBase>();
+        Set<COSBase> seen = new HashSet<COSBase>();
+        Queue<COSBase> queue = new LinkedList<COSBase>();
+        for (COSBase root : roots)
+        {
+            if (seen.add(root))
+            {
+                queue.add(root);
+            }
+        }
+        List<COSBase> references = new ArrayList<COSBase>();
+        while (!queue.isEmpty())
+        {
+            COSBase object = queue.remove();
+            result.add(object);
+            references.clear();
+            collectReferences(getWrittenObject(object), references, withinPage);
+            for (COSBase reference : references)
+            {
+                if ((!withinPage || !stopObjects.contains(reference)) && seen.add(reference))
+                {
+                    queue.add(reference);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects the objects which are referenced by the given object and written as indirect
+     * objects. This follows the rules of {@link COSWriter} for direct and indirect objects: other
+     * indirect objects than dictionaries and streams, e.g. an indirect array of content streams,
+     * are written in place, and their references are collected instead. A reference to a missing
+     * object is written as an indirect null object, so the reference itself is collected.
+     */
+    private static void collectReferences(COSBase object, List<COSBase> references,
+            boolean withinPage)
+    {
+        if (object instanceof COSDictionary)
+        {
+            for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) object).entrySet())
+            {
+                if (!withinPage || !COSName.PARENT.equals(entry.getKey()))
+                {
+                    collectValue(entry.getValue(), references, true, withinPage);
+                }
+            }
+        }
+        else if (object instanceof COSArray)
+        {
+            for (COSBase element : (COSArray) object)
+            {
+                collectValue(element, references, false, withinPage);
+            }
+        }
+    }
+
+    private static void collectValue(COSBase value, List<COSBase> references,
+            boolean inDictionary, boolean withinPage)
+    {
+        if (value instanceof COSDictionary)
+        {
+            COSDictionary dict = (COSDictionary) value;
+            if (inDictionary)
+            {
+                COSWriter.setResourcesDirect(dict);
+            }
+            if (dict.isDirect())
+            {
+                collectReferences(dict, references, withinPage);
+            }
+            else
+            {
+                references.add(dict);
+            }
+        }
+        else if (value instanceof COSObject)
+        {
+            COSBase target = ((COSObject) value).getObject();
+            if (target instanceof COSDictionary)
+            {
+                references.add(target);
+            }
+            else if (target == null)
+            {
+                references.add(value);
+            }
+            else
+            {
+                collectReferences(target, references, withinPage);
+            }
+        }
+        else if (value instanceof COSArray)
+        {
+            collectReferences(value, references, withinPage);
+        }
+    }
+
+    /**
+     * Creates the data of the primary hint stream, i.e. the page offset hint table followed by
+     * the shared object hint table. The offsets are given as if the hint stream was not present,
+     * as required for a hint stream which is located before the first page.
+     *
+     * @param positions the start and end offset of every written object within the body
+     * @param bodyOffset the offset of the body, without the hint stream
+     * @param firstSharedObjectNumber the object number of the first object of the shared objects
+     * section, or 0 if there are no such objects
+     * @param sharedTableOffset receives the offset of the shared object hint table within the data
+     * @return the data of the hint stream
+     */
+    byte[] createHintStreamData(Map<COSBase, long[]> positions, long bodyOffset,
+            long firstSharedObjectNumber, int[] sharedTableOffset)
+    {
+        BitWriter writer = new BitWriter();
+        int pageCount = pageObjects.size();
+
+        // page offset hint table
+        long[] objectCounts = new long[pageCount];
+        long[] pageLengths = new long[pageCount];
+        for (int i = 0; i < pageCount; i++)
+        {
+            List<COSBase> objects = pageObjects.get(i);
+            objectCounts[i] = objects.size();
+            pageLengths[i] = objects.isEmpty() ? 0 : positions.get(objects.get(objects.size() - 1))[1]
+                    - positions.get(objects.get(0))[0];
+        }
+        Map<COSBase, Integer> sharedIds = new HashMap<COSBase, Integer>();
+        for (COSBase object : firstPageObjects)
+        {
+            sharedIds.put(object, sharedIds.size());
+        }
+        for (COSBase object : sharedObjects)
+        {
+            sharedIds.put(object, sharedIds.size());
+        }
+        long minObjects = min(objectCounts);
+        long minLength = min(pageLengths);
+        int objectBits = bitsNeeded(max(objectCounts) - minObjects);
+        int lengthBits = bitsNeeded(max(pageLengths) - minLength);
+        int maxSharedCount = 0;
+        for (List<COSBase> references : sharedReferences)
+        {
+            maxSharedCount = Math.max(maxSharedCount, references.size());
+        }
+        int sharedCountBits = bitsNeeded(maxSharedCount);
+        int sharedIdBits = bitsNeeded(Math.max(0, sharedIds.size() - 1));
+
+        writer.write(minObjects, 32);
+        writer.write(bodyOffset + positions.get(firstPageObjects.get(0))[0], 32);
+        writer.write(objectBits, 16);
+        writer.write(minLength, 32);
+        writer.write(lengthBits, 16);
+        // content streams are described as the whole page, like other writers do
+        writer.write(0, 32);
+        writer.write(0, 16);
+        writer.write(minLength, 32);
+        writer.write(lengthBits, 16);
+        writer.write(sharedCountBits, 16);
+        writer.write(sharedIdBits, 16);
+        // no fractional positions
+        writer.write(0, 16);
+        writer.write(1, 16);
+
+        for (int i = 0; i < pageCount; i++)
+        {
+            writer.write(objectCounts[i] - minObjects, objectBits);
+        }
+        writer.align();
+        for (int i = 0; i < pageCount; i++)
+        {
+            writer.write(pageLengths[i] - minLength, lengthBits);
+        }
+        writer.align();
+        for (int i = 0; i < pageCount; i++)
+        {
+            writer.write(sharedReferences.get(i).size(), sharedCountBits);
+        }
+        writer.align();
+        for (int i = 0; i < pageCount; i++)
+        {
+            for (COSBase object : sharedReferences.get(i))
+            {
+                writer.write(sharedIds.get(object), sharedIdBits);
+            }
+        }
+        writer.align();
+        for (int i = 0; i < pageCount; i++)
+        {
+            writer.write(pageLengths[i] - minLength, lengthBits);
+        }
+        writer.align();
+
+        // shared object hint table, every object is a group of its own
+        sharedTableOffset[0] = writer.size();
+        List<COSBase> groups = new ArrayList<COSBase>(firstPageObjects);
+        groups.addAll(sharedObjects);
+        long[] groupLengths = new long[groups.size()];
+        for (int i = 0; i < groupLengths.length; i++)
+        {
+            long[] position = positions.get(groups.get(i));
+            groupLengths[i] = position[1] - position[0];
+        }
+        long minGroupLength = min(groupLengths);
+        int groupLengthBits = bitsNeeded(max(groupLengths) - minGroupLength);
+        writer.write(firstSharedObjectNumber, 32);
+        writer.write(sharedObjects.isEmpty() ? 0
+                : bodyOffset + positions.get(sharedObjects.get(0))[0], 32);
+        writer.write(firstPageObjects.size(), 32);
+        writer.write(groups.size(), 32);
+        writer.write(0, 16);
+        writer.write(minGroupLength, 32);
+        writer.write(groupLengthBits, 16);
+        for (long groupLength : groupLengths)
+        {
+            writer.write(groupLength - minGroupLength, groupLengthBits);
+        }
+        writer.align();
+        // no signatures
+        for (int i = 0; i < groupLengths.length; i++)
+        {
+            writer.write(0, 1);
+        }
+        writer.align();
+        return writer.toByteArray();
+    }
+
+    private static long min(long[] values)
+    {
+        long min = values.length == 0 ? 0 : Long.MAX_VALUE;
+        for (long value : values)
+        {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static long max(long[] values)
+    {
+        long max = 0;
+        for (long value : values)
+        {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static int bitsNeeded(long value)
+    {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Writes big endian bit fields.
+     */
+    private static final class BitWriter
+    {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private int current;
+        private int bitCount;
+
+        void write(long value, int bits)
+        {
+            for (int i = bits - 1; i >= 0; i--)
+            {
+                current = (current << 1) | (int) ((value >>> i) & 1);
+                if (++bitCount == 8)
+                {
+                    output.write(current);
+                    current = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+
+        void align()
+        {
+            if (bitCount > 0)
+            {
+                write(0, 8 - bitCount);
+            }
+        }
+
+        int size()
+        {
+            return output.size();
+        }
+
+        byte[] toByteArray()
+        {
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfwriter;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSObjectKey;
+
+/**
+ * Keeps track of the objects handled by {@link COSWriter}: the key assigned to an object, and
+ * whether it is queued, has been written, or is the actual object of a queued or written
+ * {@link org.apache.pdfbox.cos.COSObject}. Objects are compared by identity.
+ */
+abstract class ObjectRegistry
+{
+    private static final int QUEUED = 1;
+    private static final int WRITTEN = 2;
+    private static final int ACTUAL_ADDED = 4;
+
+    /**
+     * Creates a registry which keeps the objects.
+     */
+    static ObjectRegistry create()
+    {
+        return new IdentityRegistry();
+    }
+
+    /**
+     * Creates a registry which holds the objects weakly, so that objects are forgotten once
+     * they aren't used any longer.
+     */
+    static ObjectRegistry createWeak()
+    {
+        return new WeakRegistry();
+    }
+
+    /**
+     * Returns the key assigned to an object, or null.
+     */
+    abstract COSObjectKey getKey(COSBase object);
+
+    /**
+     * Assigns a key to an object.
+     */
+    abstract void setKey(COSBase object, COSObjectKey key);
+
+    /**
+     * Returns a copy of the keys assigned to the objects.
+     */
+    abstract Map<COSBase, COSObjectKey> getKeys();
+
+    abstract boolean hasFlag(COSBase object, int flag);
+
+    abstract void setFlag(COSBase object, int flag, boolean value);
+
+    boolean isQueued(COSBase object)
+    {
+        return hasFlag(object, QUEUED);
+    }
+
+    void setQueued(COSBase object, boolean queued)
+    {
+        setFlag(object, QUEUED, queued);
+    }
+
+    boolean isWritten(COSBase object)
+    {
+        return hasFlag(object, WRITTEN);
+    }
+
+    void setWritten(COSBase object)
+    {
+        setFlag(object, WRITTEN, true);
+    }
+
+    boolean isActualAdded(COSBase actual)
+    {
+        return hasFlag(actual, ACTUAL_ADDED);
+    }
+
+    void setActualAdded(COSBase actual)
+    {
+        setFlag(actual, ACTUAL_ADDED, true);
+    }
+
+    /**
+     * An open addressing hash table with linear probing, which stores the objects, keys and flags
+     * in parallel arrays. Entries are never removed. Null is never added, so that empty slots
+     * can be recognized.
+     */
+    private static final class IdentityRegistry extends ObjectRegistry
+    {
+        private static final int INITIAL_BITS = 10;
+
+        private int bits = INITIAL_BITS;
+        private Object[] objects = new Object[1 << INITIAL_BITS];
+        private COSObjectKey[] keys = new COSObjectKey[1 << INITIAL_BITS];
+        private byte[] flags = new byte[1 << INITIAL_BITS];
+        private int size;
+
+        private int indexOf(Object object)
+        {
+            int mask = objects.length - 1;
+            // Fibonacci hashing, the upper bits of the product are the well distributed ones
+            int index = System.identityHashCode(object) * 0x9E3779B9 >>> (32 - bits);
+            while (objects[index] != null && objects[index] != object)
+            {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        // returns the index of the object, adding it if needed
+        private int add(Object object)
+        {
+            int index = indexOf(object);
+            if (objects[index] == null)
+            {
+                if ((size + 1) * 3 > objects.length * 2)
+                {
+                    resize();
+                    index = indexOf(object);
+                }
+                objects[index] = object;
+                size++;
+            }
+            return index;
+        }
+
+        private void resize()
+        {
+            Object[] oldObjects = objects;
+            COSObjectKey[] oldKeys = keys;
+            byte[] oldFlags = flags;
+            bits++;
+            objects = new Object[1 << bits];
+            keys = new COSObjectKey[objects.length];
+            flags = new byte[objects.length];
+            for (int i = 0; i < oldObjects.length; i++)
+            {
+                if (oldObjects[i] != null)
+                {
+                    int index = indexOf(oldObjects[i]);
+                    objects[index] = oldObjects[i];
+                    keys[index] = oldKeys[i];
+                    flags[index] = oldFlags[i];
+                }
+            }
+        }
+
+        @Override
+        COSObjectKey getKey(COSBase object)
+        {
+            return keys[indexOf(object)];
+        }
+
+        @Override
+        void setKey(COSBase object, COSObjectKey key)
+        {
+            if (object != null)
+            {
+                // add() may resize the arrays
+                int index = add(object);
+                keys[index] = key;
+            }
+        }
+
+        @Override
+        Map<COSBase, COSObjectKey> getKeys()
+        {
+            Map<COSBase, COSObjectKey> map = new IdentityHashMap<COSBase, COSObjectKey>();
+            for (int i = 0; i < objects.length; i++)
+            {
+                if (keys[i] != null)
+                {
+                    map.put((COSBase) objects[i], keys[i]);
+                }
+            }
+            return map;
+        }
+
+        @Override
+        boolean hasFlag(COSBase object, int flag)
+        {
+            return (flags[indexOf(object)] & flag) != 0;
+        }
+
+        @Override
+        void setFlag(COSBase object, int flag, boolean value)
+        {
+            if (object == null)
+            {
+                return;
+            }
+            if (value)
+            {
+                int index = add(object);
+                flags[index] |= flag;
+            }
+            else
+            {
+                int index = indexOf(object);
+                flags[index] &= ~flag;
+            }
+        }
+    }
+
+    /**
+     * An open addressing hash table with linear probing like {@link IdentityRegistry}, which
+     * holds the objects by weak references. The slots of objects which have been garbage
+     * collected are marked as deleted, they are reused by new objects and dropped when the table
+     * is rehashed.
+     */
+    private static final class WeakRegistry extends ObjectRegistry
+    {
+        private static final int INITIAL_BITS = 10;
+
+        // marks a slot whose object has been garbage collected
+        private static final ObjectReference DELETED = new ObjectReference(null, null);
+
+        private final ReferenceQueue<COSBase> collected = new ReferenceQueue<COSBase>();
+        private int bits = INITIAL_BITS;
+        private ObjectReference[] references = new ObjectReference[1 << INITIAL_BITS];
+        private COSObjectKey[] keys = new COSObjectKey[1 << INITIAL_BITS];
+        private byte[] flags = new byte[1 << INITIAL_BITS];
+        private int size;
+        private int deleted;
+
+        private static final class ObjectReference extends WeakReference<COSBase>
+        {
+            private final int hash;
+
+            ObjectReference(COSBase object, ReferenceQueue<COSBase> queue)
+            {
+                super(object, queue);
+                hash = System.identityHashCode(object);
+            }
+        }
+
+        private int hash(int identityHash)
+        {
+            return identityHash * 0x9E3779B9 >>> (32 - bits);
+        }
+
+        // returns the index of the object, or -1
+        private int indexOf(COSBase object)
+        {
+            if (object == null)
+            {
+                // the references of collected objects return null as well
+                return -1;
+            }
+            int mask = references.length - 1;
+            int index = hash(System.identityHashCode(object));
+            while (references[index] != null)
+            {
+                if (references[index].get() == object)
+                {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        // returns the index of the object, adding it if needed
+        private int add(COSBase object)
+        {
+            removeCollected();
+            int index = indexOf(object);
+            if (index >= 0)
+            {
+                return index;
+            }
+            if ((size + deleted + 1) * 3 > references.length * 2)
+            {
+                // grow only if the table is full of live objects, otherwise drop deleted slots
+                rehash(size * 3 >= references.length ? bits + 1 : bits);
+            }
+            int mask = references.length - 1;
+            index = hash(System.identityHashCode(object));
+            while (references[index] != null && references[index] != DELETED)
+            {
+                index = (index + 1) & mask;
+            }
+            if (references[index] == DELETED)
+            {
+                deleted--;
+            }
+            references[index] = new ObjectReference(object, collected);
+            keys[index] = null;
+            flags[index] = 0;
+            size++;
+            return index;
+        }
+
+        // marks the slots of the garbage collected objects as deleted
+        private void removeCollected()
+        {
+            Reference<? extends COSBase> reference;
+            while ((reference = collected.poll()) != null)
+            {
+                ObjectReference objectReference = (ObjectReference) reference;
+                int mask = references.length - 1;
+                int index = hash(objectReference.hash);
+                while (references[index] != null)
+                {
+                    if (references[index] == objectReference)
+                    {
+                        references[index] = DELETED;
+                        keys[index] = null;
+                        flags[index] = 0;
+                        size--;
+                        deleted++;
+                        break;
+                    }
+                    index = (index + 1) & mask;
+                }
+            }
+        }
+
+        private void rehash(int newBits)
+        {
+            ObjectReference[] oldReferences = references;
+            COSObjectKey[] oldKeys = keys;
+            byte[] oldFlags = flags;
+            bits = newBits;
+            references = new ObjectReference[1 << bits];
+            keys = new COSObjectKey[references.length];
+            flags = new byte[references.length];
+            deleted = 0;
+            int mask = references.length - 1;
+            for (int i = 0; i < oldReferences.length; i++)
+            {
+                if (oldReferences[i] != null && oldReferences[i] != DELETED)
+                {
+                    int index = hash(oldReferences[i].hash);
+                    while (references[index] != null)
+                    {
+                        index = (index + 1) & mask;
+                    }
+                    references[index] = oldReferences[i];
+                    keys[index] = oldKeys[i];
+                    flags[index] = oldFlags[i];
+                }
+            }
+        }
+
+        @Override
+        COSObjectKey getKey(COSBase object)
+        {
+            int index = indexOf(object);
+            return index >= 0 ? keys[index] : null;
+        }
+
+        @Override
+        void setKey(COSBase object, COSObjectKey key)
+        {
+            if (object != null)
+            {
+                // add() may resize the arrays
+                int index = add(object);
+                keys[index] = key;
+            }
+        }
+
+        @Override
+        Map<COSBase, COSObjectKey> getKeys()
+        {
+            Map<COSBase, COSObjectKey> map = new IdentityHashMap<COSBase, COSObjectKey>();
+            for (int i = 0; i < references.length; i++)
+            {
+                COSBase object = references[i] != null ? references[i].get() : null;
+                if (object != null && keys[i] != null)
+                {
+                    map.put(object, keys[i]);
+                }
+            }
+            return map;
+        }
+
+        @Override
+        boolean hasFlag(COSBase object, int flag)
+        {
+            int index = indexOf(object);
+            return index >= 0 && (flags[index] & flag) != 0;
+        }
+
+        @Override
+        void setFlag(COSBase object, int flag, boolean value)
+        {
+            if (object == null)
+            {
+                return;
+            }
+            if (value)
+            {
+                int index = add(object);
+                flags[index] |= flag;
+            }
+            else
+            {
+                int index = indexOf(object);
+                if (index >= 0)
+                {
+                    flags[index] &= ~flag;
+                }
+            }
+        }
+    }
+}
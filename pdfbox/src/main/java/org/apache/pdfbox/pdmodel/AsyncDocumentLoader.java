@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessBuffer;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+
+/**
+ * Loads a PDF from an input stream in the background, e.g. while it is downloaded. The data is
+ * copied to a scratch file as it arrives, like {@link PDDocument#load(InputStream,
+ * MemoryUsageSetting)} does, and the document is parsed as soon as the stream has been read
+ * completely.
+ *
+ * <p>While the data is still arriving, the loader looks for the linearization parameter
+ * dictionary at the beginning of the file. If the PDF is linearized ("fast web view"), the
+ * first page is available as soon as the bytes up to the end of the first page section have
+ * arrived, see {@link #getFirstPage()}. The other pages are available once the whole file has
+ * been read.</p>
+ *
+ * <p>All methods of the loader are thread safe.</p>
+ */
+public class AsyncDocumentLoader implements Closeable
+{
+    private static final Log LOG = LogFactory.getLog(AsyncDocumentLoader.class);
+
+    /**
+     * The linearization parameter dictionary has to be contained in the first 1024 bytes.
+     */
+    private static final int LINEARIZATION_HEADER_SIZE = 1024;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final InputStream input;
+    private final String password;
+    private final ScratchFile scratchFile;
+    private final FutureTask<PDDocument> documentTask;
+    private final Object firstPageLock = new Object();
+
+    // the following fields are guarded by this
+    private boolean started;
+    private boolean closed;
+    private long received;
+    private boolean transferComplete;
+    private IOException transferError;
+    private boolean linearizationChecked;
+    private COSDictionary linearizationDictionary;
+    private long firstPageEnd;
+    // the beginning of the file, up to the end of the first page section if linearized
+    private byte[] head = new byte[LINEARIZATION_HEADER_SIZE + CHUNK_SIZE];
+    private int headLength;
+
+    // guarded by firstPageLock
+    private PDDocument firstPageDocument;
+    private PDPage firstPage;
+
+    /**
+     * Constructor.
+     *
+     * @param input stream that contains the document, it isn't closed by the loader
+     * @param memUsageSetting defines how memory is used for buffering the input stream and PDF
+     * streams
+     * @throws IOException if the scratch file can't be created
+     */
+    public AsyncDocumentLoader(InputStream input, MemoryUsageSetting memUsageSetting)
+            throws IOException
+    {
+        this(input, "", memUsageSetting);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param input stream that contains the document, it isn't closed by the loader
+     * @param password password to be used for decryption
+     * @param memUsageSetting defines how memory is used for buffering the input stream and PDF
+     * streams
+     * @throws IOException if the scratch file can't be created
+     */
+    public AsyncDocumentLoader(InputStream input, String password,
+            MemoryUsageSetting memUsageSetting) throws IOException
+    {
+        this.input = input;
+        this.password = password;
+        scratchFile = new ScratchFile(memUsageSetting);
+        documentTask = new FutureTask<PDDocument>(new Callable<PDDocument>()
+        {
+            @Override
+            public PDDocument call() throws IOException
+            {
+                return loadDocument();
+            }
+        });
+    }
+
+    /**
+     * Starts loading the document in a new daemon thread.
+     *
+     * @return the future of the loaded document
+     */
+    public Future<PDDocument> start()
+    {
+        markStarted();
+        Thread thread = new Thread(documentTask, "PDFBox document loader");
+        thread.setDaemon(true);
+        thread.start();
+        return documentTask;
+    }
+
+    /**
+     * Starts loading the document using the given executor. Reading the stream and parsing the
+     * document is done in one task.
+     *
+     * @param executor the executor to be used
+     * @return the future of the loaded document
+     */
+    public Future<PDDocument> start(Executor executor)
+    {
+        markStarted();
+        executor.execute(documentTask);
+        return documentTask;
+    }
+
+    private synchronized void markStarted()
+    {
+        if (started || closed)
+        {
+            throw new IllegalStateException("The loader has already been started or closed");
+        }
+        started = true;
+    }
+
+    /**
+     * Returns the future of the loaded document. The document has to be closed by the caller.
+     *
+     * @return the future of the document
+     */
+    public Future<PDDocument> getDocument()
+    {
+        return documentTask;
+    }
+
+    /**
+     * Returns the number of bytes which have been read from the input stream so far.
+     *
+     * @return the number of bytes read
+     */
+    public synchronized long getBytesReceived()
+    {
+        return received;
+    }
+
+    /**
+     * Tells whether the input stream has been read completely or if reading it failed.
+     *
+     * @return true if the input stream has been read
+     */
+    public synchronized boolean isTransferComplete()
+    {
+        return transferComplete;
+    }
+
+    /**
+     * Returns the linearization parameter dictionary, waiting until the beginning of the file
+     * has arrived.
+     *
+     * @return the linearization parameter dictionary or null if the PDF isn't linearized
+     * @throws IOException if the loader has been closed before the beginning of the file arrived
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    public synchronized COSDictionary getLinearizationDictionary()
+            throws IOException, InterruptedException
+    {
+        while (!linearizationChecked)
+        {
+            checkWaiting();
+            wait();
+        }
+        return linearizationDictionary;
+    }
+
+    /**
+     * Tells whether the PDF is linearized, waiting until the beginning of the file has arrived.
+     *
+     * @return true if the PDF is linearized
+     * @throws IOException if the loader has been closed before the beginning of the file arrived
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    public boolean isLinearized() throws IOException, InterruptedException
+    {
+        return getLinearizationDictionary() != null;
+    }
+
+    /**
+     * Tells whether all data of the given page has arrived. This is the case for the first page
+     * of a linearized PDF as soon as the first page section has been read, and for all pages when
+     * the whole input stream has been read.
+     *
+     * @param pageIndex the zero based index of the page
+     * @return true if the data of the page has arrived
+     */
+    public synchronized boolean isPageAvailable(int pageIndex)
+    {
+        if (transferComplete)
+        {
+            return transferError == null;
+        }
+        return linearizationDictionary != null && pageIndex == getFirstPageIndex()
+                && received >= firstPageEnd;
+    }
+
+    /**
+     * Waits until all data of the given page has arrived.
+     *
+     * @param pageIndex the zero based index of the page
+     * @throws IOException if reading the input stream failed or if the loader has been closed
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    public synchronized void awaitPage(int pageIndex) throws IOException, InterruptedException
+    {
+        while (!isPageAvailable(pageIndex))
+        {
+            checkWaiting();
+            wait();
+        }
+    }
+
+    /**
+     * Returns the first page of a linearized PDF, waiting until the first page section has
+     * arrived. The page belongs to a preliminary document which holds the objects of the first
+     * page section only and which is closed together with the loader. Use the pages of the
+     * {@link #getDocument() loaded document} for anything but viewing.
+     *
+     * <p>If the linearized file has been updated incrementally, the page may not reflect the
+     * updates.</p>
+     *
+     * @return the first page or null if the PDF isn't linearized
+     * @throws IOException if the first page section can't be parsed, if reading the input stream
+     * failed or if the loader has been closed
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    public PDPage getFirstPage() throws IOException, InterruptedException
+    {
+        COSDictionary linearization = getLinearizationDictionary();
+        if (linearization == null)
+        {
+            return null;
+        }
+        synchronized (firstPageLock)
+        {
+            if (firstPage == null)
+            {
+                byte[] data;
+                synchronized (this)
+                {
+                    awaitPage(getFirstPageIndex());
+                    data = Arrays.copyOf(head, (int) firstPageEnd);
+                }
+                PDFParser parser = new PDFParser(new RandomAccessBuffer(data), password);
+                parser.parseFirstPageSection();
+                PDDocument document = parser.getPDDocument();
+                COSBase page = document.getDocument().getObjectFromPool(
+                        new COSObjectKey(linearization.getLong(COSName.O), 0)).getObject();
+                if (!(page instanceof COSDictionary))
+                {
+                    document.close();
+                    throw new IOException("First page object "
+                            + linearization.getLong(COSName.O) + " not found");
+                }
+                synchronized (this)
+                {
+                    if (closed)
+                    {
+                        document.close();
+                        throw new IOException("The loader has been closed");
+                    }
+                }
+                firstPageDocument = document;
+                firstPage = new PDPage((COSDictionary) page);
+            }
+            return firstPage;
+        }
+    }
+
+    /**
+     * Closes the preliminary document of the first page and stops reading the input stream. The
+     * loaded document isn't affected, if it has been completed already.
+     *
+     * @throws IOException if the preliminary document can't be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        boolean wasStarted;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            wasStarted = started;
+            notifyAll();
+        }
+        if (!wasStarted)
+        {
+            scratchFile.close();
+        }
+        synchronized (firstPageLock)
+        {
+            if (firstPageDocument != null)
+            {
+                firstPageDocument.close();
+                firstPageDocument = null;
+            }
+        }
+    }
+
+    // only to be called under synchronization of this
+    private int getFirstPageIndex()
+    {
+        return linearizationDictionary.getInt(COSName.P, 0);
+    }
+
+    // only to be called under synchronization of this
+    private void checkWaiting() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("The loader has been closed");
+        }
+        if (transferError != null)
+        {
+            throw new IOException("Reading the PDF failed", transferError);
+        }
+        if (!started)
+        {
+            throw new IllegalStateException("The loader hasn't been started");
+        }
+    }
+
+    private PDDocument loadDocument() throws IOException
+    {
+        RandomAccess buffer = null;
+        PDDocument document = null;
+        try
+        {
+            buffer = scratchFile.createBuffer();
+            transfer(buffer);
+            buffer.seek(0);
+            PDFParser parser = new PDFParser(buffer, password, scratchFile);
+            parser.parse();
+            document = parser.getPDDocument();
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    throw new IOException("The loader has been closed");
+                }
+            }
+            return document;
+        }
+        finally
+        {
+            if (document == null || isClosed())
+            {
+                IOUtils.closeQuietly(document);
+                IOUtils.closeQuietly(buffer);
+                IOUtils.closeQuietly(scratchFile);
+            }
+        }
+    }
+
+    private synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    private void transfer(RandomAccess buffer) throws IOException
+    {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try
+        {
+            int bytesRead;
+            while ((bytesRead = input.read(chunk)) > -1)
+            {
+                if (isClosed() || documentTask.isCancelled())
+                {
+                    throw new IOException("Loading the document has been cancelled");
+                }
+                buffer.write(chunk, 0, bytesRead);
+                received(chunk, bytesRead);
+            }
+            finished(null);
+        }
+        catch (IOException e)
+        {
+            finished(e);
+            throw e;
+        }
+    }
+
+    private synchronized void received(byte[] chunk, int length)
+    {
+        // keep the beginning of the file for the linearization dictionary and the first page
+        int needed = linearizationChecked ? (int) (firstPageEnd - headLength) : length;
+        if (needed > 0 && headLength == received)
+        {
+            int count = Math.min(length, needed);
+            if (headLength + count > head.length)
+            {
+                head = Arrays.copyOf(head, Math.max(head.length * 2, headLength + count));
+            }
+            System.arraycopy(chunk, 0, head, headLength, count);
+            headLength += count;
+        }
+        received += length;
+        if (!linearizationChecked && received >= LINEARIZATION_HEADER_SIZE)
+        {
+            checkLinearization();
+        }
+        notifyAll();
+    }
+
+    private synchronized void finished(IOException error)
+    {
+        transferComplete = true;
+        transferError = error;
+        if (!linearizationChecked)
+        {
+            checkLinearization();
+        }
+        notifyAll();
+    }
+
+    // only to be called under synchronization of this
+    private void checkLinearization()
+    {
+        linearizationChecked = true;
+        COSDictionary dictionary = null;
+        try
+        {
+            PDFParser parser = new PDFParser(new RandomAccessBuffer(
+                    Arrays.copyOf(head, Math.min(headLength, LINEARIZATION_HEADER_SIZE))));
+            try
+            {
+                dictionary = parser.parseLinearizationDictionary();
+            }
+            finally
+            {
+                parser.getDocument().close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Couldn't read the linearization dictionary", e);
+        }
+        if (dictionary != null)
+        {
+            long end = dictionary.getLong(COSName.E);
+            long length = dictionary.getLong(COSName.L);
+            if (end > 0 && end <= length && end < Integer.MAX_VALUE)
+            {
+                linearizationDictionary = dictionary;
+                firstPageEnd = end;
+            }
+            else
+            {
+                LOG.warn("Ignoring invalid linearization dictionary " + dictionary);
+            }
+        }
+        if (linearizationDictionary == null)
+        {
+            head = null;
+            headLength = 0;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.apache.pdfbox.cos.COSDictionary;
+
+/**
+ * A read-only view of a loaded document whose pages may be processed by several threads at once,
+ * e.g. to render them or to extract their text in parallel.
+ *
+ * <p>Objects which are loaded on demand are parsed under the lock of the parser and stream data
+ * may be read concurrently. The resources of the pages are cached by a
+ * {@link ThreadLocalResourceCache}, as fonts and other resources must not be used by several
+ * threads. The view sets this cache as the resource cache of the document too, so that classes
+ * which take the pages from the document, like
+ * {@link org.apache.pdfbox.rendering.PDFRenderer PDFRenderer}, can be used on several threads.
+ * Objects which aren't thread safe, like a
+ * {@link org.apache.pdfbox.text.PDFTextStripper PDFTextStripper}, have to be created for every
+ * page or thread.</p>
+ *
+ * <p>The document must not be modified or closed while the view is used.</p>
+ *
+ * <pre>
+ * final PDFRenderer renderer = new PDFRenderer(document);
+ * List&lt;BufferedImage&gt; images = new ConcurrentDocumentView(document).processPagesInParallel(
+ *     new ConcurrentDocumentView.PageProcessor&lt;BufferedImage&gt;()
+ *     {
+ *         public BufferedImage processPage(PDPage page, int pageIndex) throws IOException
+ *         {
+ *             return renderer.renderImage(pageIndex);
+ *         }
+ *     }, Runtime.getRuntime().availableProcessors());
+ * </pre>
+ */
+public class ConcurrentDocumentView
+{
+    /**
+     * Processes a page of the document. It is called by several threads at once.
+     *
+     * @param <T> the type of the result of a page
+     */
+    public interface PageProcessor<T>
+    {
+        /**
+         * Processes a page.
+         *
+         * @param page the page
+         * @param pageIndex the zero-based index of the page
+         * @return the result for the page, may be null
+         * @throws IOException if the page can't be processed
+         */
+        T processPage(PDPage page, int pageIndex) throws IOException;
+    }
+
+    private final PDDocument document;
+    private final ResourceCache resourceCache = new ThreadLocalResourceCache();
+    private final List<COSDictionary> pages = new ArrayList<COSDictionary>();
+
+    /**
+     * Creates a view of the given document. The page tree is read by the constructor.
+     *
+     * @param document the loaded document
+     */
+    public ConcurrentDocumentView(PDDocument document)
+    {
+        this.document = document;
+        document.setResourceCache(resourceCache);
+        for (PDPage page : document.getDocumentCatalog().getPages())
+        {
+            pages.add(page.getCOSObject());
+        }
+    }
+
+    /**
+     * Returns the document.
+     *
+     * @return the document
+     */
+    public PDDocument getDocument()
+    {
+        return document;
+    }
+
+    /**
+     * Returns the number of pages of the document.
+     *
+     * @return the number of pages
+     */
+    public int getNumberOfPages()
+    {
+        return pages.size();
+    }
+
+    /**
+     * Returns a page of the document. This may be called by any thread. Every call returns a new
+     * instance.
+     *
+     * @param pageIndex the zero-based index of the page
+     * @return the page
+     * @throws IndexOutOfBoundsException if there is no such page
+     */
+    public PDPage getPage(int pageIndex)
+    {
+        return new PDPage(pages.get(pageIndex), resourceCache);
+    }
+
+    /**
+     * Processes all pages with the given number of threads, which are started for this call.
+     *
+     * @param <T> the type of the result of a page
+     * @param processor the processor of the pages
+     * @param threadCount the number of threads
+     * @return the results of the pages, in the order of the pages
+     * @throws IOException if a page couldn't be processed, the remaining pages aren't processed
+     */
+    public <T> List<T> processPagesInParallel(PageProcessor<T> processor, int threadCount)
+            throws IOException
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try
+        {
+            return processPagesInParallel(processor, executor);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes all pages on the given executor, which gets a task for every page.
+     *
+     * @param <T> the type of the result of a page
+     * @param processor the processor of the pages
+     * @param executor the executor which runs the tasks
+     * @return the results of the pages, in the order of the pages
+     * @throws IOException if a page couldn't be processed, the remaining pages aren't processed
+     */
+    public <T> List<T> processPagesInParallel(final PageProcessor<T> processor, Executor executor)
+            throws IOException
+    {
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(pages.size());
+        for (int i = 0; i < pages.size(); i++)
+        {
+            final int pageIndex = i;
+            tasks.add(new FutureTask<T>(new Callable<T>()
+            {
+                @Override
+                public T call() throws IOException
+                {
+                    return processor.processPage(getPage(pageIndex), pageIndex);
+                }
+            }));
+        }
+        List<T> results = new ArrayList<T>(pages.size());
+        try
+        {
+            for (FutureTask<T> task : tasks)
+            {
+                executor.execute(task);
+            }
+            for (FutureTask<T> task : tasks)
+            {
+                results.add(task.get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing the pages");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally
+        {
+            if (results.size() < tasks.size())
+            {
+                for (FutureTask<T> task : tasks)
+                {
+                    task.cancel(false);
+                }
+            }
+        }
+        return results;
+    }
+}
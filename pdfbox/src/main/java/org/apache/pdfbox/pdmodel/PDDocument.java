@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.cos.COSArray;
@@ -41,6 +42,7 @@ import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.io.RandomAccessBuffer;
 import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
 import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessMemoryMappedFile;
 import org.apache.pdfbox.io.RandomAccessRead;
 import org.apache.pdfbox.io.ScratchFile;
 import org.apache.pdfbox.pdfparser.PDFParser;
@@ -74,6 +76,9 @@ public class PDDocument implements Closeable
 {
     private static final Log LOG = LogFactory.getLog(PDDocument.class);
 
+    // suffix of the xref index file stored next to a loaded file, see PDFParser.SYSPROP_XREFINDEX
+    private static final String XREF_INDEX_SUFFIX = ".xrefidx";
+
     private final COSDocument document;
 
     // cached values
@@ -847,8 +852,20 @@ public class PDDocument implements Closeable
     public static PDDocument load(File file, String password, InputStream keyStore, String alias,
                                   MemoryUsageSetting memUsageSetting) throws IOException
     {
-        RandomAccessBufferedFileInputStream raFile = new RandomAccessBufferedFileInputStream(file);
+        RandomAccessRead raFile;
+        if (memUsageSetting.useMemoryMappedInput())
+        {
+            raFile = new RandomAccessMemoryMappedFile(file);
+        }
+        else
+        {
+            raFile = new RandomAccessBufferedFileInputStream(file);
+        }
         PDFParser parser = new PDFParser(raFile, password, keyStore, alias, new ScratchFile(memUsageSetting));
+        if (Boolean.getBoolean(PDFParser.SYSPROP_XREFINDEX))
+        {
+            parser.setXrefIndexFile(new File(file.getPath() + XREF_INDEX_SUFFIX));
+        }
         try
         {
             parser.parse();
@@ -1075,6 +1092,83 @@ public class PDDocument implements Closeable
      * @throws IOException if the output could not be written
      */
     public void save(OutputStream output) throws IOException
+    {
+        save(output, false, false, null);
+    }
+
+    /**
+     * Save the document to a file, with the objects compressed into object streams and a cross
+     * reference stream instead of a cross reference table. Streams without a filter are
+     * written Flate-encoded, the document isn't changed. This results in a smaller file which
+     * requires PDF 1.5.
+     * 
+     * @param file The file to save as.
+     *
+     * @throws IOException if the output could not be written
+     */
+    public void saveCompressed(File file) throws IOException
+    {
+        saveCompressed(new FileOutputStream(file));
+    }
+
+    /**
+     * Save the document to an output stream, with the objects compressed into object streams and
+     * a cross reference stream instead of a cross reference table. Streams without a filter are
+     * written Flate-encoded, the document isn't changed. This results in a smaller file which
+     * requires PDF 1.5.
+     * 
+     * @param output The stream to write to.
+     *
+     * @throws IOException if the output could not be written
+     */
+    public void saveCompressed(OutputStream output) throws IOException
+    {
+        save(output, false, true, null);
+    }
+
+    /**
+     * Save the document to an output stream like {@link #saveCompressed(OutputStream)}, with the
+     * streams being Flate-encoded on the given executor while the document is written. The output
+     * is the same as without an executor.
+     * 
+     * @param output The stream to write to.
+     * @param executor The executor for encoding streams.
+     *
+     * @throws IOException if the output could not be written
+     */
+    public void saveCompressed(OutputStream output, Executor executor) throws IOException
+    {
+        save(output, false, true, executor);
+    }
+
+    /**
+     * Save the document linearized ("fast web view") to a file, so that viewers can display the
+     * first page before the whole file has been loaded.
+     * 
+     * @param file The file to save as.
+     *
+     * @throws IOException if the output could not be written
+     */
+    public void saveLinearized(File file) throws IOException
+    {
+        saveLinearized(new FileOutputStream(file));
+    }
+
+    /**
+     * Save the document linearized ("fast web view") to an output stream, so that viewers can
+     * display the first page before the whole file has been loaded.
+     * 
+     * @param output The stream to write to.
+     *
+     * @throws IOException if the output could not be written
+     */
+    public void saveLinearized(OutputStream output) throws IOException
+    {
+        save(output, true, false, null);
+    }
+
+    private void save(OutputStream output, boolean linearized, boolean compressed,
+            Executor executor) throws IOException
     {
         if (document.isClosed())
         {
@@ -1090,6 +1184,9 @@ public class PDDocument implements Closeable
         
         // save PDF
         COSWriter writer = new COSWriter(output);
+        writer.setLinearized(linearized);
+        writer.setCompressed(compressed);
+        writer.setEncodingExecutor(executor);
         try
         {
             writer.write(this);
@@ -1127,6 +1224,65 @@ public class PDDocument implements Closeable
         }
     }
 
+    /**
+     * Appends an incremental update to the file the PDF was loaded from. Only the objects which
+     * have been marked as changed and the cross reference section are written, the existing data
+     * of the file is neither copied nor rewritten, so the cost is proportional to the changes.
+     *
+     * @param file the file the PDF was loaded from
+     * @throws IOException if the output could not be written, or the file has a different length
+     * than the PDF data
+     * @throws IllegalStateException if the document was not loaded from a file or a stream.
+     */
+    public void appendIncrementalUpdate(File file) throws IOException
+    {
+        if (pdfSource == null)
+        {
+            throw new IllegalStateException("The document was not loaded");
+        }
+        if (file.length() != pdfSource.length())
+        {
+            throw new IOException("The length of " + file + " differs from the PDF data");
+        }
+        appendIncrementalUpdate(new FileOutputStream(file, true));
+    }
+
+    /**
+     * Writes an incremental update which is to be appended to the data the PDF was loaded from.
+     * Only the objects which have been marked as changed and the cross reference section are
+     * written, see {@link #appendIncrementalUpdate(File)}.
+     *
+     * @param appendOutput stream to write, which continues the data the PDF was loaded from. It
+     * is closed when the update has been written.
+     * @throws IOException if the output could not be written
+     * @throws IllegalStateException if the document was not loaded from a file or a stream.
+     */
+    public void appendIncrementalUpdate(OutputStream appendOutput) throws IOException
+    {
+        if (pdfSource == null)
+        {
+            throw new IllegalStateException("The document was not loaded");
+        }
+        COSWriter writer = null;
+        try
+        {
+            writer = new COSWriter(appendOutput, pdfSource);
+            writer.write(this, signInterface);
+            writer.close();
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                writer.close();
+            }
+            else
+            {
+                appendOutput.close();
+            }
+        }
+    }
+
     /**
      * Returns the page at the given index.
      *
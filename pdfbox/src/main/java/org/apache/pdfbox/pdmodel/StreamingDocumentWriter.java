@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * Writes a new PDF page by page, for documents which are too large to be kept in memory until
+ * they are saved. Each page is written to the output as soon as it is complete, together with
+ * the objects it uses which haven't been written yet, and isn't kept afterwards. The page tree,
+ * the document catalog and the cross reference table are written when the writer is closed.
+ *
+ * <pre>
+ * StreamingDocumentWriter writer = new StreamingDocumentWriter(new File("report.pdf"));
+ * PDDocument document = writer.getDocument();
+ * for (...)
+ * {
+ *     PDPage page = new PDPage();
+ *     PDPageContentStream contents = new PDPageContentStream(document, page);
+ *     ...
+ *     contents.close();
+ *     writer.writePage(page);
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * <p>Pages must not be added to the document, and neither a page nor the objects it uses may be
+ * changed after the page has been written; objects like fonts and images can be used by several
+ * pages though. The content streams of a page are closed once it has been written. Other
+ * streams, e.g. of images, are released when they are closed by the caller. Fonts which are
+ * subset are written when the writer is closed. Encryption and signatures aren't supported.</p>
+ */
+public class StreamingDocumentWriter implements Closeable
+{
+    private final PDDocument document;
+    private final COSWriter writer;
+    private final COSDictionary pages;
+    private final COSArray kids = new COSArray();
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Creates a writer for the given file, PDF streams are kept in main memory.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can't be created
+     */
+    public StreamingDocumentWriter(File file) throws IOException
+    {
+        this(new FileOutputStream(file), MemoryUsageSetting.setupMainMemoryOnly());
+    }
+
+    /**
+     * Creates a writer for the given output stream, PDF streams are kept in main memory.
+     *
+     * @param output the stream to write to, it is closed when the writer is closed
+     */
+    public StreamingDocumentWriter(OutputStream output)
+    {
+        this(output, MemoryUsageSetting.setupMainMemoryOnly());
+    }
+
+    /**
+     * Creates a writer for the given output stream.
+     *
+     * @param output the stream to write to, it is closed when the writer is closed
+     * @param memUsageSetting defines how memory is used for buffering PDF streams
+     */
+    public StreamingDocumentWriter(OutputStream output, MemoryUsageSetting memUsageSetting)
+    {
+        document = new PDDocument(memUsageSetting);
+        writer = new COSWriter(output);
+        pages = document.getPages().getCOSObject();
+    }
+
+    /**
+     * Returns the document which is written. It is used for creating the contents of the pages,
+     * and its document catalog and information can be changed until the writer is closed. The
+     * version can be changed until the first page has been written.
+     *
+     * @return the document
+     */
+    public PDDocument getDocument()
+    {
+        return document;
+    }
+
+    /**
+     * Returns the number of pages which have been written.
+     *
+     * @return the number of pages
+     */
+    public int getNumberOfPages()
+    {
+        return kids.size();
+    }
+
+    /**
+     * Writes a page and the objects it uses which haven't been written yet.
+     *
+     * @param page the page to write
+     * @throws IOException if the page can't be written
+     */
+    public void writePage(PDPage page) throws IOException
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The writer has been closed");
+        }
+        if (!started)
+        {
+            writer.startDocument(document);
+            // the page tree is written when all pages are known
+            writer.deferObject(pages);
+            started = true;
+        }
+        // fonts are subset when the writer is closed
+        for (PDFont font : document.getFontsToSubset())
+        {
+            writer.deferObject(font.getCOSObject());
+        }
+
+        COSDictionary dict = page.getCOSObject();
+        dict.setItem(COSName.PARENT, pages);
+        kids.add(writer.writeObjects(dict));
+
+        Iterator<PDStream> contentStreams = page.getContentStreams();
+        while (contentStreams.hasNext())
+        {
+            contentStreams.next().getCOSObject().close();
+        }
+    }
+
+    /**
+     * Writes the page tree, the remaining objects, the cross reference table and the trailer,
+     * and closes the output and the document.
+     *
+     * @throws IOException if the document can't be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            if (!started)
+            {
+                writer.startDocument(document);
+            }
+            pages.setItem(COSName.KIDS, kids);
+            pages.setInt(COSName.COUNT, kids.size());
+            for (PDFont font : document.getFontsToSubset())
+            {
+                font.subset();
+            }
+            document.getFontsToSubset().clear();
+            writer.finishDocument();
+        }
+        finally
+        {
+            try
+            {
+                writer.close();
+            }
+            finally
+            {
+                document.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.pdmodel;
+
+import java.io.IOException;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+/**
+ * A resource cache which may be used by several threads at once. Each thread has its own
+ * {@link DefaultResourceCache}, as resources such as fonts load their data on demand and must
+ * not be shared between threads. A thread which processes many pages of a document still
+ * creates the common resources only once.
+ */
+public class ThreadLocalResourceCache implements ResourceCache
+{
+    private final ThreadLocal<ResourceCache> caches = new ThreadLocal<ResourceCache>()
+    {
+        @Override
+        protected ResourceCache initialValue()
+        {
+            return new DefaultResourceCache();
+        }
+    };
+
+    @Override
+    public PDFont getFont(COSObject indirect) throws IOException
+    {
+        return caches.get().getFont(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDFont font) throws IOException
+    {
+        caches.get().put(indirect, font);
+    }
+
+    @Override
+    public PDColorSpace getColorSpace(COSObject indirect) throws IOException
+    {
+        return caches.get().getColorSpace(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDColorSpace colorSpace) throws IOException
+    {
+        caches.get().put(indirect, colorSpace);
+    }
+
+    @Override
+    public PDExtendedGraphicsState getExtGState(COSObject indirect)
+    {
+        return caches.get().getExtGState(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDExtendedGraphicsState extGState)
+    {
+        caches.get().put(indirect, extGState);
+    }
+
+    @Override
+    public PDShading getShading(COSObject indirect) throws IOException
+    {
+        return caches.get().getShading(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDShading shading) throws IOException
+    {
+        caches.get().put(indirect, shading);
+    }
+
+    @Override
+    public PDAbstractPattern getPattern(COSObject indirect) throws IOException
+    {
+        return caches.get().getPattern(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDAbstractPattern pattern) throws IOException
+    {
+        caches.get().put(indirect, pattern);
+    }
+
+    @Override
+    public PDPropertyList getProperties(COSObject indirect)
+    {
+        return caches.get().getProperties(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDPropertyList propertyList)
+    {
+        caches.get().put(indirect, propertyList);
+    }
+
+    @Override
+    public PDXObject getXObject(COSObject indirect) throws IOException
+    {
+        return caches.get().getXObject(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDXObject xobject) throws IOException
+    {
+        caches.get().put(indirect, xobject);
+    }
+}
@@ -260,10 +260,19 @@ public class PDStream implements COSObjectable
                 else
                 {
                     Filter filter = FilterFactory.INSTANCE.getFilter(nextFilter);
-                    filter.decode(is, os, stream, i);
-                    IOUtils.closeQuietly(is);
-                    is = new ByteArrayInputStream(os.toByteArray());
-                    os.reset();
+                    InputStream decoded = filter.createInputStream(is, stream, i);
+                    if (decoded != null)
+                    {
+                        // decoded on the fly while reading
+                        is = decoded;
+                    }
+                    else
+                    {
+                        filter.decode(is, os, stream, i);
+                        IOUtils.closeQuietly(is);
+                        is = new ByteArrayInputStream(os.toByteArray());
+                        os.reset();
+                    }
                 }
             }
         }
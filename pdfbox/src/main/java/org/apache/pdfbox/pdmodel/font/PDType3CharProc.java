@@ -19,15 +19,9 @@ package org.apache.pdfbox.pdmodel.font;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 import org.apache.pdfbox.contentstream.PDContentStream;
-import org.apache.pdfbox.contentstream.operator.Operator;
-import org.apache.pdfbox.cos.COSBase;
-import org.apache.pdfbox.cos.COSNumber;
-import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSStream;
-import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfparser.PDFStreamReader;
 import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.COSObjectable;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
@@ -98,44 +92,34 @@ public final class PDType3CharProc implements COSObjectable, PDContentStream
      */
     public float getWidth() throws IOException
     {
-        List<COSBase> arguments = new ArrayList<COSBase>();
-        PDFStreamParser parser = new PDFStreamParser(this);
-        Object token = parser.parseNextToken();
-        while (token != null)
+        PDFStreamReader reader = new PDFStreamReader(this);
+        try
         {
-            if (token instanceof COSObject)
+            if (!reader.next())
             {
-                arguments.add(((COSObject) token).getObject());
+                throw new IOException("Unexpected end of stream");
             }
-            else if (token instanceof Operator)
-            {
-                return parseWidth((Operator) token, arguments);
-            }
-            else
-            {
-                arguments.add((COSBase) token);
-            }
-            token = parser.parseNextToken();
+            return parseWidth(reader);
+        }
+        finally
+        {
+            reader.close();
         }
-        throw new IOException("Unexpected end of stream");
     }
 
-    private float parseWidth(Operator operator, List arguments) throws IOException
+    private float parseWidth(PDFStreamReader reader) throws IOException
     {
-        if (operator.getName().equals("d0") || operator.getName().equals("d1"))
+        String operator = reader.getOperator().getName();
+        if (operator.equals("d0") || operator.equals("d1"))
         {
-            Object obj = arguments.get(0);
-            if (obj instanceof Number)
-            {
-                return ((Number) obj).floatValue();
-            }
-            else if (obj instanceof COSNumber)
+            if (reader.getOperandCount() > 0 && reader.isNumber(0))
             {
-                return ((COSNumber) obj).floatValue();
+                return reader.getFloat(0);
             }
             else
             {
-                throw new IOException("Unexpected argument type: " + obj.getClass().getName());
+                throw new IOException("Unexpected argument of " + operator + ": "
+                        + (reader.getOperandCount() > 0 ? reader.getOperand(0) : "none"));
             }
         }
         else
@@ -33,17 +33,24 @@ import org.apache.pdfbox.util.Matrix;
 /**
  * The current state of the graphics parameters when executing a content stream.
  *
+ * <p>Cloning is cheap, as it happens for every "q" operator: the clipping path, the text state
+ * and the current transformation matrix are shared between a state and its clones. The clipping
+ * path is copied before it is modified, the text state and the CTM are copied when they are
+ * first requested, as they are mutable.</p>
+ *
  * @author Ben Litchfield
  */
 public class PDGraphicsState implements Cloneable
 {
     private boolean isClippingPathDirty;
     private Area clippingPath;
+    private boolean isCurrentTransformationMatrixShared;
     private Matrix currentTransformationMatrix = new Matrix();
     private PDColor strokingColor = PDDeviceGray.INSTANCE.getInitialColor();
     private PDColor nonStrokingColor = PDDeviceGray.INSTANCE.getInitialColor();
     private PDColorSpace strokingColorSpace = PDDeviceGray.INSTANCE;
     private PDColorSpace nonStrokingColorSpace = PDDeviceGray.INSTANCE;
+    private boolean isTextStateShared;
     private PDTextState textState = new PDTextState();
     private float lineWidth = 1;
     private int lineCap = BasicStroke.CAP_BUTT;
@@ -84,6 +91,12 @@ public class PDGraphicsState implements Cloneable
      */
     public Matrix getCurrentTransformationMatrix()
     {
+        // lazy cloning of the CTM, it may be modified by the caller
+        if (isCurrentTransformationMatrixShared)
+        {
+            currentTransformationMatrix = currentTransformationMatrix.clone();
+            isCurrentTransformationMatrixShared = false;
+        }
         return currentTransformationMatrix;
     }
 
@@ -95,6 +108,7 @@ public class PDGraphicsState implements Cloneable
     public void setCurrentTransformationMatrix(Matrix value)
     {
         currentTransformationMatrix = value;
+        isCurrentTransformationMatrixShared = false;
     }
 
     /**
@@ -387,6 +401,12 @@ public class PDGraphicsState implements Cloneable
      */
     public PDTextState getTextState()
     {
+        // lazy cloning of the text state, it may be modified by the caller
+        if (isTextStateShared)
+        {
+            textState = textState.clone();
+            isTextStateShared = false;
+        }
         return textState;
     }
 
@@ -398,6 +418,7 @@ public class PDGraphicsState implements Cloneable
     public void setTextState(PDTextState value)
     {
         textState = value;
+        isTextStateShared = false;
     }
 
     /**
@@ -448,13 +469,17 @@ public class PDGraphicsState implements Cloneable
         try
         {
             PDGraphicsState clone = (PDGraphicsState)super.clone();
-            clone.textState = textState.clone();
-            clone.currentTransformationMatrix = currentTransformationMatrix.clone();
             clone.strokingColor = strokingColor; // immutable
             clone.nonStrokingColor = nonStrokingColor; // immutable
             clone.lineDashPattern = lineDashPattern; // immutable
-            clone.clippingPath = clippingPath; // not cloned, see intersectClippingPath
-            clone.isClippingPathDirty = false;
+            // the following are shared by both states until one of them modifies them, see
+            // getTextState, getCurrentTransformationMatrix and intersectClippingPath
+            clone.textState = textState;
+            clone.currentTransformationMatrix = currentTransformationMatrix;
+            clone.clippingPath = clippingPath;
+            isTextStateShared = clone.isTextStateShared = true;
+            isCurrentTransformationMatrixShared = clone.isCurrentTransformationMatrixShared = true;
+            isClippingPathDirty = clone.isClippingPathDirty = false;
             return clone;
         }
         catch (CloneNotSupportedException e)
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.contentstream;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+
+/**
+ * Measures the throughput of the operator dispatch of {@link PDFGraphicsStreamEngine} on a
+ * page with many path operators. The operators are in a form whose parsed tokens are cached, so
+ * that the content stream is only parsed during the warm up and the time is spent executing the
+ * operators.
+ *
+ * <p>Usage: OperatorBenchmark [iterations] [number of paths]</p>
+ */
+public final class OperatorBenchmark
+{
+    private OperatorBenchmark()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int paths = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+
+        PDDocument document = new PDDocument(
+                MemoryUsageSetting.setupMainMemoryOnly().setParsedStreamCacheBytes(1L << 30));
+        try
+        {
+            PDPage page = createPage(document, paths);
+            NullGraphicsEngine engine = new NullGraphicsEngine(page);
+            // warm up, this also parses the form
+            for (int i = 0; i < 3; i++)
+            {
+                engine.processPage(page);
+            }
+            engine.operatorCount = 0;
+            long best = Long.MAX_VALUE;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+            {
+                long iterationStart = System.nanoTime();
+                engine.processPage(page);
+                best = Math.min(best, System.nanoTime() - iterationStart);
+            }
+            long total = System.nanoTime() - start;
+            long operatorsPerPage = engine.operatorCount / iterations;
+            System.out.println("Operators per page : " + operatorsPerPage);
+            System.out.println("Average (ms) : " + total / iterations / 1000000);
+            System.out.println("Best (ms) : " + best / 1000000);
+            System.out.println("Operators per second : " + operatorsPerPage * 1000000000L / best);
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    private static PDPage createPage(PDDocument document, int paths) throws IOException
+    {
+        PDFormXObject form = new PDFormXObject(document);
+        form.setBBox(new PDRectangle(612, 792));
+        OutputStream output = form.getStream().createOutputStream(COSName.FLATE_DECODE);
+        Writer writer = new OutputStreamWriter(output, "US-ASCII");
+        for (int i = 0; i < paths; i++)
+        {
+            int x = i % 600;
+            int y = i / 600 % 780;
+            writer.write("q 0.5 w 1 0 0 RG " + x + " " + y + " m " + (x + 10) + " " + y + " l "
+                    + (x + 10) + " " + (y + 5) + " " + (x + 5) + " " + (y + 10) + " " + x + " "
+                    + (y + 10) + " c h S " + x + " " + y + " 4 4 re f Q\n");
+        }
+        writer.close();
+
+        PDPage page = new PDPage();
+        document.addPage(page);
+        PDPageContentStream contents = new PDPageContentStream(document, page);
+        contents.drawForm(form);
+        contents.close();
+        return page;
+    }
+
+    /**
+     * An engine which counts the operators and ignores the graphics.
+     */
+    private static final class NullGraphicsEngine extends PDFGraphicsStreamEngine
+    {
+        private final Point2D currentPoint = new Point2D.Float();
+        private long operatorCount;
+
+        NullGraphicsEngine(PDPage page)
+        {
+            super(page);
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands)
+                throws IOException
+        {
+            operatorCount++;
+            super.processOperator(operator, operands);
+        }
+
+        @Override
+        public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3)
+        {
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage)
+        {
+        }
+
+        @Override
+        public void clip(int windingRule)
+        {
+        }
+
+        @Override
+        public void moveTo(float x, float y)
+        {
+            currentPoint.setLocation(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y)
+        {
+            currentPoint.setLocation(x, y);
+        }
+
+        @Override
+        public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3)
+        {
+            currentPoint.setLocation(x3, y3);
+        }
+
+        @Override
+        public Point2D getCurrentPoint()
+        {
+            return currentPoint;
+        }
+
+        @Override
+        public void closePath()
+        {
+        }
+
+        @Override
+        public void endPath()
+        {
+        }
+
+        @Override
+        public void strokePath()
+        {
+        }
+
+        @Override
+        public void fillPath(int windingRule)
+        {
+        }
+
+        @Override
+        public void fillAndStrokePath(int windingRule)
+        {
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName)
+        {
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.contentstream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ParsedStreamCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+/**
+ * Unit tests for {@link PDFStreamEngine}.
+ */
+public class PDFStreamEngineTest extends TestCase
+{
+    /**
+     * A form which is drawn several times is parsed once if the parsed stream cache is enabled,
+     * and parsed again once it has been changed.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testParsedStreamCache() throws IOException
+    {
+        PDDocument document = new PDDocument(
+                MemoryUsageSetting.setupMainMemoryOnly().setParsedStreamCacheBytes(100000));
+        try
+        {
+            PDFormXObject form = new PDFormXObject(document);
+            form.setBBox(new PDRectangle(100, 100));
+            writeForm(form, "0 0 10 10 re 20 20 5 5 re f");
+            PDPage page = new PDPage();
+            document.addPage(page);
+            PDPageContentStream contents = new PDPageContentStream(document, page);
+            for (int i = 0; i < 5; i++)
+            {
+                contents.drawForm(form);
+            }
+            contents.close();
+
+            RectangleCollector collector = new RectangleCollector();
+            collector.processPage(page);
+            assertEquals(10, collector.rectangles.size());
+            assertEquals(20f, collector.rectangles.get(9)[0]);
+            ParsedStreamCache cache = form.getCOSStream().getParsedStreamCache();
+            assertEquals(1, cache.getMissCount());
+            assertEquals(4, cache.getHitCount());
+            assertEquals(1, cache.getEntryCount());
+
+            writeForm(form, "1 1 10 10 re f");
+            assertEquals(0, cache.getEntryCount());
+            collector = new RectangleCollector();
+            collector.processPage(page);
+            assertEquals(5, collector.rectangles.size());
+            assertEquals(1f, collector.rectangles.get(4)[0]);
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    /**
+     * Operators are dispatched to processors which are added after the engine has been used.
+     * Inline image operators aren't shared, but have the same id.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testOperatorDispatch() throws IOException
+    {
+        assertEquals(Operator.getOperator("BI").getId(), Operator.getOperator("BI").getId());
+        assertNotSame(Operator.getOperator("BI"), Operator.getOperator("BI"));
+        assertSame(Operator.getOperator("re"), Operator.getOperator("re"));
+
+        PDDocument document = new PDDocument();
+        try
+        {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            PDPageContentStream contents = new PDPageContentStream(document, page);
+            contents.addRect(1, 2, 3, 4);
+            contents.addRect(5, 6, 7, 8);
+            contents.close();
+
+            final List<String> names = new ArrayList<String>();
+            RectangleCollector collector = new RectangleCollector();
+            collector.processPage(page);
+            assertEquals(2, collector.rectangles.size());
+            assertEquals(5f, collector.rectangles.get(1)[0]);
+            collector.addOperator(new OperatorProcessor()
+            {
+                @Override
+                public void process(Operator operator, List<COSBase> operands)
+                {
+                    names.add(operator.getName());
+                }
+
+                @Override
+                public String getName()
+                {
+                    return "re";
+                }
+            });
+            collector.processPage(page);
+            assertEquals(2, collector.rectangles.size());
+            assertEquals(Arrays.asList("re", "re"), names);
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    private static void writeForm(PDFormXObject form, String content) throws IOException
+    {
+        OutputStream output = form.getStream().createOutputStream();
+        output.write(content.getBytes("US-ASCII"));
+        output.close();
+    }
+
+    /**
+     * Collects the operands of the "re" operators, including those in forms.
+     */
+    private static final class RectangleCollector extends PDFStreamEngine
+    {
+        private final List<float[]> rectangles = new ArrayList<float[]>();
+
+        RectangleCollector()
+        {
+            addOperator(new DrawObject());
+            addOperator(new OperatorProcessor()
+            {
+                @Override
+                public void process(Operator operator, List<COSBase> operands)
+                {
+                    float[] rectangle = new float[operands.size()];
+                    for (int i = 0; i < rectangle.length; i++)
+                    {
+                        rectangle[i] = ((COSNumber) operands.get(i)).floatValue();
+                    }
+                    rectangles.add(rectangle);
+                }
+
+                @Override
+                public String getName()
+                {
+                    return "re";
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.cos;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link COSDictionaryMap}.
+ */
+public class TestCOSDictionaryMap extends TestCase
+{
+    /**
+     * Compares the map against a LinkedHashMap using random operations, including the order of
+     * the entries, for small dictionaries as well as for those which outgrow the array.
+     */
+    public void testAgainstLinkedHashMap()
+    {
+        Random random = new Random(4711);
+        for (int keyCount : new int[] { 4, COSDictionaryMap.MAX_SMALL_SIZE, 20 })
+        {
+            COSDictionaryMap map = new COSDictionaryMap();
+            Map<COSName, COSBase> expected = new LinkedHashMap<COSName, COSBase>();
+            for (int i = 0; i < 2000; i++)
+            {
+                COSName key = COSName.getPDFName("Key" + random.nextInt(keyCount));
+                int operation = random.nextInt(6);
+                if (operation == 0)
+                {
+                    assertEquals(expected.remove(key), map.remove(key));
+                }
+                else if (operation == 1)
+                {
+                    removeFirstMatching(expected.entrySet().iterator(), key);
+                    removeFirstMatching(map.entrySet().iterator(), key);
+                }
+                else
+                {
+                    COSInteger value = COSInteger.get(random.nextInt(100));
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                }
+                assertEquals(expected.size(), map.size());
+                assertEquals(expected.get(key), map.get(key));
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+                assertEquals(new ArrayList<COSName>(expected.keySet()),
+                        new ArrayList<COSName>(map.keySet()));
+            }
+            assertEquals(expected, map);
+            assertEquals(expected.hashCode(), map.hashCode());
+        }
+    }
+
+    private static void removeFirstMatching(Iterator<Map.Entry<COSName, COSBase>> iterator,
+            COSName key)
+    {
+        while (iterator.hasNext())
+        {
+            if (iterator.next().getKey().equals(key))
+            {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Values set through an entry are stored in the map.
+     */
+    public void testEntrySetValue()
+    {
+        COSDictionaryMap map = new COSDictionaryMap();
+        map.put(COSName.A, COSInteger.ONE);
+        map.put(COSName.B, COSInteger.TWO);
+        for (Map.Entry<COSName, COSBase> entry : map.entrySet())
+        {
+            entry.setValue(COSInteger.ZERO);
+        }
+        assertEquals(COSInteger.ZERO, map.get(COSName.A));
+        assertEquals(COSInteger.ZERO, map.get(COSName.B));
+    }
+
+    /**
+     * Adding an entry while iterating is detected.
+     */
+    public void testConcurrentModification()
+    {
+        COSDictionaryMap map = new COSDictionaryMap();
+        map.put(COSName.A, COSInteger.ONE);
+        map.put(COSName.B, COSInteger.TWO);
+        Iterator<COSName> iterator = map.keySet().iterator();
+        iterator.next();
+        map.put(COSName.C, COSInteger.THREE);
+        try
+        {
+            iterator.next();
+            fail("ConcurrentModificationException expected");
+        }
+        catch (ConcurrentModificationException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Dictionaries keep their entries in order when they outgrow the array.
+     */
+    public void testDictionaryOrder()
+    {
+        COSDictionary dict = new COSDictionary();
+        List<COSName> names = new ArrayList<COSName>();
+        for (int i = 0; i < 12; i++)
+        {
+            COSName name = COSName.getPDFName("Entry" + (11 - i));
+            names.add(name);
+            dict.setInt(name, i);
+        }
+        assertEquals(names, new ArrayList<COSName>(dict.keySet()));
+        dict.removeItem(names.remove(3));
+        assertEquals(names, new ArrayList<COSName>(dict.keySet()));
+        assertEquals(11, new COSDictionary(dict).size());
+    }
+}
@@ -300,6 +300,50 @@ public class TestCOSFloat extends TestCOSNumber
         writePDFTester.runTest(0.000000000000000000000000000000001f);
     }
 
+    /**
+     * Tests that parsed decimals keep their exact value and are written as they were read.
+     *
+     * @throws IOException
+     */
+    public void testDecimalRoundTrip() throws IOException
+    {
+        String[] values = { "1.50", "-0.001", "123456.789", "0.0", "-12.5", "999999999999.999999",
+                "3.40282347", "0.1" };
+        for (String text : values)
+        {
+            COSFloat cosFloat = new COSFloat(text);
+            BigDecimal expected = new BigDecimal(text);
+            assertEquals(text, expected.floatValue(), cosFloat.floatValue());
+            assertEquals(text, expected.doubleValue(), cosFloat.doubleValue());
+            assertEquals(text, expected.longValue(), cosFloat.longValue());
+            assertEquals(text, expected.intValue(), cosFloat.intValue());
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            cosFloat.writePDF(outStream);
+            assertEquals(text, outStream.toString("ISO-8859-1"));
+            assertEquals("COSFloat{" + text + "}", cosFloat.toString());
+            assertEquals(cosFloat, new COSFloat(expected.unscaledValue().longValue(),
+                    expected.scale()));
+        }
+
+        // the number is normalized, but keeps its value and type
+        assertEquals("0.5", writeToString(new COSFloat(".5")));
+        assertEquals("-0.5", writeToString(new COSFloat("-.5")));
+        assertEquals("5.0", writeToString(new COSFloat("+5.")));
+        assertEquals("-0.05", writeToString(new COSFloat(-5, 2)));
+
+        // numbers which aren't plain decimals are kept as they are
+        assertEquals("1e3", writeToString(new COSFloat("1e3")));
+        assertEquals(1000f, new COSFloat("1e3").floatValue());
+        assertEquals("1234567890.1234567890", writeToString(new COSFloat("1234567890.1234567890")));
+    }
+
+    private String writeToString(COSFloat cosFloat) throws IOException
+    {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        cosFloat.writePDF(outStream);
+        return outStream.toString("ISO-8859-1");
+    }
+
     private String floatToString(float value)
     {
         // use a BigDecimal as intermediate state to avoid 
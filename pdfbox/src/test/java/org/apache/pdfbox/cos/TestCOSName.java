@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.cos;
+
+import java.lang.ref.WeakReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link COSName}.
+ */
+public class TestCOSName extends TestCase
+{
+    /**
+     * A name is unique as long as it is referenced.
+     */
+    public void testInterned()
+    {
+        COSName name = COSName.getPDFName("TestCOSNameInterned");
+        assertSame(name, COSName.getPDFName("TestCOSNameInterned"));
+        assertSame(COSName.TYPE, COSName.getPDFName("Type"));
+    }
+
+    /**
+     * Document specific names which aren't referenced any longer can be garbage collected.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testUnusedNamesCollected() throws InterruptedException
+    {
+        WeakReference<COSName> ref =
+                new WeakReference<COSName>(COSName.getPDFName("TestCOSNameCollected"));
+        for (int i = 0; i < 50 && ref.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+
+        COSName name = COSName.getPDFName("TestCOSNameCollected");
+        assertEquals("TestCOSNameCollected", name.getName());
+        assertSame(name, COSName.getPDFName("TestCOSNameCollected"));
+    }
+}
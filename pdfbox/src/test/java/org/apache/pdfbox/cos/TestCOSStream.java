@@ -26,7 +26,10 @@ import junit.framework.TestCase;
 
 import org.apache.pdfbox.filter.Filter;
 import org.apache.pdfbox.filter.FilterFactory;
+import org.apache.pdfbox.io.DecodedStreamCache;
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ScratchFile;
 
 public class TestCOSStream extends TestCase
 {
@@ -129,6 +132,74 @@ public class TestCOSStream extends TestCase
         validateDecoded(stream, testString);
     }
 
+    /**
+     * Tests that decoded data is taken from the decoded stream cache, that changed streams are
+     * removed from it and that the least recently used streams are evicted.
+     *
+     * @throws IOException
+     */
+    public void testDecodedStreamCache() throws IOException
+    {
+        ScratchFile scratchFile = new ScratchFile(
+                MemoryUsageSetting.setupMainMemoryOnly().setDecodedStreamCacheBytes(100));
+        DecodedStreamCache cache = scratchFile.getDecodedStreamCache();
+        byte[] data1 = new byte[40];
+        Arrays.fill(data1, (byte) 1);
+        byte[] data2 = new byte[50];
+        Arrays.fill(data2, (byte) 2);
+        COSStream stream1 = new COSStream(scratchFile);
+        OutputStream output = stream1.createOutputStream(COSName.FLATE_DECODE);
+        output.write(data1);
+        output.close();
+        COSStream stream2 = new COSStream(scratchFile);
+        output = stream2.createOutputStream(COSName.FLATE_DECODE);
+        output.write(data2);
+        output.close();
+
+        assertTrue(Arrays.equals(data1, IOUtils.toByteArray(stream1.createInputStream())));
+        assertTrue(Arrays.equals(data1, IOUtils.toByteArray(stream1.createInputStream())));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(40, cache.getSize());
+
+        // a stream which isn't read completely isn't cached
+        COSInputStream input = stream2.createInputStream();
+        assertEquals(2, input.read());
+        input.close();
+        assertEquals(1, cache.getEntryCount());
+
+        // changed data replaces the cached data
+        output = stream1.createOutputStream(COSName.FLATE_DECODE);
+        output.write(data2);
+        output.close();
+        assertEquals(0, cache.getEntryCount());
+        assertTrue(Arrays.equals(data2, IOUtils.toByteArray(stream1.createInputStream())));
+        assertTrue(Arrays.equals(data2, IOUtils.toByteArray(stream2.createInputStream())));
+        assertEquals(100, cache.getSize());
+
+        // stream1 is the least recently used stream
+        output = stream1.createOutputStream(COSName.FLATE_DECODE);
+        output.write(data1);
+        output.close();
+        IOUtils.toByteArray(stream2.createInputStream());
+        IOUtils.toByteArray(stream1.createInputStream());
+        assertEquals(90, cache.getSize());
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(5, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        // data which is larger than the cache isn't cached
+        COSStream stream3 = new COSStream(scratchFile);
+        output = stream3.createOutputStream(COSName.FLATE_DECODE);
+        output.write(new byte[101]);
+        output.close();
+        assertEquals(101, IOUtils.toByteArray(stream3.createInputStream()).length);
+        assertEquals(90, cache.getSize());
+
+        scratchFile.close();
+        assertEquals(0, cache.getEntryCount());
+    }
+
     private byte[] encodeData(byte[] original, COSName filter) throws IOException
     {
         Filter encodingFilter = FilterFactory.INSTANCE.getFilter(filter);
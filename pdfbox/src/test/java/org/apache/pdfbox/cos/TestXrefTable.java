@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.cos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link XrefTable}.
+ */
+public class TestXrefTable extends TestCase
+{
+    /**
+     * Compares the table against a HashMap using random operations, which also exercises
+     * rehashing and removal.
+     */
+    public void testAgainstHashMap()
+    {
+        XrefTable table = new XrefTable();
+        Map<COSObjectKey, Long> expected = new HashMap<COSObjectKey, Long>();
+        Random random = new Random(4711);
+        for (int i = 0; i < 20000; i++)
+        {
+            COSObjectKey key = new COSObjectKey(random.nextInt(5000), random.nextInt(3));
+            if (random.nextInt(4) == 0)
+            {
+                assertEquals(expected.remove(key), table.remove(key));
+            }
+            else
+            {
+                long offset = random.nextInt(1000000) - 1000;
+                assertEquals(expected.put(key, offset), table.put(key, offset));
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table);
+        for (int number = 0; number < 5000; number++)
+        {
+            for (int gen = 0; gen < 3; gen++)
+            {
+                COSObjectKey key = new COSObjectKey(number, gen);
+                Long offset = expected.get(key);
+                assertEquals(offset != null, table.contains(number, gen));
+                assertEquals(offset == null ? XrefTable.NOT_FOUND : offset.longValue(),
+                        table.getOffset(number, gen));
+            }
+        }
+    }
+
+    /**
+     * Tests the object stream lookup and merging of tables.
+     */
+    public void testObjectStreamMembersAndMerge()
+    {
+        XrefTable table = new XrefTable();
+        table.put(1, 0, 100);
+        table.put(2, 0, -10);
+        table.put(3, 0, -10);
+        table.put(4, 0, -11);
+        Set<Long> members = table.getObjectStreamMembers(10);
+        assertEquals(2, members.size());
+        assertTrue(members.contains(2L));
+        assertTrue(members.contains(3L));
+        assertEquals(4, table.getHighestNumber());
+
+        XrefTable other = new XrefTable();
+        other.put(1, 0, 200);
+        other.put(5, 0, 500);
+        table.putAllAbsent(other);
+        assertEquals(100, table.getOffset(1, 0));
+        assertEquals(500, table.getOffset(5, 0));
+        table.putAll(other);
+        assertEquals(200, table.getOffset(1, 0));
+        assertEquals(5, table.size());
+    }
+
+    /**
+     * Removing entries with the iterator visits every entry exactly once, also when entries are
+     * moved across the end of the table by the removal.
+     */
+    public void testIteratorRemove()
+    {
+        Random random = new Random(4711);
+        for (int round = 0; round < 2000; round++)
+        {
+            XrefTable table = new XrefTable();
+            Map<COSObjectKey, Long> expected = new HashMap<COSObjectKey, Long>();
+            // a nearly full table has long clusters, some of them wrap around
+            int count = 1 + random.nextInt(47);
+            for (int i = 0; i < count; i++)
+            {
+                COSObjectKey key = new COSObjectKey(random.nextInt(200), 0);
+                table.put(key, (long) i);
+                expected.put(key, (long) i);
+            }
+            int size = table.size();
+            Set<COSObjectKey> visited = new HashSet<COSObjectKey>();
+            Iterator<Map.Entry<COSObjectKey, Long>> iterator = table.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<COSObjectKey, Long> entry = iterator.next();
+                assertTrue(visited.add(entry.getKey()));
+                assertEquals(expected.get(entry.getKey()), entry.getValue());
+                if (random.nextBoolean())
+                {
+                    iterator.remove();
+                    expected.remove(entry.getKey());
+                }
+            }
+            assertEquals(size, visited.size());
+            assertEquals(expected, table);
+            for (COSObjectKey key : expected.keySet())
+            {
+                assertTrue(table.contains(key.getNumber(), key.getGeneration()));
+            }
+        }
+    }
+
+    /**
+     * Tests that remove() of the iterator may only be called once per entry.
+     */
+    public void testIteratorRemoveTwice()
+    {
+        XrefTable table = new XrefTable();
+        table.put(1, 0, 100);
+        Iterator<Map.Entry<COSObjectKey, Long>> iterator = table.entrySet().iterator();
+        try
+        {
+            iterator.remove();
+            fail("IllegalStateException expected");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        iterator.next();
+        iterator.remove();
+        assertTrue(table.isEmpty());
+        try
+        {
+            iterator.remove();
+            fail("IllegalStateException expected");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Tests iterating over the slots.
+     */
+    public void testSlots()
+    {
+        XrefTable table = new XrefTable();
+        Map<COSObjectKey, Long> expected = new HashMap<COSObjectKey, Long>();
+        for (int i = 0; i < 1000; i++)
+        {
+            table.put(i * 7, i % 3, -i);
+            expected.put(new COSObjectKey(i * 7, i % 3), (long) -i);
+        }
+        Map<COSObjectKey, Long> actual = new HashMap<COSObjectKey, Long>();
+        for (int slot = table.nextSlot(-1); slot >= 0; slot = table.nextSlot(slot))
+        {
+            actual.put(new COSObjectKey(table.getNumberAt(slot), table.getGenerationAt(slot)),
+                    table.getOffsetAt(slot));
+        }
+        assertEquals(expected, actual);
+        assertEquals(-1, new XrefTable().nextSlot(-1));
+    }
+
+    /**
+     * Copies a table in the order of its slots into a table which grows while it is filled, as
+     * the parser does when it merges tables. With this number of entries the copy used to take a
+     * second, as the entries formed long clusters while the table was smaller than the source.
+     */
+    public void testCopyInSlotOrder()
+    {
+        XrefTable source = new XrefTable();
+        for (int i = 1; i <= 333303; i++)
+        {
+            source.put(i, 0, -(i / 100));
+        }
+        XrefTable copy = new XrefTable();
+        copy.putAll(source);
+        XrefTable slotCopy = new XrefTable();
+        for (int slot = source.nextSlot(-1); slot >= 0; slot = source.nextSlot(slot))
+        {
+            slotCopy.put(source.getNumberAt(slot), source.getGenerationAt(slot),
+                    source.getOffsetAt(slot));
+        }
+        assertEquals(source.size(), copy.size());
+        assertEquals(source.size(), slotCopy.size());
+        for (int i = 1; i <= 333303; i++)
+        {
+            assertEquals(-(i / 100), copy.getOffset(i, 0));
+            assertEquals(-(i / 100), slotCopy.getOffset(i, 0));
+        }
+    }
+}
@@ -20,13 +20,19 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
 
 import junit.framework.TestCase;
 
+import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
 
 /**
  * This will test all of the filters in the PDFBox system.
@@ -138,6 +144,149 @@ public class TestFilters extends TestCase
         checkEncodeDecode(lzwFilter, baos.toByteArray());
     }
 
+    /**
+     * Decodes a stream with a chain of filters and a PNG predictor on the fly and compares the
+     * result with the original data.
+     *
+     * @throws IOException
+     */
+    public void testStreamingDecode() throws IOException
+    {
+        final int columns = 50;
+        final int colors = 3;
+        final int rowlength = columns * colors;
+        Random random = new Random(4711);
+        byte[] original = new byte[rowlength * 100];
+        for (int i = 0; i < original.length; i++)
+        {
+            original[i] = (byte) (i % rowlength < 60 ? random.nextInt(4) : random.nextInt());
+        }
+
+        // apply the PNG predictors None, Sub and Up in turn
+        ByteArrayOutputStream predicted = new ByteArrayOutputStream();
+        for (int row = 0; row * rowlength < original.length; row++)
+        {
+            int type = row % 3;
+            predicted.write(type);
+            for (int p = row * rowlength; p < (row + 1) * rowlength; p++)
+            {
+                int prior = 0;
+                if (type == 1 && p - colors >= row * rowlength)
+                {
+                    prior = original[p - colors];
+                }
+                else if (type == 2 && row > 0)
+                {
+                    prior = original[p - rowlength];
+                }
+                predicted.write(original[p] - prior);
+            }
+        }
+
+        COSDictionary decodeParams = new COSDictionary();
+        decodeParams.setInt(COSName.PREDICTOR, 15);
+        decodeParams.setInt(COSName.COLORS, colors);
+        decodeParams.setInt(COSName.COLUMNS, columns);
+        COSStream stream = new COSStream();
+        COSArray filters = new COSArray();
+        filters.add(COSName.ASCII_HEX_DECODE);
+        filters.add(COSName.FLATE_DECODE);
+        stream.setItem(COSName.FILTER, filters);
+        COSArray decodeParamsArray = new COSArray();
+        decodeParamsArray.add(COSNull.NULL);
+        decodeParamsArray.add(decodeParams);
+        stream.setItem(COSName.DECODE_PARMS, decodeParamsArray);
+
+        ByteArrayOutputStream flate = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(flate);
+        deflater.write(predicted.toByteArray());
+        deflater.close();
+        ByteArrayOutputStream hex = new ByteArrayOutputStream();
+        FilterFactory.INSTANCE.getFilter(COSName.ASCII_HEX_DECODE)
+                .encode(new ByteArrayInputStream(flate.toByteArray()), hex, new COSDictionary());
+        OutputStream raw = stream.createRawOutputStream();
+        raw.write(hex.toByteArray());
+        raw.close();
+
+        // read in small pieces of varying size, so that reads span rows and chunks
+        InputStream decoded = stream.createInputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[97];
+        assertEquals(original[0] & 0xff, decoded.read());
+        result.write(original[0]);
+        assertEquals(10, decoded.skip(10));
+        result.write(original, 1, 10);
+        int n;
+        while ((n = decoded.read(buffer, 0, 1 + result.size() % buffer.length)) != -1)
+        {
+            result.write(buffer, 0, n);
+        }
+        decoded.close();
+        assertTrue(Arrays.equals(original, result.toByteArray()));
+
+        // the filters decode the same data when writing to an output stream
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FilterFactory.INSTANCE.getFilter(COSName.FLATE_DECODE).decode(
+                new ByteArrayInputStream(flate.toByteArray()), output, stream, 1);
+        assertTrue(Arrays.equals(original, output.toByteArray()));
+    }
+
+    /**
+     * Decodes Flate streams whose data is followed by a corrupt block. The data before the
+     * corrupt block is recovered instead of an exception being thrown, also if the data is
+     * shorter than the internal buffer of the filter. The output of the last inflate step before
+     * the error, which is at most 32 bytes, is lost.
+     *
+     * @throws IOException
+     */
+    public void testCorruptFlateStream() throws IOException
+    {
+        checkCorruptFlateStream(3000);
+        checkCorruptFlateStream(100000);
+    }
+
+    private void checkCorruptFlateStream(int length) throws IOException
+    {
+        byte[] original = new byte[length];
+        new Random(length).nextBytes(original);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        // zlib header
+        encoded.write(0x78);
+        encoded.write(0x01);
+        // stored blocks, which contain the data uncompressed
+        for (int offset = 0; offset < length; offset += 0xffff)
+        {
+            int blockLength = Math.min(0xffff, length - offset);
+            encoded.write(0);
+            encoded.write(blockLength & 0xff);
+            encoded.write(blockLength >> 8);
+            encoded.write(~blockLength & 0xff);
+            encoded.write((~blockLength >> 8) & 0xff);
+            encoded.write(original, offset, blockLength);
+        }
+        // the final block has the invalid block type 3
+        encoded.write(0x07);
+
+        Filter flateFilter = FilterFactory.INSTANCE.getFilter(COSName.FLATE_DECODE);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        flateFilter.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded,
+                new COSDictionary(), 0);
+        checkRecoveredPrefix(original, decoded.toByteArray());
+
+        InputStream in = flateFilter.createInputStream(
+                new ByteArrayInputStream(encoded.toByteArray()), new COSDictionary(), 0);
+        byte[] streamed = IOUtils.toByteArray(in);
+        in.close();
+        checkRecoveredPrefix(original, streamed);
+    }
+
+    private void checkRecoveredPrefix(byte[] original, byte[] recovered)
+    {
+        assertTrue("only " + recovered.length + " of " + original.length + " bytes recovered",
+                recovered.length > original.length - 32 && recovered.length <= original.length);
+        assertTrue(Arrays.equals(Arrays.copyOf(original, recovered.length), recovered));
+    }
+
     private void checkEncodeDecode(Filter filter, byte[] original) throws IOException
     {
         ByteArrayOutputStream encoded = new ByteArrayOutputStream();
@@ -150,5 +299,22 @@ public class TestFilters extends TestCase
                 "Data that is encoded and then decoded through "
                 + filter.getClass() + " does not match the original data",
                 Arrays.equals(original, decoded.toByteArray()));
+
+        InputStream in = filter.createInputStream(new ByteArrayInputStream(encoded.toByteArray()),
+                new COSDictionary(), 0);
+        if (in != null)
+        {
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[333];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                streamed.write(buffer, 0, n);
+            }
+            in.close();
+            assertTrue("Data that is encoded and then decoded on the fly through "
+                    + filter.getClass() + " does not match the original data",
+                    Arrays.equals(original, streamed.toByteArray()));
+        }
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * This is a unit test for {@link RandomAccessMemoryMappedFile}.
+ */
+public class TestRandomAccessMemoryMappedFile extends TestCase
+{
+    private static final int CHUNK_SIZE = 16;
+
+    private File createFile(int length) throws IOException
+    {
+        File file = File.createTempFile("pdfbox-mmap", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        try
+        {
+            fos.write(data);
+        }
+        finally
+        {
+            fos.close();
+        }
+        return file;
+    }
+
+    /**
+     * Reads across the boundaries of the mapped regions.
+     *
+     * @throws IOException
+     */
+    public void testReadAcrossChunks() throws IOException
+    {
+        File file = createFile(3 * CHUNK_SIZE + 5);
+        RandomAccessMemoryMappedFile mmf = new RandomAccessMemoryMappedFile(file, CHUNK_SIZE);
+        assertEquals(3 * CHUNK_SIZE + 5, mmf.length());
+        for (int i = 0; i < CHUNK_SIZE + 3; i++)
+        {
+            assertEquals(i, mmf.read());
+        }
+        mmf.seek(CHUNK_SIZE - 2);
+        byte[] buffer = new byte[2 * CHUNK_SIZE];
+        assertEquals(buffer.length, mmf.read(buffer));
+        for (int i = 0; i < buffer.length; i++)
+        {
+            assertEquals(CHUNK_SIZE - 2 + i, buffer[i]);
+        }
+        assertEquals(3 * CHUNK_SIZE - 2, mmf.getPosition());
+        assertEquals(3 * CHUNK_SIZE - 2, mmf.peek());
+        assertEquals(7, mmf.available());
+
+        // partial read at the end of the file
+        assertEquals(7, mmf.read(buffer));
+        assertTrue(mmf.isEOF());
+        assertEquals(-1, mmf.read());
+        assertEquals(-1, mmf.read(buffer));
+        assertEquals(-1, mmf.peek());
+
+        mmf.rewind(4);
+        assertEquals(3 * CHUNK_SIZE + 1, mmf.read());
+        mmf.close();
+        assertTrue(mmf.isClosed());
+        try
+        {
+            mmf.read();
+            fail("IOException expected");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Tests an empty file.
+     *
+     * @throws IOException
+     */
+    public void testEmptyFile() throws IOException
+    {
+        File file = createFile(0);
+        RandomAccessMemoryMappedFile mmf = new RandomAccessMemoryMappedFile(file);
+        assertEquals(0, mmf.length());
+        assertTrue(mmf.isEOF());
+        assertEquals(-1, mmf.read());
+        mmf.close();
+    }
+
+    /**
+     * Loads a PDF using a memory mapped input file.
+     *
+     * @throws IOException
+     */
+    public void testLoadMemoryMapped() throws IOException
+    {
+        File file = new File("src/test/resources/input/cweb.pdf");
+        PDDocument expected = PDDocument.load(file);
+        PDDocument doc = PDDocument.load(file,
+                MemoryUsageSetting.setupMainMemoryOnly().setUseMemoryMappedInput(true));
+        try
+        {
+            assertEquals(expected.getNumberOfPages(), doc.getNumberOfPages());
+            assertEquals(expected.getDocumentInformation().getProducer(),
+                    doc.getDocumentInformation().getProducer());
+        }
+        finally
+        {
+            doc.close();
+            expected.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * This is a unit test for {@link ScratchFile} with pages held by the {@link DirectPagePool}.
+ */
+public class TestScratchFile extends TestCase
+{
+    /**
+     * Allocates all pages of a small pool and re-uses released pages.
+     */
+    public void testDirectPagePool()
+    {
+        DirectPagePool pool = new DirectPagePool(16, 64, 128);
+        int[] ids = new int[8];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = pool.allocate();
+            assertEquals(i, ids[i]);
+        }
+        assertEquals(-1, pool.allocate());
+        assertEquals(8, pool.getAllocatedPageCount());
+
+        byte[] page = new byte[16];
+        Arrays.fill(page, (byte) 5);
+        pool.write(ids[6], page);
+        byte[] read = new byte[16];
+        pool.read(ids[6], read);
+        assertTrue(Arrays.equals(page, read));
+        pool.read(ids[7], read);
+        assertTrue(Arrays.equals(new byte[16], read));
+
+        pool.release(ids[3]);
+        assertEquals(7, pool.getAllocatedPageCount());
+        assertEquals(ids[3], pool.allocate());
+        assertEquals(8, pool.getCreatedPageCount());
+    }
+
+    /**
+     * Writes and reads buffers of pooled pages, the pages beyond the quota of main memory are
+     * written to the scratch file. Closing returns the pages to the pool.
+     *
+     * @throws IOException
+     */
+    public void testPooledPages() throws IOException
+    {
+        DirectPagePool pool = DirectPagePool.getSharedInstance();
+        int allocatedBefore = pool.getAllocatedPageCount();
+        ScratchFile scratchFile = new ScratchFile(MemoryUsageSetting
+                .setupMixed(10 * ScratchFile.PAGE_SIZE).setUseDirectBufferPool(true));
+        assertTrue(scratchFile.isCopyingPages());
+
+        Random random = new Random(4711);
+        byte[] data1 = new byte[7 * ScratchFile.PAGE_SIZE + 100];
+        random.nextBytes(data1);
+        byte[] data2 = new byte[9 * ScratchFile.PAGE_SIZE - 1];
+        random.nextBytes(data2);
+        RandomAccess buffer1 = scratchFile.createBuffer();
+        RandomAccess buffer2 = scratchFile.createBuffer();
+        for (int i = 0; i < data2.length; i += 1000)
+        {
+            if (i < data1.length)
+            {
+                buffer1.write(data1, i, Math.min(1000, data1.length - i));
+            }
+            buffer2.write(data2, i, Math.min(1000, data2.length - i));
+        }
+        assertEquals(10, pool.getAllocatedPageCount() - allocatedBefore);
+
+        checkContent(buffer1, data1);
+        checkContent(buffer2, data2);
+
+        // overwrite some bytes of a page which has been written before
+        buffer1.seek(ScratchFile.PAGE_SIZE - 2);
+        buffer1.write(new byte[] { 1, 2, 3, 4 });
+        System.arraycopy(new byte[] { 1, 2, 3, 4 }, 0, data1, ScratchFile.PAGE_SIZE - 2, 4);
+        checkContent(buffer1, data1);
+
+        buffer1.close();
+        checkContent(buffer2, data2);
+        scratchFile.close();
+        assertEquals(allocatedBefore, pool.getAllocatedPageCount());
+    }
+
+    private void checkContent(RandomAccess buffer, byte[] expected) throws IOException
+    {
+        assertEquals(expected.length, buffer.length());
+        byte[] content = new byte[expected.length];
+        buffer.seek(0);
+        int offset = 0;
+        while (offset < content.length)
+        {
+            offset += buffer.read(content, offset, Math.min(333, content.length - offset));
+        }
+        assertTrue(Arrays.equals(expected, content));
+        buffer.seek(expected.length / 2);
+        assertEquals(expected[expected.length / 2] & 0xff, buffer.read());
+    }
+}
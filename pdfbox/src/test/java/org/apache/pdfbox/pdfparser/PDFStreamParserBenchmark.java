@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+/**
+ * Measures how fast {@link PDFStreamParser} tokenizes real content streams, which consist mostly
+ * of numbers and operators. The decoded content streams of the pages and their forms are read
+ * from the given files or directories once, so that the time is spent in the tokenizer only.
+ *
+ * <p>Usage: PDFStreamParserBenchmark [iterations] [files or directories...]</p>
+ *
+ * <p>By default, the PDF files in src/test/resources/input and
+ * src/test/resources/input/rendering are used.</p>
+ */
+public final class PDFStreamParserBenchmark
+{
+    private PDFStreamParserBenchmark()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<File> files = new ArrayList<File>();
+        if (args.length > 1)
+        {
+            for (int i = 1; i < args.length; i++)
+            {
+                addFiles(new File(args[i]), files);
+            }
+        }
+        else
+        {
+            addFiles(new File("src/test/resources/input"), files);
+            addFiles(new File("src/test/resources/input/rendering"), files);
+        }
+
+        List<byte[]> streams = new ArrayList<byte[]>();
+        long bytes = 0;
+        for (File file : files)
+        {
+            try
+            {
+                PDDocument document = PDDocument.load(file);
+                try
+                {
+                    for (PDPage page : document.getPages())
+                    {
+                        addStream(page.getContents(), streams);
+                        addForms(page.getResources(), streams);
+                    }
+                }
+                finally
+                {
+                    document.close();
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("Skipped " + file + ": " + e.getMessage());
+            }
+        }
+        for (byte[] stream : streams)
+        {
+            bytes += stream.length;
+        }
+
+        // warm up
+        long tokens = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            tokens = tokenize(streams);
+        }
+        long best = Long.MAX_VALUE;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            long iterationStart = System.nanoTime();
+            tokenize(streams);
+            best = Math.min(best, System.nanoTime() - iterationStart);
+        }
+        long total = System.nanoTime() - start;
+        System.out.println("Files : " + files.size());
+        System.out.println("Content streams : " + streams.size());
+        System.out.println("Bytes : " + bytes);
+        System.out.println("Tokens : " + tokens);
+        System.out.println("Average (ms) : " + total / iterations / 1000000);
+        System.out.println("Best (ms) : " + best / 1000000);
+        System.out.println("Tokens per second : " + tokens * 1000000000L / best);
+        System.out.println("MB per second : " + bytes * 1000L / best);
+    }
+
+    private static long tokenize(List<byte[]> streams) throws IOException
+    {
+        long tokens = 0;
+        for (byte[] stream : streams)
+        {
+            PDFStreamParser parser = new PDFStreamParser(stream);
+            while (parser.parseNextToken() != null)
+            {
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addFiles(File file, List<File> files)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    if (child.isFile() && child.getName().toLowerCase().endsWith(".pdf"))
+                    {
+                        files.add(child);
+                    }
+                }
+            }
+        }
+        else
+        {
+            files.add(file);
+        }
+    }
+
+    private static void addStream(InputStream input, List<byte[]> streams) throws IOException
+    {
+        if (input != null)
+        {
+            try
+            {
+                streams.add(IOUtils.toByteArray(input));
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+    }
+
+    // the forms of the given resources, without the forms nested in them
+    private static void addForms(PDResources resources, List<byte[]> streams) throws IOException
+    {
+        if (resources == null)
+        {
+            return;
+        }
+        for (COSName name : resources.getXObjectNames())
+        {
+            PDXObject xobject = resources.getXObject(name);
+            if (xobject instanceof PDFormXObject)
+            {
+                addStream(((PDFormXObject) xobject).getContents(), streams);
+            }
+        }
+    }
+}
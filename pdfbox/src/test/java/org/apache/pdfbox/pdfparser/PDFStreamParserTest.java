@@ -19,6 +19,11 @@ import java.io.IOException;
 import java.util.List;
 import junit.framework.TestCase;
 import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
 
 
 import static org.junit.Assert.assertArrayEquals;
@@ -85,6 +90,71 @@ public class PDFStreamParserTest extends TestCase
         testInlineImage2ops("ID\n12EI5EI          Q   ", "12EI5", "Q");
     }
 
+    /**
+     * Tests the parsing of numbers and keywords, both directly in the content stream and within
+     * arrays, which are parsed by the base parser.
+     *
+     * @throws IOException
+     */
+    public void testNumbersAndKeywords() throws IOException
+    {
+        List<Object> tokens = parseTokenString("0 7 -12 +34 123456789012345678 "
+                + "1234567890123456789 1.5 -.25 - . true false Tj");
+        assertEquals(COSInteger.ZERO, tokens.get(0));
+        assertEquals(COSInteger.get(7), tokens.get(1));
+        assertEquals(COSInteger.get(-12), tokens.get(2));
+        assertEquals(COSInteger.get(34), tokens.get(3));
+        assertEquals(COSInteger.get(123456789012345678L), tokens.get(4));
+        assertEquals(COSInteger.get(1234567890123456789L), tokens.get(5));
+        assertEquals(new COSFloat("1.5"), tokens.get(6));
+        assertEquals(new COSFloat("-.25"), tokens.get(7));
+        assertEquals(COSInteger.ZERO, tokens.get(8));
+        assertEquals(COSInteger.ZERO, tokens.get(9));
+        assertEquals(COSBoolean.TRUE, tokens.get(10));
+        assertEquals(COSBoolean.FALSE, tokens.get(11));
+        assertEquals("Tj", ((Operator) tokens.get(12)).getName());
+
+        tokens = parseTokenString("[0 -12 +34 1234567890123456789 1.5 1e3 - true false] TJ");
+        assertEquals(2, tokens.size());
+        COSArray array = (COSArray) tokens.get(0);
+        assertEquals(COSInteger.ZERO, array.get(0));
+        assertEquals(COSInteger.get(-12), array.get(1));
+        assertEquals(COSInteger.get(34), array.get(2));
+        assertEquals(COSInteger.get(1234567890123456789L), array.get(3));
+        assertEquals(new COSFloat("1.5"), array.get(4));
+        assertEquals(new COSFloat("1e3"), array.get(5));
+        assertEquals(COSInteger.ZERO, array.get(6));
+        assertEquals(COSBoolean.TRUE, array.get(7));
+        assertEquals(COSBoolean.FALSE, array.get(8));
+    }
+
+    /**
+     * Tests the parsing of names, which are resolved from the bytes read, including escapes and
+     * UTF-8 encoded characters.
+     *
+     * @throws IOException
+     */
+    public void testNames() throws IOException
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            PDFStreamParser parser = new PDFStreamParser(
+                    "/Type /A#20B /#46#31 /Caf\u00e9 /Abc#4 /Abc#4x /F1 Tf".getBytes("UTF-8"));
+            parser.parse();
+            List<Object> tokens = parser.getTokens();
+            assertEquals(8, tokens.size());
+            assertSame(COSName.TYPE, tokens.get(0));
+            assertSame(COSName.getPDFName("A B"), tokens.get(1));
+            assertSame(COSName.getPDFName("F1"), tokens.get(2));
+            assertSame(COSName.getPDFName("Caf\u00e9"), tokens.get(3));
+            assertSame(COSName.getPDFName("Abc#4"), tokens.get(4));
+            assertSame(COSName.getPDFName("Abc#4x"), tokens.get(5));
+            assertSame(tokens.get(2), tokens.get(6));
+        }
+        byte[] bytes = "xxType".getBytes("US-ASCII");
+        assertSame(COSName.TYPE, COSName.getPDFName(bytes, 2, 4));
+    }
+
     // checks whether there are two operators, one inline image and the named operator
     private void testInlineImage2ops(String s, String imageDataString, String opName) throws IOException
     {
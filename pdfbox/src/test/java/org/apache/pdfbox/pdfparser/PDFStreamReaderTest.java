@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+
+/**
+ * Tests for {@link PDFStreamReader}.
+ */
+public class PDFStreamReaderTest extends TestCase
+{
+    private static final String CONTENT = "q 1 0 0 1 -72.5 .25 cm /GS1 gs\n"
+            + "BT /F1 12 Tf [(Hello) -250 (World)] TJ ET\n"
+            + "BI /W 2 /H 1 /BPC 8 /CS /G ID\n12EI Q 0.000000000000000000001 4 re 5";
+
+    /**
+     * The operations and operands are the same as those of {@link PDFStreamParser}.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testSameAsParser() throws IOException
+    {
+        List<Object> expected = parse(CONTENT.getBytes("US-ASCII"));
+        // trailing operands without operator are ignored
+        expected = expected.subList(0, expected.size() - 1);
+
+        List<Object> actual = new ArrayList<Object>();
+        PDFStreamReader reader = new PDFStreamReader(CONTENT.getBytes("US-ASCII"));
+        while (reader.next())
+        {
+            for (int i = 0; i < reader.getOperandCount(); i++)
+            {
+                COSBase operand = reader.getOperand(i);
+                actual.add(operand);
+                assertEquals(operand instanceof COSNumber, reader.isNumber(i));
+                if (operand instanceof COSNumber)
+                {
+                    assertEquals(((COSNumber) operand).floatValue(), reader.getFloat(i));
+                    assertEquals(((COSNumber) operand).intValue(), reader.getInt(i));
+                }
+                assertEquals(operand instanceof COSName ? operand : null, reader.getName(i));
+            }
+            actual.add(reader.getOperator());
+        }
+        assertNull(reader.getOperator());
+        assertEquals(0, reader.getOperandCount());
+        reader.close();
+
+        assertTokens(expected, actual);
+    }
+
+    /**
+     * Operations are pushed to a handler, numbers are available as primitives.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testHandler() throws IOException
+    {
+        final List<String> operations = new ArrayList<String>();
+        PDFStreamReader reader = new PDFStreamReader(CONTENT.getBytes("US-ASCII"));
+        reader.read(new PDFStreamHandler()
+        {
+            @Override
+            public void processOperation(Operator operator, PDFStreamReader operands)
+            {
+                StringBuilder operation = new StringBuilder(operator.getName());
+                for (int i = 0; i < operands.getOperandCount(); i++)
+                {
+                    operation.append(' ');
+                    if (operands.isNumber(i))
+                    {
+                        operation.append(operands.getFloat(i));
+                    }
+                    else if (operands.getName(i) != null)
+                    {
+                        operation.append(operands.getName(i).getName());
+                    }
+                }
+                operations.add(operation.toString());
+            }
+        });
+        reader.close();
+        assertEquals("cm 1.0 0.0 0.0 1.0 -72.5 0.25", operations.get(1));
+        assertEquals("gs GS1", operations.get(2));
+        assertEquals("Tf F1 12.0", operations.get(4));
+        assertEquals("BI", operations.get(7));
+        assertEquals("re 1.0E-21 4.0", operations.get(9));
+        assertEquals(10, operations.size());
+    }
+
+    /**
+     * A content stream can be edited while it is read.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testWriteOperation() throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ContentStreamWriter writer = new ContentStreamWriter(output);
+        PDFStreamReader reader = new PDFStreamReader(CONTENT.getBytes("US-ASCII"));
+        while (reader.next())
+        {
+            if (!reader.getOperator().getName().equals("TJ"))
+            {
+                writer.writeOperation(reader);
+            }
+        }
+        reader.close();
+
+        List<Object> expected = parse(CONTENT.getBytes("US-ASCII"));
+        expected = expected.subList(0, expected.size() - 1);
+        int tj = expected.indexOf(Operator.getOperator("TJ"));
+        expected.subList(tj - 1, tj + 1).clear();
+        assertTokens(expected, parse(output.toByteArray()));
+    }
+
+    private static void assertTokens(List<Object> expected, List<Object> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Object token = expected.get(i);
+            if (token instanceof Operator)
+            {
+                Operator operator = (Operator) actual.get(i);
+                assertEquals(((Operator) token).getName(), operator.getName());
+                if (((Operator) token).getImageParameters() != null)
+                {
+                    assertEquals(((Operator) token).getImageParameters().toString(),
+                            operator.getImageParameters().toString());
+                    // ContentStreamWriter adds a line break to the image data
+                    assertEquals(new String(((Operator) token).getImageData()).trim(),
+                            new String(operator.getImageData()).trim());
+                }
+            }
+            else if (token instanceof COSArray)
+            {
+                assertEquals(((COSArray) token).toList(), ((COSArray) actual.get(i)).toList());
+            }
+            else
+            {
+                assertEquals(token, actual.get(i));
+            }
+        }
+    }
+
+    private static List<Object> parse(byte[] content) throws IOException
+    {
+        PDFStreamParser parser = new PDFStreamParser(content);
+        parser.parse();
+        return parser.getTokens();
+    }
+}
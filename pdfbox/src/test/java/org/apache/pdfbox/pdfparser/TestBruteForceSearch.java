@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.io.RandomAccessBuffer;
+import org.apache.pdfbox.util.Charsets;
+
+/**
+ * Unit tests for {@link BruteForceSearch}.
+ */
+public class TestBruteForceSearch extends TestCase
+{
+    private static final String CONTENT = "%PDF-1.4\n"
+            + "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n"
+            + "2 0 obj\n<< /Type /Pages /Kids [] /Count 0 >>\nendobj\n"
+            + "12345 1 obj\n(a string)\nendobj\n"
+            + "xref\n0 3\n0000000000 65535 f \n"
+            + "7 0 obj\n<< /Type /XRef /Size 8 >>\nstream\nendstream\nendobj\n"
+            + "2 0 obj\n(redefined)\nendobj\n"
+            + "startxref\n123\n%%EOF\n";
+
+    /**
+     * Searches a small file using many tiny chunks, so that the markers span chunk boundaries,
+     * sequentially and in parallel, and compares the result with a search using a single chunk.
+     *
+     * @throws IOException
+     */
+    public void testChunkBoundaries() throws IOException
+    {
+        byte[] data = CONTENT.getBytes(Charsets.ISO_8859_1);
+        BruteForceSearch expected = search(data, data.length, 1);
+        assertEquals(4, expected.getObjectOffsets().size());
+        assertEquals(CONTENT.indexOf("1 0 obj"), expected.getObjectOffsets().getOffset(1, 0));
+        assertEquals(CONTENT.lastIndexOf("2 0 obj"), expected.getObjectOffsets().getOffset(2, 0));
+        assertEquals(CONTENT.indexOf("12345 1 obj"),
+                expected.getObjectOffsets().getOffset(12345, 1));
+        assertEquals(Arrays.asList((long) CONTENT.indexOf("\nxref") + 1),
+                expected.getXrefTableOffsets());
+        assertEquals(Arrays.asList((long) CONTENT.indexOf("7 0 obj")),
+                expected.getXrefStreamOffsets());
+
+        for (int chunkSize = 1; chunkSize <= 32; chunkSize++)
+        {
+            for (int threads = 1; threads <= 4; threads += 3)
+            {
+                BruteForceSearch actual = search(data, chunkSize, threads);
+                assertEquals(expected.getObjectOffsets(), actual.getObjectOffsets());
+                assertEquals(expected.getXrefTableOffsets(), actual.getXrefTableOffsets());
+                assertEquals(expected.getXrefStreamOffsets(), actual.getXrefStreamOffsets());
+            }
+        }
+    }
+
+    private BruteForceSearch search(byte[] data, int chunkSize, int threads) throws IOException
+    {
+        RandomAccessBuffer source = new RandomAccessBuffer(data);
+        source.seek(5);
+        BruteForceSearch search = new BruteForceSearch(source, 6, chunkSize, threads);
+        search.search();
+        assertEquals(5, source.getPosition());
+        return search;
+    }
+}
@@ -23,17 +23,25 @@ package org.apache.pdfbox.pdfparser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 
+import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
 import org.apache.pdfbox.io.RandomAccessRead;
 import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -106,6 +114,155 @@ public class TestPDFParser
         executeParserTest(new RandomAccessBufferedFileInputStream(new FileInputStream(PATH_OF_PDF)), MemoryUsageSetting.setupTempFileOnly());
     }
 
+    /**
+     * Test that lazy loading only parses the objects which are accessed and yields the same
+     * content as eager parsing.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testPDFParserLazyLoading() throws IOException
+    {
+        File file = new File("src/test/resources/input/cweb.pdf");
+        PDDocument eagerDoc = PDDocument.load(file);
+        int eagerObjectCount = eagerDoc.getDocument().getObjects().size();
+        String eagerText = new PDFTextStripper().getText(eagerDoc);
+        eagerDoc.close();
+
+        RandomAccessRead source = new RandomAccessBufferedFileInputStream(file);
+        PDFParser pdfParser = new PDFParser(source);
+        pdfParser.setLazyLoading(true);
+        pdfParser.parse();
+        PDDocument lazyDoc = pdfParser.getPDDocument();
+        try
+        {
+            int lazyObjectCount = 0;
+            for (COSObject obj : lazyDoc.getDocument().getObjects())
+            {
+                // getObject() is not used here as it would load the object
+                if (obj.isObjectLoaded())
+                {
+                    lazyObjectCount++;
+                }
+            }
+            assertTrue(lazyObjectCount < eagerObjectCount);
+            assertEquals(eagerText, new PDFTextStripper().getText(lazyDoc));
+        }
+        finally
+        {
+            lazyDoc.close();
+        }
+    }
+
+    /**
+     * Test that the xref index is written on the first parse and reused on the following ones,
+     * and that an index of a different file is ignored.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testPDFParserXrefIndex() throws IOException
+    {
+        File file = new File("src/test/resources/input/cweb.pdf");
+        File indexFile = File.createTempFile("pdfbox-xref", ".xrefidx");
+        indexFile.deleteOnExit();
+        assertTrue(indexFile.delete());
+
+        PDDocument expectedDoc = parseWithXrefIndex(file, indexFile);
+        assertTrue(indexFile.isFile());
+        // the index must not be written again when it is reused
+        assertTrue(indexFile.setLastModified(0));
+        PDDocument indexedDoc = parseWithXrefIndex(file, indexFile);
+        try
+        {
+            assertEquals(0, indexFile.lastModified());
+            COSDocument expected = expectedDoc.getDocument();
+            COSDocument actual = indexedDoc.getDocument();
+            assertEquals(expected.getXrefTable(), actual.getXrefTable());
+            assertEquals(expected.getStartXref(), actual.getStartXref());
+            assertEquals(expected.isXRefStream(), actual.isXRefStream());
+            assertEquals(expected.getTrailer().keySet(), actual.getTrailer().keySet());
+            assertEquals(new PDFTextStripper().getText(expectedDoc),
+                    new PDFTextStripper().getText(indexedDoc));
+        }
+        finally
+        {
+            indexedDoc.close();
+            expectedDoc.close();
+        }
+
+        // an index of another file is replaced
+        PDDocument otherDoc = parseWithXrefIndex(new File(PATH_OF_PDF), indexFile);
+        try
+        {
+            assertTrue(otherDoc.getNumberOfPages() > 0);
+            assertTrue(indexFile.lastModified() > 0);
+        }
+        finally
+        {
+            otherDoc.close();
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * Test that real numbers of the trailer are stored in the xref index and read back.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testPDFParserXrefIndexWithReal() throws IOException
+    {
+        File file = File.createTempFile("pdfbox-xref", ".pdf");
+        file.deleteOnExit();
+        File indexFile = File.createTempFile("pdfbox-xref", ".xrefidx");
+        indexFile.deleteOnExit();
+        assertTrue(indexFile.delete());
+        COSName key = COSName.getPDFName("PDFBoxReal");
+        PDDocument document = new PDDocument();
+        try
+        {
+            document.addPage(new PDPage());
+            COSArray array = new COSArray();
+            array.add(new COSFloat(1.5f));
+            array.add(new COSFloat("-0.000125"));
+            document.getDocument().getTrailer().setItem(key, array);
+            document.save(file);
+        }
+        finally
+        {
+            document.close();
+        }
+
+        parseWithXrefIndex(file, indexFile).close();
+        assertTrue(indexFile.isFile());
+        // the index must be read back instead of being written again
+        assertTrue(indexFile.setLastModified(0));
+        PDDocument indexedDoc = parseWithXrefIndex(file, indexFile);
+        try
+        {
+            assertEquals(0, indexFile.lastModified());
+            COSArray array = (COSArray) indexedDoc.getDocument().getTrailer().getDictionaryObject(key);
+            assertEquals(new COSFloat(1.5f), array.get(0));
+            assertEquals(new COSFloat("-0.000125"), array.get(1));
+            assertEquals(1, indexedDoc.getNumberOfPages());
+        }
+        finally
+        {
+            indexedDoc.close();
+            indexFile.delete();
+            file.delete();
+        }
+    }
+
+    private PDDocument parseWithXrefIndex(File file, File indexFile) throws IOException
+    {
+        PDFParser pdfParser = new PDFParser(new RandomAccessBufferedFileInputStream(file));
+        pdfParser.setXrefIndexFile(indexFile);
+        pdfParser.parse();
+        return pdfParser.getPDDocument();
+    }
+
     private void executeParserTest(RandomAccessRead source, MemoryUsageSetting memUsageSetting) throws IOException
     {
         ScratchFile scratchFile = new ScratchFile(memUsageSetting);
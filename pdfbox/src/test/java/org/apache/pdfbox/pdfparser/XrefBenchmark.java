@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.XrefTable;
+import org.apache.pdfbox.io.RandomAccessBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Measures the cross reference handling of the parser on a large synthetic document whose
+ * objects are stored in object streams, so that the cross reference stream has an entry for
+ * every object. The document is parsed with lazy loading, so the time is spent reading the
+ * cross reference stream. The entries are then stored in an {@link XrefTable} and, for
+ * comparison, in a {@code HashMap<COSObjectKey, Long>} as the parser did before, and the heap
+ * used by each table and the time to fill and to query it are reported.
+ *
+ * <p>Usage: XrefBenchmark [iterations] [number of pages] [objects per page]</p>
+ */
+public final class XrefBenchmark
+{
+    private XrefBenchmark()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int pages = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int objectsPerPage = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        byte[] pdf = createDocument(pages, objectsPerPage);
+        System.out.println("Bytes : " + pdf.length);
+
+        // parse the cross reference stream
+        XrefTable parsed = null;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations + 3; i++)
+        {
+            long start = System.nanoTime();
+            PDFParser parser = new PDFParser(new RandomAccessBuffer(pdf));
+            parser.setLazyLoading(true);
+            parser.parse();
+            long time = System.nanoTime() - start;
+            PDDocument document = parser.getPDDocument();
+            parsed = new XrefTable(document.getDocument().getXrefTable().size());
+            parsed.putAll(document.getDocument().getXrefTable());
+            document.close();
+            if (i >= 3)
+            {
+                best = Math.min(best, time);
+            }
+        }
+        int entries = parsed.size();
+        System.out.println("Entries : " + entries);
+        System.out.println("Parse best (ms) : " + best / 1000000);
+
+        // copy the entries to plain arrays, so that both tables are filled from the same data
+        long[] numbers = new long[entries];
+        int[] generations = new int[entries];
+        long[] offsets = new long[entries];
+        int index = 0;
+        for (int slot = parsed.nextSlot(-1); slot != -1; slot = parsed.nextSlot(slot))
+        {
+            numbers[index] = parsed.getNumberAt(slot);
+            generations[index] = parsed.getGenerationAt(slot);
+            offsets[index] = parsed.getOffsetAt(slot);
+            index++;
+        }
+        parsed = null;
+
+        long hashMapBytes = 0;
+        long xrefTableBytes = 0;
+        long hashMapFill = Long.MAX_VALUE;
+        long xrefTableFill = Long.MAX_VALUE;
+        long hashMapLookup = Long.MAX_VALUE;
+        long xrefTableLookup = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int i = 0; i < iterations + 3; i++)
+        {
+            long before = usedMemory();
+            long start = System.nanoTime();
+            Map<COSObjectKey, Long> map = new HashMap<COSObjectKey, Long>();
+            for (int e = 0; e < entries; e++)
+            {
+                map.put(new COSObjectKey(numbers[e], generations[e]), offsets[e]);
+            }
+            long fill = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int e = 0; e < entries; e++)
+            {
+                checksum += map.get(new COSObjectKey(numbers[e], generations[e]));
+            }
+            long lookup = System.nanoTime() - start;
+            long bytes = usedMemory() - before;
+            checksum += map.size();
+            map = null;
+
+            before = usedMemory();
+            start = System.nanoTime();
+            XrefTable table = new XrefTable();
+            for (int e = 0; e < entries; e++)
+            {
+                table.put(numbers[e], generations[e], offsets[e]);
+            }
+            long tableFill = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int e = 0; e < entries; e++)
+            {
+                checksum += table.getOffset(numbers[e], generations[e]);
+            }
+            long tableLookup = System.nanoTime() - start;
+            long tableBytes = usedMemory() - before;
+            checksum += table.size();
+            table = null;
+
+            if (i >= 3)
+            {
+                hashMapBytes = bytes;
+                xrefTableBytes = tableBytes;
+                hashMapFill = Math.min(hashMapFill, fill);
+                xrefTableFill = Math.min(xrefTableFill, tableFill);
+                hashMapLookup = Math.min(hashMapLookup, lookup);
+                xrefTableLookup = Math.min(xrefTableLookup, tableLookup);
+            }
+        }
+        System.out.println("HashMap heap (KB) : " + hashMapBytes / 1024);
+        System.out.println("HashMap fill best (ms) : " + hashMapFill / 1000000);
+        System.out.println("HashMap lookup best (ms) : " + hashMapLookup / 1000000);
+        System.out.println("XrefTable heap (KB) : " + xrefTableBytes / 1024);
+        System.out.println("XrefTable fill best (ms) : " + xrefTableFill / 1000000);
+        System.out.println("XrefTable lookup best (ms) : " + xrefTableLookup / 1000000);
+        System.out.println("Checksum : " + checksum);
+    }
+
+    // every page has its own ExtGState dictionaries, which are stored in object streams
+    private static byte[] createDocument(int pages, int objectsPerPage) throws IOException
+    {
+        PDDocument document = new PDDocument();
+        try
+        {
+            for (int p = 0; p < pages; p++)
+            {
+                PDPage page = new PDPage();
+                COSDictionary extGStates = new COSDictionary();
+                for (int i = 0; i < objectsPerPage; i++)
+                {
+                    COSDictionary extGState = new COSDictionary();
+                    extGState.setItem(COSName.TYPE, COSName.EXT_G_STATE);
+                    extGState.setInt(COSName.LW, i);
+                    extGStates.setItem(COSName.getPDFName("GS" + i), extGState);
+                }
+                COSDictionary resources = new COSDictionary();
+                resources.setItem(COSName.EXT_G_STATE, extGStates);
+                page.getCOSObject().setItem(COSName.RESOURCES, resources);
+                document.addPage(page);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.saveCompressed(output);
+            return output.toByteArray();
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    // the heap in use after a garbage collection, the table being measured is still referenced
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfwriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Measures how fast {@link COSWriter} saves a large synthetic document with many small indirect
+ * objects, so that the time is spent in the object bookkeeping and the formatting of the objects
+ * and the cross reference table rather than in writing stream data. The document is saved to a
+ * stream which only counts the bytes.
+ *
+ * <p>Usage: COSWriterBenchmark [iterations] [number of pages] [objects per page]</p>
+ */
+public final class COSWriterBenchmark
+{
+    private COSWriterBenchmark()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int pages = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int objectsPerPage = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        PDDocument document = createDocument(pages, objectsPerPage);
+        try
+        {
+            // warm up
+            long size = 0;
+            for (int i = 0; i < 3; i++)
+            {
+                size = save(document);
+            }
+            long best = Long.MAX_VALUE;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+            {
+                long iterationStart = System.nanoTime();
+                save(document);
+                best = Math.min(best, System.nanoTime() - iterationStart);
+            }
+            long total = System.nanoTime() - start;
+            long objects = (long) pages * (objectsPerPage + 1);
+            System.out.println("Objects : " + objects);
+            System.out.println("Bytes : " + size);
+            System.out.println("Average (ms) : " + total / iterations / 1000000);
+            System.out.println("Best (ms) : " + best / 1000000);
+            System.out.println("Objects per second : " + objects * 1000000000L / best);
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    // every page has its own ExtGState dictionaries, which are indirect objects
+    private static PDDocument createDocument(int pages, int objectsPerPage)
+    {
+        PDDocument document = new PDDocument();
+        for (int p = 0; p < pages; p++)
+        {
+            PDPage page = new PDPage();
+            COSDictionary extGStates = new COSDictionary();
+            for (int i = 0; i < objectsPerPage; i++)
+            {
+                COSDictionary extGState = new COSDictionary();
+                extGState.setItem(COSName.TYPE, COSName.EXT_G_STATE);
+                extGState.setFloat(COSName.CA, 0.5f);
+                extGState.setInt(COSName.LW, i);
+                extGStates.setItem(COSName.getPDFName("GS" + i), extGState);
+            }
+            COSDictionary resources = new COSDictionary();
+            resources.setItem(COSName.EXT_G_STATE, extGStates);
+            page.getCOSObject().setItem(COSName.RESOURCES, resources);
+            document.addPage(page);
+        }
+        document.setDocumentId(1L);
+        return document;
+    }
+
+    private static long save(PDDocument document) throws IOException
+    {
+        CountingOutputStream output = new CountingOutputStream();
+        document.save(output);
+        return output.count;
+    }
+
+    /**
+     * An output stream which counts the bytes and discards them.
+     */
+    private static final class CountingOutputStream extends OutputStream
+    {
+        private long count;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdfwriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSString;
+
+/**
+ * Unit tests for {@link ObjectRegistry}.
+ */
+public class ObjectRegistryTest extends TestCase
+{
+    private static final int COUNT = 100000;
+
+    /**
+     * The tables grow and keep all objects when they are rehashed.
+     */
+    public void testGrowth()
+    {
+        checkGrowth(ObjectRegistry.create());
+        checkGrowth(ObjectRegistry.createWeak());
+    }
+
+    private void checkGrowth(ObjectRegistry registry)
+    {
+        List<COSBase> objects = new ArrayList<COSBase>();
+        for (int i = 0; i < COUNT; i++)
+        {
+            COSDictionary object = new COSDictionary();
+            objects.add(object);
+            registry.setKey(object, new COSObjectKey(i + 1, 0));
+            if (i % 2 == 0)
+            {
+                registry.setWritten(object);
+            }
+        }
+        for (int i = 0; i < COUNT; i++)
+        {
+            assertEquals(i + 1, registry.getKey(objects.get(i)).getNumber());
+            assertEquals(i % 2 == 0, registry.isWritten(objects.get(i)));
+        }
+        assertEquals(COUNT, registry.getKeys().size());
+        assertNull(registry.getKey(new COSDictionary()));
+    }
+
+    /**
+     * Objects are compared by identity, not with equals().
+     */
+    public void testIdentity()
+    {
+        checkIdentity(ObjectRegistry.create());
+        checkIdentity(ObjectRegistry.createWeak());
+    }
+
+    private void checkIdentity(ObjectRegistry registry)
+    {
+        COSFloat float1 = new COSFloat(1.5f);
+        COSFloat float2 = new COSFloat(1.5f);
+        COSString string1 = new COSString("text");
+        COSString string2 = new COSString("text");
+        assertEquals(float1, float2);
+        assertEquals(string1, string2);
+
+        registry.setKey(float1, new COSObjectKey(1, 0));
+        registry.setKey(string1, new COSObjectKey(2, 0));
+        registry.setQueued(string1, true);
+        assertNull(registry.getKey(float2));
+        assertNull(registry.getKey(string2));
+        assertFalse(registry.isQueued(string2));
+
+        registry.setKey(float2, new COSObjectKey(3, 0));
+        assertEquals(1, registry.getKey(float1).getNumber());
+        assertEquals(3, registry.getKey(float2).getNumber());
+        Map<COSBase, COSObjectKey> keys = registry.getKeys();
+        assertEquals(3, keys.size());
+        assertEquals(3, keys.get(float2).getNumber());
+    }
+
+    /**
+     * Flags are set and cleared independently, clearing the flag of an unknown object doesn't
+     * add it.
+     */
+    public void testFlags()
+    {
+        checkFlags(ObjectRegistry.create());
+        checkFlags(ObjectRegistry.createWeak());
+    }
+
+    private void checkFlags(ObjectRegistry registry)
+    {
+        COSDictionary object = new COSDictionary();
+        assertFalse(registry.isQueued(object));
+        registry.setQueued(object, false);
+        assertTrue(registry.getKeys().isEmpty());
+
+        registry.setQueued(object, true);
+        registry.setActualAdded(object);
+        assertTrue(registry.isQueued(object));
+        assertFalse(registry.isWritten(object));
+        registry.setQueued(object, false);
+        registry.setWritten(object);
+        assertFalse(registry.isQueued(object));
+        assertTrue(registry.isWritten(object));
+        assertTrue(registry.isActualAdded(object));
+        assertNull(registry.getKey(object));
+
+        assertNull(registry.getKey(null));
+        assertFalse(registry.isWritten(null));
+    }
+
+    /**
+     * The weak registry forgets the objects which have been garbage collected, their slots are
+     * reused and don't hide the remaining objects.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testWeakExpiry() throws InterruptedException
+    {
+        ObjectRegistry registry = ObjectRegistry.createWeak();
+        List<COSBase> kept = new ArrayList<COSBase>();
+        for (int i = 0; i < COUNT; i++)
+        {
+            COSDictionary object = new COSDictionary();
+            registry.setKey(object, new COSObjectKey(i + 1, 0));
+            registry.setWritten(object);
+            if (i % 2 == 0)
+            {
+                kept.add(object);
+            }
+        }
+        for (int i = 0; i < 50 && registry.getKeys().size() > kept.size(); i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(kept.size(), registry.getKeys().size());
+
+        // adding objects marks the slots of the collected objects as deleted and reuses them
+        List<COSBase> added = new ArrayList<COSBase>();
+        for (int i = 0; i < COUNT; i++)
+        {
+            COSDictionary object = new COSDictionary();
+            added.add(object);
+            registry.setKey(object, new COSObjectKey(COUNT + i + 1, 0));
+        }
+        for (int i = 0; i < kept.size(); i++)
+        {
+            assertEquals(2 * i + 1, registry.getKey(kept.get(i)).getNumber());
+            assertTrue(registry.isWritten(kept.get(i)));
+        }
+        for (int i = 0; i < added.size(); i++)
+        {
+            assertEquals(COUNT + i + 1, registry.getKey(added.get(i)).getNumber());
+            assertFalse(registry.isWritten(added.get(i)));
+        }
+        assertEquals(kept.size() + added.size(), registry.getKeys().size());
+    }
+}
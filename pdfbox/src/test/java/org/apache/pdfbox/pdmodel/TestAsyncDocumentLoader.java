@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+/**
+ * Test for {@link AsyncDocumentLoader}.
+ */
+public class TestAsyncDocumentLoader extends TestCase
+{
+    /**
+     * The first page of a linearized PDF is available before the whole file has arrived.
+     *
+     * @throws Exception if something went wrong
+     */
+    public void testLinearizedFirstPage() throws Exception
+    {
+        byte[] data = readResource("/input/rotation.pdf");
+        GatedInputStream input = new GatedInputStream(data, 3000);
+        AsyncDocumentLoader loader = new AsyncDocumentLoader(input,
+                MemoryUsageSetting.setupMainMemoryOnly());
+        try
+        {
+            Future<PDDocument> future = loader.start();
+
+            COSDictionary linearization = loader.getLinearizationDictionary();
+            assertNotNull(linearization);
+            assertEquals(data.length, linearization.getLong(COSName.L));
+            assertEquals(2, linearization.getInt(COSName.N));
+
+            loader.awaitPage(0);
+            assertTrue(loader.isPageAvailable(0));
+            assertFalse(loader.isPageAvailable(1));
+            assertFalse(loader.isTransferComplete());
+
+            PDPage page = loader.getFirstPage();
+            assertNotNull(page);
+            assertEquals(612f, page.getMediaBox().getWidth());
+            assertNotNull(page.getResources().getFont(COSName.getPDFName("TT2")));
+            byte[] content = IOUtils.toByteArray(page.getContents());
+            assertTrue(content.length > 0);
+            assertTrue(loader.getBytesReceived() < data.length);
+            assertFalse(future.isDone());
+
+            input.open();
+            PDDocument document = future.get();
+            try
+            {
+                assertEquals(2, document.getNumberOfPages());
+                assertTrue(loader.isPageAvailable(1));
+                assertEquals(data.length, loader.getBytesReceived());
+            }
+            finally
+            {
+                document.close();
+            }
+        }
+        finally
+        {
+            input.open();
+            loader.close();
+        }
+    }
+
+    /**
+     * A PDF which isn't linearized is loaded using an executor.
+     *
+     * @throws Exception if something went wrong
+     */
+    public void testNotLinearized() throws Exception
+    {
+        byte[] data = readResource("/input/cweb.pdf");
+        GatedInputStream input = new GatedInputStream(data, data.length);
+        AsyncDocumentLoader loader = new AsyncDocumentLoader(input,
+                MemoryUsageSetting.setupMainMemoryOnly());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<PDDocument> future = loader.start(executor);
+            assertFalse(loader.isLinearized());
+            assertNull(loader.getFirstPage());
+            PDDocument document = future.get();
+            try
+            {
+                assertTrue(loader.isTransferComplete());
+                assertTrue(loader.isPageAvailable(0));
+                PDDocument expected = PDDocument.load(data);
+                assertEquals(expected.getNumberOfPages(), document.getNumberOfPages());
+                expected.close();
+            }
+            finally
+            {
+                document.close();
+            }
+        }
+        finally
+        {
+            loader.close();
+            executor.shutdown();
+        }
+    }
+
+    private byte[] readResource(String name) throws IOException
+    {
+        InputStream is = TestAsyncDocumentLoader.class.getResourceAsStream(name);
+        try
+        {
+            return IOUtils.toByteArray(is);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Returns the first bytes of the data only, the rest blocks until the stream is opened.
+     */
+    private static class GatedInputStream extends InputStream
+    {
+        private final byte[] data;
+        private int limit;
+        private int position;
+
+        GatedInputStream(byte[] data, int limit)
+        {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        synchronized void open()
+        {
+            limit = data.length;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException
+        {
+            if (position >= data.length)
+            {
+                return -1;
+            }
+            while (position >= limit)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+}
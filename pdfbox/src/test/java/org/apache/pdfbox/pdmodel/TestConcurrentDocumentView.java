@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+/**
+ * Test for {@link ConcurrentDocumentView}.
+ */
+public class TestConcurrentDocumentView extends TestCase
+{
+    private static final File INPUT = new File("src/test/resources/input/cweb.pdf");
+
+    /**
+     * The pages of a document which is loaded on demand are processed by several threads with
+     * the same results as sequentially.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testProcessPagesInParallel() throws IOException
+    {
+        PDDocument document = PDDocument.load(INPUT);
+        List<String> expectedText = new ArrayList<String>();
+        List<int[]> expectedPixels = new ArrayList<int[]>();
+        try
+        {
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int i = 0; i < document.getNumberOfPages(); i++)
+            {
+                expectedText.add(getText(document, i));
+                expectedPixels.add(getPixels(renderer.renderImage(i, 0.5f)));
+            }
+        }
+        finally
+        {
+            document.close();
+        }
+
+        PDFParser parser = new PDFParser(new RandomAccessBufferedFileInputStream(INPUT));
+        parser.setLazyLoading(true);
+        parser.parse();
+        final PDDocument lazyDocument = parser.getPDDocument();
+        try
+        {
+            ConcurrentDocumentView view = new ConcurrentDocumentView(lazyDocument);
+            assertEquals(expectedText.size(), view.getNumberOfPages());
+            final PDFRenderer renderer = new PDFRenderer(lazyDocument);
+            List<Object[]> results = view.processPagesInParallel(
+                    new ConcurrentDocumentView.PageProcessor<Object[]>()
+                    {
+                        @Override
+                        public Object[] processPage(PDPage page, int pageIndex)
+                                throws IOException
+                        {
+                            return new Object[] { getText(lazyDocument, pageIndex),
+                                    getPixels(renderer.renderImage(pageIndex, 0.5f)) };
+                        }
+                    }, 4);
+            assertEquals(expectedText.size(), results.size());
+            for (int i = 0; i < results.size(); i++)
+            {
+                assertEquals(expectedText.get(i), results.get(i)[0]);
+                assertTrue("page " + i,
+                        Arrays.equals(expectedPixels.get(i), (int[]) results.get(i)[1]));
+            }
+        }
+        finally
+        {
+            lazyDocument.close();
+        }
+    }
+
+    /**
+     * The exception of a page is thrown to the caller.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testException() throws IOException
+    {
+        PDDocument document = PDDocument.load(INPUT);
+        try
+        {
+            ConcurrentDocumentView view = new ConcurrentDocumentView(document);
+            view.processPagesInParallel(new ConcurrentDocumentView.PageProcessor<Void>()
+            {
+                @Override
+                public Void processPage(PDPage page, int pageIndex) throws IOException
+                {
+                    if (pageIndex == 1)
+                    {
+                        throw new IOException("page " + pageIndex);
+                    }
+                    return null;
+                }
+            }, 2);
+            fail("IOException expected");
+        }
+        catch (IOException e)
+        {
+            assertEquals("page 1", e.getMessage());
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    private static String getText(PDDocument document, int pageIndex) throws IOException
+    {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        return stripper.getText(document);
+    }
+
+    private static int[] getPixels(BufferedImage image)
+    {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -24,10 +24,25 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessBuffer;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdfwriter.COSWriter;
 
 import junit.framework.TestCase;
 import static junit.framework.TestCase.assertNull;
@@ -106,6 +121,405 @@ public class TestPDDocument extends TestCase
         loadDoc.close();
     }
 
+    /**
+     * Test saving a linearized document, the linearization parameters and the page offset hint
+     * table have to match the written file.
+     * @throws IOException if something went wrong
+     */
+    public void testSaveLinearized() throws IOException
+    {
+        InputStream in = TestPDDocument.class.getResourceAsStream("/input/cweb.pdf");
+        PDDocument document = PDDocument.load(in);
+        in.close();
+        int numberOfPages = document.getNumberOfPages();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        document.saveLinearized(baos);
+        document.close();
+        byte[] pdf = baos.toByteArray();
+        String content = new String(pdf, "ISO-8859-1");
+
+        PDFParser parser = new PDFParser(new RandomAccessBuffer(pdf));
+        COSDictionary linearization = parser.parseLinearizationDictionary();
+        assertNotNull(linearization);
+        assertEquals(pdf.length, linearization.getLong(COSName.L));
+        assertEquals(numberOfPages, linearization.getInt(COSName.N));
+        long firstPage = getObjectOffset(content, linearization.getLong(COSName.O));
+        assertTrue(isPageObject(content, firstPage));
+        long firstPageEnd = linearization.getLong(COSName.E);
+        assertTrue(firstPage < firstPageEnd);
+
+        // the main cross reference table, /T is the offset of the white-space character
+        // preceding the entry of object 0
+        Matcher prev = Pattern.compile("/Prev (\\d+)").matcher(content);
+        assertTrue(prev.find());
+        int mainXref = Integer.parseInt(prev.group(1));
+        assertTrue(content.startsWith("xref", mainXref));
+        int firstEntry = (int) linearization.getLong(COSName.T);
+        assertTrue(firstEntry > mainXref);
+        assertTrue(Character.isWhitespace(content.charAt(firstEntry)));
+        assertTrue(content.startsWith("0000000000 65535 f", firstEntry + 1));
+
+        // the hint stream is located before the first page
+        COSArray hintRange = (COSArray) linearization.getDictionaryObject(COSName.H);
+        int hintOffset = ((COSNumber) hintRange.getObject(0)).intValue();
+        int hintLength = ((COSNumber) hintRange.getObject(1)).intValue();
+        assertTrue(isObjectStart(content, hintOffset));
+        assertTrue(content.startsWith("endobj", hintOffset + hintLength - "endobj\n".length()));
+        assertTrue(isObjectStart(content, hintOffset + hintLength));
+        assertTrue(hintOffset + hintLength <= firstPage);
+        Matcher hintLengthMatcher = Pattern.compile("/Length (\\d+)").matcher(content);
+        assertTrue(hintLengthMatcher.find(hintOffset));
+        int dataOffset = content.indexOf("stream\r\n", hintOffset) + "stream\r\n".length();
+        byte[] hints = Arrays.copyOfRange(pdf, dataOffset,
+                dataOffset + Integer.parseInt(hintLengthMatcher.group(1)));
+
+        // page offset hint table, the offsets are given as if the hint stream was not present
+        int[] bit = new int[1];
+        readBits(hints, bit, 32);
+        assertEquals(firstPage, readBits(hints, bit, 32) + hintLength);
+        int objectBits = (int) readBits(hints, bit, 16);
+        long minLength = readBits(hints, bit, 32);
+        int lengthBits = (int) readBits(hints, bit, 16);
+        bit[0] = 36 * 8 + (numberOfPages * objectBits + 7) / 8 * 8;
+        long pageOffset = firstPage;
+        for (int i = 0; i < numberOfPages; i++)
+        {
+            assertTrue("page " + i, isPageObject(content, pageOffset));
+            pageOffset += minLength + readBits(hints, bit, lengthBits);
+            if (i == 0)
+            {
+                assertEquals(firstPageEnd, pageOffset);
+            }
+        }
+        assertTrue(pageOffset <= mainXref);
+
+        PDDocument loadDoc = PDDocument.load(pdf);
+        assertEquals(numberOfPages, loadDoc.getNumberOfPages());
+        loadDoc.close();
+    }
+
+    /**
+     * Test that saving a linearized document doesn't change the pages and that the indirect
+     * objects of the first page are written in the first page section.
+     * @throws IOException if something went wrong
+     */
+    public void testSaveLinearizedKeepsPages() throws IOException
+    {
+        PDDocument document = new PDDocument();
+        for (int i = 0; i < 3; i++)
+        {
+            COSArray contents = new COSArray();
+            for (int j = 0; j < 2; j++)
+            {
+                COSStream stream = new COSStream();
+                OutputStream out = stream.createOutputStream();
+                out.write(("% page " + i + " part " + j).getBytes("US-ASCII"));
+                out.close();
+                contents.add(stream);
+            }
+            PDPage page = new PDPage();
+            page.getCOSObject().setItem(COSName.CONTENTS, new COSObject(contents));
+            document.addPage(page);
+        }
+        // a reference to a missing object
+        COSArray annotations = new COSArray();
+        annotations.add(new COSObject(null));
+        document.getPage(0).getCOSObject().setItem(COSName.ANNOTS, annotations);
+        document.getPages().getCOSObject().setInt(COSName.ROTATE, 90);
+        document.setDocumentId(1L);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        document.saveLinearized(baos);
+        for (PDPage page : document.getPages())
+        {
+            assertFalse(page.getCOSObject().containsKey(COSName.ROTATE));
+        }
+        document.close();
+        byte[] pdf = baos.toByteArray();
+        String content = new String(pdf, "ISO-8859-1");
+
+        PDFParser parser = new PDFParser(new RandomAccessBuffer(pdf));
+        long firstPageEnd = parser.parseLinearizationDictionary().getLong(COSName.E);
+        assertTrue(content.indexOf("% page 0 part 1") < firstPageEnd);
+        assertTrue(content.indexOf("% page 1 part 0") > firstPageEnd);
+
+        PDDocument loadDoc = PDDocument.load(pdf);
+        COSArray loadedAnnotations = (COSArray) loadDoc.getPage(0).getCOSObject()
+                .getDictionaryObject(COSName.ANNOTS);
+        long nullObject = ((COSObject) loadedAnnotations.get(0)).getObjectNumber();
+        assertTrue(getObjectOffset(content, nullObject) < firstPageEnd);
+        for (PDPage page : loadDoc.getPages())
+        {
+            assertTrue(page.getCOSObject().containsKey(COSName.ROTATE));
+            assertEquals(90, page.getRotation());
+        }
+        loadDoc.close();
+    }
+
+    /**
+     * Test that objects aren't compressed into object streams when a linearized document is
+     * written.
+     * @throws IOException if something went wrong
+     */
+    public void testSaveLinearizedIgnoresCompression() throws IOException
+    {
+        InputStream in = TestPDDocument.class.getResourceAsStream("/input/cweb.pdf");
+        PDDocument document = PDDocument.load(in);
+        in.close();
+        int numberOfPages = document.getNumberOfPages();
+        document.setDocumentId(1L);
+        ByteArrayOutputStream linearized = new ByteArrayOutputStream();
+        document.saveLinearized(linearized);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        COSWriter writer = new COSWriter(baos);
+        writer.setLinearized(true);
+        writer.setCompressed(true);
+        try
+        {
+            writer.write(document);
+        }
+        finally
+        {
+            writer.close();
+            document.close();
+        }
+        byte[] pdf = baos.toByteArray();
+        // the version of the input, not 1.5
+        assertEquals("%PDF-1.3", new String(Arrays.copyOfRange(pdf, 0, 8), "UTF-8"));
+        assertFalse(new String(pdf, "ISO-8859-1").contains("/ObjStm"));
+        assertTrue(Arrays.equals(linearized.toByteArray(), pdf));
+
+        PDFParser parser = new PDFParser(new RandomAccessBuffer(pdf));
+        assertEquals(pdf.length, parser.parseLinearizationDictionary().getLong(COSName.L));
+        PDDocument loadDoc = PDDocument.load(pdf);
+        assertEquals(numberOfPages, loadDoc.getNumberOfPages());
+        loadDoc.close();
+    }
+
+    private static int getObjectOffset(String content, long objectNumber)
+    {
+        int offset = content.indexOf("\n" + objectNumber + " 0 obj");
+        assertTrue(offset >= 0);
+        return offset + 1;
+    }
+
+    private static boolean isObjectStart(String content, long offset)
+    {
+        return Pattern.compile("\\d+ 0 obj\\s").matcher(content).region((int) offset,
+                content.length()).lookingAt();
+    }
+
+    private static boolean isPageObject(String content, long offset)
+    {
+        return Pattern.compile("\\d+ 0 obj\\s*<<\\s*/Type /Page\\s").matcher(content)
+                .region((int) offset, content.length()).lookingAt();
+    }
+
+    // reads a big endian bit field of a hint table
+    private static long readBits(byte[] data, int[] bitPosition, int bits)
+    {
+        long value = 0;
+        for (int i = 0; i < bits; i++)
+        {
+            int position = bitPosition[0]++;
+            value = (value << 1) | ((data[position / 8] >> (7 - position % 8)) & 1);
+        }
+        return value;
+    }
+
+    /**
+     * Test saving a document with object streams and a cross reference stream.
+     * @throws IOException if something went wrong
+     */
+    public void testSaveCompressed() throws IOException
+    {
+        InputStream in = TestPDDocument.class.getResourceAsStream("/input/cweb.pdf");
+        byte[] input = IOUtils.toByteArray(in);
+        in.close();
+
+        PDDocument document = PDDocument.load(input);
+        int numberOfPages = document.getNumberOfPages();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        document.save(plain);
+        document.close();
+
+        document = PDDocument.load(input);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        document.saveCompressed(baos);
+        document.close();
+        byte[] pdf = baos.toByteArray();
+
+        assertTrue(pdf.length < plain.size());
+        assertEquals("%PDF-1.5", new String(Arrays.copyOfRange(pdf, 0, 8), "UTF-8"));
+        String content = new String(pdf, "ISO-8859-1");
+        assertTrue(content.contains("/ObjStm"));
+        assertTrue(content.contains("/XRef"));
+        assertFalse(content.contains("\ntrailer"));
+
+        PDDocument loadDoc = PDDocument.load(pdf);
+        assertEquals(numberOfPages, loadDoc.getNumberOfPages());
+        loadDoc.close();
+    }
+
+    /**
+     * Test that encoding streams on an executor results in the same output.
+     * @throws Exception if something went wrong
+     */
+    public void testSaveCompressedWithExecutor() throws Exception
+    {
+        byte[] serial = saveCompressed(null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            assertTrue(Arrays.equals(serial, saveCompressed(executor)));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        PDDocument loadDoc = PDDocument.load(serial);
+        assertEquals(40, loadDoc.getNumberOfPages());
+        PDPage page = loadDoc.getPage(39);
+        COSStream contents = (COSStream) page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        assertEquals(COSName.FLATE_DECODE, contents.getFilters());
+        assertEquals(createContent(39), new String(IOUtils.toByteArray(page.getContents()), "US-ASCII"));
+        loadDoc.close();
+    }
+
+    /**
+     * Test that a compressed save doesn't change the streams of the document.
+     * @throws Exception if something went wrong
+     */
+    public void testSaveCompressedKeepsStreams() throws Exception
+    {
+        PDDocument document = new PDDocument();
+        PDPage page = new PDPage();
+        COSStream contents = new COSStream();
+        OutputStream out = contents.createOutputStream();
+        out.write(createContent(0).getBytes("US-ASCII"));
+        out.close();
+        page.getCOSObject().setItem(COSName.CONTENTS, contents);
+        document.addPage(page);
+        document.setDocumentId(1L);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            document.saveCompressed(first, executor);
+            assertNull(contents.getFilters());
+            assertEquals(createContent(0),
+                    new String(IOUtils.toByteArray(contents.createRawInputStream()), "US-ASCII"));
+
+            ByteArrayOutputStream second = new ByteArrayOutputStream();
+            document.saveCompressed(second);
+            assertTrue(Arrays.equals(first.toByteArray(), second.toByteArray()));
+            assertNull(contents.getFilters());
+
+            PDDocument loadDoc = PDDocument.load(first.toByteArray());
+            COSStream loaded = (COSStream) loadDoc.getPage(0).getCOSObject()
+                    .getDictionaryObject(COSName.CONTENTS);
+            assertEquals(COSName.FLATE_DECODE, loaded.getFilters());
+            assertEquals(createContent(0),
+                    new String(IOUtils.toByteArray(loaded.createInputStream()), "US-ASCII"));
+            loadDoc.close();
+        }
+        finally
+        {
+            executor.shutdown();
+            document.close();
+        }
+    }
+
+    private byte[] saveCompressed(Executor executor) throws IOException
+    {
+        PDDocument document = new PDDocument();
+        for (int i = 0; i < 40; i++)
+        {
+            PDPage page = new PDPage();
+            COSStream contents = new COSStream();
+            OutputStream out = contents.createOutputStream();
+            out.write(createContent(i).getBytes("US-ASCII"));
+            out.close();
+            page.getCOSObject().setItem(COSName.CONTENTS, contents);
+            document.addPage(page);
+        }
+        document.setDocumentId(1L);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (executor == null)
+        {
+            document.saveCompressed(baos);
+        }
+        else
+        {
+            document.saveCompressed(baos, executor);
+        }
+        document.close();
+        return baos.toByteArray();
+    }
+
+    private String createContent(int page)
+    {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+        {
+            content.append(page).append(' ').append(i).append(" m ").append(i).append(" 0 l S\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Test appending an incremental update to the file a document was loaded from.
+     * @throws IOException if something went wrong
+     */
+    public void testAppendIncrementalUpdate() throws IOException
+    {
+        InputStream in = TestPDDocument.class.getResourceAsStream("/input/cweb.pdf");
+        byte[] input = IOUtils.toByteArray(in);
+        in.close();
+        File file = new File(testResultsDir, "pddocument-appendincremental.pdf");
+        OutputStream out = new FileOutputStream(file);
+        out.write(input);
+        out.close();
+
+        PDDocument document = PDDocument.load(file);
+        int numberOfPages = document.getNumberOfPages();
+        PDDocumentInformation info = document.getDocumentInformation();
+        info.setTitle("Incremental");
+        info.getCOSObject().setNeedToBeUpdated(true);
+        document.appendIncrementalUpdate(file);
+        document.close();
+
+        // only the changes have been appended
+        in = new FileInputStream(file);
+        byte[] pdf = IOUtils.toByteArray(in);
+        in.close();
+        assertTrue(pdf.length > input.length);
+        assertTrue(pdf.length - input.length < 2000);
+        assertTrue(Arrays.equals(input, Arrays.copyOf(pdf, input.length)));
+
+        PDDocument loadDoc = PDDocument.load(pdf);
+        assertEquals(numberOfPages, loadDoc.getNumberOfPages());
+        assertEquals("Incremental", loadDoc.getDocumentInformation().getTitle());
+        loadDoc.close();
+
+        // the same update is written after the source data when saved to a stream
+        document = PDDocument.load(input);
+        info = document.getDocumentInformation();
+        info.setTitle("Incremental");
+        info.getCOSObject().setNeedToBeUpdated(true);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        document.saveIncremental(baos);
+        document.close();
+        byte[] saved = baos.toByteArray();
+        assertTrue(Arrays.equals(input, Arrays.copyOf(saved, input.length)));
+        loadDoc = PDDocument.load(saved);
+        assertEquals("Incremental", loadDoc.getDocumentInformation().getTitle());
+        loadDoc.close();
+    }
+
     /**
      * Test document save/loadNonSeq using a stream.
      * @throws IOException if something went wrong
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+/**
+ * Test for {@link StreamingDocumentWriter}.
+ */
+public class TestStreamingDocumentWriter extends TestCase
+{
+    /**
+     * Pages are written one by one, sharing their fonts, and a font is subset at the end.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testWritePages() throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StreamingDocumentWriter writer = new StreamingDocumentWriter(baos);
+        PDDocument document = writer.getDocument();
+        document.getDocumentInformation().setTitle("Streaming");
+        PDFont subsetFont = PDType0Font.load(document, TestStreamingDocumentWriter.class
+                .getResourceAsStream("/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf"));
+        for (int i = 0; i < 30; i++)
+        {
+            PDPage page = new PDPage();
+            PDPageContentStream contents = new PDPageContentStream(document, page);
+            contents.beginText();
+            contents.setFont(PDType1Font.HELVETICA, 12);
+            contents.newLineAtOffset(100, 700);
+            contents.showText("Page " + (i + 1));
+            contents.setFont(subsetFont, 12);
+            contents.newLineAtOffset(0, -20);
+            contents.showText("Subset " + (i + 1));
+            contents.endText();
+            contents.close();
+            writer.writePage(page);
+        }
+        assertEquals(30, writer.getNumberOfPages());
+        writer.close();
+
+        PDDocument loadDoc = PDDocument.load(baos.toByteArray());
+        try
+        {
+            assertEquals(30, loadDoc.getNumberOfPages());
+            assertEquals("Streaming", loadDoc.getDocumentInformation().getTitle());
+            COSName fontName = COSName.getPDFName("F1");
+            COSDictionary firstFont = loadDoc.getPage(0).getResources().getFont(fontName)
+                    .getCOSObject();
+            PDPage lastPage = loadDoc.getPage(29);
+            assertSame(firstFont, lastPage.getResources().getFont(fontName).getCOSObject());
+            assertSame(loadDoc.getPages().getCOSObject(),
+                    lastPage.getCOSObject().getDictionaryObject(COSName.PARENT));
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(30);
+            stripper.setEndPage(30);
+            String text = stripper.getText(loadDoc);
+            assertTrue(text.contains("Page 30"));
+            assertTrue(text.contains("Subset 30"));
+        }
+        finally
+        {
+            loadDoc.close();
+        }
+    }
+
+    /**
+     * A document without pages can be written.
+     *
+     * @throws IOException if something went wrong
+     */
+    public void testNoPages() throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StreamingDocumentWriter writer = new StreamingDocumentWriter(baos);
+        writer.close();
+        PDDocument loadDoc = PDDocument.load(baos.toByteArray());
+        assertEquals(0, loadDoc.getNumberOfPages());
+        loadDoc.close();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pdfbox.pdmodel.graphics.state;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+
+import junit.framework.TestCase;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * Unit tests for {@link PDGraphicsState}.
+ */
+public class PDGraphicsStateTest extends TestCase
+{
+    /**
+     * A clone shares the CTM, the text state and the clipping path with the original state,
+     * but changes of either state don't affect the other.
+     */
+    public void testClone()
+    {
+        PDGraphicsState state = new PDGraphicsState(new PDRectangle(100, 100));
+        state.getTextState().setFontSize(12);
+        PDGraphicsState clone = state.clone();
+
+        clone.getCurrentTransformationMatrix().concatenate(Matrix.getScaleInstance(2, 2));
+        clone.getTextState().setFontSize(24);
+        clone.intersectClippingPath(new Area(new Rectangle2D.Float(0, 0, 10, 10)));
+        assertEquals(2f, clone.getCurrentTransformationMatrix().getScaleX());
+        assertEquals(24f, clone.getTextState().getFontSize());
+        assertEquals(10.0, clone.getCurrentClippingPath().getBounds2D().getWidth());
+        assertEquals(1f, state.getCurrentTransformationMatrix().getScaleX());
+        assertEquals(12f, state.getTextState().getFontSize());
+        assertEquals(100.0, state.getCurrentClippingPath().getBounds2D().getWidth());
+
+        // the original state can be changed while the clone is in use, too
+        PDGraphicsState clone2 = state.clone();
+        state.getCurrentTransformationMatrix().concatenate(Matrix.getScaleInstance(3, 3));
+        state.getTextState().setCharacterSpacing(5);
+        state.intersectClippingPath(new Area(new Rectangle2D.Float(0, 0, 20, 20)));
+        assertEquals(1f, clone2.getCurrentTransformationMatrix().getScaleX());
+        assertEquals(0f, clone2.getTextState().getCharacterSpacing());
+        assertEquals(100.0, clone2.getCurrentClippingPath().getBounds2D().getWidth());
+        assertEquals(3f, state.getCurrentTransformationMatrix().getScaleX());
+        assertEquals(20.0, state.getCurrentClippingPath().getBounds2D().getWidth());
+    }
+}